@@ -4,9 +4,11 @@ import com.example.demo.config.VnPayConfig;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 @EnableConfigurationProperties(VnPayConfig.class)
+@EnableScheduling
 public class DemoApplication {
 
     public static void main(String[] args) {
@@ -0,0 +1,66 @@
+package com.example.demo.config;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Token bucket limits per route group. Groups are matched in order against the request path
+ * (Ant patterns, same paths as SecurityConfig); the first match wins. Override under
+ * {@code rate-limit.groups[n]} in application yml.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "rate-limit")
+@Getter
+@Setter
+public class RateLimitProperties {
+
+    public enum KeyType {
+        USER, IP
+    }
+
+    private boolean enabled = true;
+
+    // Buckets untouched for this long are dropped
+    private long idleEvictSeconds = 600;
+
+    private List<Group> groups = defaultGroups();
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    public static class Group {
+        private String name;
+        private List<String> patterns = new ArrayList<>();
+        private List<String> excludePatterns = new ArrayList<>();
+        private long capacity;
+        private double refillPerSecond;
+        // USER falls back to IP for anonymous requests
+        private KeyType keyBy = KeyType.USER;
+
+        public Group(String name, List<String> patterns, long capacity, double refillPerSecond, KeyType keyBy) {
+            this.name = name;
+            this.patterns = new ArrayList<>(patterns);
+            this.capacity = capacity;
+            this.refillPerSecond = refillPerSecond;
+            this.keyBy = keyBy;
+        }
+    }
+
+    private static List<Group> defaultGroups() {
+        List<Group> groups = new ArrayList<>();
+        groups.add(new Group("auth", List.of("/api/users/login", "/api/users/register"), 10, 10.0 / 60, KeyType.IP));
+        Group payment = new Group("payment", List.of("/api/payment/vnpay/**"), 10, 0.2, KeyType.USER);
+        payment.setExcludePatterns(new ArrayList<>(List.of("/api/payment/vnpay/ipn")));
+        groups.add(payment);
+        groups.add(new Group("transactions", List.of("/api/transactions/**"), 30, 1, KeyType.USER));
+        groups.add(new Group("co2", List.of("/api/co2/**"), 20, 0.5, KeyType.USER));
+        groups.add(new Group("default", List.of("/api/**"), 120, 20, KeyType.USER));
+        return groups;
+    }
+}
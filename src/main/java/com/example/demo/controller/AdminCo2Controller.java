@@ -0,0 +1,58 @@
+package com.example.demo.controller;
+
+import com.example.demo.service.Co2TotalsService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+@RestController
+@RequestMapping("/api/admin/co2")
+@RequiredArgsConstructor
+@Slf4j
+@Tag(name = "Admin CO2", description = "Admin APIs for CO2 reduction totals")
+@PreAuthorize("hasRole('ADMIN')")
+public class AdminCo2Controller {
+
+    private final Co2TotalsService co2TotalsService;
+
+    /**
+     * Rebuild all per-user totals from co2_reduction (runs in background)
+     */
+    @PostMapping("/totals/rebuild")
+    @Operation(summary = "Rebuild CO2 totals", description = "Recompute co2_user_totals for every user in the background")
+    public ResponseEntity<?> rebuildTotals() {
+        log.info("Admin - Trigger CO2 totals rebuild");
+        if (co2TotalsService.isRebuilding()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("error", "Rebuild is already running"));
+        }
+        CompletableFuture.runAsync(co2TotalsService::rebuildAll);
+        return ResponseEntity.accepted()
+                .body(Map.of("message", "Rebuild started"));
+    }
+
+    /**
+     * Rebuild the totals of one user
+     */
+    @PostMapping("/totals/rebuild/{userId}")
+    @Operation(summary = "Rebuild CO2 totals of a user", description = "Recompute co2_user_totals for one user")
+    public ResponseEntity<?> rebuildUserTotals(@PathVariable String userId) {
+        log.info("Admin - Rebuild CO2 totals for user {}", userId);
+        co2TotalsService.rebuildUser(userId);
+        return ResponseEntity.ok(co2TotalsService.getSummary(userId));
+    }
+
+    @GetMapping("/totals/stats")
+    @Operation(summary = "CO2 totals stats", description = "Last rebuild time and tracked users")
+    public ResponseEntity<Map<String, Object>> totalsStats() {
+        return ResponseEntity.ok(co2TotalsService.getStats());
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.demo.controller;
+
+import com.example.demo.service.CreditSerialRegistry;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+@RestController
+@RequestMapping("/api/admin/credit-serials")
+@RequiredArgsConstructor
+@Slf4j
+@Tag(name = "Admin Credit Serials", description = "Admin APIs for the credit serial registry")
+@PreAuthorize("hasRole('ADMIN')")
+public class AdminCreditSerialController {
+
+    private final CreditSerialRegistry serialRegistry;
+
+    @GetMapping("/stats")
+    @Operation(summary = "Serial registry stats", description = "Serial counts per state, bitmap size and last snapshot")
+    public ResponseEntity<Map<String, Object>> stats() {
+        return ResponseEntity.ok(serialRegistry.getStats());
+    }
+
+    /**
+     * Write a registry snapshot now (runs in background)
+     */
+    @PostMapping("/snapshot")
+    @Operation(summary = "Snapshot serial registry", description = "Fold the change log into a new snapshot in the background")
+    public ResponseEntity<?> snapshot() {
+        log.info("Admin - Trigger credit serial snapshot");
+        if (serialRegistry.isSnapshotting()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("error", "Snapshot is already running"));
+        }
+        CompletableFuture.runAsync(serialRegistry::snapshot);
+        return ResponseEntity.accepted()
+                .body(Map.of("message", "Snapshot started"));
+    }
+}
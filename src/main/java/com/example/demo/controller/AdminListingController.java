@@ -2,6 +2,7 @@ package com.example.demo.controller;
 
 import com.example.demo.entity.Listing;
 import com.example.demo.repository.ListingRepository;
+import com.example.demo.service.ListingService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.*;
@@ -17,6 +18,7 @@ import java.util.stream.Collectors;
 public class AdminListingController {
 
     private final ListingRepository listingRepository;
+    private final ListingService listingService;
 
     // ✅ Lấy toàn bộ listing cho admin
     @GetMapping
@@ -52,8 +54,8 @@ public class AdminListingController {
     public ResponseEntity<?> disableListing(@PathVariable Long id) {
         return listingRepository.findById(id)
                 .<ResponseEntity<?>>map(l -> {
-                    l.setStatus(Listing.ListingStatus.CANCELLED);
-                    listingRepository.save(l);
+                    // Qua ListingService để trả serial đang giữ cho seller
+                    listingService.updateListingStatus(id, Listing.ListingStatus.CANCELLED);
 
                     Map<String, Object> res = new HashMap<>();
                     res.put("message", "Listing disabled successfully");
@@ -73,8 +75,7 @@ public class AdminListingController {
         log.info("Admin - Approve listing ID: {}", id);
         return listingRepository.findById(id)
                 .<ResponseEntity<?>>map(l -> {
-                    l.setStatus(Listing.ListingStatus.APPROVED);
-                    listingRepository.save(l);
+                    listingService.updateListingStatus(id, Listing.ListingStatus.APPROVED);
                     return ResponseEntity.ok(Map.of(
                             "message", "Listing approved successfully",
                             "id", id,
@@ -93,8 +94,7 @@ public class AdminListingController {
         log.info("Admin - Reject listing ID: {} with reason: {}", id, reason);
         return listingRepository.findById(id)
                 .<ResponseEntity<?>>map(l -> {
-                    l.setStatus(Listing.ListingStatus.REJECTED);
-                    listingRepository.save(l);
+                    listingService.updateListingStatus(id, Listing.ListingStatus.REJECTED);
                     return ResponseEntity.ok(Map.of(
                             "message", "Listing rejected successfully",
                             "id", id,
@@ -134,7 +134,7 @@ public class AdminListingController {
         log.info("Admin - Delete listing ID: {}", id);
         return listingRepository.findById(id)
                 .<ResponseEntity<?>>map(l -> {
-                    listingRepository.delete(l);
+                    listingService.forceDeleteListing(id);
                     return ResponseEntity.ok(Map.of(
                             "message", "Listing deleted successfully",
                             "id", id
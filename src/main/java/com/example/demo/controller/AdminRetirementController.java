@@ -0,0 +1,39 @@
+package com.example.demo.controller;
+
+import com.example.demo.service.RetirementService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/admin/retirements")
+@RequiredArgsConstructor
+@Tag(name = "Admin Retirements", description = "Admin APIs for the credit retirement journal")
+@PreAuthorize("hasRole('ADMIN')")
+public class AdminRetirementController {
+
+    private final RetirementService retirementService;
+
+    @GetMapping("/journal/stats")
+    @Operation(summary = "Retirement journal stats", description = "Durable sequence, group commit batch size and fsync time")
+    public ResponseEntity<Map<String, Object>> journalStats() {
+        return ResponseEntity.ok(retirementService.getJournalStats());
+    }
+
+    /**
+     * Read journal records from a sequence, for reconciliation against credit_retirements
+     */
+    @GetMapping("/journal")
+    @Operation(summary = "Read retirement journal", description = "Records with sequence >= from, up to limit")
+    public ResponseEntity<List<Map<String, Object>>> readJournal(@RequestParam(defaultValue = "1") long from,
+                                                                 @RequestParam(defaultValue = "100") int limit) throws IOException {
+        return ResponseEntity.ok(retirementService.readJournal(from, limit));
+    }
+}
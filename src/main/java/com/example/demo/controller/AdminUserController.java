@@ -8,6 +8,8 @@ import com.example.demo.repository.*;
 import com.example.demo.repository.RoleRepository;
 import com.example.demo.repository.UserRepository;
 import com.example.demo.repository.UserStatusRepository;
+import com.example.demo.security.AuthenticationCache;
+import com.example.demo.security.TokenRevocationService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.*;
@@ -26,6 +28,8 @@ public class AdminUserController {
     private final RoleRepository roleRepository;
     private final WalletRepository walletRepository;
     private final CarbonWalletRepository carbonWalletRepository;
+    private final AuthenticationCache authenticationCache;
+    private final TokenRevocationService tokenRevocationService;
 
     @GetMapping
     public ResponseEntity<?> getAllUsers() {
@@ -103,6 +107,10 @@ public class AdminUserController {
         record.setUserId(id);
         record.setStatus("BANNED");
         userStatusRepository.save(record);
+        userRepository.findById(id).ifPresent(user -> {
+            authenticationCache.evictUser(user.getEmail());
+            tokenRevocationService.revokeUser(id, user.getEmail(), "BANNED");
+        });
         return ResponseEntity.ok(Map.of("message", "User banned", "id", id));
     }
 
@@ -114,6 +122,8 @@ public class AdminUserController {
         record.setUserId(id);
         record.setStatus("ACTIVE");
         userStatusRepository.save(record);
+        // Bỏ kết quả "không hợp lệ" đã cache cho user
+        userRepository.findById(id).ifPresent(user -> authenticationCache.evictUser(user.getEmail()));
         return ResponseEntity.ok(Map.of("message", "User unbanned", "id", id));
     }
 
@@ -122,6 +132,8 @@ public class AdminUserController {
         return userRepository.findById(id)
                 .<ResponseEntity<?>>map(user -> {
                     userRepository.delete(user);
+                    authenticationCache.evictUser(user.getEmail());
+                    tokenRevocationService.revokeUser(id, user.getEmail(), "DELETED");
                     return ResponseEntity.ok(Map.of("message", "User deleted", "id", id));
                 })
                 .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND)
@@ -2,19 +2,38 @@ package com.example.demo.controller;
 
 import com.example.demo.entity.Wallet;
 import com.example.demo.entity.CarbonWallet;
+import com.example.demo.entity.CarbonWalletAdjustment;
 import com.example.demo.entity.WalletTransaction;
 import com.example.demo.repository.*;
+import com.example.demo.dto.CursorPageResponse;
+import com.example.demo.dto.ReconciliationReport;
+import com.example.demo.dto.WalletStatementEntry;
+import com.example.demo.service.BalanceCache;
+import com.example.demo.service.VnPayExpirySweeper;
+import com.example.demo.service.VnPayIpnInboxService;
+import com.example.demo.service.WalletOverviewService;
+import com.example.demo.service.WalletReconciliationService;
+import com.example.demo.service.WalletService;
+import com.example.demo.service.WalletStatementService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 @RestController
@@ -29,45 +48,27 @@ public class AdminWalletController {
     private final CarbonWalletRepository carbonWalletRepository;
     private final WalletTransactionRepository walletTransactionRepository;
     private final UserRepository userRepository;
+    private final VnPayIpnInboxService vnPayIpnInboxService;
+    private final VnPayExpirySweeper vnPayExpirySweeper;
+    private final WalletReconciliationService walletReconciliationService;
+    private final WalletStatementService walletStatementService;
+    private final WalletOverviewService walletOverviewService;
+    private final BalanceCache balanceCache;
+    private final WalletService walletService;
 
     /**
      * Get all wallets overview
      */
     @GetMapping
     @Operation(summary = "Get all wallets", description = "Get all money and carbon wallets in the system")
-    public ResponseEntity<?> getAllWallets() {
+    public ResponseEntity<StreamingResponseBody> getAllWallets() {
         log.info("Admin - Get all wallets");
 
-        List<Wallet> moneyWallets = walletRepository.findAll();
-        List<CarbonWallet> carbonWallets = carbonWalletRepository.findAll();
-
-        BigDecimal totalMoney = walletRepository.sumAllBalances();
-        BigDecimal totalCarbon = carbonWalletRepository.sumAllBalances();
-
-        Map<String, Object> response = new HashMap<>();
-        response.put("totalMoneyInSystem", totalMoney != null ? totalMoney : BigDecimal.ZERO);
-        response.put("totalCarbonCredits", totalCarbon != null ? totalCarbon : BigDecimal.ZERO);
-        response.put("moneyWalletsCount", moneyWallets.size());
-        response.put("carbonWalletsCount", carbonWallets.size());
-        
-        // Detailed wallet list
-        List<Map<String, Object>> walletDetails = moneyWallets.stream().map(w -> {
-            Map<String, Object> detail = new LinkedHashMap<>();
-            detail.put("userId", w.getUser().getId());
-            detail.put("userEmail", w.getUser().getEmail());
-            detail.put("userFullName", w.getUser().getFullName());
-            detail.put("moneyBalance", w.getBalance());
-            
-            // Get carbon wallet for same user
-            carbonWalletRepository.findByOwner_Id(w.getUser().getId())
-                    .ifPresent(cw -> detail.put("carbonBalance", cw.getBalance()));
-            
-            return detail;
-        }).collect(Collectors.toList());
-
-        response.put("wallets", walletDetails);
-
-        return ResponseEntity.ok(response);
+        // 1 query join user/wallet/carbon_wallet theo trang, stream JSON + cộng tổng trong cùng lượt
+        StreamingResponseBody body = walletOverviewService::writeOverview;
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body);
     }
 
     /**
@@ -104,19 +105,15 @@ public class AdminWalletController {
      * Get all wallet transactions
      */
     @GetMapping("/transactions")
-    @Operation(summary = "Get all wallet transactions", description = "Get all money wallet transactions in the system")
+    @Operation(summary = "Get all wallet transactions", description = "Get the latest money wallet transactions in the system")
     public ResponseEntity<?> getAllWalletTransactions(
             @RequestParam(required = false, defaultValue = "100") int limit
     ) {
         log.info("Admin - Get all wallet transactions (limit: {})", limit);
 
-        List<WalletTransaction> transactions = walletTransactionRepository.findAll();
-        
-        // Sort by created date desc and limit
-        List<WalletTransaction> limitedTransactions = transactions.stream()
-                .sorted((a, b) -> b.getCreatedAt().compareTo(a.getCreatedAt()))
-                .limit(limit)
-                .collect(Collectors.toList());
+        int size = Math.max(1, Math.min(limit, WalletStatementService.MAX_PAGE_SIZE));
+        List<WalletTransaction> limitedTransactions =
+                walletTransactionRepository.findLatestWithWalletAndUser(PageRequest.of(0, size));
 
         // Map to DTO để tránh lazy loading issues
         List<Map<String, Object>> transactionDTOs = limitedTransactions.stream().map(tx -> {
@@ -130,7 +127,7 @@ public class AdminWalletController {
             dto.put("externalRef", tx.getExternalRef());
             dto.put("createdAt", tx.getCreatedAt());
             
-            // Load wallet và user info
+            // Wallet và user đã được fetch cùng query
             if (tx.getWallet() != null) {
                 Wallet wallet = tx.getWallet();
                 Map<String, Object> walletInfo = new LinkedHashMap<>();
@@ -150,33 +147,74 @@ public class AdminWalletController {
 
         return ResponseEntity.ok(Map.of(
                 "transactions", transactionDTOs,
-                "total", transactions.size(),
+                "total", walletTransactionRepository.count(),
                 "showing", limitedTransactions.size()
         ));
     }
 
     /**
-     * Get wallet transactions by user
+     * Get wallet transactions by user (first statement page)
      */
     @GetMapping("/user/{userId}/transactions")
-    @Operation(summary = "Get user wallet transactions", description = "Get all wallet transactions for a specific user")
-    public ResponseEntity<?> getUserWalletTransactions(@PathVariable Long userId) {
+    @Operation(summary = "Get user wallet transactions", description = "Get the latest wallet transactions for a specific user, use the statement API to page further")
+    public ResponseEntity<?> getUserWalletTransactions(
+            @PathVariable Long userId,
+            @RequestParam(required = false, defaultValue = "100") int limit
+    ) {
         log.info("Admin - Get wallet transactions for user ID: {}", userId);
 
-        Wallet wallet = walletRepository.findByUserId(userId);
-        if (wallet == null) {
+        Optional<Long> walletId = walletRepository.findIdByUserId(userId);
+        if (walletId.isEmpty()) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND)
                     .body(Map.of("error", "Wallet not found for user"));
         }
 
-        List<WalletTransaction> transactions = wallet.getWalletTransactions();
+        CursorPageResponse<WalletStatementEntry> page =
+                walletStatementService.getStatement(userId, null, null, null, null, limit);
 
-        return ResponseEntity.ok(Map.of(
-                "userId", userId,
-                "walletId", wallet.getId(),
-                "transactions", transactions,
-                "count", transactions.size()
-        ));
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("userId", userId);
+        response.put("walletId", walletId.get());
+        response.put("transactions", page.getItems());
+        response.put("count", page.getItems().size());
+        response.put("nextCursor", page.getNextCursor());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Wallet statement of a user (cursor paged)
+     */
+    @GetMapping("/user/{userId}/statement")
+    @Operation(summary = "Get user wallet statement", description = "Newest-first wallet statement paged by cursor, filtered by type and date range")
+    public ResponseEntity<CursorPageResponse<WalletStatementEntry>> getUserWalletStatement(
+            @PathVariable Long userId,
+            @RequestParam(required = false) WalletTransaction.TransactionType type,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false, defaultValue = "50") int limit
+    ) {
+        log.info("Admin - Get wallet statement for user ID: {}", userId);
+        return ResponseEntity.ok(walletStatementService.getStatement(userId, type, from, to, cursor, limit));
+    }
+
+    /**
+     * Export wallet statement of a user as CSV (streamed)
+     */
+    @GetMapping("/user/{userId}/statement/export")
+    @Operation(summary = "Export user wallet statement", description = "Stream the filtered wallet statement as CSV")
+    public ResponseEntity<StreamingResponseBody> exportUserWalletStatement(
+            @PathVariable Long userId,
+            @RequestParam(required = false) WalletTransaction.TransactionType type,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to
+    ) {
+        log.info("Admin - Export wallet statement for user ID: {}", userId);
+        StreamingResponseBody body = walletStatementService.exportCsv(userId, type, from, to);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"wallet-statement-" + userId + ".csv\"")
+                .contentType(new MediaType("text", "csv", StandardCharsets.UTF_8))
+                .body(body);
     }
 
     /**
@@ -198,10 +236,10 @@ public class AdminWalletController {
                         .body(Map.of("error", "Wallet not found for user"));
             }
 
+            // Cộng / trừ nguyên tử trên DB để không ghi đè top-up VNPay đang được xử lý song song
             BigDecimal oldBalance = wallet.getBalance();
-            BigDecimal newBalance = oldBalance.add(amount);
-            wallet.setBalance(newBalance);
-            walletRepository.save(wallet);
+            walletRepository.addToBalance(wallet.getId(), amount);
+            BigDecimal newBalance = walletRepository.findBalanceById(wallet.getId());
 
             // Create transaction record
             WalletTransaction transaction = new WalletTransaction();
@@ -246,15 +284,19 @@ public class AdminWalletController {
                     .orElseThrow(() -> new RuntimeException("Carbon wallet not found"));
 
             BigDecimal oldBalance = carbonWallet.getBalance();
-            BigDecimal newBalance = oldBalance.add(amount);
-            
-            if (newBalance.compareTo(BigDecimal.ZERO) < 0) {
+            if (amount.signum() == 0) {
                 return ResponseEntity.badRequest()
-                        .body(Map.of("error", "Insufficient carbon balance"));
+                        .body(Map.of("error", "Adjustment amount must not be zero"));
             }
 
-            carbonWallet.setBalance(newBalance);
-            carbonWalletRepository.save(carbonWallet);
+            // Cộng/trừ trên DB và ghi sổ điều chỉnh để reconciliation không báo lệch
+            try {
+                walletService.adjust(userId, amount, CarbonWalletAdjustment.Source.ADMIN, reason);
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest()
+                        .body(Map.of("error", "Insufficient carbon balance"));
+            }
+            BigDecimal newBalance = oldBalance.add(amount);
 
             return ResponseEntity.ok(Map.of(
                     "message", "Carbon wallet balance adjusted successfully",
@@ -270,5 +312,77 @@ public class AdminWalletController {
                     .body(Map.of("error", e.getMessage()));
         }
     }
-}
 
+    /**
+     * VNPay IPN inbox status
+     */
+    @GetMapping("/vnpay-inbox")
+    @Operation(summary = "VNPay IPN inbox stats", description = "Count of VNPay IPN messages by status and in-flight worker count")
+    public ResponseEntity<?> getVnPayInboxStats() {
+        log.info("Admin - Get VNPay IPN inbox stats");
+        return ResponseEntity.ok(vnPayIpnInboxService.getStats());
+    }
+
+    /**
+     * Expire stale PENDING VNPay top-ups now
+     */
+    @PostMapping("/vnpay-expiry/run")
+    @Operation(summary = "Expire stale VNPay top-ups", description = "Mark PENDING VNPay top-ups older than expiry + grace as FAILED")
+    public ResponseEntity<?> runVnPayExpirySweep() {
+        log.info("Admin - Trigger VNPay expiry sweep");
+        int expired = vnPayExpirySweeper.sweep();
+        if (expired < 0) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("error", "Expiry sweep is already running"));
+        }
+        return ResponseEntity.ok(Map.of("expired", expired));
+    }
+
+    /**
+     * VNPay expiry sweeper stats
+     */
+    @GetMapping("/vnpay-expiry")
+    @Operation(summary = "VNPay expiry sweeper stats", description = "Result of the latest VNPay expiry sweep")
+    public ResponseEntity<?> getVnPayExpiryStats() {
+        return ResponseEntity.ok(vnPayExpirySweeper.getStats());
+    }
+
+    /**
+     * Balance cache stats
+     */
+    @GetMapping("/balance-cache")
+    @Operation(summary = "Balance cache stats", description = "Hit ratio, size and staleness samples of the carbon balance cache")
+    public ResponseEntity<?> getBalanceCacheStats() {
+        return ResponseEntity.ok(balanceCache.getStats());
+    }
+
+    /**
+     * Trigger wallet reconciliation (runs in background)
+     */
+    @PostMapping("/reconciliation/run")
+    @Operation(summary = "Run wallet reconciliation", description = "Compare wallet balances against ledger sums in the background")
+    public ResponseEntity<?> runReconciliation() {
+        log.info("Admin - Trigger wallet reconciliation");
+        if (walletReconciliationService.isRunning()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("error", "Reconciliation is already running"));
+        }
+        CompletableFuture.runAsync(walletReconciliationService::reconcile);
+        return ResponseEntity.accepted()
+                .body(Map.of("message", "Reconciliation started"));
+    }
+
+    /**
+     * Latest reconciliation drift report
+     */
+    @GetMapping("/reconciliation/report")
+    @Operation(summary = "Get reconciliation report", description = "Drift report of the latest wallet reconciliation run")
+    public ResponseEntity<?> getReconciliationReport() {
+        ReconciliationReport report = walletReconciliationService.getLastReport();
+        if (report == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("error", "No reconciliation has run yet"));
+        }
+        return ResponseEntity.ok(report);
+    }
+}
@@ -1,12 +1,15 @@
 package com.example.demo.controller;
 
+import com.example.demo.dto.CreditSerialStatus;
 import com.example.demo.entity.CarbonCredit;
 import com.example.demo.service.CarbonCreditService;
+import com.example.demo.service.CreditSerialRegistry;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/carbon-credits")
@@ -14,6 +17,7 @@ import java.util.List;
 public class CarbonCreditController {
 
     private final CarbonCreditService carbonCreditService;
+    private final CreditSerialRegistry serialRegistry;
 
     @GetMapping("/owner/{ownerId}")
     public ResponseEntity<List<CarbonCredit>> getByOwner(@PathVariable Long ownerId) {
@@ -34,4 +38,23 @@ public class CarbonCreditController {
     public ResponseEntity<CarbonCredit> unlistCredit(@PathVariable Long id) {
         return ResponseEntity.ok(carbonCreditService.unlistCredit(id));
     }
+
+    // Trạng thái 1 serial
+    @GetMapping("/serials/{serial}")
+    public ResponseEntity<CreditSerialStatus> getSerial(@PathVariable long serial) {
+        return ResponseEntity.ok(serialRegistry.getStatus(serial, serial));
+    }
+
+    // Số serial theo từng trạng thái trong dải [start, end]
+    @GetMapping("/serials")
+    public ResponseEntity<CreditSerialStatus> getSerialRange(@RequestParam long start, @RequestParam long end) {
+        return ResponseEntity.ok(serialRegistry.getStatus(start, end));
+    }
+
+    // Các dải serial owner đang giữ
+    @GetMapping("/serials/owner/{ownerId}")
+    public ResponseEntity<Map<String, Object>> getHoldings(@PathVariable Long ownerId,
+                                                           @RequestParam(defaultValue = "100") int limit) {
+        return ResponseEntity.ok(serialRegistry.getHoldings(ownerId, limit));
+    }
 }
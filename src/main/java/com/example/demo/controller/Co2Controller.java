@@ -1,20 +1,29 @@
 package com.example.demo.controller;
 
+import com.example.demo.dto.Co2BulkResponse;
 import com.example.demo.dto.Co2RequestDto;
 import com.example.demo.dto.Co2ResponseDto;
+import com.example.demo.entity.Co2UserTotal;
 import com.example.demo.service.Co2Service;
+import com.example.demo.service.Co2TotalsService;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+
 @RestController
 @RequestMapping("/api/co2")
 public class Co2Controller {
 
     private final Co2Service co2Service;
+    private final Co2TotalsService co2TotalsService;
 
-    public Co2Controller(Co2Service co2Service) {
+    public Co2Controller(Co2Service co2Service, Co2TotalsService co2TotalsService) {
         this.co2Service = co2Service;
+        this.co2TotalsService = co2TotalsService;
     }
 
     @PostMapping("/calculate")
@@ -22,4 +31,21 @@ public class Co2Controller {
         Co2ResponseDto resp = co2Service.processEmission(req);
         return ResponseEntity.ok(resp);
     }
+
+    /**
+     * Bulk submission: JSON array or NDJSON body, streamed record by record.
+     * Returns per-record results in input order.
+     */
+    @PostMapping(value = "/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE, "application/x-ndjson"})
+    public ResponseEntity<Co2BulkResponse> bulk(HttpServletRequest request) throws IOException {
+        return ResponseEntity.ok(co2Service.processBulk(request.getInputStream()));
+    }
+
+    /**
+     * Running totals of a user (counts by status, total reduction and credits).
+     */
+    @GetMapping("/users/{userId}/summary")
+    public ResponseEntity<Co2UserTotal> summary(@PathVariable String userId) {
+        return ResponseEntity.ok(co2TotalsService.getSummary(userId));
+    }
 }
@@ -1,9 +1,15 @@
 package com.example.demo.controller;
 
+import com.example.demo.dto.CreditBatchApprovalRequest;
+import com.example.demo.dto.CreditBatchApprovalResponse;
+import com.example.demo.dto.CreditRequestSubmission;
 import com.example.demo.entity.CreditRequest;
 import com.example.demo.service.CreditService;
+import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
 @RestController
@@ -14,18 +20,28 @@ public class CreditController {
     private final CreditService creditService;
 
     @PostMapping
-    public ResponseEntity<CreditRequest> submitRequest(@RequestBody CreditRequest request) {
+    public ResponseEntity<CreditRequest> submitRequest(@Valid @RequestBody CreditRequestSubmission request) {
         return ResponseEntity.ok(creditService.submitRequest(request));
     }
 
     @PostMapping("/{id}/approve")
-    public ResponseEntity<CreditRequest> approve(@PathVariable Long id) {
-        return ResponseEntity.ok(creditService.approveRequest(id));
+    public ResponseEntity<CreditRequest> approve(@PathVariable Long id, Authentication authentication) {
+        return ResponseEntity.ok(creditService.approveRequest(id, authentication.getName()));
+    }
+
+    // Duyệt nhiều yêu cầu trong 1 transaction, trả kết quả từng yêu cầu
+    @PostMapping("/approve-batch")
+    @PreAuthorize("hasAnyRole('ADMIN', 'CVA')")
+    public ResponseEntity<CreditBatchApprovalResponse> approveBatch(@Valid @RequestBody CreditBatchApprovalRequest request,
+                                                                    Authentication authentication) {
+        return ResponseEntity.ok(creditService.approveBatch(request.getRequestIds(), request.getNotes(),
+                authentication.getName()));
     }
 
     @PostMapping("/{id}/reject")
     public ResponseEntity<CreditRequest> reject(@PathVariable Long id,
-                                                @RequestParam String reason) {
-        return ResponseEntity.ok(creditService.rejectRequest(id, reason));
+                                                @RequestParam String reason,
+                                                Authentication authentication) {
+        return ResponseEntity.ok(creditService.rejectRequest(id, reason, authentication.getName()));
     }
 }
@@ -1,11 +1,26 @@
 package com.example.demo.controller;
 
+import com.example.demo.dto.CursorPageResponse;
+import com.example.demo.dto.CvaQueueItem;
+import com.example.demo.dto.JourneyMetrics;
 import com.example.demo.entity.CreditRequest;
+import com.example.demo.service.CreditRequestPayloadService;
 import com.example.demo.service.CvaService;
+import com.example.demo.service.DuplicateJourneyService;
+import com.example.demo.service.JourneyAnalysisService;
+import com.example.demo.util.MinHashLshIndex;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/cva")
@@ -13,31 +28,141 @@ import java.util.List;
 public class CvaController {
 
     private final CvaService cvaService;
+    private final CreditRequestPayloadService payloadService;
+    private final JourneyAnalysisService journeyAnalysisService;
+    private final DuplicateJourneyService duplicateJourneyService;
 
     @Autowired
-    public CvaController(CvaService cvaService) {
+    public CvaController(CvaService cvaService,
+                         CreditRequestPayloadService payloadService,
+                         JourneyAnalysisService journeyAnalysisService,
+                         DuplicateJourneyService duplicateJourneyService) {
         this.cvaService = cvaService;
+        this.payloadService = payloadService;
+        this.journeyAnalysisService = journeyAnalysisService;
+        this.duplicateJourneyService = duplicateJourneyService;
     }
 
-    // Lấy danh sách yêu cầu đang chờ duyệt
+    // Lấy danh sách yêu cầu đang chờ duyệt (chỉ PENDING, không kèm journeyData / evidence).
+    // Mỗi lần tối đa CvaService.MAX_PAGE_SIZE dòng (header X-Page-Limit); còn nữa thì header
+    // X-Next-Cursor chứa cursor để gọi tiếp /pending?cursor=...
     @GetMapping("/pending")
-    public List<CreditRequest> getPendingRequests() {
-        return cvaService.getPendingRequests();
+    public ResponseEntity<List<CvaQueueItem>> getPendingRequests(@RequestParam(required = false) String cursor) {
+        CursorPageResponse<CvaQueueItem> page = cvaService.getPendingRequests(cursor);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .header("X-Page-Limit", String.valueOf(CvaService.MAX_PAGE_SIZE));
+        if (page.isHasMore()) {
+            response.header("X-Next-Cursor", page.getNextCursor());
+        }
+        return response.body(page.getItems());
+    }
+
+    // Hàng đợi duyệt phân trang theo cursor; mặc định ẩn yêu cầu đang được CVA khác giữ
+    @GetMapping("/queue")
+    public CursorPageResponse<CvaQueueItem> getQueue(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int limit,
+            @RequestParam(defaultValue = "false") boolean includeClaimed) {
+        return cvaService.getQueue(cursor, limit, includeClaimed);
+    }
+
+    // Chi tiết yêu cầu (kèm journeyData / evidence)
+    @GetMapping("/requests/{id}")
+    public CreditRequest getRequest(@PathVariable Long id) {
+        return cvaService.getRequestById(id);
+    }
+
+    // Nhận 1 yêu cầu (lease); 409 nếu CVA khác đang giữ
+    @PostMapping("/requests/{id}/claim")
+    public ResponseEntity<?> claim(@PathVariable Long id, Authentication authentication) {
+        CreditRequest request = cvaService.claimRequest(id, authentication.getName());
+        if (request == null) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("error", "Request is not pending or is claimed by another verifier"));
+        }
+        return ResponseEntity.ok(request);
+    }
+
+    // Nhận các yêu cầu tiếp theo trong hàng đợi
+    @PostMapping("/queue/claim-next")
+    public List<CreditRequest> claimNext(@RequestParam(defaultValue = "1") int count, Authentication authentication) {
+        return cvaService.claimNext(authentication.getName(), count);
+    }
+
+    // Gia hạn lease đang giữ
+    @PostMapping("/requests/{id}/renew")
+    public ResponseEntity<?> renew(@PathVariable Long id, Authentication authentication) {
+        if (!cvaService.renewLease(id, authentication.getName())) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("error", "Lease is not held or has expired"));
+        }
+        return ResponseEntity.ok(Map.of("message", "Lease renewed"));
+    }
+
+    // Trả yêu cầu về hàng đợi
+    @PostMapping("/requests/{id}/release")
+    public ResponseEntity<?> release(@PathVariable Long id, Authentication authentication) {
+        if (!cvaService.releaseRequest(id, authentication.getName())) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("error", "Lease is not held by this verifier"));
+        }
+        return ResponseEntity.ok(Map.of("message", "Request released"));
     }
 
     // CVA duyệt yêu cầu (approve)
     @PutMapping("/approve/{id}")
     public CreditRequest approveRequest(
             @PathVariable Long id,
-            @RequestParam(required = false) String notes) {
-        return cvaService.approveRequest(id, notes);
+            @RequestParam(required = false) String notes,
+            Authentication authentication) {
+        return cvaService.approveRequest(id, notes, authentication.getName());
     }
 
     // CVA từ chối yêu cầu (reject)
     @PutMapping("/reject/{id}")
     public CreditRequest rejectRequest(
             @PathVariable Long id,
-            @RequestParam(required = false) String notes) {
-        return cvaService.rejectRequest(id, notes);
+            @RequestParam(required = false) String notes,
+            Authentication authentication) {
+        return cvaService.rejectRequest(id, notes, authentication.getName());
+    }
+
+    // Dung lượng journeyData / evidence (gốc và sau nén)
+    @GetMapping("/payload/stats")
+    public Map<String, Object> getPayloadStats() {
+        return payloadService.getStats();
+    }
+
+    // Các yêu cầu có hành trình gần giống (MinHash), giống nhất trước
+    @GetMapping("/requests/{id}/duplicates")
+    public List<MinHashLshIndex.Match> getDuplicates(@PathVariable Long id,
+                                                     @RequestParam(defaultValue = "10") int limit) {
+        return duplicateJourneyService.findSimilar(id, limit);
+    }
+
+    // Kích thước chỉ mục chống trùng, số yêu cầu bị gắn cờ
+    @GetMapping("/duplicates/stats")
+    public Map<String, Object> getDuplicateStats() {
+        return duplicateJourneyService.getStats();
+    }
+
+    // Phân tích hành trình GPS của yêu cầu; submit = true thì ghi nhận vào Co2Service
+    @PostMapping("/requests/{id}/analyze")
+    public JourneyMetrics analyzeRequest(@PathVariable Long id,
+                                         @RequestParam(defaultValue = "false") boolean submit) throws IOException {
+        return journeyAnalysisService.analyzeRequest(id, submit);
+    }
+
+    // Phân tích song song nhiều yêu cầu
+    @PostMapping("/journeys/analyze-batch")
+    public List<JourneyMetrics> analyzeBatch(@RequestBody List<Long> requestIds,
+                                             @RequestParam(defaultValue = "false") boolean submit) {
+        return journeyAnalysisService.analyzeBatch(requestIds, submit);
+    }
+
+    // Phân tích 1 trace GPS gửi trực tiếp (CSV hoặc JSON), đọc dạng stream
+    @PostMapping("/journeys/analyze")
+    public JourneyMetrics analyzeTrace(HttpServletRequest request) throws IOException {
+        return journeyAnalysisService.analyze(new InputStreamReader(request.getInputStream(), StandardCharsets.UTF_8));
     }
 }
@@ -2,6 +2,7 @@ package com.example.demo.controller;
 
 import com.example.demo.entity.FileMetadata; // Import entity
 import com.example.demo.repository.FileMetadataRepository; // Import repository
+import com.example.demo.util.SnowflakeIdGenerator;
 import org.springframework.beans.factory.annotation.Autowired; // Import Autowired
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -18,10 +19,12 @@ import java.time.LocalDateTime; // Import time
 public class FileUploadController {
 
     private final FileMetadataRepository fileMetadataRepository;
+    private final SnowflakeIdGenerator idGenerator;
 
     @Autowired
-    public FileUploadController(FileMetadataRepository fileMetadataRepository) {
+    public FileUploadController(FileMetadataRepository fileMetadataRepository, SnowflakeIdGenerator idGenerator) {
         this.fileMetadataRepository = fileMetadataRepository;
+        this.idGenerator = idGenerator;
     }
 
     /**
@@ -49,9 +52,9 @@ public class FileUploadController {
                 dir.mkdirs();
             }
 
-            // Tạo tên file duy nhất để tránh ghi đè (ví dụ: timestamp + tên gốc)
+            // Tạo tên file duy nhất để tránh ghi đè (Snowflake id + tên gốc)
             String originalFilename = file.getOriginalFilename() != null ? file.getOriginalFilename() : "file";
-            String uniqueFilename = System.currentTimeMillis() + "_" + originalFilename;
+            String uniqueFilename = idGenerator.nextId() + "_" + originalFilename;
             String filePath = uploadDir + uniqueFilename;
             
             File destination = new File(filePath);
@@ -1,7 +1,11 @@
 package com.example.demo.controller;
 
+import com.example.demo.dto.CursorPageResponse;
 import com.example.demo.dto.ListingRequest;
 import com.example.demo.dto.ListingResponse;
+import com.example.demo.dto.ListingSearchResponse;
+import com.example.demo.entity.Listing;
+import com.example.demo.service.ListingChangeTracker;
 import com.example.demo.service.ListingService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -11,10 +15,13 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.math.BigDecimal;
 import java.util.List;
 
 @RestController
@@ -25,6 +32,7 @@ import java.util.List;
 public class ListingController {
     
     private final ListingService listingService;
+    private final ListingChangeTracker listingChangeTracker;
     
     @PostMapping
     @Operation(summary = "Create a new listing", description = "Create a new carbon credit listing")
@@ -36,46 +44,105 @@ public class ListingController {
     
     @GetMapping
     @Operation(summary = "Get all listings", description = "Retrieve all listings with pagination")
-    public ResponseEntity<Page<ListingResponse>> getAllListings(Pageable pageable) {
+    public ResponseEntity<Page<ListingResponse>> getAllListings(Pageable pageable, WebRequest webRequest) {
+        String etag = listingChangeTracker.weakEtag("all|" + normalize(pageable));
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
         log.info("Fetching all listings");
         Page<ListingResponse> listings = listingService.getAllListings(pageable);
-        return ResponseEntity.ok(listings);
+        return conditionalOk(etag, listings);
     }
     
     @GetMapping("/open")
     @Operation(summary = "Get open listings", description = "Retrieve all open listings with pagination")
-    public ResponseEntity<Page<ListingResponse>> getOpenListings(Pageable pageable) {
+    public ResponseEntity<Page<ListingResponse>> getOpenListings(Pageable pageable, WebRequest webRequest) {
+        String etag = listingChangeTracker.weakEtag("open|" + normalize(pageable));
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
         log.info("Fetching open listings");
         Page<ListingResponse> listings = listingService.getOpenListings(pageable);
-        return ResponseEntity.ok(listings);
+        return conditionalOk(etag, listings);
+    }
+    
+    @GetMapping("/cheapest")
+    @Operation(summary = "Get cheapest open listings", description = "Open listings ordered by price per tonne, seek-paged with a cursor")
+    public ResponseEntity<CursorPageResponse<ListingResponse>> getCheapestListings(
+            @Parameter(description = "Number of listings to return (max 100)") @RequestParam(defaultValue = "20") int limit,
+            @Parameter(description = "Cursor returned by the previous page") @RequestParam(required = false) String cursor,
+            WebRequest webRequest) {
+        String etag = listingChangeTracker.weakEtag("cheapest|" + limit + "|" + cursor);
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
+        log.info("Fetching cheapest open listings");
+        CursorPageResponse<ListingResponse> listings = listingService.getCheapestOpenListings(cursor, limit);
+        return conditionalOk(etag, listings);
     }
     
     @GetMapping("/search")
-    @Operation(summary = "Search listings", description = "Search listings by keyword")
-    public ResponseEntity<Page<ListingResponse>> searchListings(
+    @Operation(summary = "Search listings", description = "Search listings by keyword, with price/tonnage/seller facet counts")
+    public ResponseEntity<ListingSearchResponse> searchListings(
             @Parameter(description = "Search keyword") @RequestParam String keyword,
-            Pageable pageable) {
+            Pageable pageable,
+            WebRequest webRequest) {
+        String etag = listingChangeTracker.weakEtag("search|" + ListingService.normalizeKeyword(keyword) + "|" + normalize(pageable));
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
         log.info("Searching listings with keyword: {}", keyword);
-        Page<ListingResponse> listings = listingService.searchListings(keyword, pageable);
-        return ResponseEntity.ok(listings);
+        ListingSearchResponse listings = listingService.searchListings(keyword, pageable);
+        return conditionalOk(etag, listings);
+    }
+    
+    @GetMapping("/filter")
+    @Operation(summary = "Filter listings", description = "Filter listings by status, price and carbon amount, with facet counts")
+    public ResponseEntity<ListingSearchResponse> filterListings(
+            @Parameter(description = "Listing status") @RequestParam(defaultValue = "OPEN") Listing.ListingStatus status,
+            @Parameter(description = "Minimum price") @RequestParam(required = false) BigDecimal minPrice,
+            @Parameter(description = "Maximum price") @RequestParam(required = false) BigDecimal maxPrice,
+            @Parameter(description = "Minimum carbon amount") @RequestParam(required = false) BigDecimal minCarbon,
+            @Parameter(description = "Maximum carbon amount") @RequestParam(required = false) BigDecimal maxCarbon,
+            Pageable pageable,
+            WebRequest webRequest) {
+        String etag = listingChangeTracker.weakEtag("filter|" + status + "|" + minPrice + "|" + maxPrice
+                + "|" + minCarbon + "|" + maxCarbon + "|" + normalize(pageable));
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
+        log.info("Filtering listings with status: {}", status);
+        ListingSearchResponse listings = listingService.filterListings(
+                status, minPrice, maxPrice, minCarbon, maxCarbon, pageable);
+        return conditionalOk(etag, listings);
     }
     
     @GetMapping("/seller/{sellerId}")
     @Operation(summary = "Get listings by seller", description = "Retrieve all listings created by a specific seller")
     public ResponseEntity<List<ListingResponse>> getListingsBySeller(
-            @Parameter(description = "Seller ID") @PathVariable Long sellerId) {
+            @Parameter(description = "Seller ID") @PathVariable Long sellerId,
+            WebRequest webRequest) {
+        String etag = listingChangeTracker.weakEtag("seller|" + sellerId);
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
         log.info("Fetching listings for seller ID: {}", sellerId);
         List<ListingResponse> listings = listingService.getListingsBySeller(sellerId);
-        return ResponseEntity.ok(listings);
+        return conditionalOk(etag, listings);
     }
     
     @GetMapping("/{id}")
     @Operation(summary = "Get listing by ID", description = "Retrieve a specific listing by its ID")
     public ResponseEntity<ListingResponse> getListingById(
-            @Parameter(description = "Listing ID") @PathVariable Long id) {
+            @Parameter(description = "Listing ID") @PathVariable Long id,
+            WebRequest webRequest) {
+        String etag = listingChangeTracker.weakEtag("id|" + id);
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
         log.info("Fetching listing with ID: {}", id);
         ListingResponse listing = listingService.getListingById(id);
-        return ResponseEntity.ok(listing);
+        return conditionalOk(etag, listing);
     }
     
     @PutMapping("/{id}")
@@ -96,4 +163,25 @@ public class ListingController {
         listingService.deleteListing(id);
         return ResponseEntity.noContent().build();
     }
+    
+    /**
+     * Page number, size and sort are the only parts of Pageable that affect the result.
+     */
+    private String normalize(Pageable pageable) {
+        if (pageable.isUnpaged()) {
+            return "unpaged";
+        }
+        return pageable.getPageNumber() + "|" + pageable.getPageSize() + "|" + pageable.getSort();
+    }
+    
+    /**
+     * The ETag is computed from the generation read BEFORE the query runs, so a change that
+     * commits while the query is in flight always produces a new ETag on the next poll.
+     */
+    private <T> ResponseEntity<T> conditionalOk(String etag, T body) {
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache())
+                .body(body);
+    }
 }
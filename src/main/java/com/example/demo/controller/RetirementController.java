@@ -0,0 +1,42 @@
+package com.example.demo.controller;
+
+import com.example.demo.dto.RetirementCertificate;
+import com.example.demo.dto.RetirementRequest;
+import com.example.demo.service.RetirementService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/retirements")
+@RequiredArgsConstructor
+public class RetirementController {
+
+    private final RetirementService retirementService;
+
+    // Retire tín chỉ của user hiện tại, trả chứng nhận (201)
+    @PostMapping
+    public ResponseEntity<RetirementCertificate> retire(@Valid @RequestBody RetirementRequest request,
+                                                        Authentication authentication) {
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .body(retirementService.retire(authentication.getName(), request));
+    }
+
+    // Các lần retire của user hiện tại, mới nhất trước
+    @GetMapping
+    public List<RetirementCertificate> getMyRetirements(@RequestParam(defaultValue = "50") int limit,
+                                                        Authentication authentication) {
+        return retirementService.getMyRetirements(authentication.getName(), limit);
+    }
+
+    // Tra cứu công khai 1 chứng nhận theo mã
+    @GetMapping("/{id}")
+    public RetirementCertificate getCertificate(@PathVariable Long id) {
+        return retirementService.getCertificate(id);
+    }
+}
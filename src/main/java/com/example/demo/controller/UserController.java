@@ -7,6 +7,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
@@ -15,8 +16,13 @@ import com.example.demo.dto.AuthResponse;
 import com.example.demo.dto.UserCreateRequest;
 import com.example.demo.entity.User;
 import com.example.demo.repository.UserRepository;
+import com.example.demo.repository.UserStatusRepository;
+import com.example.demo.security.JwtPrincipal;
+import com.example.demo.security.JwtUtil;
+import com.example.demo.security.TokenRevocationService;
 import com.example.demo.service.AuthService;
 
+import io.jsonwebtoken.JwtException;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -28,7 +34,10 @@ import lombok.extern.slf4j.Slf4j;
 public class UserController {
     
     private final UserRepository userRepository;
+    private final UserStatusRepository userStatusRepository;
     private final AuthService authService;
+    private final JwtUtil jwtUtil;
+    private final TokenRevocationService tokenRevocationService;
     
     @GetMapping
     public ResponseEntity<List<User>> getAllUsers() {
@@ -91,7 +100,17 @@ public class UserController {
         return userRepository.findByEmail(req.getEmail())
                 .map(user -> {
                     boolean ok = authService.checkPassword(req.getPassword(), user.getPassword());
+                    if (ok && userStatusRepository.isBanned(user.getId())) {
+                        // Tài khoản bị ban: không cấp token mới (token mới sẽ có iat sau mốc revoke)
+                        log.warn("Login refused for banned user {}", user.getId());
+                        return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                                .body(AuthResponse.builder()
+                                        .message("Account is banned")
+                                        .build());
+                    }
                     if (ok) {
+                        authService.rehashIfNeeded(user, req.getPassword());
+                        
                         // Generate JWT token
                         String token = authService.generateToken(user);
                         
@@ -119,5 +138,28 @@ public class UserController {
                                 .message("Invalid credentials")
                                 .build()));
     }
-}
 
+    @PostMapping("/logout")
+    public ResponseEntity<?> logout(@RequestHeader(value = "Authorization", required = false) String authorization) {
+        if (authorization == null || !authorization.startsWith("Bearer ")) {
+            return ResponseEntity.badRequest()
+                    .body(AuthResponse.builder()
+                            .message("Missing bearer token")
+                            .build());
+        }
+        JwtPrincipal principal;
+        try {
+            principal = jwtUtil.parseToken(authorization.substring(7));
+        } catch (JwtException | IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(AuthResponse.builder()
+                            .message("Invalid token")
+                            .build());
+        }
+        tokenRevocationService.revokeToken(principal, "LOGOUT");
+        log.info("Logout for email: {}", principal.email());
+        return ResponseEntity.ok(AuthResponse.builder()
+                .message("Logged out")
+                .build());
+    }
+}
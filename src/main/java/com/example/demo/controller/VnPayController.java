@@ -1,6 +1,7 @@
 package com.example.demo.controller;
 
 import com.example.demo.dto.CreateTopupRequest;
+import com.example.demo.service.VnPayIpnInboxService;
 import com.example.demo.service.VnPayService;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
@@ -20,6 +21,7 @@ import java.util.Map;
 public class VnPayController {
 
     private final VnPayService vnPayService;
+    private final VnPayIpnInboxService vnPayIpnInboxService;
 
     /**
      * Tạo URL thanh toán VNPay
@@ -78,7 +80,10 @@ public class VnPayController {
 
     /**
      * IPN (Instant Payment Notification) callback từ VNPay
-     * Endpoint này được VNPay gọi để thông báo kết quả thanh toán
+     * Endpoint này được VNPay gọi để thông báo kết quả thanh toán.
+     * Xác thực chữ ký, kiểm tra giao dịch và số tiền (01 / 04 như VNPay quy định) rồi lưu vào inbox
+     * và trả lời ngay; việc cộng tiền vào ví do VnPayIpnInboxService xử lý bất đồng bộ (không giữ
+     * lock ví trong request callback).
      */
     @GetMapping("/ipn")
     public ResponseEntity<Map<String, String>> handleIpn(HttpServletRequest request) {
@@ -100,8 +105,27 @@ public class VnPayController {
                 ));
             }
             
-            // Process payment
-            vnPayService.processIpn(params);
+            // Tra giao dịch + số tiền trước khi nhận, chỉ phần cộng ví là bất đồng bộ
+            VnPayService.IpnCheck check = vnPayService.checkIpnOrder(params);
+            if (check == VnPayService.IpnCheck.ORDER_NOT_FOUND) {
+                log.warn("VNPay IPN for unknown txnRef {}", params.get("vnp_TxnRef"));
+                return ResponseEntity.ok(Map.of(
+                        "RspCode", "01",
+                        "Message", "Order not found"
+                ));
+            }
+            if (check == VnPayService.IpnCheck.INVALID_AMOUNT) {
+                log.warn("VNPay IPN for txnRef {} has wrong amount {}", params.get("vnp_TxnRef"),
+                        params.get("vnp_Amount"));
+                return ResponseEntity.ok(Map.of(
+                        "RspCode", "04",
+                        "Message", "Invalid amount"
+                ));
+            }
+
+            // Lưu vào inbox, worker sẽ xử lý (trùng vnp_TxnRef thì bỏ qua)
+            VnPayIpnInboxService.EnqueueResult result = vnPayIpnInboxService.enqueue(params);
+            log.info("VNPay IPN for txnRef {} enqueued: {}", params.get("vnp_TxnRef"), result);
             
             // Return success response to VNPay
             return ResponseEntity.ok(Map.of(
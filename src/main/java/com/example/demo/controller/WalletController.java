@@ -1,15 +1,26 @@
 package com.example.demo.controller;
 
+import com.example.demo.dto.CursorPageResponse;
+import com.example.demo.dto.WalletStatementEntry;
+import com.example.demo.entity.CarbonWalletAdjustment;
 import com.example.demo.entity.User;
+import com.example.demo.entity.WalletTransaction;
 import com.example.demo.repository.UserRepository;
 import com.example.demo.service.WalletService;
+import com.example.demo.service.WalletStatementService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
 import java.util.Map;
 
 @RestController
@@ -20,6 +31,7 @@ public class WalletController {
 
     private final WalletService walletService;
     private final UserRepository userRepository;
+    private final WalletStatementService walletStatementService;
 
     /**
      * Tạo ví ban đầu cho user (chỉ dùng lúc bootstrap / admin).
@@ -96,6 +108,39 @@ public class WalletController {
         }
     }
 
+    /**
+     * Sao kê ví tiền của user, phân trang bằng cursor (mới nhất trước).
+     * Lọc theo loại giao dịch và khoảng thời gian [from, to).
+     */
+    @GetMapping("/{userId}/statement")
+    public ResponseEntity<CursorPageResponse<WalletStatementEntry>> getStatement(
+            @PathVariable Long userId,
+            @RequestParam(required = false) WalletTransaction.TransactionType type,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false, defaultValue = "50") int limit
+    ) {
+        return ResponseEntity.ok(walletStatementService.getStatement(userId, type, from, to, cursor, limit));
+    }
+
+    /**
+     * Xuất sao kê dạng CSV, stream từng trang ra response (không giữ toàn bộ trong bộ nhớ).
+     */
+    @GetMapping("/{userId}/statement/export")
+    public ResponseEntity<StreamingResponseBody> exportStatement(
+            @PathVariable Long userId,
+            @RequestParam(required = false) WalletTransaction.TransactionType type,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to
+    ) {
+        StreamingResponseBody body = walletStatementService.exportCsv(userId, type, from, to);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"wallet-statement-" + userId + ".csv\"")
+                .contentType(new MediaType("text", "csv", StandardCharsets.UTF_8))
+                .body(body);
+    }
+
     /**
      * Cộng carbon credit vào ví của user (nạp tiền / seller nhận tiền).
      */
@@ -108,7 +153,10 @@ public class WalletController {
         try {
             log.info("Credit request for user ID {}: amount={}", userId, amount);
 
-            walletService.credit(userId, amount, description);
+            if (amount.signum() <= 0) {
+                throw new IllegalArgumentException("Số tiền credit phải > 0");
+            }
+            walletService.adjust(userId, amount, CarbonWalletAdjustment.Source.WALLET_API, description);
 
             BigDecimal newBalance = walletService.getBalance(userId);
 
@@ -142,7 +190,10 @@ public class WalletController {
         try {
             log.info("Debit request for user ID {}: amount={}", userId, amount);
 
-            walletService.debit(userId, amount, description);
+            if (amount.signum() <= 0) {
+                throw new IllegalArgumentException("Số tiền debit phải > 0");
+            }
+            walletService.adjust(userId, amount.negate(), CarbonWalletAdjustment.Source.WALLET_API, description);
 
             BigDecimal newBalance = walletService.getBalance(userId);
 
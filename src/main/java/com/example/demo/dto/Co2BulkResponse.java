@@ -0,0 +1,19 @@
+package com.example.demo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class Co2BulkResponse {
+    private int total;
+    private int accepted;
+    private int rejected;
+    // set when parsing stopped early (malformed JSON or too many records); earlier records are kept
+    private String error;
+    private List<Co2BulkResult> results;
+}
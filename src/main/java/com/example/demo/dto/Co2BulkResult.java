@@ -0,0 +1,25 @@
+package com.example.demo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Outcome of one record of a bulk CO2 submission, in input order (index is 0-based).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class Co2BulkResult {
+    private int index;
+    private boolean accepted;
+    private Long recordId;
+    private String userId;
+    private BigDecimal reduction;  // kg
+    private BigDecimal credits;
+    private String status;
+    private List<String> errors;
+}
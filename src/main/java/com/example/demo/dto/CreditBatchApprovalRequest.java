@@ -0,0 +1,15 @@
+package com.example.demo.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class CreditBatchApprovalRequest {
+
+    @NotEmpty
+    private List<Long> requestIds;
+
+    private String notes;
+}
@@ -0,0 +1,20 @@
+package com.example.demo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CreditBatchApprovalResponse {
+    private int requested;
+    private int approved;
+    private int skipped;
+    private BigDecimal totalCredits;
+    private int ownersCredited;
+    private List<CreditBatchItemResult> results;
+}
@@ -0,0 +1,20 @@
+package com.example.demo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Outcome of one request in a batch approval.
+ * status: APPROVED / NOT_FOUND / ALREADY_PROCESSED / CLAIMED / INVALID_AMOUNT / NO_WALLET
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CreditBatchItemResult {
+    private Long requestId;
+    private String status;
+    private Long ownerId;
+    private Double carbonAmount;
+    private String message;
+}
@@ -0,0 +1,24 @@
+package com.example.demo.dto;
+
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+
+/**
+ * Body của POST /api/credit-requests: chỉ các trường EV Owner được phép gửi. Trạng thái, lease,
+ * verifier, priority và cờ trùng hành trình do server quản lý.
+ */
+@Data
+public class CreditRequestSubmission {
+
+    @NotNull
+    private Long ownerId;
+
+    @NotNull
+    private Double carbonAmount;
+
+    private String journeyData;
+
+    private String evidence;
+
+    private String notes;
+}
@@ -0,0 +1,23 @@
+package com.example.demo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Registry state of the serial range [start, end]: how many serials are in each state.
+ * state: UNISSUED / ISSUED / TRANSFERRED / LISTED / RETIRED when the whole range agrees, else MIXED
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CreditSerialStatus {
+    private long start;
+    private long end;
+    private long total;
+    private long issued;
+    private long listed;
+    private long transferred;
+    private long retired;
+    private String state;
+}
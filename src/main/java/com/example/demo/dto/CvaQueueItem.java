@@ -0,0 +1,27 @@
+package com.example.demo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Row of the CVA review queue, projected without the journeyData / evidence LOB columns.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CvaQueueItem {
+    private Long id;
+    private Long ownerId;
+    private String status;
+    private Double carbonAmount;
+    private int priority;
+    private Long claimedBy;
+    private LocalDateTime leaseExpiresAt;
+    private LocalDateTime createdAt;
+    // suspected duplicate journey (request id) and estimated similarity, null if none
+    private Long duplicateOf;
+    private Double duplicateScore;
+}
@@ -0,0 +1,36 @@
+package com.example.demo.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Result of analysing one GPS journey: distance/speed statistics and the derived emissions.
+ * Emissions are kg CO2; credits = (baseline - actual) / 1000, rounded down like Co2Service.
+ */
+@Data
+@NoArgsConstructor
+public class JourneyMetrics {
+    private Long requestId;
+    private long points;
+    private long rejectedPoints;
+    private double distanceKm;
+    private long durationSeconds;
+    private long movingSeconds;
+    private Instant startedAt;
+    private Instant endedAt;
+    private double averageSpeedKmh;
+    private double movingSpeedKmh;
+    private double maxSpeedKmh;
+    private double segmentSpeedStdDevKmh;
+    private BigDecimal baselineKg;
+    private BigDecimal actualKg;
+    private BigDecimal reductionKg;
+    private BigDecimal estimatedCredits;
+    private Double claimedCredits;
+    // set when the derived emissions were submitted to Co2Service
+    private Long co2RecordId;
+    private String error;
+}
@@ -0,0 +1,39 @@
+package com.example.demo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ListingFacets {
+    
+    private long total;
+    private List<Bucket> priceBuckets;
+    private List<Bucket> carbonAmountBuckets;
+    private List<SellerCount> sellers;
+    
+    /**
+     * Half-open range [from, to). A null "to" means the bucket is unbounded above.
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Bucket {
+        private BigDecimal from;
+        private BigDecimal to;
+        private long count;
+    }
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class SellerCount {
+        private Long sellerId;
+        private long count;
+    }
+}
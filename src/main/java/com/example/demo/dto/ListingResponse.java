@@ -18,6 +18,7 @@ public class ListingResponse {
     private String description;
     private BigDecimal carbonAmount;
     private BigDecimal price;
+    private BigDecimal pricePerTonne;
     private Listing.ListingStatus status;
     private LocalDateTime createdAt;
     private Long sellerId;
@@ -31,6 +32,7 @@ public class ListingResponse {
         response.setDescription(listing.getDescription());
         response.setCarbonAmount(listing.getCarbonAmount());
         response.setPrice(listing.getPrice());
+        response.setPricePerTonne(listing.getPricePerTonne());
         response.setStatus(listing.getStatus());
         response.setCreatedAt(listing.getCreatedAt());
         response.setSellerId(listing.getSeller().getId());
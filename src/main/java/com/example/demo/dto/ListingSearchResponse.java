@@ -0,0 +1,15 @@
+package com.example.demo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Page;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ListingSearchResponse {
+    
+    private Page<ListingResponse> results;
+    private ListingFacets facets;
+}
@@ -0,0 +1,43 @@
+package com.example.demo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReconciliationReport {
+
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private long durationMs;
+
+    private long walletsScanned;
+    private long walletsWithDrift;
+    private BigDecimal totalMoneyDrift;
+
+    private long carbonWalletsScanned;
+    private long carbonWalletsWithDrift;
+    private BigDecimal totalCarbonDrift;
+
+    // chỉ giữ tối đa N dòng lệch đầu tiên, số tổng nằm ở các field *WithDrift
+    private List<DriftEntry> drifts;
+    private boolean driftListTruncated;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class DriftEntry {
+        private String walletType; // MONEY / CARBON
+        private Long walletId;
+        private Long userId;
+        private BigDecimal balance;
+        private BigDecimal expected;
+        private BigDecimal drift;  // balance - expected
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.demo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Public retirement certificate. The id is a string so 64-bit ids survive JavaScript clients.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RetirementCertificate {
+    private String certificateId;
+    private BigDecimal amount;
+    private long serialCount;
+    // "start-end"
+    private List<String> serialRanges;
+    private String beneficiary;
+    private String purpose;
+    private LocalDateTime retiredAt;
+    // journal sequence, only on the response of the retirement itself
+    private Long journalSequence;
+}
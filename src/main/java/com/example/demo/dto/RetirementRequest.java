@@ -0,0 +1,26 @@
+package com.example.demo.dto;
+
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Digits;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+@Data
+public class RetirementRequest {
+
+    // Tín chỉ (tCO2), tối thiểu 1 serial = 0.001
+    @NotNull
+    @DecimalMin("0.001")
+    @Digits(integer = 13, fraction = 3)
+    private BigDecimal amount;
+
+    // Đơn vị / cá nhân được ghi nhận bù trừ
+    @Size(max = 255)
+    private String beneficiary;
+
+    @Size(max = 500)
+    private String purpose;
+}
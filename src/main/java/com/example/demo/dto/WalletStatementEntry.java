@@ -0,0 +1,28 @@
+package com.example.demo.dto;
+
+import com.example.demo.entity.WalletTransaction;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * One line of a wallet statement, read straight from wallet_transactions without loading the
+ * owning wallet or user.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WalletStatementEntry {
+
+    private Long id;
+    private WalletTransaction.TransactionType type;
+    private BigDecimal amount;
+    private WalletTransaction.TransactionStatus status;
+    private String paymentMethod;
+    private String description;
+    private String externalRef;
+    private LocalDateTime createdAt;
+}
@@ -28,4 +28,11 @@ public class CarbonCredit {
 
     @Column(nullable = false)
     private boolean listed = false; // có niêm yết trên marketplace không?
+
+    // Dải serial [serialStart, serialEnd], 1 serial = 1 kg CO2; null nếu dưới 1 kg
+    @Column(name = "serial_start")
+    private Long serialStart;
+
+    @Column(name = "serial_end")
+    private Long serialEnd;
 }
@@ -0,0 +1,45 @@
+package com.example.demo.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Biến động ví carbon ngoài phát hành / mua bán / retire (admin điều chỉnh, API credit/debit, chuyển
+ * tín chỉ theo order). amount có dấu: + là cộng, - là trừ; reconciliation cộng tổng này vào số dư kỳ vọng.
+ */
+@Entity
+@Table(name = "carbon_wallet_adjustments")
+@Data
+@NoArgsConstructor
+public class CarbonWalletAdjustment {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "owner_id", nullable = false)
+    private Long ownerId;
+
+    @Column(nullable = false, precision = 19, scale = 4)
+    private BigDecimal amount;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private Source source;
+
+    @Column(length = 255)
+    private String description;
+
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    public enum Source {
+        ADMIN, WALLET_API, TRANSFER
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.demo.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Running CO2 totals of one user. Written only through the native upsert in
+ * Co2UserTotalRepository, in the same transaction as the co2_reduction inserts.
+ */
+@Entity
+@Table(name = "co2_user_totals")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class Co2UserTotal {
+
+    @Id
+    @Column(name = "user_id", length = 255)
+    private String userId;
+
+    @Column(name = "record_count", nullable = false)
+    private long recordCount;
+
+    @Column(name = "approved_count", nullable = false)
+    private long approvedCount;
+
+    @Column(name = "rejected_count", nullable = false)
+    private long rejectedCount;
+
+    @Column(name = "pending_count", nullable = false)
+    private long pendingCount;
+
+    // kg CO2
+    @Column(name = "total_reduction", precision = 24, scale = 6, nullable = false)
+    private BigDecimal totalReduction;
+
+    @Column(name = "total_credits", precision = 24, scale = 6, nullable = false)
+    private BigDecimal totalCredits;
+
+    @Column(name = "approved_credits", precision = 24, scale = 6, nullable = false)
+    private BigDecimal approvedCredits;
+
+    @Column(name = "last_record_at")
+    private LocalDateTime lastRecordAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
@@ -19,10 +19,11 @@ public class CreditRequest {
     @Column(nullable = false)
     private Long ownerId;   // userId (liên kết với User)
 
-    @Lob
+    // Lưu nén ở bảng credit_request_payload (CreditRequestPayloadService), chỉ nạp khi xem chi tiết
+    @Transient
     private String journeyData; // dữ liệu hành trình
 
-    @Lob
+    @Transient
     private String evidence;    // bằng chứng
 
     @Column(nullable = false)
@@ -31,6 +32,32 @@ public class CreditRequest {
     @Column(nullable = false)
     private Double carbonAmount; // số tín chỉ đề nghị phát hành
 
+    // Hàng đợi CVA: priority cao duyệt trước
+    @Column(nullable = false)
+    private int priority = 0;
+
+    // CVA đang giữ yêu cầu (lease); hết hạn lease thì yêu cầu quay lại hàng đợi
+    @Column(name = "claimed_by")
+    private Long claimedBy;
+
+    @Column(name = "lease_expires_at")
+    private LocalDateTime leaseExpiresAt;
+
+    // Nghi trùng hành trình với yêu cầu khác (MinHash), hiển thị trong hàng đợi CVA
+    @Column(name = "duplicate_of")
+    private Long duplicateOf;
+
+    @Column(name = "duplicate_score")
+    private Double duplicateScore;
+
+    // Bản ghi co2_reduction tạo từ phân tích hành trình (chỉ ghi nhận 1 lần)
+    @Column(name = "co2_record_id")
+    private Long co2RecordId;
+
+    // CVA đã duyệt / từ chối
+    @Column(name = "verifier_id")
+    private Long verifierId;
+
     @CreationTimestamp
     private LocalDateTime createdAt;
 
@@ -0,0 +1,40 @@
+package com.example.demo.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Dữ liệu hành trình / bằng chứng của CreditRequest, tách khỏi bảng chính và lưu nén
+ * (xem CompressedTextCodec). Chỉ được đọc khi cần xem chi tiết yêu cầu.
+ */
+@Entity
+@Table(name = "credit_request_payload")
+@Data
+@NoArgsConstructor
+public class CreditRequestPayload {
+
+    @Id
+    @Column(name = "request_id")
+    private Long requestId;
+
+    @Lob
+    @Column(name = "journey_data", columnDefinition = "LONGBLOB")
+    private byte[] journeyData;
+
+    @Lob
+    @Column(name = "evidence", columnDefinition = "LONGBLOB")
+    private byte[] evidence;
+
+    @Column(name = "journey_raw_bytes", nullable = false)
+    private int journeyRawBytes;
+
+    @Column(name = "journey_stored_bytes", nullable = false)
+    private int journeyStoredBytes;
+
+    @Column(name = "evidence_raw_bytes", nullable = false)
+    private int evidenceRawBytes;
+
+    @Column(name = "evidence_stored_bytes", nullable = false)
+    private int evidenceStoredBytes;
+}
@@ -0,0 +1,57 @@
+package com.example.demo.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Persistable;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Tín chỉ đã retire (đốt) để khai báo bù trừ phát thải. id là mã chứng nhận (Snowflake) do ứng
+ * dụng cấp, nên entity tự báo isNew() để save() INSERT thẳng thay vì SELECT rồi merge.
+ */
+@Entity
+@Table(name = "credit_retirements")
+@Data
+@NoArgsConstructor
+public class CreditRetirement implements Persistable<Long> {
+
+    @Id
+    private Long id;
+
+    @Column(name = "owner_id", nullable = false)
+    private Long ownerId;
+
+    @Column(nullable = false, precision = 19, scale = 6)
+    private BigDecimal amount;
+
+    @Column(name = "serial_count", nullable = false)
+    private long serialCount;
+
+    // "start-end,start-end,..."
+    @Column(name = "serial_ranges", nullable = false, columnDefinition = "TEXT")
+    private String serialRanges;
+
+    private String beneficiary;
+
+    private String purpose;
+
+    @Column(name = "retired_at", nullable = false)
+    private LocalDateTime retiredAt;
+
+    @Transient
+    private boolean fresh = true;
+
+    @Override
+    public boolean isNew() {
+        return fresh;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markPersisted() {
+        fresh = false;
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.demo.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "journey_signatures")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class JourneySignature {
+
+    @Id
+    @Column(name = "request_id")
+    private Long requestId;
+
+    @Column(name = "owner_id", nullable = false)
+    private Long ownerId;
+
+    // MinHash signature, các int 32-bit big-endian
+    @Column(nullable = false, length = 1024)
+    private byte[] signature;
+
+    @Column(nullable = false)
+    private int shingles;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    // Điểm GPS đầu / cuối (UTC); null với chữ ký lưu trước khi có cột này
+    @Column(name = "journey_started_at")
+    private LocalDateTime journeyStartedAt;
+
+    @Column(name = "journey_ended_at")
+    private LocalDateTime journeyEndedAt;
+}
@@ -8,12 +8,15 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.Generated;
+import org.hibernate.generator.EventType;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "listings")
+@EntityListeners(ListingEntityListener.class)
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -40,6 +43,11 @@ public class Listing {
     @Positive(message = "Price must be positive")
     private BigDecimal price;
 
+    // Generated column (price / carbon_amount) maintained by MySQL, see V26
+    @Column(name = "price_per_tonne", precision = 19, scale = 4, insertable = false, updatable = false)
+    @Generated(event = {EventType.INSERT, EventType.UPDATE})
+    private BigDecimal pricePerTonne;
+
     @Enumerated(EnumType.STRING)
     @Column(nullable = false, length = 20, columnDefinition = "VARCHAR(20)")
     private ListingStatus status = ListingStatus.OPEN;
@@ -0,0 +1,26 @@
+package com.example.demo.entity;
+
+import com.example.demo.service.ListingChangeTracker;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+
+/**
+ * Catches every Listing write (including TransactionService and AdminListingController,
+ * which save through the repository directly) and bumps the listing generation.
+ */
+public class ListingEntityListener {
+
+    private final ListingChangeTracker changeTracker;
+
+    public ListingEntityListener(ListingChangeTracker changeTracker) {
+        this.changeTracker = changeTracker;
+    }
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void onListingChanged(Listing listing) {
+        changeTracker.markChanged();
+    }
+}
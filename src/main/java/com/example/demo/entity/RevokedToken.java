@@ -0,0 +1,38 @@
+package com.example.demo.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "revoked_tokens")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RevokedToken {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // jti của token bị thu hồi; null nếu thu hồi toàn bộ token của user
+    @Column(name = "token_id", length = 64)
+    private String tokenId;
+
+    // User bị thu hồi toàn bộ token phát hành trước revokedAt
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(length = 50)
+    private String reason; // LOGOUT / BANNED / DELETED
+
+    @Column(name = "revoked_at", nullable = false)
+    private LocalDateTime revokedAt;
+
+    // Sau thời điểm này không còn token nào bị ảnh hưởng -> có thể xoá
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+}
@@ -0,0 +1,56 @@
+package com.example.demo.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "vnpay_ipn_inbox")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class VnPayIpnMessage {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // vnp_TxnRef, unique -> VNPay gọi lại IPN nhiều lần cũng chỉ lưu 1 bản
+    @Column(name = "txn_ref", nullable = false, length = 100, unique = true)
+    private String txnRef;
+
+    // Toàn bộ params của callback (JSON) để worker xử lý lại y như request gốc
+    @Column(name = "raw_params", nullable = false, columnDefinition = "TEXT")
+    private String rawParams;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private Status status = Status.PENDING;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "locked_at")
+    private LocalDateTime lockedAt;
+
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+
+    @CreationTimestamp
+    @Column(name = "received_at", nullable = false, updatable = false)
+    private LocalDateTime receivedAt;
+
+    @Column(name = "processed_at")
+    private LocalDateTime processedAt;
+
+    public enum Status {
+        PENDING, PROCESSING, DONE, FAILED
+    }
+}
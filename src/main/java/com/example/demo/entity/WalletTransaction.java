@@ -31,6 +31,10 @@ public class WalletTransaction {
     @Column(length = 20)
     private TransactionStatus status; // PENDING / SUCCESS / FAILED
 
+    @Enumerated(EnumType.STRING)
+    @Column(name = "failure_reason", length = 20)
+    private FailureReason failureReason; // chỉ có khi FAILED và biết lý do (EXPIRED do sweeper)
+
     @Column(name = "external_ref", length = 100)
     private String externalRef; // Mã giao dịch VNPAY (vnp_TxnRef)
 
@@ -58,4 +62,8 @@ public class WalletTransaction {
     public enum TransactionStatus {
         PENDING, SUCCESS, FAILED
     }
+
+    public enum FailureReason {
+        EXPIRED
+    }
 }
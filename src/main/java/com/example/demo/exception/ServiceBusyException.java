@@ -0,0 +1,19 @@
+package com.example.demo.exception;
+
+/**
+ * Thrown when a bounded resource (e.g. the password hashing pool) is saturated.
+ * Mapped to 503 with a Retry-After header so clients back off instead of piling up.
+ */
+public class ServiceBusyException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public ServiceBusyException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -2,10 +2,17 @@ package com.example.demo.repository;
 
 import com.example.demo.entity.CarbonCredit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface CarbonCreditRepository extends JpaRepository<CarbonCredit, Long> {
     List<CarbonCredit> findByOwnerId(Long ownerId);
     List<CarbonCredit> findByListedTrue();
+
+    // (ownerId, tổng tín chỉ đã phát hành) cho reconciliation
+    @Query("SELECT c.ownerId, SUM(c.amount) FROM CarbonCredit c WHERE c.ownerId IN :ownerIds GROUP BY c.ownerId")
+    List<Object[]> sumAmountByOwnerIds(@Param("ownerIds") Collection<Long> ownerIds);
 }
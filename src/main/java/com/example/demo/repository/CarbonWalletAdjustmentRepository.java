@@ -0,0 +1,16 @@
+package com.example.demo.repository;
+
+import com.example.demo.entity.CarbonWalletAdjustment;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface CarbonWalletAdjustmentRepository extends JpaRepository<CarbonWalletAdjustment, Long> {
+
+    // (ownerId, tổng điều chỉnh có dấu) cho reconciliation
+    @Query("SELECT a.ownerId, SUM(a.amount) FROM CarbonWalletAdjustment a WHERE a.ownerId IN :ownerIds GROUP BY a.ownerId")
+    List<Object[]> sumAmountByOwnerIds(@Param("ownerIds") Collection<Long> ownerIds);
+}
@@ -2,9 +2,13 @@ package com.example.demo.repository;
 
 import com.example.demo.entity.CarbonWallet;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface CarbonWalletRepository extends JpaRepository<CarbonWallet, Long> {
@@ -12,8 +16,31 @@ public interface CarbonWalletRepository extends JpaRepository<CarbonWallet, Long
     // vì trong entity `CarbonWallet` field là `owner` (User),
     // nên phương thức truy vấn theo owner.id sẽ viết như sau:
     Optional<CarbonWallet> findByOwner_Id(Long ownerId);
-    
+
+    // Cộng / trừ nguyên tử trên DB (không read-modify-write): trả về số dòng cập nhật,
+    // 0 = không có ví hoặc (khi trừ) số dư không đủ
+    @Modifying
+    @Query("UPDATE CarbonWallet cw SET cw.balance = cw.balance + :amount, cw.updatedAt = CURRENT_TIMESTAMP WHERE cw.owner.id = :ownerId")
+    int addToBalance(@Param("ownerId") Long ownerId, @Param("amount") BigDecimal amount);
+
+    @Modifying
+    @Query("UPDATE CarbonWallet cw SET cw.balance = cw.balance - :amount, cw.updatedAt = CURRENT_TIMESTAMP " +
+            "WHERE cw.owner.id = :ownerId AND cw.balance >= :amount")
+    int subtractIfSufficient(@Param("ownerId") Long ownerId, @Param("amount") BigDecimal amount);
+
+    // owner ids (trong danh sách) đã có ví carbon
+    @Query("SELECT cw.owner.id FROM CarbonWallet cw WHERE cw.owner.id IN :ownerIds")
+    List<Long> findOwnerIdsWithWallet(@Param("ownerIds") Collection<Long> ownerIds);
+
     // Admin queries
     @Query("SELECT SUM(cw.balance) FROM CarbonWallet cw")
     BigDecimal sumAllBalances();
+
+    // Reconciliation
+    @Query("SELECT MIN(cw.id), MAX(cw.id) FROM CarbonWallet cw")
+    List<Object[]> findIdBounds();
+
+    // (walletId, ownerId, balance)
+    @Query("SELECT cw.id, cw.owner.id, cw.balance FROM CarbonWallet cw WHERE cw.id BETWEEN :fromId AND :toId")
+    List<Object[]> findBalancesInRange(@Param("fromId") Long fromId, @Param("toId") Long toId);
 }
@@ -0,0 +1,72 @@
+package com.example.demo.repository;
+
+import com.example.demo.entity.Co2UserTotal;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface Co2UserTotalRepository extends JpaRepository<Co2UserTotal, String> {
+
+    /**
+     * Add deltas to the user's row, creating it on first use. Runs in the caller's transaction.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO co2_user_totals (user_id, record_count, approved_count, rejected_count, pending_count, " +
+            "total_reduction, total_credits, approved_credits, last_record_at, updated_at) " +
+            "VALUES (:userId, :records, :approved, :rejected, :pending, :reduction, :credits, :approvedCredits, :lastRecordAt, NOW()) " +
+            "ON DUPLICATE KEY UPDATE " +
+            "record_count = record_count + VALUES(record_count), " +
+            "approved_count = approved_count + VALUES(approved_count), " +
+            "rejected_count = rejected_count + VALUES(rejected_count), " +
+            "pending_count = pending_count + VALUES(pending_count), " +
+            "total_reduction = total_reduction + VALUES(total_reduction), " +
+            "total_credits = total_credits + VALUES(total_credits), " +
+            "approved_credits = approved_credits + VALUES(approved_credits), " +
+            "last_record_at = GREATEST(COALESCE(last_record_at, VALUES(last_record_at)), VALUES(last_record_at)), " +
+            "updated_at = NOW()",
+            nativeQuery = true)
+    int addTotals(@Param("userId") String userId,
+                  @Param("records") long records,
+                  @Param("approved") long approved,
+                  @Param("rejected") long rejected,
+                  @Param("pending") long pending,
+                  @Param("reduction") BigDecimal reduction,
+                  @Param("credits") BigDecimal credits,
+                  @Param("approvedCredits") BigDecimal approvedCredits,
+                  @Param("lastRecordAt") LocalDateTime lastRecordAt);
+
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM co2_user_totals WHERE user_id = :userId", nativeQuery = true)
+    int deleteByUserIdNative(@Param("userId") String userId);
+
+    /**
+     * Recompute one user's row from co2_reduction (uses idx_co2_user_created_at).
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO co2_user_totals (user_id, record_count, approved_count, rejected_count, pending_count, " +
+            "total_reduction, total_credits, approved_credits, last_record_at, updated_at) " +
+            "SELECT user_id, COUNT(*), SUM(status = 'APPROVED'), SUM(status = 'REJECTED'), SUM(status = 'PENDING'), " +
+            "COALESCE(SUM(reduction), 0), COALESCE(SUM(credits), 0), " +
+            "COALESCE(SUM(CASE WHEN status = 'APPROVED' THEN credits ELSE 0 END), 0), MAX(created_at), NOW() " +
+            "FROM co2_reduction WHERE user_id = :userId GROUP BY user_id",
+            nativeQuery = true)
+    int insertRecomputed(@Param("userId") String userId);
+
+    /**
+     * Distinct users with records, keyset-paged by user_id.
+     */
+    @Query(value = "SELECT DISTINCT user_id FROM co2_reduction WHERE user_id > :afterUserId ORDER BY user_id LIMIT :limit",
+            nativeQuery = true)
+    List<String> findRecordUserIdsAfter(@Param("afterUserId") String afterUserId, @Param("limit") int limit);
+}
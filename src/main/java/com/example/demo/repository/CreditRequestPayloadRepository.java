@@ -0,0 +1,15 @@
+package com.example.demo.repository;
+
+import com.example.demo.entity.CreditRequestPayload;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.List;
+
+public interface CreditRequestPayloadRepository extends JpaRepository<CreditRequestPayload, Long> {
+
+    // (rows, journey raw, journey stored, evidence raw, evidence stored)
+    @Query("SELECT COUNT(p), COALESCE(SUM(p.journeyRawBytes), 0), COALESCE(SUM(p.journeyStoredBytes), 0), " +
+            "COALESCE(SUM(p.evidenceRawBytes), 0), COALESCE(SUM(p.evidenceStoredBytes), 0) FROM CreditRequestPayload p")
+    List<Object[]> sumSizes();
+}
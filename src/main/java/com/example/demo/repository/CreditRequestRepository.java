@@ -1,9 +1,93 @@
 package com.example.demo.repository;
 
+import com.example.demo.dto.CvaQueueItem;
 import com.example.demo.entity.CreditRequest;
+import org.springframework.data.domain.Pageable;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 public interface CreditRequestRepository extends JpaRepository<CreditRequest, Long> {
     List<CreditRequest> findByStatus(String status);
+
+    /**
+     * Lock the requests of a batch approval, in id order so concurrent batches cannot deadlock.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r FROM CreditRequest r WHERE r.id IN :ids ORDER BY r.id")
+    List<CreditRequest> findAllByIdForUpdate(@Param("ids") Collection<Long> ids);
+
+    /**
+     * One page of the review queue (priority DESC, id ASC), seeking past (afterPriority, afterId).
+     * Claimed items with a live lease are skipped unless includeClaimed is true.
+     */
+    @Query("SELECT new com.example.demo.dto.CvaQueueItem(r.id, r.ownerId, r.status, r.carbonAmount, r.priority, " +
+            "r.claimedBy, r.leaseExpiresAt, r.createdAt, r.duplicateOf, r.duplicateScore) " +
+            "FROM CreditRequest r " +
+            "WHERE r.status = 'PENDING' " +
+            "AND (r.priority < :afterPriority OR (r.priority = :afterPriority AND r.id > :afterId)) " +
+            "AND (:includeClaimed = true OR r.claimedBy IS NULL OR r.leaseExpiresAt < :now) " +
+            "ORDER BY r.priority DESC, r.id ASC")
+    List<CvaQueueItem> findQueuePage(@Param("afterPriority") int afterPriority,
+                                     @Param("afterId") long afterId,
+                                     @Param("includeClaimed") boolean includeClaimed,
+                                     @Param("now") LocalDateTime now,
+                                     Pageable pageable);
+
+    /**
+     * Claim (or re-claim) a PENDING request if it is unclaimed, its lease expired, or the caller
+     * already holds it. Returns 1 when the caller now holds the lease.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE CreditRequest r SET r.claimedBy = :verifierId, r.leaseExpiresAt = :leaseUntil " +
+            "WHERE r.id = :id AND r.status = 'PENDING' " +
+            "AND (r.claimedBy IS NULL OR r.leaseExpiresAt < :now OR r.claimedBy = :verifierId)")
+    int claim(@Param("id") Long id,
+              @Param("verifierId") Long verifierId,
+              @Param("now") LocalDateTime now,
+              @Param("leaseUntil") LocalDateTime leaseUntil);
+
+    /**
+     * Extend a lease the caller still holds.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE CreditRequest r SET r.leaseExpiresAt = :leaseUntil " +
+            "WHERE r.id = :id AND r.status = 'PENDING' AND r.claimedBy = :verifierId AND r.leaseExpiresAt >= :now")
+    int renewLease(@Param("id") Long id,
+                   @Param("verifierId") Long verifierId,
+                   @Param("now") LocalDateTime now,
+                   @Param("leaseUntil") LocalDateTime leaseUntil);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE CreditRequest r SET r.claimedBy = NULL, r.leaseExpiresAt = NULL " +
+            "WHERE r.id = :id AND r.claimedBy = :verifierId")
+    int releaseLease(@Param("id") Long id, @Param("verifierId") Long verifierId);
+
+    /**
+     * Approve / reject in one conditional UPDATE: only a PENDING request that is unclaimed, claimed
+     * by the caller, or whose lease expired. Returns 0 if another verifier decided it first or holds
+     * a live lease.
+     */
+    @Modifying(clearAutomatically = true)
+    @Transactional
+    @Query("UPDATE CreditRequest r SET r.status = :status, r.verifierId = :verifierId, " +
+            "r.claimedBy = NULL, r.leaseExpiresAt = NULL, r.notes = COALESCE(:notes, r.notes), r.updatedAt = :now " +
+            "WHERE r.id = :id AND r.status = 'PENDING' " +
+            "AND (r.claimedBy IS NULL OR r.claimedBy = :verifierId OR r.leaseExpiresAt < :now)")
+    int decide(@Param("id") Long id,
+               @Param("status") String status,
+               @Param("verifierId") Long verifierId,
+               @Param("notes") String notes,
+               @Param("now") LocalDateTime now);
 }
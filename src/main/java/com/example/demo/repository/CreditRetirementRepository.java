@@ -0,0 +1,22 @@
+package com.example.demo.repository;
+
+import com.example.demo.entity.CreditRetirement;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface CreditRetirementRepository extends JpaRepository<CreditRetirement, Long> {
+
+    List<CreditRetirement> findByOwnerIdOrderByIdDesc(Long ownerId, Pageable pageable);
+
+    // Ghi bù journal lúc khởi động: các certificate sau afterId, theo id tăng dần
+    List<CreditRetirement> findByIdGreaterThanOrderByIdAsc(Long afterId, Pageable pageable);
+
+    // (ownerId, tổng tín chỉ đã retire) cho reconciliation
+    @Query("SELECT r.ownerId, SUM(r.amount) FROM CreditRetirement r WHERE r.ownerId IN :ownerIds GROUP BY r.ownerId")
+    List<Object[]> sumAmountByOwnerIds(@Param("ownerIds") Collection<Long> ownerIds);
+}
@@ -0,0 +1,13 @@
+package com.example.demo.repository;
+
+import com.example.demo.entity.JourneySignature;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+public interface JourneySignatureRepository extends JpaRepository<JourneySignature, Long> {
+
+    // Keyset paging for the index rebuild
+    List<JourneySignature> findByRequestIdGreaterThanOrderByRequestIdAsc(Long afterRequestId, Pageable pageable);
+}
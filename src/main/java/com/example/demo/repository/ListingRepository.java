@@ -15,17 +15,25 @@ import java.util.List;
 @Repository
 public interface ListingRepository extends JpaRepository<Listing, Long> {
     
+    // Facet bucket index per row; edges must match ListingService.PRICE_EDGES / CARBON_EDGES
+    String PRICE_BUCKET = "CASE WHEN l.price >= 10000 THEN 5 WHEN l.price >= 5000 THEN 4 WHEN l.price >= 1000 THEN 3 " +
+                          "WHEN l.price >= 500 THEN 2 WHEN l.price >= 100 THEN 1 ELSE 0 END";
+    String CARBON_BUCKET = "CASE WHEN l.carbonAmount >= 1000 THEN 4 WHEN l.carbonAmount >= 100 THEN 3 " +
+                           "WHEN l.carbonAmount >= 10 THEN 2 WHEN l.carbonAmount >= 1 THEN 1 ELSE 0 END";
+    String FILTER_WHERE = " WHERE l.status = :status AND " +
+                          "(:minPrice IS NULL OR l.price >= :minPrice) AND " +
+                          "(:maxPrice IS NULL OR l.price <= :maxPrice) AND " +
+                          "(:minCarbon IS NULL OR l.carbonAmount >= :minCarbon) AND " +
+                          "(:maxCarbon IS NULL OR l.carbonAmount <= :maxCarbon)";
+    String KEYWORD_WHERE = " WHERE LOWER(l.title) LIKE %:keyword% OR LOWER(l.description) LIKE %:keyword%";
+    
     List<Listing> findBySellerIdOrderByCreatedAtDesc(Long sellerId);
     
     List<Listing> findByStatusOrderByCreatedAtDesc(ListingStatus status);
     
     Page<Listing> findByStatus(ListingStatus status, Pageable pageable);
     
-    @Query("SELECT l FROM Listing l WHERE l.status = :status AND " +
-           "(:minPrice IS NULL OR l.price >= :minPrice) AND " +
-           "(:maxPrice IS NULL OR l.price <= :maxPrice) AND " +
-           "(:minCarbon IS NULL OR l.carbonAmount >= :minCarbon) AND " +
-           "(:maxCarbon IS NULL OR l.carbonAmount <= :maxCarbon)")
+    @Query("SELECT l FROM Listing l" + FILTER_WHERE)
     Page<Listing> findByFilters(@Param("status") ListingStatus status,
                                 @Param("minPrice") BigDecimal minPrice,
                                 @Param("maxPrice") BigDecimal maxPrice,
@@ -33,9 +41,50 @@ public interface ListingRepository extends JpaRepository<Listing, Long> {
                                 @Param("maxCarbon") BigDecimal maxCarbon,
                                 Pageable pageable);
     
-    @Query("SELECT l FROM Listing l WHERE l.title LIKE %:keyword% OR l.description LIKE %:keyword%")
+    // keyword is lower-case (ListingService.normalizeKeyword)
+    @Query("SELECT l FROM Listing l" + KEYWORD_WHERE)
     Page<Listing> findByKeyword(@Param("keyword") String keyword, Pageable pageable);
     
+    // Facet histograms: (price bucket, carbon bucket, count), at most 6 x 5 rows
+    @Query("SELECT " + PRICE_BUCKET + ", " + CARBON_BUCKET + ", COUNT(l) FROM Listing l" + FILTER_WHERE +
+           " GROUP BY " + PRICE_BUCKET + ", " + CARBON_BUCKET)
+    List<Object[]> countFacetBucketsByFilters(@Param("status") ListingStatus status,
+                                              @Param("minPrice") BigDecimal minPrice,
+                                              @Param("maxPrice") BigDecimal maxPrice,
+                                              @Param("minCarbon") BigDecimal minCarbon,
+                                              @Param("maxCarbon") BigDecimal maxCarbon);
+    
+    @Query("SELECT " + PRICE_BUCKET + ", " + CARBON_BUCKET + ", COUNT(l) FROM Listing l" + KEYWORD_WHERE +
+           " GROUP BY " + PRICE_BUCKET + ", " + CARBON_BUCKET)
+    List<Object[]> countFacetBucketsByKeyword(@Param("keyword") String keyword);
+    
+    // Top sellers facet: (sellerId, count), most listings first; page size bounds the result
+    @Query("SELECT l.seller.id, COUNT(l) FROM Listing l" + FILTER_WHERE +
+           " GROUP BY l.seller.id ORDER BY COUNT(l) DESC, l.seller.id ASC")
+    List<Object[]> countSellersByFilters(@Param("status") ListingStatus status,
+                                         @Param("minPrice") BigDecimal minPrice,
+                                         @Param("maxPrice") BigDecimal maxPrice,
+                                         @Param("minCarbon") BigDecimal minCarbon,
+                                         @Param("maxCarbon") BigDecimal maxCarbon,
+                                         Pageable pageable);
+    
+    @Query("SELECT l.seller.id, COUNT(l) FROM Listing l" + KEYWORD_WHERE +
+           " GROUP BY l.seller.id ORDER BY COUNT(l) DESC, l.seller.id ASC")
+    List<Object[]> countSellersByKeyword(@Param("keyword") String keyword, Pageable pageable);
+    
+    // Seek-paged "cheapest per tonne" queries, served by idx_listings_status_ppt_id
+    @Query("SELECT l FROM Listing l JOIN FETCH l.seller WHERE l.status = :status AND l.pricePerTonne IS NOT NULL " +
+           "ORDER BY l.pricePerTonne ASC, l.id ASC")
+    List<Listing> findCheapestByStatus(@Param("status") ListingStatus status, Pageable pageable);
+    
+    @Query("SELECT l FROM Listing l JOIN FETCH l.seller WHERE l.status = :status AND l.pricePerTonne >= :afterPrice AND " +
+           "(l.pricePerTonne > :afterPrice OR l.id > :afterId) " +
+           "ORDER BY l.pricePerTonne ASC, l.id ASC")
+    List<Listing> findCheapestByStatusAfter(@Param("status") ListingStatus status,
+                                            @Param("afterPrice") BigDecimal afterPrice,
+                                            @Param("afterId") Long afterId,
+                                            Pageable pageable);
+    
     // Admin queries
     long countByStatus(ListingStatus status);
     
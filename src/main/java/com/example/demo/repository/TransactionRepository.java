@@ -34,6 +34,13 @@ public interface TransactionRepository extends JpaRepository<Transaction, Long>
     
     List<Transaction> findTop10ByOrderByCreatedAtDesc();
     
+    // Reconciliation: tổng giao dịch theo seller / buyer cho 1 nhóm user
+    @Query("SELECT t.seller.id, SUM(t.amount) FROM Transaction t WHERE t.status = :status AND t.seller.id IN :userIds GROUP BY t.seller.id")
+    List<Object[]> sumAmountBySellerIds(@Param("status") TransactionStatus status, @Param("userIds") java.util.Collection<Long> userIds);
+    
+    @Query("SELECT t.buyer.id, SUM(t.amount) FROM Transaction t WHERE t.status = :status AND t.buyer.id IN :userIds GROUP BY t.buyer.id")
+    List<Object[]> sumAmountByBuyerIds(@Param("status") TransactionStatus status, @Param("userIds") java.util.Collection<Long> userIds);
+    
     List<Transaction> findByCreatedAtBetween(java.time.LocalDateTime start, java.time.LocalDateTime end);
     
     @Query("SELECT new map(t.seller.id as userId, t.seller.email as email, t.seller.fullName as name, SUM(t.amount) as totalSales, COUNT(t) as transactionCount) " +
@@ -1,7 +1,10 @@
 package com.example.demo.repository;
 
 import com.example.demo.entity.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
@@ -14,6 +17,11 @@ public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByEmail(String email);
     
     boolean existsByEmail(String email);
+
+    // Account exists and is not BANNED in user_status: required for a token to authenticate
+    @Query("SELECT COUNT(u) > 0 FROM User u WHERE u.email = :email AND NOT EXISTS " +
+            "(SELECT s.id FROM UserStatusRecord s WHERE s.userId = u.id AND s.status = 'BANNED')")
+    boolean existsActiveByEmail(@Param("email") String email);
     
     // Admin queries
     long countByCreatedAtAfter(LocalDateTime date);
@@ -23,5 +31,13 @@ public interface UserRepository extends JpaRepository<User, Long> {
     List<User> findTop5ByOrderByCreatedAtDesc();
     
     List<User> findByCreatedAtBetween(LocalDateTime start, LocalDateTime end);
-}
 
+    // Wallet overview: (userId, email, fullName, walletId, moneyBalance, carbonWalletId, carbonBalance),
+    // keyset paged by user id, only users owning at least one wallet
+    @Query("SELECT u.id, u.email, u.fullName, w.id, w.balance, cw.id, cw.balance FROM User u " +
+           "LEFT JOIN u.wallet w " +
+           "LEFT JOIN CarbonWallet cw ON cw.owner = u " +
+           "WHERE u.id > :afterId AND (w.id IS NOT NULL OR cw.id IS NOT NULL) " +
+           "ORDER BY u.id")
+    List<Object[]> findWalletOverviewRows(@Param("afterId") Long afterId, Pageable pageable);
+}
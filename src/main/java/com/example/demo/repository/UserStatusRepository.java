@@ -2,9 +2,14 @@ package com.example.demo.repository;
 
 import com.example.demo.entity.UserStatusRecord;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.Optional;
 
 public interface UserStatusRepository extends JpaRepository<UserStatusRecord, Long> {
     Optional<UserStatusRecord> findByUserId(Long userId);
+
+    @Query("SELECT COUNT(s) > 0 FROM UserStatusRecord s WHERE s.userId = :userId AND s.status = 'BANNED'")
+    boolean isBanned(@Param("userId") Long userId);
 }
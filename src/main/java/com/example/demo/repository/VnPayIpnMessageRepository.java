@@ -0,0 +1,59 @@
+package com.example.demo.repository;
+
+import com.example.demo.entity.VnPayIpnMessage;
+import com.example.demo.entity.VnPayIpnMessage.Status;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface VnPayIpnMessageRepository extends JpaRepository<VnPayIpnMessage, Long> {
+
+    boolean existsByTxnRef(String txnRef);
+
+    @Query("SELECT m FROM VnPayIpnMessage m WHERE m.status = :status AND m.nextAttemptAt <= :now ORDER BY m.id")
+    List<VnPayIpnMessage> findDue(@Param("status") Status status, @Param("now") LocalDateTime now, Pageable pageable);
+
+    // Claim có điều kiện (PENDING -> PROCESSING): chỉ 1 worker, kể cả ở instance khác, lấy được message
+    @Transactional
+    @Modifying
+    @Query("UPDATE VnPayIpnMessage m SET m.status = :to, m.lockedAt = :now, m.attempts = m.attempts + 1 " +
+           "WHERE m.id = :id AND m.status = :from")
+    int claim(@Param("id") Long id,
+              @Param("from") Status from,
+              @Param("to") Status to,
+              @Param("now") LocalDateTime now);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE VnPayIpnMessage m SET m.status = :status, m.processedAt = :now, m.lockedAt = null, " +
+           "m.lastError = null WHERE m.id = :id")
+    int markProcessed(@Param("id") Long id, @Param("status") Status status, @Param("now") LocalDateTime now);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE VnPayIpnMessage m SET m.status = :status, m.nextAttemptAt = :nextAttemptAt, " +
+           "m.lockedAt = null, m.lastError = :error WHERE m.id = :id")
+    int markFailedAttempt(@Param("id") Long id,
+                          @Param("status") Status status,
+                          @Param("nextAttemptAt") LocalDateTime nextAttemptAt,
+                          @Param("error") String error);
+
+    // Message PROCESSING quá lâu (instance chết giữa chừng) được trả lại hàng đợi
+    @Transactional
+    @Modifying
+    @Query("UPDATE VnPayIpnMessage m SET m.status = :to, m.lockedAt = null " +
+           "WHERE m.status = :from AND m.lockedAt < :staleBefore")
+    int releaseStale(@Param("from") Status from,
+                     @Param("to") Status to,
+                     @Param("staleBefore") LocalDateTime staleBefore);
+
+    long countByStatus(Status status);
+}
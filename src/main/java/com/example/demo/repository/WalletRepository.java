@@ -1,19 +1,53 @@
 package com.example.demo.repository;
 
 import com.example.demo.entity.Wallet;
+import com.example.demo.entity.WalletTransaction;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface WalletRepository extends JpaRepository<Wallet, Long> {
     Optional<Wallet> findByUser_Id(Long userId);
     Wallet findByUserId(Long userId);
+
+    @Query("SELECT w.id FROM Wallet w WHERE w.user.id = :userId")
+    Optional<Long> findIdByUserId(@Param("userId") Long userId);
+
+    // Cộng (hoặc trừ, amount âm) số dư ngay trên DB: UPDATE ... SET balance = balance + ?, khoá dòng
+    // tới hết transaction nên các luồng / instance khác không ghi đè lẫn nhau
+    @Modifying
+    @Transactional
+    @Query("UPDATE Wallet w SET w.balance = w.balance + :amount WHERE w.id = :id")
+    int addToBalance(@Param("id") Long id, @Param("amount") BigDecimal amount);
+
+    @Query("SELECT w.balance FROM Wallet w WHERE w.id = :id")
+    BigDecimal findBalanceById(@Param("id") Long id);
     
     // Admin queries
     @Query("SELECT SUM(w.balance) FROM Wallet w")
     BigDecimal sumAllBalances();
+
+    // Reconciliation: khoảng id để chia việc cho các worker
+    @Query("SELECT MIN(w.id), MAX(w.id) FROM Wallet w")
+    List<Object[]> findIdBounds();
+
+    // (walletId, userId, balance, tổng ledger SUCCESS) trong 1 câu lệnh -> cùng 1 snapshot đọc
+    @Query("SELECT w.id, w.user.id, w.balance, " +
+           "SUM(CASE WHEN wt.type = :debitType " +
+           "THEN -wt.amount ELSE wt.amount END) " +
+           "FROM Wallet w LEFT JOIN w.walletTransactions wt ON wt.status = :status " +
+           "WHERE w.id BETWEEN :fromId AND :toId " +
+           "GROUP BY w.id, w.user.id, w.balance")
+    List<Object[]> findBalancesWithLedgerSums(@Param("fromId") Long fromId,
+                                              @Param("toId") Long toId,
+                                              @Param("status") WalletTransaction.TransactionStatus status,
+                                              @Param("debitType") WalletTransaction.TransactionType debitType);
 }
@@ -1,9 +1,19 @@
 package com.example.demo.repository;
 
+import com.example.demo.dto.WalletStatementEntry;
+import com.example.demo.entity.VnPayIpnMessage;
 import com.example.demo.entity.WalletTransaction;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -13,5 +23,78 @@ public interface WalletTransactionRepository extends JpaRepository<WalletTransac
     List<WalletTransaction> findByWallet_User_IdOrderByCreatedAtDesc(Long userId);
     
     Optional<WalletTransaction> findByExternalRef(String externalRef);
-}
 
+    // Chỉ lấy số tiền, để callback IPN kiểm tra đơn hàng trước khi đưa vào inbox
+    @Query("SELECT wt.amount FROM WalletTransaction wt WHERE wt.externalRef = :externalRef")
+    Optional<BigDecimal> findAmountByExternalRef(@Param("externalRef") String externalRef);
+
+    // (externalRef, walletId) để IPN worker xếp message vào đúng lane theo ví
+    @Query("SELECT wt.externalRef, wt.wallet.id FROM WalletTransaction wt WHERE wt.externalRef IN :refs")
+    List<Object[]> findWalletIdsByExternalRefs(@Param("refs") Collection<String> refs);
+
+    // Id các giao dịch theo status/type tạo trước cutoff (dùng index status, created_at),
+    // bỏ qua giao dịch còn IPN đang chờ trong inbox (IPN đã nhận nhưng worker chưa xử lý xong)
+    @Query("SELECT wt.id FROM WalletTransaction wt WHERE wt.status = :status AND wt.type = :type " +
+           "AND wt.createdAt < :cutoff " +
+           "AND NOT EXISTS (SELECT 1 FROM VnPayIpnMessage m WHERE m.txnRef = wt.externalRef " +
+           "AND m.status IN :inboxStatuses) " +
+           "ORDER BY wt.createdAt, wt.id")
+    List<Long> findIdsByStatusAndTypeCreatedBefore(@Param("status") WalletTransaction.TransactionStatus status,
+                                                   @Param("type") WalletTransaction.TransactionType type,
+                                                   @Param("cutoff") LocalDateTime cutoff,
+                                                   @Param("inboxStatuses") Collection<VnPayIpnMessage.Status> inboxStatuses,
+                                                   Pageable pageable);
+
+    // Chỉ đổi status nếu vẫn còn ở trạng thái cũ (tránh ghi đè giao dịch vừa được IPN xử lý)
+    @Modifying
+    @Transactional
+    @Query("UPDATE WalletTransaction wt SET wt.status = :to, wt.description = :description " +
+           "WHERE wt.id IN :ids AND wt.status = :from")
+    int updateStatusByIds(@Param("ids") Collection<Long> ids,
+                          @Param("from") WalletTransaction.TransactionStatus from,
+                          @Param("to") WalletTransaction.TransactionStatus to,
+                          @Param("description") String description);
+
+    // Hết hạn thanh toán: PENDING -> FAILED kèm failure_reason, chỉ khi vẫn còn PENDING
+    @Modifying
+    @Transactional
+    @Query("UPDATE WalletTransaction wt SET wt.status = :to, wt.failureReason = :reason, " +
+           "wt.description = :description WHERE wt.id IN :ids AND wt.status = :from")
+    int failByIds(@Param("ids") Collection<Long> ids,
+                  @Param("from") WalletTransaction.TransactionStatus from,
+                  @Param("to") WalletTransaction.TransactionStatus to,
+                  @Param("reason") WalletTransaction.FailureReason reason,
+                  @Param("description") String description);
+
+    // Mở lại giao dịch FAILED với đúng failure_reason (vd. chỉ giao dịch do sweeper đánh hết hạn)
+    @Modifying
+    @Transactional
+    @Query("UPDATE WalletTransaction wt SET wt.status = :to, wt.failureReason = NULL, " +
+           "wt.description = :description " +
+           "WHERE wt.id = :id AND wt.status = :from AND wt.failureReason = :reason")
+    int reopenByIdAndFailureReason(@Param("id") Long id,
+                                   @Param("from") WalletTransaction.TransactionStatus from,
+                                   @Param("reason") WalletTransaction.FailureReason reason,
+                                   @Param("to") WalletTransaction.TransactionStatus to,
+                                   @Param("description") String description);
+
+    // Sao kê ví: keyset (createdAt, id) giảm dần, chỉ lấy các cột cần thiết (index wallet_id, created_at, id)
+    @Query("SELECT new com.example.demo.dto.WalletStatementEntry(wt.id, wt.type, wt.amount, wt.status, " +
+           "wt.paymentMethod, wt.description, wt.externalRef, wt.createdAt) " +
+           "FROM WalletTransaction wt WHERE wt.wallet.id = :walletId " +
+           "AND (:type IS NULL OR wt.type = :type) " +
+           "AND wt.createdAt >= :from " +
+           "AND (wt.createdAt < :beforeCreatedAt OR (wt.createdAt = :beforeCreatedAt AND wt.id < :beforeId)) " +
+           "ORDER BY wt.createdAt DESC, wt.id DESC")
+    List<WalletStatementEntry> findStatementPage(@Param("walletId") Long walletId,
+                                                 @Param("type") WalletTransaction.TransactionType type,
+                                                 @Param("from") LocalDateTime from,
+                                                 @Param("beforeCreatedAt") LocalDateTime beforeCreatedAt,
+                                                 @Param("beforeId") Long beforeId,
+                                                 Pageable pageable);
+
+    // Giao dịch mới nhất toàn hệ thống, fetch sẵn wallet + user để map DTO
+    @Query("SELECT wt FROM WalletTransaction wt JOIN FETCH wt.wallet w JOIN FETCH w.user " +
+           "ORDER BY wt.createdAt DESC, wt.id DESC")
+    List<WalletTransaction> findLatestWithWalletAndUser(Pageable pageable);
+}
@@ -0,0 +1,113 @@
+package com.example.demo.security;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory caches used by {@link JwtAuthenticationFilter} so an authenticated request needs
+ * neither a signature verification nor a database lookup on the hot path.
+ * <ul>
+ *   <li>token -> verified principal, kept until the token expires (capped by token-ttl-seconds)</li>
+ *   <li>email -> user exists, kept for user-ttl-seconds and evicted when a user is banned or deleted</li>
+ * </ul>
+ * Both maps are bounded; when full, expired entries are dropped first and the map is cleared if
+ * that is not enough.
+ */
+@Component
+@Slf4j
+public class AuthenticationCache {
+
+    private record CachedPrincipal(JwtPrincipal principal, long validUntilMillis) {
+    }
+
+    private record CachedUser(boolean exists, long validUntilMillis) {
+    }
+
+    @Value("${security.auth-cache.max-tokens:50000}")
+    private int maxTokens;
+
+    @Value("${security.auth-cache.token-ttl-seconds:300}")
+    private long tokenTtlSeconds;
+
+    @Value("${security.auth-cache.max-users:50000}")
+    private int maxUsers;
+
+    @Value("${security.auth-cache.user-ttl-seconds:60}")
+    private long userTtlSeconds;
+
+    private final ConcurrentHashMap<String, CachedPrincipal> principals = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, CachedUser> users = new ConcurrentHashMap<>();
+
+    public JwtPrincipal getPrincipal(String token) {
+        CachedPrincipal cached = principals.get(token);
+        if (cached == null) {
+            return null;
+        }
+        if (System.currentTimeMillis() >= cached.validUntilMillis()) {
+            principals.remove(token, cached);
+            return null;
+        }
+        return cached.principal();
+    }
+
+    public void putPrincipal(String token, JwtPrincipal principal) {
+        long now = System.currentTimeMillis();
+        long validUntil = Math.min(principal.expiresAtMillis(), now + tokenTtlSeconds * 1000);
+        if (validUntil <= now) {
+            return;
+        }
+        if (principals.size() >= maxTokens) {
+            principals.values().removeIf(c -> now >= c.validUntilMillis());
+            if (principals.size() >= maxTokens) {
+                principals.clear();
+            }
+        }
+        principals.put(token, new CachedPrincipal(principal, validUntil));
+    }
+
+    /**
+     * Returns whether the user was found active (exists and not banned), or null when unknown / expired
+     */
+    public Boolean getUserExists(String email) {
+        CachedUser cached = users.get(email);
+        if (cached == null) {
+            return null;
+        }
+        if (System.currentTimeMillis() >= cached.validUntilMillis()) {
+            users.remove(email, cached);
+            return null;
+        }
+        return cached.exists();
+    }
+
+    public void putUserExists(String email, boolean exists) {
+        long now = System.currentTimeMillis();
+        if (users.size() >= maxUsers) {
+            users.values().removeIf(c -> now >= c.validUntilMillis());
+            if (users.size() >= maxUsers) {
+                users.clear();
+            }
+        }
+        users.put(email, new CachedUser(exists, now + userTtlSeconds * 1000));
+    }
+
+    /**
+     * Forget everything cached for a user (called on ban / unban / delete)
+     */
+    public void evictUser(String email) {
+        users.remove(email);
+        principals.values().removeIf(c -> c.principal().email().equals(email));
+        log.debug("Evicted auth cache entries for {}", email);
+    }
+
+    @Scheduled(fixedDelayString = "${security.auth-cache.evict-interval-ms:60000}")
+    public void evictExpired() {
+        long now = System.currentTimeMillis();
+        principals.values().removeIf(c -> now >= c.validUntilMillis());
+        users.values().removeIf(c -> now >= c.validUntilMillis());
+    }
+}
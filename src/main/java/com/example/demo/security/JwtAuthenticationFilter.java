@@ -1,6 +1,7 @@
 package com.example.demo.security;
 
 import com.example.demo.repository.UserRepository;
+import io.jsonwebtoken.JwtException;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -9,7 +10,6 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.lang.NonNull;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
@@ -17,8 +17,6 @@ import org.springframework.util.StringUtils;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
-import java.util.List;
-import java.util.stream.Collectors;
 
 @Component
 @RequiredArgsConstructor
@@ -27,6 +25,8 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtUtil jwtUtil;
     private final UserRepository userRepository;
+    private final AuthenticationCache authenticationCache;
+    private final TokenRevocationService tokenRevocationService;
 
     @Override
     protected void doFilterInternal(
@@ -38,27 +38,23 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         try {
             String jwt = getJwtFromRequest(request);
 
-            if (StringUtils.hasText(jwt) && jwtUtil.validateToken(jwt)) {
-                String email = jwtUtil.extractEmail(jwt);
-                Long userId = jwtUtil.extractUserId(jwt);
-                List<String> roles = jwtUtil.extractRoles(jwt);
-
-                // Verify user exists in database
-                userRepository.findByEmail(email).ifPresent(user -> {
-                    List<SimpleGrantedAuthority> authorities = roles.stream()
-                            .map(role -> new SimpleGrantedAuthority("ROLE_" + role))
-                            .collect(Collectors.toList());
+            if (StringUtils.hasText(jwt)) {
+                JwtPrincipal principal = resolvePrincipal(jwt);
 
+                // Reject revoked tokens (in-memory check), then verify user exists and is not banned
+                // (cached, evicted on ban/unban/delete)
+                if (principal != null
+                        && !tokenRevocationService.isRevoked(principal)
+                        && userActive(principal.email())) {
                     UsernamePasswordAuthenticationToken authentication =
-                            new UsernamePasswordAuthenticationToken(email, null, authorities);
+                            new UsernamePasswordAuthenticationToken(principal.email(), null, principal.authorities());
                     
                     authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
                     
-                    // Set userId in authentication details for easy access
                     SecurityContextHolder.getContext().setAuthentication(authentication);
                     
-                    log.debug("Set Authentication for user: {} with roles: {}", email, roles);
-                });
+                    log.debug("Set Authentication for user: {} with roles: {}", principal.email(), principal.roles());
+                }
             }
         } catch (Exception ex) {
             log.error("Could not set user authentication in security context", ex);
@@ -67,6 +63,34 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
     }
 
+    /**
+     * Cached principal for the token, otherwise verify + parse once and cache it.
+     * Returns null for invalid or expired tokens.
+     */
+    private JwtPrincipal resolvePrincipal(String jwt) {
+        JwtPrincipal principal = authenticationCache.getPrincipal(jwt);
+        if (principal != null) {
+            return principal;
+        }
+        try {
+            principal = jwtUtil.parseToken(jwt);
+        } catch (JwtException | IllegalArgumentException e) {
+            log.error("Invalid JWT token: {}", e.getMessage());
+            return null;
+        }
+        authenticationCache.putPrincipal(jwt, principal);
+        return principal;
+    }
+
+    private boolean userActive(String email) {
+        Boolean exists = authenticationCache.getUserExists(email);
+        if (exists == null) {
+            exists = userRepository.existsActiveByEmail(email);
+            authenticationCache.putUserExists(email, exists);
+        }
+        return exists;
+    }
+
     private String getJwtFromRequest(HttpServletRequest request) {
         String bearerToken = request.getHeader("Authorization");
         if (StringUtils.hasText(bearerToken) && bearerToken.startsWith("Bearer ")) {
@@ -0,0 +1,22 @@
+package com.example.demo.security;
+
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.List;
+
+/**
+ * Claims of a verified JWT, parsed once. Authorities are built at parse time so cached
+ * principals can be reused by the filter without any per-request mapping.
+ */
+public record JwtPrincipal(String tokenId,
+                           String email,
+                           Long userId,
+                           List<String> roles,
+                           List<SimpleGrantedAuthority> authorities,
+                           long issuedAtMillis,
+                           long expiresAtMillis) {
+
+    public boolean isExpired(long nowMillis) {
+        return nowMillis >= expiresAtMillis;
+    }
+}
@@ -3,8 +3,12 @@ package com.example.demo.security;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
+import com.example.demo.util.SnowflakeIdGenerator;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
@@ -15,18 +19,32 @@ import java.util.Map;
 import java.util.function.Function;
 
 @Component
+@RequiredArgsConstructor
 @Slf4j
 public class JwtUtil {
 
+    private final SnowflakeIdGenerator idGenerator;
+
     @Value("${jwt.secret:404E635266556A586E3272357538782F413F4428472B4B6250645367566B5970}")
     private String secret;
 
     @Value("${jwt.expiration:86400000}") // 24 hours in milliseconds
     private Long expiration;
 
+    // Decode the secret and build the (thread-safe) parser once instead of on every call
+    private SecretKey signingKey;
+    private JwtParser parser;
+
+    @PostConstruct
+    public void init() {
+        signingKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(secret));
+        parser = Jwts.parser()
+                .verifyWith(signingKey)
+                .build();
+    }
+
     private SecretKey getSigningKey() {
-        byte[] keyBytes = Decoders.BASE64.decode(secret);
-        return Keys.hmacShaKeyFor(keyBytes);
+        return signingKey;
     }
 
     public String generateToken(String email, Long userId, List<String> roles) {
@@ -42,6 +60,7 @@ public class JwtUtil {
 
         return Jwts.builder()
                 .claims(claims)
+                .id(String.valueOf(idGenerator.nextId()))
                 .subject(subject)
                 .issuedAt(now)
                 .expiration(expiryDate)
@@ -49,6 +68,10 @@ public class JwtUtil {
                 .compact();
     }
 
+    public long getExpirationMillis() {
+        return expiration;
+    }
+
     public String extractEmail(String token) {
         return extractClaim(token, Claims::getSubject);
     }
@@ -72,11 +95,32 @@ public class JwtUtil {
     }
 
     private Claims extractAllClaims(String token) {
-        return Jwts.parser()
-                .verifyWith(getSigningKey())
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
+        return parser.parseSignedClaims(token).getPayload();
+    }
+
+    /**
+     * Verify the signature and expiry and read every claim the filter needs in one pass.
+     * Throws JwtException / IllegalArgumentException for invalid tokens.
+     */
+    @SuppressWarnings("unchecked")
+    public JwtPrincipal parseToken(String token) {
+        Claims claims = extractAllClaims(token);
+        List<String> roles = claims.get("roles", List.class);
+        if (roles == null) {
+            roles = List.of();
+        }
+        List<SimpleGrantedAuthority> authorities = roles.stream()
+                .map(role -> new SimpleGrantedAuthority("ROLE_" + role))
+                .toList();
+        Date issuedAt = claims.getIssuedAt();
+        return new JwtPrincipal(
+                claims.getId(),
+                claims.getSubject(),
+                claims.get("userId", Long.class),
+                List.copyOf(roles),
+                authorities,
+                issuedAt != null ? issuedAt.getTime() : 0L,
+                claims.getExpiration().getTime());
     }
 
     private Boolean isTokenExpired(String token) {
@@ -101,10 +145,7 @@ public class JwtUtil {
 
     public Boolean validateToken(String token) {
         try {
-            Jwts.parser()
-                    .verifyWith(getSigningKey())
-                    .build()
-                    .parseSignedClaims(token);
+            parser.parseSignedClaims(token);
             return true;
         } catch (JwtException | IllegalArgumentException e) {
             log.error("Invalid JWT token: {}", e.getMessage());
@@ -0,0 +1,218 @@
+package com.example.demo.security;
+
+import com.example.demo.config.RateLimitProperties;
+import com.example.demo.exception.ErrorResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.lang.NonNull;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket rate limiter, registered in the security chain right after
+ * {@link JwtAuthenticationFilter} so authenticated requests are limited per user and anonymous
+ * ones per client IP.
+ * <p>
+ * Buckets live in a ConcurrentHashMap (internally lock-striped) keyed by group + client. Each
+ * bucket is a single AtomicLong packing the last refill time (upper 40 bits, ms since start) and
+ * the token count in milli-tokens (lower 24 bits), updated with a CAS loop, so the hot path never
+ * locks. Idle buckets are evicted periodically. Responses carry RateLimit-Limit /
+ * RateLimit-Remaining / RateLimit-Reset, plus Retry-After on 429.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private static final int TOKEN_BITS = 24;
+    private static final long TOKEN_MASK = (1L << TOKEN_BITS) - 1;
+    private static final long MILLI = 1000;
+
+    private final RateLimitProperties properties;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+    private final ConcurrentHashMap<String, Bucket> buckets = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Counter> rejectedCounters = new ConcurrentHashMap<>();
+    private final long startMillis = System.currentTimeMillis();
+
+    private record Decision(boolean allowed, long remaining, long resetSeconds, long retryAfterSeconds) {
+    }
+
+    private static final class Bucket {
+        final AtomicLong state;
+        final long capacityMilli;
+        final double refillMilliPerMs; // refillPerSecond tokens/s == refillPerSecond milli-tokens/ms
+
+        Bucket(long capacity, double refillPerSecond, long now) {
+            // Capacity is capped by the 24-bit token field (16 777 tokens)
+            this.capacityMilli = Math.min(capacity * MILLI, TOKEN_MASK);
+            this.refillMilliPerMs = refillPerSecond;
+            this.state = new AtomicLong((now << TOKEN_BITS) | capacityMilli);
+        }
+
+        long lastTouched() {
+            return state.get() >>> TOKEN_BITS;
+        }
+
+        Decision tryConsume(long now) {
+            while (true) {
+                long current = state.get();
+                long last = current >>> TOKEN_BITS;
+                long tokens = current & TOKEN_MASK;
+
+                long elapsed = Math.max(0, now - last);
+                long added = (long) (elapsed * refillMilliPerMs);
+                long newLast = last;
+                if (added > 0) {
+                    tokens += added;
+                    if (tokens >= capacityMilli) {
+                        tokens = capacityMilli;
+                        newLast = now;
+                    } else {
+                        // Only advance the clock by the time actually converted into tokens,
+                        // so slow refill rates do not lose fractional tokens
+                        newLast = last + (long) (added / refillMilliPerMs);
+                    }
+                }
+
+                boolean allowed = tokens >= MILLI;
+                long remainingMilli = allowed ? tokens - MILLI : tokens;
+                long next = (newLast << TOKEN_BITS) | remainingMilli;
+                if (next == current || state.compareAndSet(current, next)) {
+                    long resetSeconds = secondsFor(capacityMilli - remainingMilli);
+                    long retryAfter = allowed ? 0 : Math.max(1, secondsFor(MILLI - remainingMilli));
+                    return new Decision(allowed, remainingMilli / MILLI, resetSeconds, retryAfter);
+                }
+            }
+        }
+
+        private long secondsFor(long milliTokens) {
+            if (milliTokens <= 0 || refillMilliPerMs <= 0) {
+                return 0;
+            }
+            return (long) Math.ceil(milliTokens / refillMilliPerMs / 1000.0);
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilter(@NonNull HttpServletRequest request) {
+        return !properties.isEnabled() || "OPTIONS".equalsIgnoreCase(request.getMethod());
+    }
+
+    @Override
+    protected void doFilterInternal(
+            @NonNull HttpServletRequest request,
+            @NonNull HttpServletResponse response,
+            @NonNull FilterChain filterChain
+    ) throws ServletException, IOException {
+
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        RateLimitProperties.Group group = findGroup(path);
+        if (group == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        long now = System.currentTimeMillis() - startMillis;
+        String key = group.getName() + ":" + clientKey(request, group);
+        Bucket bucket = buckets.computeIfAbsent(key,
+                k -> new Bucket(group.getCapacity(), group.getRefillPerSecond(), now));
+        Decision decision = bucket.tryConsume(now);
+
+        response.setHeader("RateLimit-Limit", String.valueOf(group.getCapacity()));
+        response.setHeader("RateLimit-Remaining", String.valueOf(decision.remaining()));
+        response.setHeader("RateLimit-Reset", String.valueOf(decision.resetSeconds()));
+
+        if (!decision.allowed()) {
+            rejectedCounter(group.getName()).increment();
+            log.debug("Rate limit exceeded for {} on {}", key, path);
+            writeTooManyRequests(response, decision.retryAfterSeconds());
+            return;
+        }
+
+        filterChain.doFilter(request, response);
+    }
+
+    private RateLimitProperties.Group findGroup(String path) {
+        for (RateLimitProperties.Group group : properties.getGroups()) {
+            if (matchesAny(group.getPatterns(), path) && !matchesAny(group.getExcludePatterns(), path)) {
+                return group;
+            }
+        }
+        return null;
+    }
+
+    private boolean matchesAny(Iterable<String> patterns, String path) {
+        if (patterns == null) {
+            return false;
+        }
+        for (String pattern : patterns) {
+            if (pathMatcher.match(pattern, path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String clientKey(HttpServletRequest request, RateLimitProperties.Group group) {
+        if (group.getKeyBy() == RateLimitProperties.KeyType.USER) {
+            Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+            if (auth != null && auth.isAuthenticated() && auth.getPrincipal() instanceof String name
+                    && !"anonymousUser".equals(name)) {
+                return "u:" + name;
+            }
+        }
+        return "ip:" + request.getRemoteAddr();
+    }
+
+    private Counter rejectedCounter(String group) {
+        return rejectedCounters.computeIfAbsent(group, g -> Counter.builder("http.rate_limit.rejected")
+                .tag("group", g)
+                .register(meterRegistry));
+    }
+
+    private void writeTooManyRequests(HttpServletResponse response, long retryAfterSeconds) throws IOException {
+        ErrorResponse body = ErrorResponse.builder()
+                .timestamp(LocalDateTime.now())
+                .status(HttpStatus.TOO_MANY_REQUESTS.value())
+                .error("Too Many Requests")
+                .message("Rate limit exceeded, retry after " + retryAfterSeconds + "s")
+                .build();
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), body);
+    }
+
+    @Scheduled(fixedDelayString = "${rate-limit.evict-interval-ms:60000}")
+    public void evictIdleBuckets() {
+        long cutoff = System.currentTimeMillis() - startMillis - properties.getIdleEvictSeconds() * 1000;
+        int before = buckets.size();
+        buckets.values().removeIf(b -> b.lastTouched() < cutoff);
+        int evicted = before - buckets.size();
+        if (evicted > 0) {
+            log.debug("Evicted {} idle rate limit buckets", evicted);
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.demo.security;
+
+import com.example.demo.entity.RevokedToken;
+import com.example.demo.repository.RevokedTokenRepository;
+import com.example.demo.util.BloomFilter;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * JWT revocation checked on every authenticated request without touching the database.
+ * <p>
+ * The revoked_tokens table is the source of truth. In memory we keep a Bloom filter over
+ * revoked token ids ("t:" + jti) and user ids ("u:" + userId) plus exact maps
+ * (jti -> expiry, userId -> revokedAt). Almost every request is answered by a negative Bloom
+ * lookup; a positive one is confirmed in the exact map. The whole snapshot is rebuilt from the
+ * table periodically (picking up revocations made on other nodes and dropping expired ones),
+ * and expired rows are purged from the table.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TokenRevocationService {
+
+    private record Snapshot(BloomFilter filter,
+                            ConcurrentHashMap<String, Long> revokedTokens,
+                            ConcurrentHashMap<Long, Long> revokedUsers) {
+    }
+
+    private final RevokedTokenRepository revokedTokenRepository;
+    private final JwtUtil jwtUtil;
+    private final AuthenticationCache authenticationCache;
+
+    @Value("${security.revocation.expected-entries:100000}")
+    private long expectedEntries;
+
+    @Value("${security.revocation.false-positive-rate:0.001}")
+    private double falsePositiveRate;
+
+    private volatile Snapshot snapshot;
+
+    @PostConstruct
+    public void init() {
+        rebuild();
+    }
+
+    /**
+     * O(1): Bloom filter first, exact maps only on a (possibly false) positive.
+     */
+    public boolean isRevoked(JwtPrincipal principal) {
+        Snapshot s = snapshot;
+        if (principal.tokenId() != null) {
+            String key = tokenKey(principal.tokenId());
+            if (s.filter().mightContain(key) && s.revokedTokens().containsKey(principal.tokenId())) {
+                return true;
+            }
+        }
+        if (principal.userId() != null && s.filter().mightContain(userKey(principal.userId()))) {
+            Long revokedAt = s.revokedUsers().get(principal.userId());
+            // iat has second precision, so a token from the same second as the revocation is revoked too
+            return revokedAt != null && principal.issuedAtMillis() <= revokedAt;
+        }
+        return false;
+    }
+
+    /**
+     * Revoke a single token (logout)
+     */
+    public void revokeToken(JwtPrincipal principal, String reason) {
+        RevokedToken row = new RevokedToken();
+        row.setTokenId(principal.tokenId());
+        row.setUserId(principal.userId());
+        row.setReason(reason);
+        row.setRevokedAt(LocalDateTime.now());
+        row.setExpiresAt(toLocal(principal.expiresAtMillis()));
+        revokedTokenRepository.save(row);
+
+        Snapshot s = snapshot;
+        s.revokedTokens().put(principal.tokenId(), principal.expiresAtMillis());
+        s.filter().put(tokenKey(principal.tokenId()));
+        authenticationCache.evictUser(principal.email());
+        log.info("Revoked token {} of user {} ({})", principal.tokenId(), principal.userId(), reason);
+    }
+
+    /**
+     * Revoke every token of a user issued up to now (ban / delete)
+     */
+    public void revokeUser(Long userId, String email, String reason) {
+        long now = System.currentTimeMillis();
+        RevokedToken row = new RevokedToken();
+        row.setUserId(userId);
+        row.setReason(reason);
+        row.setRevokedAt(toLocal(now));
+        // Token dài nhất phát hành trước thời điểm này sẽ hết hạn sau jwt.expiration
+        row.setExpiresAt(toLocal(now + jwtUtil.getExpirationMillis()));
+        revokedTokenRepository.save(row);
+
+        Snapshot s = snapshot;
+        s.revokedUsers().merge(userId, now, Math::max);
+        s.filter().put(userKey(userId));
+        if (email != null) {
+            authenticationCache.evictUser(email);
+        }
+        log.info("Revoked all tokens of user {} ({})", userId, reason);
+    }
+
+    @Scheduled(fixedDelayString = "${security.revocation.rebuild-interval-ms:60000}",
+               initialDelayString = "${security.revocation.rebuild-interval-ms:60000}")
+    public void rebuild() {
+        List<RevokedToken> rows = revokedTokenRepository.findByExpiresAtAfter(LocalDateTime.now());
+        BloomFilter filter = BloomFilter.create(Math.max(expectedEntries, rows.size() * 2L), falsePositiveRate);
+        ConcurrentHashMap<String, Long> tokens = new ConcurrentHashMap<>();
+        ConcurrentHashMap<Long, Long> users = new ConcurrentHashMap<>();
+
+        for (RevokedToken row : rows) {
+            if (row.getTokenId() != null) {
+                tokens.put(row.getTokenId(), toMillis(row.getExpiresAt()));
+                filter.put(tokenKey(row.getTokenId()));
+            } else if (row.getUserId() != null) {
+                users.merge(row.getUserId(), toMillis(row.getRevokedAt()), Math::max);
+                filter.put(userKey(row.getUserId()));
+            }
+        }
+
+        // Revocations written between the query and the swap are carried over from the old snapshot
+        Snapshot previous = snapshot;
+        if (previous != null) {
+            long now = System.currentTimeMillis();
+            previous.revokedTokens().forEach((jti, exp) -> {
+                if (exp > now && tokens.putIfAbsent(jti, exp) == null) {
+                    filter.put(tokenKey(jti));
+                }
+            });
+            long userWindow = jwtUtil.getExpirationMillis();
+            previous.revokedUsers().forEach((userId, revokedAt) -> {
+                if (revokedAt + userWindow > now) {
+                    users.merge(userId, revokedAt, Math::max);
+                    filter.put(userKey(userId));
+                }
+            });
+        }
+        snapshot = new Snapshot(filter, tokens, users);
+        log.debug("Token revocation snapshot rebuilt: {} tokens, {} users", tokens.size(), users.size());
+    }
+
+    @Scheduled(cron = "${security.revocation.purge-cron:0 15 * * * *}")
+    public void purgeExpired() {
+        int deleted = revokedTokenRepository.deleteExpired(LocalDateTime.now());
+        if (deleted > 0) {
+            log.info("Purged {} expired revoked_tokens rows", deleted);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Snapshot s = snapshot;
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("revokedTokens", s.revokedTokens().size());
+        stats.put("revokedUsers", s.revokedUsers().size());
+        stats.put("bloomBits", s.filter().bitSize());
+        stats.put("bloomHashes", s.filter().hashCount());
+        return stats;
+    }
+
+    private static String tokenKey(String tokenId) {
+        return "t:" + tokenId;
+    }
+
+    private static String userKey(Long userId) {
+        return "u:" + userId;
+    }
+
+    private static LocalDateTime toLocal(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
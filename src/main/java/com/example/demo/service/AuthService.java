@@ -7,12 +7,13 @@ import com.example.demo.entity.Wallet;
 import com.example.demo.repository.CarbonWalletRepository;
 import com.example.demo.repository.UserRepository;
 import com.example.demo.repository.WalletRepository;
+import com.example.demo.exception.ServiceBusyException;
 import com.example.demo.security.JwtUtil;
+import com.example.demo.security.PasswordHashingService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
 import java.util.List;
@@ -26,18 +27,23 @@ public class AuthService {
     private final UserRepository userRepository;
     private final WalletRepository walletRepository;
     private final CarbonWalletRepository carbonWalletRepository;
-    private final PasswordEncoder passwordEncoder;
+    private final PasswordHashingService passwordHashingService;
+    private final TransactionTemplate transactionTemplate;
     private final JwtUtil jwtUtil;
 
     /**
-     * Đăng ký user mới và tự động tạo Wallet + CarbonWallet
+     * Đăng ký user mới và tự động tạo Wallet + CarbonWallet.
+     * Hash mật khẩu trên pool BCrypt riêng, trước khi mở transaction (không giữ connection DB lúc hash).
      */
-    @Transactional
     public User register(String email, String rawPassword, String fullName) {
         log.info("Registering new user: {}", email);
         
+        String hashed = passwordHashingService.encode(rawPassword);
+        return transactionTemplate.execute(status -> createUserWithWallets(email, hashed, fullName));
+    }
+
+    private User createUserWithWallets(String email, String hashed, String fullName) {
         // 1. Tạo user
-        String hashed = passwordEncoder.encode(rawPassword);
         User user = new User();
         user.setId(null);
         user.setEmail(email);
@@ -68,7 +74,25 @@ public class AuthService {
     }
 
     public boolean checkPassword(String rawPassword, String hashedPassword) {
-        return passwordEncoder.matches(rawPassword, hashedPassword);
+        return passwordHashingService.matches(rawPassword, hashedPassword);
+    }
+
+    /**
+     * Sau khi đăng nhập đúng: nếu hash được tạo với cost khác cấu hình hiện tại thì hash lại.
+     * Pool đang bận thì bỏ qua, lần đăng nhập sau sẽ thử lại (không làm fail login).
+     */
+    public void rehashIfNeeded(User user, String rawPassword) {
+        if (!passwordHashingService.needsRehash(user.getPassword())) {
+            return;
+        }
+        try {
+            String rehashed = passwordHashingService.encode(rawPassword);
+            user.setPassword(rehashed);
+            userRepository.save(user);
+            log.info("Rehashed password for user {} with the configured BCrypt cost", user.getEmail());
+        } catch (ServiceBusyException e) {
+            log.debug("Skipped password rehash for {}: {}", user.getEmail(), e.getMessage());
+        }
     }
 
     /**
@@ -0,0 +1,195 @@
+package com.example.demo.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Cache số dư carbon wallet theo user.
+ * - Mỗi entry giữ (số dư, version, thời điểm cache); version lấy từ 1 đồng hồ logic tăng dần
+ * - Credit/debit xoá entry khi transaction kết thúc (commit hay rollback), lần đọc sau nạp lại từ DB.
+ *   Không ghi số dư mới vào cache: callback sau commit của 2 transaction trên cùng ví có thể chạy
+ *   ngược thứ tự commit và để lại số dư cũ
+ * - Xoá entry để lại "tombstone" có version mới hơn, nên 1 lượt đọc DB bắt đầu trước khi ghi
+ *   sẽ không thể ghi đè số dư cũ vào cache
+ * - Entry hết hạn sau TTL; dọn định kỳ
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class BalanceCache {
+
+    private record Entry(BigDecimal balance, long version, long cachedAtMillis) {
+        boolean isTombstone() {
+            return balance == null;
+        }
+    }
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${wallet.balance-cache.ttl-seconds:30}")
+    private long ttlSeconds;
+
+    @Value("${wallet.balance-cache.max-entries:100000}")
+    private int maxEntries;
+
+    // Tỉ lệ lần hit được đối chiếu lại với DB để đo độ lệch (0 = tắt)
+    @Value("${wallet.balance-cache.verify-sample-rate:0.01}")
+    private double verifySampleRate;
+
+    private final ConcurrentHashMap<Long, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong clock = new AtomicLong();
+    // Lượt đọc DB bắt đầu trước mốc này không được nạp vào cache (sau khi clear toàn bộ)
+    private volatile long minValidTicket;
+
+    private Counter hits;
+    private Counter misses;
+    private Counter staleSamples;
+    private Counter verifiedSamples;
+    private DistributionSummary hitAge;
+
+    @PostConstruct
+    public void init() {
+        hits = Counter.builder("wallet.balance.cache.requests").tag("result", "hit").register(meterRegistry);
+        misses = Counter.builder("wallet.balance.cache.requests").tag("result", "miss").register(meterRegistry);
+        verifiedSamples = Counter.builder("wallet.balance.cache.verified")
+                .description("Cache hits re-checked against the database")
+                .register(meterRegistry);
+        staleSamples = Counter.builder("wallet.balance.cache.stale")
+                .description("Re-checked cache hits whose value differed from the database")
+                .register(meterRegistry);
+        hitAge = DistributionSummary.builder("wallet.balance.cache.age")
+                .description("Age of cached balances when served")
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+        Gauge.builder("wallet.balance.cache.hit.ratio", this, BalanceCache::hitRatio).register(meterRegistry);
+        Gauge.builder("wallet.balance.cache.size", entries, Map::size).register(meterRegistry);
+    }
+
+    /**
+     * Đọc số dư qua cache; miss hoặc hết hạn thì gọi loader (đọc DB) và nạp lại cache
+     */
+    public BigDecimal get(Long userId, Supplier<BigDecimal> loader) {
+        long now = System.currentTimeMillis();
+        Entry entry = entries.get(userId);
+        if (entry != null && !entry.isTombstone() && !isExpired(entry, now)) {
+            hits.increment();
+            hitAge.record(now - entry.cachedAtMillis());
+            if (verifySampleRate > 0 && ThreadLocalRandom.current().nextDouble() < verifySampleRate) {
+                verify(userId, entry, loader);
+            }
+            return entry.balance();
+        }
+
+        misses.increment();
+        long ticket = clock.get();
+        BigDecimal balance = loader.get();
+        putIfNotNewer(userId, balance, ticket);
+        return balance;
+    }
+
+    /**
+     * Xoá entry khi transaction hiện tại kết thúc, để lần đọc sau lấy số dư đã commit từ DB. Lượt
+     * đọc DB bắt đầu trước đó (thấy số dư cũ) không nạp được vào cache nhờ tombstone.
+     * Ngoài transaction thì xoá ngay.
+     */
+    public void invalidateOnCompletion(Long userId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    invalidate(userId);
+                }
+            });
+        } else {
+            invalidate(userId);
+        }
+    }
+
+    public void invalidate(Long userId) {
+        entries.put(userId, new Entry(null, clock.incrementAndGet(), System.currentTimeMillis()));
+    }
+
+    // Chỉ nạp giá trị đọc từ DB nếu không có lần ghi/xoá nào xảy ra sau khi bắt đầu đọc
+    private void putIfNotNewer(Long userId, BigDecimal balance, long ticket) {
+        ensureCapacity();
+        long cachedAt = System.currentTimeMillis();
+        if (ticket < minValidTicket) {
+            return;
+        }
+        entries.compute(userId, (id, existing) -> {
+            if (existing != null && existing.version() > ticket) {
+                return existing;
+            }
+            return new Entry(balance, ticket, cachedAt);
+        });
+    }
+
+    private void verify(Long userId, Entry entry, Supplier<BigDecimal> loader) {
+        verifiedSamples.increment();
+        BigDecimal actual = loader.get();
+        Entry current = entries.get(userId);
+        // Chỉ tính là lệch nếu entry không bị thay trong lúc đối chiếu
+        if (current == entry && actual.compareTo(entry.balance()) != 0) {
+            staleSamples.increment();
+            log.debug("Stale cached balance for user {}: cached={}, actual={}", userId, entry.balance(), actual);
+            invalidate(userId);
+        }
+    }
+
+    private boolean isExpired(Entry entry, long now) {
+        return now - entry.cachedAtMillis() > ttlSeconds * 1000;
+    }
+
+    private void ensureCapacity() {
+        if (entries.size() >= maxEntries) {
+            evictExpired();
+            if (entries.size() >= maxEntries) {
+                minValidTicket = clock.incrementAndGet();
+                entries.clear();
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${wallet.balance-cache.evict-interval-ms:60000}")
+    public void evictExpired() {
+        long now = System.currentTimeMillis();
+        entries.values().removeIf(e -> isExpired(e, now));
+    }
+
+    private double hitRatio() {
+        double h = hits.count();
+        double total = h + misses.count();
+        return total == 0 ? 0 : h / total;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("size", entries.size());
+        stats.put("hits", (long) hits.count());
+        stats.put("misses", (long) misses.count());
+        stats.put("hitRatio", hitRatio());
+        stats.put("verified", (long) verifiedSamples.count());
+        stats.put("stale", (long) staleSamples.count());
+        stats.put("meanAgeMs", hitAge.mean());
+        stats.put("ttlSeconds", ttlSeconds);
+        return stats;
+    }
+}
@@ -5,6 +5,7 @@ import com.example.demo.entity.CreditRequest;
 import com.example.demo.repository.CarbonCreditRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 
@@ -13,13 +14,16 @@ import java.util.List;
 public class CarbonCreditService {
 
     private final CarbonCreditRepository carbonCreditRepository;
+    private final CreditSerialRegistry serialRegistry;
 
-    // Tạo tín chỉ sau khi duyệt request
+    // Tạo tín chỉ sau khi duyệt request, kèm dải serial mới
+    @Transactional
     public CarbonCredit issueCredit(CreditRequest request) {
         CarbonCredit credit = new CarbonCredit();
         credit.setOwnerId(request.getOwnerId());
         credit.setAmount(request.getCarbonAmount());
         credit.setSource("Request#" + request.getId());
+        serialRegistry.issue(credit);
         return carbonCreditRepository.save(credit);
     }
 
@@ -31,16 +35,24 @@ public class CarbonCreditService {
         return carbonCreditRepository.findByListedTrue();
     }
 
+    @Transactional
     public CarbonCredit listCredit(Long creditId) {
         CarbonCredit credit = carbonCreditRepository.findById(creditId)
                 .orElseThrow(() -> new RuntimeException("Credit not found"));
+        if (!credit.isListed()) {
+            serialRegistry.list(credit);
+        }
         credit.setListed(true);
         return carbonCreditRepository.save(credit);
     }
 
+    @Transactional
     public CarbonCredit unlistCredit(Long creditId) {
         CarbonCredit credit = carbonCreditRepository.findById(creditId)
                 .orElseThrow(() -> new RuntimeException("Credit not found"));
+        if (credit.isListed()) {
+            serialRegistry.unlist(credit);
+        }
         credit.setListed(false);
         return carbonCreditRepository.save(credit);
     }
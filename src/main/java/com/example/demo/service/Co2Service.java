@@ -1,8 +1,14 @@
 package com.example.demo.service;
 
+import com.example.demo.dto.Co2BulkResponse;
 import com.example.demo.dto.Co2RequestDto;
 import com.example.demo.dto.Co2ResponseDto;
 
+import java.io.IOException;
+import java.io.InputStream;
+
 public interface Co2Service {
     Co2ResponseDto processEmission(Co2RequestDto request);
+
+    Co2BulkResponse processBulk(InputStream input) throws IOException;
 }
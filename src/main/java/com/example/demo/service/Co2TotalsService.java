@@ -0,0 +1,153 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.Co2Reduction;
+import com.example.demo.entity.Co2UserTotal;
+import com.example.demo.repository.Co2UserTotalRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityNotFoundException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Maintains co2_user_totals. {@link #apply} must run inside the transaction that inserts the
+ * co2_reduction rows, so totals and records commit or roll back together. Rebuilds recompute
+ * rows from co2_reduction one user per transaction.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class Co2TotalsService {
+
+    private final Co2UserTotalRepository totalRepository;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${co2.totals.rebuild-page-size:500}")
+    private int rebuildPageSize;
+
+    private TransactionTemplate transactionTemplate;
+    private final AtomicBoolean rebuilding = new AtomicBoolean(false);
+    private volatile LocalDateTime lastRebuildAt;
+    private volatile long lastRebuildUsers;
+
+    private static final class Delta {
+        long records;
+        long approved;
+        long rejected;
+        long pending;
+        BigDecimal reduction = BigDecimal.ZERO;
+        BigDecimal credits = BigDecimal.ZERO;
+        BigDecimal approvedCredits = BigDecimal.ZERO;
+        LocalDateTime lastRecordAt;
+    }
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Add newly inserted records to their users' totals (one upsert per user).
+     * Users are upserted in sorted order so concurrent chunks lock rows in the same order.
+     */
+    public void apply(List<Co2Reduction> records) {
+        Map<String, Delta> deltas = new TreeMap<>();
+        for (Co2Reduction record : records) {
+            Delta delta = deltas.computeIfAbsent(record.getUserId(), k -> new Delta());
+            delta.records++;
+            switch (record.getStatus()) {
+                case APPROVED -> {
+                    delta.approved++;
+                    delta.approvedCredits = delta.approvedCredits.add(nullToZero(record.getCredits()));
+                }
+                case REJECTED -> delta.rejected++;
+                case PENDING -> delta.pending++;
+            }
+            delta.reduction = delta.reduction.add(nullToZero(record.getReduction()));
+            delta.credits = delta.credits.add(nullToZero(record.getCredits()));
+            LocalDateTime createdAt = record.getCreatedAt() != null ? record.getCreatedAt() : LocalDateTime.now();
+            if (delta.lastRecordAt == null || createdAt.isAfter(delta.lastRecordAt)) {
+                delta.lastRecordAt = createdAt;
+            }
+        }
+        deltas.forEach((userId, d) -> totalRepository.addTotals(userId, d.records, d.approved, d.rejected,
+                d.pending, d.reduction, d.credits, d.approvedCredits, d.lastRecordAt));
+    }
+
+    public Co2UserTotal getSummary(String userId) {
+        return totalRepository.findById(userId)
+                .orElseThrow(() -> new EntityNotFoundException("No CO2 records for user: " + userId));
+    }
+
+    /**
+     * Recompute one user's totals from co2_reduction. INSERT ... SELECT takes shared locks on the
+     * scanned records, so inserts for this user wait until the rebuild commits.
+     */
+    public void rebuildUser(String userId) {
+        transactionTemplate.executeWithoutResult(status -> {
+            totalRepository.deleteByUserIdNative(userId);
+            totalRepository.insertRecomputed(userId);
+        });
+    }
+
+    public boolean isRebuilding() {
+        return rebuilding.get();
+    }
+
+    /**
+     * Backfill/repair job: rebuild every user with records, keyset-paged by user_id.
+     * Returns the number of users rebuilt, or -1 if a rebuild is already running.
+     */
+    public long rebuildAll() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            log.warn("CO2 totals rebuild already running, skipping");
+            return -1;
+        }
+        long started = System.currentTimeMillis();
+        long users = 0;
+        try {
+            String after = "";
+            while (true) {
+                List<String> page = totalRepository.findRecordUserIdsAfter(after, rebuildPageSize);
+                if (page.isEmpty()) {
+                    break;
+                }
+                for (String userId : page) {
+                    rebuildUser(userId);
+                    users++;
+                }
+                after = page.get(page.size() - 1);
+            }
+            lastRebuildAt = LocalDateTime.now();
+            lastRebuildUsers = users;
+            log.info("CO2 totals rebuilt for {} users in {} ms", users, System.currentTimeMillis() - started);
+            return users;
+        } finally {
+            rebuilding.set(false);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("rebuilding", rebuilding.get());
+        stats.put("lastRebuildAt", lastRebuildAt);
+        stats.put("lastRebuildUsers", lastRebuildUsers);
+        stats.put("trackedUsers", totalRepository.count());
+        return stats;
+    }
+
+    private static BigDecimal nullToZero(BigDecimal value) {
+        return value != null ? value : BigDecimal.ZERO;
+    }
+}
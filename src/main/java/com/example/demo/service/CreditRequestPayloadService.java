@@ -0,0 +1,150 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.CreditRequest;
+import com.example.demo.entity.CreditRequestPayload;
+import com.example.demo.repository.CreditRequestPayloadRepository;
+import com.example.demo.util.CompressedTextCodec;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Lưu / đọc journeyData và evidence của CreditRequest ở bảng credit_request_payload (nén Deflater).
+ * Danh sách, hàng đợi và luồng duyệt chỉ đọc credit_request; payload chỉ được giải nén khi xem
+ * chi tiết yêu cầu.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CreditRequestPayloadService {
+
+    private final CreditRequestPayloadRepository payloadRepository;
+    private final MeterRegistry meterRegistry;
+
+    private DistributionSummary journeyRawSize;
+    private DistributionSummary journeyStoredSize;
+    private DistributionSummary evidenceRawSize;
+    private DistributionSummary evidenceStoredSize;
+    private Timer compressTimer;
+    private Timer decompressTimer;
+
+    @PostConstruct
+    public void init() {
+        journeyRawSize = sizeSummary("journey", "raw");
+        journeyStoredSize = sizeSummary("journey", "stored");
+        evidenceRawSize = sizeSummary("evidence", "raw");
+        evidenceStoredSize = sizeSummary("evidence", "stored");
+        compressTimer = Timer.builder("credit_request.payload.codec").tag("op", "compress").register(meterRegistry);
+        decompressTimer = Timer.builder("credit_request.payload.codec").tag("op", "decompress").register(meterRegistry);
+    }
+
+    private DistributionSummary sizeSummary(String field, String form) {
+        return DistributionSummary.builder("credit_request.payload.size")
+                .baseUnit("bytes")
+                .tag("field", field)
+                .tag("form", form)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Nén và lưu payload của yêu cầu (request phải đã có id). Không có dữ liệu thì bỏ qua.
+     */
+    public void save(CreditRequest request) {
+        if (request.getJourneyData() == null && request.getEvidence() == null) {
+            return;
+        }
+        CreditRequestPayload payload = new CreditRequestPayload();
+        payload.setRequestId(request.getId());
+        compressTimer.record(() -> {
+            payload.setJourneyData(CompressedTextCodec.compress(request.getJourneyData()));
+            payload.setEvidence(CompressedTextCodec.compress(request.getEvidence()));
+        });
+        payload.setJourneyRawBytes(utf8Length(request.getJourneyData()));
+        payload.setJourneyStoredBytes(length(payload.getJourneyData()));
+        payload.setEvidenceRawBytes(utf8Length(request.getEvidence()));
+        payload.setEvidenceStoredBytes(length(payload.getEvidence()));
+        payloadRepository.save(payload);
+
+        journeyRawSize.record(payload.getJourneyRawBytes());
+        journeyStoredSize.record(payload.getJourneyStoredBytes());
+        evidenceRawSize.record(payload.getEvidenceRawBytes());
+        evidenceStoredSize.record(payload.getEvidenceStoredBytes());
+        log.debug("CreditRequest#{} payload: journey {} -> {} bytes, evidence {} -> {} bytes", request.getId(),
+                payload.getJourneyRawBytes(), payload.getJourneyStoredBytes(),
+                payload.getEvidenceRawBytes(), payload.getEvidenceStoredBytes());
+    }
+
+    /**
+     * Giải nén payload vào các field journeyData / evidence (transient) của request.
+     */
+    public CreditRequest attach(CreditRequest request) {
+        payloadRepository.findById(request.getId()).ifPresent(payload -> decompressTimer.record(() -> {
+            request.setJourneyData(CompressedTextCodec.decompress(payload.getJourneyData()));
+            request.setEvidence(CompressedTextCodec.decompress(payload.getEvidence()));
+        }));
+        return request;
+    }
+
+    /**
+     * Đọc journeyData dạng stream (giải nén dần), không tạo chuỗi đầy đủ trong bộ nhớ.
+     */
+    public Optional<Reader> openJourneyReader(Long requestId) {
+        return payloadRepository.findById(requestId)
+                .filter(payload -> payload.getJourneyData() != null)
+                .map(payload -> CompressedTextCodec.openReader(payload.getJourneyData()));
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        List<Object[]> rows = payloadRepository.sumSizes();
+        Object[] row = rows.isEmpty() ? new Object[]{0L, 0L, 0L, 0L, 0L} : rows.get(0);
+        long journeyRaw = ((Number) row[1]).longValue();
+        long journeyStored = ((Number) row[2]).longValue();
+        long evidenceRaw = ((Number) row[3]).longValue();
+        long evidenceStored = ((Number) row[4]).longValue();
+        stats.put("payloads", ((Number) row[0]).longValue());
+        stats.put("journeyRawBytes", journeyRaw);
+        stats.put("journeyStoredBytes", journeyStored);
+        stats.put("evidenceRawBytes", evidenceRaw);
+        stats.put("evidenceStoredBytes", evidenceStored);
+        long raw = journeyRaw + evidenceRaw;
+        long stored = journeyStored + evidenceStored;
+        stats.put("compressionRatio", stored == 0 ? 0.0 : (double) raw / stored);
+        return stats;
+    }
+
+    private static int utf8Length(String text) {
+        if (text == null) {
+            return 0;
+        }
+        int bytes = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                bytes += 1;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c)) {
+                bytes += 4;
+                i++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    private static int length(byte[] data) {
+        return data == null ? 0 : data.length;
+    }
+}
@@ -0,0 +1,900 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.CreditSerialStatus;
+import com.example.demo.entity.CarbonCredit;
+import com.example.demo.util.RoaringBitmap;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * Registry of credit serial numbers (1 serial = 1 kg CO2 = 0.001 credit).
+ * <p>
+ * Every issued credit gets a fresh serial range from the credit_serial generator row. Ownership is
+ * enforced in credit_serial_blocks: each block of serials has one owner and a state (HELD, LISTED,
+ * RETIRED). Transfers, listings and retirements lock the owner's blocks with SELECT ... FOR UPDATE
+ * and split them in the caller's transaction, so concurrent requests on any number of instances
+ * never move the same serials. Every mutation is also a row in credit_serial_changes.
+ * <p>
+ * The in-memory bitmaps (issued, listed, transferred, retired, per-owner holdings) are a read
+ * model built from that change log: loaded from the latest credit_serial_snapshots row plus the
+ * changes not folded into it, then kept current by {@link #sync()} after each local commit and on
+ * a timer for changes made by other instances. Changes are applied by id exactly once; ids that
+ * are still missing after settle-lag (rolled back, or a transaction open longer than that) are
+ * given up on. Snapshots record which changes they contain in credit_serial_changes.folded_into,
+ * so a change that commits after a higher id was folded is picked up by the next snapshot.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CreditSerialRegistry {
+
+    public static final long SERIALS_PER_CREDIT = 1000;
+    private static final String SERIAL_GENERATOR = "credit_serial";
+    private static final String SNAPSHOT_LOCK = "credit_serial_snapshot";
+    private static final int SNAPSHOT_FORMAT = 1;
+
+    public enum Op {
+        ISSUE, LIST, UNLIST, TRANSFER, RETIRE
+    }
+
+    public enum BlockState {
+        HELD, LISTED, RETIRED
+    }
+
+    /**
+     * Inclusive serial range.
+     */
+    public record SerialRange(long start, long end) {
+        public long count() {
+            return end - start + 1;
+        }
+    }
+
+    public record Issuance(Long ownerId, double amount) {
+    }
+
+    private record Change(Op op, long start, long end, Long fromOwner, Long toOwner) {
+    }
+
+    // 1 dòng credit_serial_blocks (đã khoá FOR UPDATE khi đọc để thay đổi)
+    private record Block(long start, long end, Long ownerId, BlockState state, Long listingId) {
+    }
+
+    private static final String BLOCK_SELECT =
+            "SELECT serial_start, serial_end, owner_id, state, listing_id FROM credit_serial_blocks ";
+
+    private static final RowMapper<Block> BLOCK_ROW = (rs, i) -> new Block(rs.getLong(1), rs.getLong(2),
+            rs.getObject(3, Long.class), BlockState.valueOf(rs.getString(4)), rs.getObject(5, Long.class));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final MeterRegistry meterRegistry;
+
+    // Change id chưa thấy sau khoảng này thì coi như đã rollback (transaction không mở lâu hơn)
+    @Value("${credit.serial.settle-lag-ms:60000}")
+    private long settleLagMillis;
+
+    @Value("${credit.serial.replay-page-size:5000}")
+    private int replayPageSize;
+
+    @Value("${credit.serial.snapshots-kept:2}")
+    private int snapshotsKept;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ReentrantLock syncLock = new ReentrantLock();
+    private final AtomicBoolean snapshotting = new AtomicBoolean(false);
+    private State state = new State();
+    // Mọi change id <= syncedUpTo đã được áp dụng (hoặc bỏ qua); appliedAfter: id lớn hơn đã áp dụng
+    private volatile long syncedUpTo;
+    private final Set<Long> appliedAfter = new HashSet<>();
+    private long highestApplied;
+    private TransactionTemplate transactionTemplate;
+    private TransactionTemplate readOnlyTx;
+    private volatile long lastSnapshotChangeId;
+    private volatile LocalDateTime lastSnapshotAt;
+
+    /**
+     * In-memory registry state; guarded by the registry lock.
+     */
+    private static final class State {
+        RoaringBitmap issued = new RoaringBitmap();
+        RoaringBitmap listed = new RoaringBitmap();
+        RoaringBitmap transferred = new RoaringBitmap();
+        RoaringBitmap retired = new RoaringBitmap();
+        final Map<Long, RoaringBitmap> holdings = new HashMap<>();
+
+        void apply(Change c) {
+            switch (c.op()) {
+                case ISSUE -> {
+                    issued.addRange(c.start(), c.end());
+                    holdings.computeIfAbsent(c.toOwner(), id -> new RoaringBitmap()).addRange(c.start(), c.end());
+                }
+                case LIST -> listed.addRange(c.start(), c.end());
+                case UNLIST -> listed.removeRange(c.start(), c.end());
+                case TRANSFER -> {
+                    release(c.fromOwner(), c);
+                    holdings.computeIfAbsent(c.toOwner(), id -> new RoaringBitmap()).addRange(c.start(), c.end());
+                    transferred.addRange(c.start(), c.end());
+                    listed.removeRange(c.start(), c.end());
+                }
+                case RETIRE -> {
+                    release(c.fromOwner(), c);
+                    retired.addRange(c.start(), c.end());
+                    listed.removeRange(c.start(), c.end());
+                }
+            }
+        }
+
+        private void release(Long owner, Change c) {
+            RoaringBitmap held = holdings.get(owner);
+            if (held != null) {
+                held.removeRange(c.start(), c.end());
+                if (held.isEmpty()) {
+                    holdings.remove(owner);
+                }
+            }
+        }
+
+        RoaringBitmap held(Long owner) {
+            RoaringBitmap held = holdings.get(owner);
+            return held != null ? held : new RoaringBitmap();
+        }
+
+        byte[] write() {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                out.writeInt(SNAPSHOT_FORMAT);
+                issued.write(out);
+                listed.write(out);
+                transferred.write(out);
+                retired.write(out);
+                out.writeInt(holdings.size());
+                for (Map.Entry<Long, RoaringBitmap> e : holdings.entrySet()) {
+                    out.writeLong(e.getKey());
+                    e.getValue().write(out);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return bytes.toByteArray();
+        }
+
+        static State read(byte[] payload) {
+            try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+                int format = in.readInt();
+                if (format != SNAPSHOT_FORMAT) {
+                    throw new IllegalStateException("Unsupported serial snapshot format " + format);
+                }
+                State s = new State();
+                s.issued = RoaringBitmap.read(in);
+                s.listed = RoaringBitmap.read(in);
+                s.transferred = RoaringBitmap.read(in);
+                s.retired = RoaringBitmap.read(in);
+                int owners = in.readInt();
+                for (int i = 0; i < owners; i++) {
+                    s.holdings.put(in.readLong(), RoaringBitmap.read(in));
+                }
+                return s;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    @PostConstruct
+    public void load() {
+        long started = System.currentTimeMillis();
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        readOnlyTx = new TransactionTemplate(transactionManager);
+        readOnlyTx.setReadOnly(true);
+        readOnlyTx.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+
+        // Snapshot, replay và mốc sync đọc trong cùng 1 consistent read
+        int[] replayed = new int[1];
+        Snapshot snapshot = readOnlyTx.execute(status -> {
+            Snapshot latest = latestSnapshot();
+            State loaded = latest != null ? State.read(latest.payload()) : new State();
+            replayed[0] = replay(loaded, "(folded_into IS NULL OR folded_into > ?)", latest != null ? latest.id() : 0);
+            Long settled = jdbcTemplate.queryForObject(
+                    "SELECT MAX(id) FROM credit_serial_changes WHERE created_at < ?", Long.class, settleCutoff());
+            long upTo = settled != null ? settled : 0;
+            List<Long> newer = jdbcTemplate.queryForList(
+                    "SELECT id FROM credit_serial_changes WHERE id > ?", Long.class, upTo);
+            lock.writeLock().lock();
+            try {
+                state = loaded;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            syncLock.lock();
+            try {
+                syncedUpTo = upTo;
+                appliedAfter.clear();
+                appliedAfter.addAll(newer);
+                highestApplied = newer.stream().mapToLong(Long::longValue).max().orElse(upTo);
+            } finally {
+                syncLock.unlock();
+            }
+            return latest;
+        });
+        lastSnapshotChangeId = snapshot != null ? snapshot.lastChangeId() : 0;
+        lastSnapshotAt = snapshot != null ? snapshot.createdAt() : null;
+        seedBlocks();
+        meterRegistry.gauge("credit.serial.issued", this, r -> r.count(s -> s.issued));
+        meterRegistry.gauge("credit.serial.retired", this, r -> r.count(s -> s.retired));
+        log.info("Credit serial registry loaded: snapshot up to change {}, {} changes replayed, {} serials issued in {} ms",
+                lastSnapshotChangeId, replayed[0], count(s -> s.issued), System.currentTimeMillis() - started);
+    }
+
+    /**
+     * Lần đầu chạy sau V40: credit_serial_blocks còn trống thì dựng từ state vừa replay. Instance khác
+     * đã seed trước (trùng khoá) thì bỏ qua.
+     */
+    private void seedBlocks() {
+        if (!jdbcTemplate.queryForList("SELECT serial_start FROM credit_serial_blocks LIMIT 1", Long.class).isEmpty()) {
+            return;
+        }
+        List<Block> blocks = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            if (state.issued.isEmpty()) {
+                return;
+            }
+            for (Map.Entry<Long, RoaringBitmap> e : state.holdings.entrySet()) {
+                for (long[] r : e.getValue().ranges(0, Long.MAX_VALUE, Integer.MAX_VALUE)) {
+                    // Tách dải đang giữ theo phần đang niêm yết
+                    long cursor = r[0];
+                    while (cursor <= r[1]) {
+                        boolean listed = state.listed.contains(cursor);
+                        long next = listed ? state.listed.nextAbsentValue(cursor) : state.listed.nextValue(cursor);
+                        long end = next < 0 || next > r[1] ? r[1] : next - 1;
+                        blocks.add(new Block(cursor, end, e.getKey(), listed ? BlockState.LISTED : BlockState.HELD, null));
+                        cursor = end + 1;
+                    }
+                }
+            }
+            for (long[] r : state.retired.ranges(0, Long.MAX_VALUE, Integer.MAX_VALUE)) {
+                blocks.add(new Block(r[0], r[1], null, BlockState.RETIRED, null));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> insertBlocks(blocks));
+            log.info("Seeded {} credit serial blocks from the change log", blocks.size());
+        } catch (DuplicateKeyException e) {
+            log.info("Credit serial blocks already seeded by another instance");
+        }
+    }
+
+    public static long serialCount(BigDecimal credits) {
+        return credits.multiply(BigDecimal.valueOf(SERIALS_PER_CREDIT)).setScale(0, RoundingMode.DOWN).longValueExact();
+    }
+
+    public static long serialCount(double credits) {
+        return serialCount(BigDecimal.valueOf(credits));
+    }
+
+    /**
+     * Cấp dải serial cho credit mới (gán serialStart / serialEnd). Credit dưới 1 serial (1 kg) thì
+     * không có serial.
+     */
+    @Transactional
+    public void issue(CarbonCredit credit) {
+        SerialRange range = issueAll(List.of(new Issuance(credit.getOwnerId(), credit.getAmount()))).get(0);
+        if (range != null) {
+            credit.setSerialStart(range.start());
+            credit.setSerialEnd(range.end());
+        }
+    }
+
+    /**
+     * Cấp dải serial liên tiếp cho nhiều credit bằng 1 lần cấp phát; phần tử null = không có serial.
+     * Dải trùng với serial đã phát hành là lỗi nghiêm trọng: khoá chính của credit_serial_blocks
+     * ném exception để rollback.
+     */
+    @Transactional
+    public List<SerialRange> issueAll(List<Issuance> issuances) {
+        long total = 0;
+        for (Issuance issuance : issuances) {
+            total += serialCount(issuance.amount());
+        }
+        List<SerialRange> ranges = new ArrayList<>(issuances.size());
+        if (total == 0) {
+            issuances.forEach(i -> ranges.add(null));
+            return ranges;
+        }
+        long cursor = allocate(total);
+        List<Change> changes = new ArrayList<>();
+        List<Block> blocks = new ArrayList<>();
+        for (Issuance issuance : issuances) {
+            long count = serialCount(issuance.amount());
+            if (count == 0) {
+                ranges.add(null);
+                continue;
+            }
+            SerialRange range = new SerialRange(cursor, cursor + count - 1);
+            cursor += count;
+            ranges.add(range);
+            changes.add(new Change(Op.ISSUE, range.start(), range.end(), null, issuance.ownerId()));
+            blocks.add(new Block(range.start(), range.end(), issuance.ownerId(), BlockState.HELD, null));
+        }
+        insertBlocks(blocks);
+        record(changes);
+        return ranges;
+    }
+
+    /**
+     * Niêm yết toàn bộ serial của credit; serial phải còn thuộc owner, chưa niêm yết và chưa retire.
+     */
+    @Transactional
+    public void list(CarbonCredit credit) {
+        if (credit.getSerialStart() == null) {
+            return;
+        }
+        List<SerialRange> moved = moveRange(credit.getOwnerId(), credit.getSerialStart(), credit.getSerialEnd(),
+                BlockState.HELD, BlockState.LISTED, true);
+        if (moved == null) {
+            throw new IllegalArgumentException("Credit #" + credit.getId() + " serials are no longer held by its owner");
+        }
+        record(changes(Op.LIST, moved, null, null));
+    }
+
+    /**
+     * Bỏ niêm yết phần serial của credit còn đang niêm yết bởi owner.
+     */
+    @Transactional
+    public void unlist(CarbonCredit credit) {
+        if (credit.getSerialStart() == null) {
+            return;
+        }
+        List<SerialRange> moved = moveRange(credit.getOwnerId(), credit.getSerialStart(), credit.getSerialEnd(),
+                BlockState.LISTED, BlockState.HELD, false);
+        record(changes(Op.UNLIST, moved, null, null));
+    }
+
+    /**
+     * Giữ serial (nhỏ nhất trước) cho listing trên marketplace: chuyển sang LISTED gắn listingId, tới
+     * khi bán (transferListing) hoặc huỷ (releaseListing). Số dư ví không có serial tương ứng (mua trước
+     * khi có serial, admin điều chỉnh, nạp qua WalletController) thì giữ được bao nhiêu giữ bấy nhiêu
+     * (ghi log cảnh báo) như transfer(); ví là nơi kiểm tra số dư.
+     */
+    @Transactional
+    public List<SerialRange> reserveForListing(Long sellerId, Long listingId, BigDecimal credits) {
+        long needed = serialCount(credits);
+        List<SerialRange> picked = take(sellerId, needed, false, sellerId, BlockState.LISTED, listingId);
+        long reserved = picked.stream().mapToLong(SerialRange::count).sum();
+        if (reserved < needed) {
+            log.warn("Only {} of {} serials held by user {} for listing #{}", reserved, needed, sellerId, listingId);
+        }
+        record(changes(Op.LIST, picked, null, null));
+        return picked;
+    }
+
+    /**
+     * Trả serial của listing (huỷ / xoá / sửa lượng) về HELD cho người bán.
+     */
+    @Transactional
+    public List<SerialRange> releaseListing(Long listingId) {
+        List<SerialRange> released = new ArrayList<>();
+        for (Block b : lockListing(listingId)) {
+            move(b, b.start(), b.end(), b.ownerId(), BlockState.HELD, null);
+            released.add(new SerialRange(b.start(), b.end()));
+        }
+        record(changes(Op.UNLIST, released, null, null));
+        return released;
+    }
+
+    /**
+     * Bán listing: đúng các serial listing đang giữ chuyển từ seller sang buyer. Phần listing không giữ
+     * được serial (listing tạo trước khi có giữ serial, hoặc số dư không có serial) lấy thêm serial HELD
+     * nhỏ nhất của seller như transfer().
+     */
+    @Transactional
+    public List<SerialRange> transferListing(Long listingId, Long sellerId, Long buyerId, BigDecimal credits) {
+        List<SerialRange> moved = new ArrayList<>();
+        long reserved = 0;
+        for (Block b : lockListing(listingId)) {
+            if (!sellerId.equals(b.ownerId())) {
+                throw new IllegalStateException("Listing #" + listingId + " holds serials of user " + b.ownerId()
+                        + ", not of seller " + sellerId);
+            }
+            move(b, b.start(), b.end(), buyerId, BlockState.HELD, null);
+            moved.add(new SerialRange(b.start(), b.end()));
+            reserved += b.end() - b.start() + 1;
+        }
+        record(changes(Op.TRANSFER, moved, sellerId, buyerId));
+        long missing = serialCount(credits) - reserved;
+        if (missing > 0) {
+            moved.addAll(transferSerials(sellerId, buyerId, missing));
+        }
+        return moved;
+    }
+
+    /**
+     * Chuyển serial HELD (nhỏ nhất trước) từ fromOwner sang toOwner cho lượng tín chỉ đã chuyển trong
+     * ví. Số dư cũ chưa có serial thì chuyển được bao nhiêu chuyển bấy nhiêu (ghi log cảnh báo).
+     */
+    @Transactional
+    public List<SerialRange> transfer(Long fromOwner, Long toOwner, BigDecimal credits) {
+        return transferSerials(fromOwner, toOwner, serialCount(credits));
+    }
+
+    private List<SerialRange> transferSerials(Long fromOwner, Long toOwner, long needed) {
+        List<SerialRange> picked = take(fromOwner, needed, false, toOwner, BlockState.HELD, null);
+        long moved = picked.stream().mapToLong(SerialRange::count).sum();
+        if (moved < needed) {
+            log.warn("Only {} of {} serials held by user {} for transfer to user {}", moved, needed, fromOwner, toOwner);
+        }
+        record(changes(Op.TRANSFER, picked, fromOwner, toOwner));
+        return picked;
+    }
+
+    /**
+     * Retire serial HELD của owner (serial đang niêm yết không được chọn). Không đủ serial thì ném
+     * IllegalArgumentException, không retire phần nào.
+     */
+    @Transactional
+    public List<SerialRange> retire(Long owner, BigDecimal credits) {
+        long needed = serialCount(credits);
+        if (needed <= 0) {
+            throw new IllegalArgumentException("Amount must be at least 0.001 credit");
+        }
+        List<SerialRange> picked = take(owner, needed, true, owner, BlockState.RETIRED, null);
+        record(changes(Op.RETIRE, picked, owner, null));
+        return picked;
+    }
+
+    /**
+     * Khoá các block HELD của owner (serial nhỏ nhất trước) tới hết transaction và chuyển needed serial
+     * đầu tiên sang toOwner / toState. Instance khác chọn cùng owner phải chờ transaction này kết thúc.
+     */
+    private List<SerialRange> take(Long owner, long needed, boolean requireAll,
+                                   Long toOwner, BlockState toState, Long listingId) {
+        List<SerialRange> taken = new ArrayList<>();
+        if (needed <= 0) {
+            return taken;
+        }
+        List<Block> blocks = jdbcTemplate.query(BLOCK_SELECT
+                + "WHERE owner_id = ? AND state = 'HELD' ORDER BY serial_start FOR UPDATE", BLOCK_ROW, owner);
+        long available = blocks.stream().mapToLong(b -> b.end() - b.start() + 1).sum();
+        if (available < needed && requireAll) {
+            throw new IllegalArgumentException("User " + owner + " holds only " + available
+                    + " available serials, " + needed + " needed");
+        }
+        long remaining = needed;
+        for (Block b : blocks) {
+            if (remaining == 0) {
+                break;
+            }
+            long end = Math.min(b.end(), b.start() + remaining - 1);
+            move(b, b.start(), end, toOwner, toState, listingId);
+            remaining -= end - b.start() + 1;
+            // Block liền nhau gộp thành 1 dải
+            SerialRange last = taken.isEmpty() ? null : taken.get(taken.size() - 1);
+            if (last != null && last.end() + 1 == b.start()) {
+                taken.set(taken.size() - 1, new SerialRange(last.start(), end));
+            } else {
+                taken.add(new SerialRange(b.start(), end));
+            }
+        }
+        return taken;
+    }
+
+    /**
+     * Chuyển phần [start, end] của owner từ state from sang to (listing_id null), khoá các block giao
+     * với dải. requireAll: cả dải phải đang ở state from, không thì trả về null và không đổi gì.
+     */
+    private List<SerialRange> moveRange(Long owner, long start, long end, BlockState from, BlockState to,
+                                        boolean requireAll) {
+        List<Block> blocks = jdbcTemplate.query(BLOCK_SELECT
+                        + "WHERE owner_id = ? AND state = ? AND listing_id IS NULL AND serial_start <= ? AND serial_end >= ? "
+                        + "ORDER BY serial_start FOR UPDATE",
+                BLOCK_ROW, owner, from.name(), end, start);
+        if (requireAll) {
+            long cursor = start;
+            for (Block b : blocks) {
+                if (b.start() > cursor) {
+                    return null;
+                }
+                cursor = b.end() + 1;
+            }
+            if (cursor <= end) {
+                return null;
+            }
+        }
+        List<SerialRange> moved = new ArrayList<>(blocks.size());
+        for (Block b : blocks) {
+            long lo = Math.max(b.start(), start);
+            long hi = Math.min(b.end(), end);
+            move(b, lo, hi, owner, to, null);
+            moved.add(new SerialRange(lo, hi));
+        }
+        return moved;
+    }
+
+    private List<Block> lockListing(Long listingId) {
+        return jdbcTemplate.query(BLOCK_SELECT
+                + "WHERE listing_id = ? AND state = 'LISTED' ORDER BY serial_start FOR UPDATE", BLOCK_ROW, listingId);
+    }
+
+    /**
+     * Chuyển phần [start, end] của block b (đã khoá) sang owner / state / listing mới, tách phần còn
+     * lại thành block riêng. UPDATE có điều kiện trên giá trị đã đọc: lệch thì ném exception để rollback.
+     */
+    private void move(Block b, long start, long end, Long owner, BlockState to, Long listingId) {
+        int updated;
+        if (start == b.start()) {
+            updated = jdbcTemplate.update(
+                    "UPDATE credit_serial_blocks SET serial_end = ?, owner_id = ?, state = ?, listing_id = ? "
+                            + "WHERE serial_start = ? AND serial_end = ? AND owner_id = ? AND state = ?",
+                    end, owner, to.name(), listingId, b.start(), b.end(), b.ownerId(), b.state().name());
+        } else {
+            updated = jdbcTemplate.update(
+                    "UPDATE credit_serial_blocks SET serial_end = ? "
+                            + "WHERE serial_start = ? AND serial_end = ? AND owner_id = ? AND state = ?",
+                    start - 1, b.start(), b.end(), b.ownerId(), b.state().name());
+        }
+        if (updated != 1) {
+            throw new IllegalStateException("Serial block " + b.start() + "-" + b.end() + " changed concurrently");
+        }
+        List<Block> split = new ArrayList<>(2);
+        if (start > b.start()) {
+            split.add(new Block(start, end, owner, to, listingId));
+        }
+        if (end < b.end()) {
+            split.add(new Block(end + 1, b.end(), b.ownerId(), b.state(), b.listingId()));
+        }
+        insertBlocks(split);
+    }
+
+    private void insertBlocks(List<Block> blocks) {
+        if (blocks.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO credit_serial_blocks (serial_start, serial_end, owner_id, state, listing_id) VALUES (?, ?, ?, ?, ?)",
+                blocks, blocks.size(), (ps, b) -> {
+                    ps.setLong(1, b.start());
+                    ps.setLong(2, b.end());
+                    ps.setObject(3, b.ownerId());
+                    ps.setString(4, b.state().name());
+                    ps.setObject(5, b.listingId());
+                });
+    }
+
+    private static List<Change> changes(Op op, List<SerialRange> ranges, Long fromOwner, Long toOwner) {
+        return ranges.stream()
+                .map(r -> new Change(op, r.start(), r.end(), fromOwner, toOwner))
+                .toList();
+    }
+
+    // Ghi log thay đổi trong transaction hiện tại; read model cập nhật qua sync() sau khi commit
+    private void record(List<Change> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        insert(changes);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    sync(true);
+                }
+            });
+        } else {
+            sync(true);
+        }
+    }
+
+    private void insert(List<Change> changes) {
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO credit_serial_changes (op, serial_start, serial_end, from_owner, to_owner) VALUES (?, ?, ?, ?, ?)",
+                changes, changes.size(), (ps, c) -> {
+                    ps.setString(1, c.op().name());
+                    ps.setLong(2, c.start());
+                    ps.setLong(3, c.end());
+                    ps.setObject(4, c.fromOwner());
+                    ps.setObject(5, c.toOwner());
+                });
+    }
+
+    /**
+     * Cấp phát count serial liên tiếp, trả về serial đầu. Khoá dòng generator tới hết transaction.
+     */
+    private long allocate(long count) {
+        int updated = jdbcTemplate.update(
+                "UPDATE id_generators SET next_val = LAST_INSERT_ID(next_val + ?) WHERE gen_name = ?",
+                count, SERIAL_GENERATOR);
+        if (updated != 1) {
+            throw new IllegalStateException("Missing id generator " + SERIAL_GENERATOR);
+        }
+        Long next = jdbcTemplate.queryForObject("SELECT LAST_INSERT_ID()", Long.class);
+        return next - count;
+    }
+
+    /**
+     * Áp vào read model các change chưa áp dụng (của instance này hoặc instance khác), theo id, quét
+     * lại cả cửa sổ settle-lag để bắt các transaction commit muộn với id nhỏ hơn. Chạy định kỳ.
+     */
+    @Scheduled(fixedDelayString = "${credit.serial.sync-interval-ms:5000}",
+               initialDelayString = "${credit.serial.sync-interval-ms:5000}")
+    public void sync() {
+        sync(false);
+    }
+
+    // newestOnly (sau commit cục bộ): chỉ đọc id lớn hơn id lớn nhất đã áp dụng, không dời mốc syncedUpTo
+    private void sync(boolean newestOnly) {
+        syncLock.lock();
+        try {
+            Timestamp cutoff = settleCutoff();
+            long settled = syncedUpTo;
+            long cursor = newestOnly ? highestApplied : syncedUpTo;
+            while (true) {
+                List<ChangeRow> page = jdbcTemplate.query(
+                        "SELECT id, op, serial_start, serial_end, from_owner, to_owner, created_at FROM credit_serial_changes "
+                                + "WHERE id > ? ORDER BY id LIMIT ?",
+                        CHANGE_ROW, cursor, replayPageSize);
+                List<Change> fresh = new ArrayList<>();
+                for (ChangeRow row : page) {
+                    if (appliedAfter.add(row.id())) {
+                        fresh.add(row.change());
+                        highestApplied = Math.max(highestApplied, row.id());
+                    }
+                    if (row.createdAt().before(cutoff)) {
+                        settled = row.id();
+                    }
+                    cursor = row.id();
+                }
+                if (!fresh.isEmpty()) {
+                    lock.writeLock().lock();
+                    try {
+                        fresh.forEach(state::apply);
+                    } finally {
+                        lock.writeLock().unlock();
+                    }
+                }
+                if (page.size() < replayPageSize) {
+                    break;
+                }
+            }
+            if (!newestOnly) {
+                long upTo = settled;
+                appliedAfter.removeIf(id -> id <= upTo);
+                syncedUpTo = upTo;
+            }
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    private Timestamp settleCutoff() {
+        return new Timestamp(System.currentTimeMillis() - settleLagMillis);
+    }
+
+    public CreditSerialStatus getStatus(long start, long end) {
+        if (start < 1 || end < start) {
+            throw new IllegalArgumentException("Invalid serial range " + start + "-" + end);
+        }
+        lock.readLock().lock();
+        try {
+            long total = end - start + 1;
+            long issued = state.issued.cardinality(start, end);
+            long listed = state.listed.cardinality(start, end);
+            long transferred = state.transferred.cardinality(start, end);
+            long retired = state.retired.cardinality(start, end);
+            String label;
+            if (issued == 0) {
+                label = "UNISSUED";
+            } else if (issued < total) {
+                label = "MIXED";
+            } else if (retired == total) {
+                label = "RETIRED";
+            } else if (listed == total) {
+                label = "LISTED";
+            } else if (retired == 0 && listed == 0) {
+                label = transferred == total ? "TRANSFERRED" : transferred == 0 ? "ISSUED" : "MIXED";
+            } else {
+                label = "MIXED";
+            }
+            return new CreditSerialStatus(start, end, total, issued, listed, transferred, retired, label);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Dải serial owner đang giữ (tối đa limit dải) và tổng số serial.
+     */
+    public Map<String, Object> getHoldings(Long ownerId, int limit) {
+        lock.readLock().lock();
+        try {
+            RoaringBitmap held = state.held(ownerId);
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("ownerId", ownerId);
+            result.put("serials", held.cardinality());
+            result.put("ranges", held.ranges(0, Long.MAX_VALUE, Math.max(1, Math.min(limit, 1000))).stream()
+                    .map(r -> new SerialRange(r[0], r[1]))
+                    .toList());
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        lock.readLock().lock();
+        try {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("issued", state.issued.cardinality());
+            stats.put("listed", state.listed.cardinality());
+            stats.put("transferred", state.transferred.cardinality());
+            stats.put("retired", state.retired.cardinality());
+            stats.put("owners", state.holdings.size());
+            long bytes = state.issued.sizeInBytes() + state.listed.sizeInBytes()
+                    + state.transferred.sizeInBytes() + state.retired.sizeInBytes();
+            for (RoaringBitmap held : state.holdings.values()) {
+                bytes += held.sizeInBytes();
+            }
+            stats.put("bitmapBytes", bytes);
+            stats.put("syncedUpToChangeId", syncedUpTo);
+            stats.put("lastSnapshotChangeId", lastSnapshotChangeId);
+            stats.put("lastSnapshotAt", lastSnapshotAt);
+            return stats;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private long count(Function<State, RoaringBitmap> bitmap) {
+        lock.readLock().lock();
+        try {
+            return bitmap.apply(state).cardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean isSnapshotting() {
+        return snapshotting.get();
+    }
+
+    /**
+     * Ghi snapshot mới = snapshot trước + mọi change chưa fold, đọc từ DB. Các change được đánh dấu
+     * folded_into trong cùng transaction với payload, nên change commit muộn (id nhỏ hơn change đã
+     * fold) vẫn được fold ở lần sau. Giữ lại snapshots-kept bản mới nhất; log thay đổi giữ nguyên.
+     */
+    @Scheduled(fixedDelayString = "${credit.serial.snapshot-interval-ms:600000}",
+               initialDelayString = "${credit.serial.snapshot-interval-ms:600000}")
+    public void snapshot() {
+        if (!snapshotting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                // Khoá dòng lock: các instance ghi snapshot lần lượt, mỗi bản dựng trên bản trước
+                jdbcTemplate.update("UPDATE id_generators SET next_val = next_val + 1 WHERE gen_name = ?", SNAPSHOT_LOCK);
+                List<Long> pending = jdbcTemplate.queryForList(
+                        "SELECT id FROM credit_serial_changes WHERE folded_into IS NULL ORDER BY id", Long.class);
+                if (pending.isEmpty()) {
+                    return;
+                }
+                Snapshot previous = latestSnapshot();
+                LocalDateTime now = LocalDateTime.now();
+                KeyHolder key = new GeneratedKeyHolder();
+                jdbcTemplate.update(con -> {
+                    PreparedStatement ps = con.prepareStatement(
+                            "INSERT INTO credit_serial_snapshots (last_change_id, payload, payload_bytes, created_at) "
+                                    + "VALUES (0, ?, 0, ?)", new String[]{"id"});
+                    ps.setBytes(1, new byte[0]);
+                    ps.setTimestamp(2, Timestamp.valueOf(now));
+                    return ps;
+                }, key);
+                long snapshotId = key.getKey().longValue();
+                // Theo khoá chính: không khoá khoảng trên index folded_into, không chặn các INSERT mới
+                jdbcTemplate.batchUpdate(
+                        "UPDATE credit_serial_changes SET folded_into = ? WHERE id = ? AND folded_into IS NULL",
+                        pending, replayPageSize, (ps, id) -> {
+                            ps.setLong(1, snapshotId);
+                            ps.setLong(2, id);
+                        });
+
+                State base = previous != null ? State.read(previous.payload()) : new State();
+                int folded = replay(base, "folded_into = ?", snapshotId);
+                Long upTo = jdbcTemplate.queryForObject(
+                        "SELECT MAX(id) FROM credit_serial_changes WHERE folded_into <= ?", Long.class, snapshotId);
+                byte[] payload = base.write();
+                jdbcTemplate.update(
+                        "UPDATE credit_serial_snapshots SET last_change_id = ?, payload = ?, payload_bytes = ? WHERE id = ?",
+                        upTo, payload, payload.length, snapshotId);
+                jdbcTemplate.update(
+                        "DELETE FROM credit_serial_snapshots WHERE id NOT IN (SELECT id FROM "
+                                + "(SELECT id FROM credit_serial_snapshots ORDER BY id DESC LIMIT ?) keep)",
+                        Math.max(1, snapshotsKept));
+                lastSnapshotChangeId = upTo;
+                lastSnapshotAt = now;
+                log.info("Credit serial snapshot {} written up to change {} ({} changes folded, {} bytes)",
+                        snapshotId, upTo, folded, payload.length);
+            });
+        } finally {
+            snapshotting.set(false);
+        }
+    }
+
+    private record Snapshot(long id, long lastChangeId, byte[] payload, LocalDateTime createdAt) {
+    }
+
+    private Snapshot latestSnapshot() {
+        List<Snapshot> rows = jdbcTemplate.query(
+                "SELECT id, last_change_id, payload, created_at FROM credit_serial_snapshots ORDER BY id DESC LIMIT 1",
+                (rs, i) -> new Snapshot(rs.getLong(1), rs.getLong(2), rs.getBytes(3), rs.getTimestamp(4).toLocalDateTime()));
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    private record ChangeRow(long id, Change change, Timestamp createdAt) {
+    }
+
+    private static final RowMapper<ChangeRow> CHANGE_ROW = (rs, i) -> new ChangeRow(rs.getLong(1),
+            new Change(Op.valueOf(rs.getString(2)), rs.getLong(3), rs.getLong(4),
+                    rs.getObject(5, Long.class), rs.getObject(6, Long.class)),
+            rs.getTimestamp(7));
+
+    // Áp các change thoả filter (1 tham số) theo thứ tự id, đọc theo trang
+    private int replay(State target, String filter, long filterArg) {
+        int total = 0;
+        long cursor = 0;
+        while (true) {
+            List<ChangeRow> page = jdbcTemplate.query(
+                    "SELECT id, op, serial_start, serial_end, from_owner, to_owner, created_at FROM credit_serial_changes "
+                            + "WHERE " + filter + " AND id > ? ORDER BY id LIMIT ?",
+                    CHANGE_ROW, filterArg, cursor, replayPageSize);
+            for (ChangeRow row : page) {
+                target.apply(row.change());
+                cursor = row.id();
+            }
+            total += page.size();
+            if (page.size() < replayPageSize) {
+                return total;
+            }
+        }
+    }
+}
@@ -1,38 +1,83 @@
 package com.example.demo.service;
 
+import com.example.demo.dto.CreditBatchApprovalResponse;
+import com.example.demo.dto.CreditBatchItemResult;
+import com.example.demo.dto.CreditRequestSubmission;
 import com.example.demo.entity.CreditRequest;
+import com.example.demo.repository.CarbonWalletRepository;
 import com.example.demo.repository.CreditRequestRepository;
+import com.example.demo.repository.UserRepository;
+import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 
 @Service
 @RequiredArgsConstructor
+@Slf4j
 public class CreditService {
 
     private final CreditRequestRepository creditRequestRepository;
     private final CarbonCreditService carbonCreditService;
     private final WalletService walletService; // connect sang ví
+    private final UserRepository userRepository;
+    private final CarbonWalletRepository carbonWalletRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final CreditRequestPayloadService payloadService;
+    private final DuplicateJourneyService duplicateJourneyService;
+    private final CreditSerialRegistry serialRegistry;
 
-    // EV Owner gửi yêu cầu
-    public CreditRequest submitRequest(CreditRequest request) {
+    @Value("${credit.batch.max-size:1000}")
+    private int maxBatchSize;
+
+    // EV Owner gửi yêu cầu; entity tạo mới từ DTO nên client không gán được status / lease / verifier
+    @Transactional
+    public CreditRequest submitRequest(CreditRequestSubmission submission) {
+        CreditRequest request = new CreditRequest();
+        request.setOwnerId(submission.getOwnerId());
+        request.setCarbonAmount(submission.getCarbonAmount());
+        request.setJourneyData(submission.getJourneyData());
+        request.setEvidence(submission.getEvidence());
+        request.setNotes(submission.getNotes());
         request.setStatus("PENDING");
-        return creditRequestRepository.save(request);
+        CreditRequest saved = creditRequestRepository.save(request);
+        // journeyData / evidence là transient, lưu nén ở bảng payload
+        saved.setJourneyData(request.getJourneyData());
+        saved.setEvidence(request.getEvidence());
+        payloadService.save(saved);
+        // Gắn cờ nếu hành trình trùng với yêu cầu đã nộp
+        duplicateJourneyService.check(saved);
+        return saved;
     }
 
     // CVA duyệt yêu cầu
     @Transactional
-    public CreditRequest approveRequest(Long requestId) {
-        CreditRequest request = creditRequestRepository.findById(requestId)
-                .orElseThrow(() -> new RuntimeException("Request not found"));
-
-        if (!"PENDING".equals(request.getStatus())) {
-            throw new IllegalStateException("Request already processed");
-        }
+    public CreditRequest approveRequest(Long requestId, String verifierEmail) {
+        Long verifierId = resolveUserId(verifierEmail);
+        CreditRequest request = lockForDecision(requestId, verifierId);
 
         request.setStatus("APPROVED");
+        request.setVerifierId(verifierId);
+        request.setClaimedBy(null);
+        request.setLeaseExpiresAt(null);
         creditRequestRepository.save(request);
 
         // Tạo bản ghi CarbonCredit
@@ -51,12 +96,146 @@ public class CreditService {
         return request;
     }
 
+    /**
+     * CVA duyệt nhiều yêu cầu trong 1 transaction:
+     * - Khoá các yêu cầu theo thứ tự id (SELECT ... FOR UPDATE), chỉ duyệt yêu cầu còn PENDING
+     *   và không nằm trong lease còn hạn của CVA khác
+     * - Ghi CarbonCredit bằng 1 JDBC batch insert
+     * - Cộng ví 1 lần cho mỗi owner với tổng tín chỉ của owner đó
+     * Yêu cầu không hợp lệ chỉ bị bỏ qua (ghi lý do trong kết quả), không làm hỏng cả batch.
+     */
+    @Transactional
+    public CreditBatchApprovalResponse approveBatch(List<Long> requestIds, String notes, String verifierEmail) {
+        Set<Long> ids = new LinkedHashSet<>(requestIds);
+        if (ids.isEmpty()) {
+            throw new IllegalArgumentException("requestIds must not be empty");
+        }
+        if (ids.size() > maxBatchSize) {
+            throw new IllegalArgumentException("At most " + maxBatchSize + " requests per batch");
+        }
+        Long verifierId = resolveUserId(verifierEmail);
+        LocalDateTime now = LocalDateTime.now();
+
+        Map<Long, CreditRequest> locked = new HashMap<>();
+        for (CreditRequest request : creditRequestRepository.findAllByIdForUpdate(ids)) {
+            locked.put(request.getId(), request);
+        }
+        Set<Long> ownersWithWallet = locked.isEmpty() ? Set.of() : new HashSet<>(carbonWalletRepository
+                .findOwnerIdsWithWallet(locked.values().stream().map(CreditRequest::getOwnerId).distinct().toList()));
+
+        List<CreditBatchItemResult> results = new ArrayList<>(ids.size());
+        List<CreditRequest> approved = new ArrayList<>();
+        Map<Long, BigDecimal> perOwner = new TreeMap<>();
+        for (Long id : ids) {
+            CreditRequest request = locked.get(id);
+            if (request == null) {
+                results.add(new CreditBatchItemResult(id, "NOT_FOUND", null, null, "Request not found"));
+                continue;
+            }
+            CreditBatchItemResult result = new CreditBatchItemResult(id, null, request.getOwnerId(),
+                    request.getCarbonAmount(), null);
+            results.add(result);
+            if (!"PENDING".equals(request.getStatus())) {
+                result.setStatus("ALREADY_PROCESSED");
+                result.setMessage("Request is " + request.getStatus());
+            } else if (request.getClaimedBy() != null && !request.getClaimedBy().equals(verifierId)
+                    && request.getLeaseExpiresAt() != null && request.getLeaseExpiresAt().isAfter(now)) {
+                result.setStatus("CLAIMED");
+                result.setMessage("Claimed by another verifier until " + request.getLeaseExpiresAt());
+            } else if (request.getCarbonAmount() == null || request.getCarbonAmount() <= 0) {
+                result.setStatus("INVALID_AMOUNT");
+                result.setMessage("Carbon amount must be > 0");
+            } else if (!ownersWithWallet.contains(request.getOwnerId())) {
+                result.setStatus("NO_WALLET");
+                result.setMessage("Owner has no carbon wallet");
+            } else {
+                request.setStatus("APPROVED");
+                request.setVerifierId(verifierId);
+                request.setClaimedBy(null);
+                request.setLeaseExpiresAt(null);
+                if (notes != null) {
+                    request.setNotes(notes);
+                }
+                approved.add(request);
+                perOwner.merge(request.getOwnerId(), BigDecimal.valueOf(request.getCarbonAmount()), BigDecimal::add);
+                result.setStatus("APPROVED");
+            }
+        }
+
+        if (!approved.isEmpty()) {
+            // Cùng connection / transaction với JPA (JpaTransactionManager expose JDBC connection)
+            Timestamp issuedAt = Timestamp.valueOf(now);
+            // Dải serial cho cả batch được cấp phát 1 lần
+            List<CreditSerialRegistry.SerialRange> serials = serialRegistry.issueAll(approved.stream()
+                    .map(r -> new CreditSerialRegistry.Issuance(r.getOwnerId(), r.getCarbonAmount()))
+                    .toList());
+            jdbcTemplate.batchUpdate(
+                    "INSERT INTO carbon_credits (owner_id, amount, source, issued_at, listed, serial_start, serial_end) "
+                            + "VALUES (?, ?, ?, ?, FALSE, ?, ?)",
+                    new BatchPreparedStatementSetter() {
+                        @Override
+                        public void setValues(PreparedStatement ps, int i) throws SQLException {
+                            CreditRequest request = approved.get(i);
+                            CreditSerialRegistry.SerialRange range = serials.get(i);
+                            ps.setLong(1, request.getOwnerId());
+                            ps.setDouble(2, request.getCarbonAmount());
+                            ps.setString(3, "Request#" + request.getId());
+                            ps.setTimestamp(4, issuedAt);
+                            ps.setObject(5, range != null ? range.start() : null);
+                            ps.setObject(6, range != null ? range.end() : null);
+                        }
+
+                        @Override
+                        public int getBatchSize() {
+                            return approved.size();
+                        }
+                    });
+            // TreeMap: cộng ví theo thứ tự ownerId
+            perOwner.forEach((ownerId, amount) -> walletService.credit(ownerId, amount,
+                    "Issued from batch approval of CreditRequests"));
+        }
+
+        BigDecimal total = perOwner.values().stream().reduce(BigDecimal.ZERO, BigDecimal::add);
+        log.info("Batch approval by {}: {} requested, {} approved, {} owners, {} credits",
+                verifierEmail, ids.size(), approved.size(), perOwner.size(), total);
+        return new CreditBatchApprovalResponse(ids.size(), approved.size(), ids.size() - approved.size(),
+                total, perOwner.size(), results);
+    }
+
     // CVA từ chối
-    public CreditRequest rejectRequest(Long requestId, String reason) {
-        CreditRequest request = creditRequestRepository.findById(requestId)
-                .orElseThrow(() -> new RuntimeException("Request not found"));
+    @Transactional
+    public CreditRequest rejectRequest(Long requestId, String reason, String verifierEmail) {
+        Long verifierId = resolveUserId(verifierEmail);
+        CreditRequest request = lockForDecision(requestId, verifierId);
 
         request.setStatus("REJECTED: " + reason);
+        request.setVerifierId(verifierId);
+        request.setClaimedBy(null);
+        request.setLeaseExpiresAt(null);
         return creditRequestRepository.save(request);
     }
+
+    /**
+     * Khoá yêu cầu (SELECT ... FOR UPDATE) rồi kiểm tra: còn PENDING và không nằm trong lease còn hạn
+     * của CVA khác. Hai CVA duyệt cùng lúc thì người sau thấy yêu cầu đã xử lý.
+     */
+    private CreditRequest lockForDecision(Long requestId, Long verifierId) {
+        CreditRequest request = creditRequestRepository.findAllByIdForUpdate(List.of(requestId)).stream()
+                .findFirst()
+                .orElseThrow(() -> new EntityNotFoundException("Request not found"));
+        if (!"PENDING".equals(request.getStatus())) {
+            throw new IllegalArgumentException("Request already processed");
+        }
+        if (request.getClaimedBy() != null && !request.getClaimedBy().equals(verifierId)
+                && request.getLeaseExpiresAt() != null && request.getLeaseExpiresAt().isAfter(LocalDateTime.now())) {
+            throw new IllegalArgumentException("Request is claimed by another verifier until " + request.getLeaseExpiresAt());
+        }
+        return request;
+    }
+
+    private Long resolveUserId(String email) {
+        return userRepository.findByEmail(email)
+                .orElseThrow(() -> new EntityNotFoundException("User not found: " + email))
+                .getId();
+    }
 }
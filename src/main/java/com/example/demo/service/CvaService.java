@@ -1,11 +1,21 @@
 package com.example.demo.service;
 
+import com.example.demo.dto.CursorPageResponse;
+import com.example.demo.dto.CvaQueueItem;
 import com.example.demo.entity.CreditRequest;
 import java.util.List;
 
 public interface CvaService {
-    List<CreditRequest> getPendingRequests();
+    // Số dòng tối đa mỗi trang hàng đợi (/pending luôn trả trang đầy đủ cỡ này)
+    int MAX_PAGE_SIZE = 200;
+
+    CursorPageResponse<CvaQueueItem> getPendingRequests(String cursor);
+    CursorPageResponse<CvaQueueItem> getQueue(String cursor, int limit, boolean includeClaimed);
     CreditRequest getRequestById(Long id);
-    CreditRequest approveRequest(Long id, String notes);
-    CreditRequest rejectRequest(Long id, String notes);
+    CreditRequest claimRequest(Long id, String verifierEmail);
+    List<CreditRequest> claimNext(String verifierEmail, int count);
+    boolean renewLease(Long id, String verifierEmail);
+    boolean releaseRequest(Long id, String verifierEmail);
+    CreditRequest approveRequest(Long id, String notes, String verifierEmail);
+    CreditRequest rejectRequest(Long id, String notes, String verifierEmail);
 }
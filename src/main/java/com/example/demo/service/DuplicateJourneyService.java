@@ -0,0 +1,244 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.CreditRequest;
+import com.example.demo.entity.JourneySignature;
+import com.example.demo.repository.JourneySignatureRepository;
+import com.example.demo.util.GpsTrackParser;
+import com.example.demo.util.MinHashLshIndex;
+import com.example.demo.util.RouteMinHasher;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityNotFoundException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Phát hiện hành trình nộp trùng (cùng tuyến đường, có thể lệch giờ / nhiễu GPS nhẹ):
+ * - Mỗi hành trình được băm MinHash ngay khi parse (RouteMinHasher), chữ ký 64 int lưu ở
+ *   bảng journey_signatures
+ * - Chỉ mục LSH trong bộ nhớ (MinHashLshIndex) trả về các hành trình tương tự mà không phải
+ *   so sánh với toàn bộ lịch sử; được nạp lại từ DB khi khởi động
+ * - Chỉ tính là trùng khi hai hành trình chồng lấn thời gian (± time-slack): cùng tuyến đi làm
+ *   mỗi ngày không phải trùng
+ * - Yêu cầu nghi trùng được gắn duplicate_of / duplicate_score để CVA thấy trong hàng đợi,
+ *   không tự động từ chối
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DuplicateJourneyService {
+
+    private final JourneySignatureRepository signatureRepository;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    // bands x rows = số hàm băm; xác suất trở thành ứng viên ~ 1 - (1 - s^rows)^bands
+    @Value("${journey.duplicate.bands:16}")
+    private int bands;
+
+    @Value("${journey.duplicate.rows:4}")
+    private int rows;
+
+    // Kích thước ô lưới (~110 m theo vĩ độ)
+    @Value("${journey.duplicate.cell-degrees:0.001}")
+    private double cellDegrees;
+
+    // Jaccard ước lượng từ mức này trở lên thì gắn cờ nghi trùng
+    @Value("${journey.duplicate.threshold:0.6}")
+    private double threshold;
+
+    // Hành trình quá ngắn (ít ô) thì trùng ngẫu nhiên nhiều, bỏ qua
+    @Value("${journey.duplicate.min-shingles:5}")
+    private int minShingles;
+
+    // Nới khoảng thời gian mỗi bên khi so chồng lấn (lệch đồng hồ thiết bị, cắt đầu/cuối trace)
+    @Value("${journey.duplicate.time-slack-minutes:10}")
+    private long timeSlackMinutes;
+
+    @Value("${journey.duplicate.initial-capacity:1024}")
+    private int initialCapacity;
+
+    @Value("${journey.duplicate.load-page-size:2000}")
+    private int loadPageSize;
+
+    private MinHashLshIndex index;
+    private final AtomicBoolean loaded = new AtomicBoolean(false);
+    private Timer checkTimer;
+    private Counter flaggedCounter;
+
+    @PostConstruct
+    public void init() {
+        index = new MinHashLshIndex(bands, rows, initialCapacity);
+        checkTimer = Timer.builder("journey.duplicate.check")
+                .description("Thời gian băm + tra cứu hành trình trùng")
+                .register(meterRegistry);
+        flaggedCounter = Counter.builder("journey.duplicate.flagged").register(meterRegistry);
+        meterRegistry.gauge("journey.duplicate.index.size", index, MinHashLshIndex::size);
+    }
+
+    /**
+     * Nạp chữ ký đã lưu vào chỉ mục ở nền; trong lúc nạp, yêu cầu mới vẫn được kiểm tra với phần
+     * đã nạp (id bị thêm 2 lần chỉ được trả về 1 lần).
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadIndex() {
+        CompletableFuture.runAsync(() -> {
+            long started = System.currentTimeMillis();
+            long afterId = 0;
+            int count = 0;
+            try {
+                List<JourneySignature> page;
+                do {
+                    page = signatureRepository.findByRequestIdGreaterThanOrderByRequestIdAsc(
+                            afterId, PageRequest.of(0, loadPageSize));
+                    for (JourneySignature row : page) {
+                        index.add(row.getRequestId(), decode(row.getSignature()),
+                                toMillis(row.getJourneyStartedAt(), MinHashLshIndex.UNKNOWN_START),
+                                toMillis(row.getJourneyEndedAt(), MinHashLshIndex.UNKNOWN_END));
+                        afterId = row.getRequestId();
+                    }
+                    count += page.size();
+                } while (page.size() == loadPageSize);
+                loaded.set(true);
+                log.info("Journey duplicate index loaded: {} signatures in {} ms", count,
+                        System.currentTimeMillis() - started);
+            } catch (RuntimeException e) {
+                log.error("Journey duplicate index load stopped after {} signatures", count, e);
+            }
+        });
+    }
+
+    /**
+     * Băm hành trình của yêu cầu vừa tạo, gắn cờ nếu giống hành trình đã có, lưu chữ ký.
+     * Chạy trong transaction của submitRequest; chữ ký vào chỉ mục sau khi commit. Lỗi parse
+     * không chặn việc nộp yêu cầu.
+     */
+    public void check(CreditRequest request) {
+        // Cờ chỉ phản ánh lần kiểm tra này
+        request.setDuplicateOf(null);
+        request.setDuplicateScore(null);
+        if (request.getJourneyData() == null || request.getJourneyData().isBlank()) {
+            return;
+        }
+        long started = System.nanoTime();
+        RouteMinHasher hasher = new RouteMinHasher(index.signatureLength(), cellDegrees);
+        try {
+            GpsTrackParser.parse(new StringReader(request.getJourneyData()), objectMapper.getFactory(), hasher);
+        } catch (IOException | IllegalArgumentException e) {
+            log.warn("Journey of request #{} not hashed: {}", request.getId(), e.getMessage());
+            return;
+        }
+        if (hasher.getShingles() < minShingles) {
+            return;
+        }
+        int[] signature = hasher.signature();
+        long start = hasher.getStartMillis();
+        long end = hasher.getEndMillis();
+        List<MinHashLshIndex.Match> matches = queryOverlapping(signature, request.getId(), 1, start, end);
+        checkTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+
+        if (!matches.isEmpty()) {
+            MinHashLshIndex.Match best = matches.get(0);
+            request.setDuplicateOf(best.id());
+            request.setDuplicateScore(best.similarity());
+            flaggedCounter.increment();
+            log.info("Request #{} looks like a duplicate of #{} (similarity {})", request.getId(),
+                    best.id(), best.similarity());
+        }
+
+        signatureRepository.save(new JourneySignature(request.getId(), request.getOwnerId(), encode(signature),
+                hasher.getShingles(), LocalDateTime.now(), toDateTime(start), toDateTime(end)));
+        addAfterCommit(request.getId(), signature, start, end);
+    }
+
+    /**
+     * Các yêu cầu có hành trình tương tự (similarity >= ngưỡng), giống nhất trước.
+     */
+    public List<MinHashLshIndex.Match> findSimilar(Long requestId, int limit) {
+        JourneySignature row = signatureRepository.findById(requestId)
+                .orElseThrow(() -> new EntityNotFoundException("No journey signature for request #" + requestId));
+        return queryOverlapping(decode(row.getSignature()), requestId, Math.max(1, Math.min(limit, 100)),
+                toMillis(row.getJourneyStartedAt(), MinHashLshIndex.UNKNOWN_START),
+                toMillis(row.getJourneyEndedAt(), MinHashLshIndex.UNKNOWN_END));
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("loaded", loaded.get());
+        stats.put("indexedJourneys", index.size());
+        stats.put("bands", bands);
+        stats.put("rows", rows);
+        stats.put("threshold", threshold);
+        stats.put("flagged", (long) flaggedCounter.count());
+        stats.put("checks", checkTimer.count());
+        stats.put("meanCheckMicros", checkTimer.mean(TimeUnit.MICROSECONDS));
+        return stats;
+    }
+
+    private List<MinHashLshIndex.Match> queryOverlapping(int[] signature, long requestId, int limit,
+                                                         long start, long end) {
+        long slack = TimeUnit.MINUTES.toMillis(timeSlackMinutes);
+        long from = start == MinHashLshIndex.UNKNOWN_START ? start : start - slack;
+        long to = end == MinHashLshIndex.UNKNOWN_END ? end : end + slack;
+        return index.query(signature, threshold, requestId, limit, from, to);
+    }
+
+    private void addAfterCommit(long requestId, int[] signature, long start, long end) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    index.add(requestId, signature, start, end);
+                }
+            });
+        } else {
+            index.add(requestId, signature, start, end);
+        }
+    }
+
+    private static LocalDateTime toDateTime(long epochMillis) {
+        if (epochMillis == MinHashLshIndex.UNKNOWN_START || epochMillis == MinHashLshIndex.UNKNOWN_END) {
+            return null;
+        }
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneOffset.UTC);
+    }
+
+    private static long toMillis(LocalDateTime time, long unknown) {
+        return time != null ? time.toInstant(ZoneOffset.UTC).toEpochMilli() : unknown;
+    }
+
+    private static byte[] encode(int[] signature) {
+        ByteBuffer buffer = ByteBuffer.allocate(signature.length * Integer.BYTES);
+        buffer.asIntBuffer().put(signature);
+        return buffer.array();
+    }
+
+    private static int[] decode(byte[] bytes) {
+        int[] signature = new int[bytes.length / Integer.BYTES];
+        ByteBuffer.wrap(bytes).asIntBuffer().get(signature);
+        return signature;
+    }
+}
@@ -0,0 +1,217 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.Co2RequestDto;
+import com.example.demo.dto.Co2ResponseDto;
+import com.example.demo.dto.JourneyMetrics;
+import com.example.demo.entity.CreditRequest;
+import com.example.demo.repository.CreditRequestRepository;
+import com.example.demo.util.GpsTrackParser;
+import com.example.demo.util.JourneyAccumulator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityNotFoundException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Phân tích hành trình GPS của CreditRequest:
+ * - Parse journeyData dạng stream (giải nén dần, không giữ toàn bộ trace) và tính quãng đường
+ *   haversine, thời gian, tốc độ trong 1 lượt
+ * - Suy ra phát thải cơ sở (xe xăng) và thực tế (xe điện) theo hệ số kg CO2/km cấu hình được,
+ *   có thể gửi sang Co2Service để ghi nhận (mỗi yêu cầu 1 lần, id bản ghi lưu ở credit_request)
+ * - Nhiều hành trình được xử lý song song trên ForkJoinPool riêng
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class JourneyAnalysisService {
+
+    private static final BigDecimal KG_PER_CREDIT = BigDecimal.valueOf(1000);
+
+    private final CreditRequestRepository creditRequestRepository;
+    private final CreditRequestPayloadService payloadService;
+    private final Co2Service co2Service;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final PlatformTransactionManager transactionManager;
+
+    // Xe xăng tham chiếu
+    @Value("${journey.emission.baseline-kg-per-km:0.192}")
+    private BigDecimal baselineKgPerKm;
+
+    // Xe điện (điện lưới)
+    @Value("${journey.emission.actual-kg-per-km:0.053}")
+    private BigDecimal actualKgPerKm;
+
+    // Đoạn nhanh hơn mức này coi là nhiễu GPS
+    @Value("${journey.max-speed-kmh:200}")
+    private double maxSpeedKmh;
+
+    @Value("${journey.moving-speed-kmh:2}")
+    private double movingSpeedKmh;
+
+    @Value("${journey.parallelism:0}")
+    private int parallelism;
+
+    @Value("${journey.batch.max-size:500}")
+    private int maxBatchSize;
+
+    private ForkJoinPool pool;
+    private Timer analyzeTimer;
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    public void init() {
+        int size = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        pool = new ForkJoinPool(size);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        analyzeTimer = Timer.builder("journey.analyze")
+                .description("Thời gian phân tích 1 hành trình GPS")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Phân tích 1 trace GPS (CSV hoặc JSON) đọc từ reader.
+     */
+    public JourneyMetrics analyze(Reader reader) throws IOException {
+        long started = System.nanoTime();
+        JourneyAccumulator acc = new JourneyAccumulator(maxSpeedKmh / 3.6, movingSpeedKmh / 3.6);
+        try {
+            GpsTrackParser.parse(reader, objectMapper.getFactory(), acc);
+        } finally {
+            analyzeTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+        return toMetrics(acc);
+    }
+
+    /**
+     * Phân tích journeyData của 1 yêu cầu; submit = true thì ghi kết quả vào Co2Service.
+     */
+    public JourneyMetrics analyzeRequest(Long requestId, boolean submit) throws IOException {
+        CreditRequest request = creditRequestRepository.findById(requestId)
+                .orElseThrow(() -> new EntityNotFoundException("Request not found"));
+        JourneyMetrics metrics;
+        try (Reader reader = payloadService.openJourneyReader(requestId)
+                .orElseThrow(() -> new IllegalArgumentException("Request #" + requestId + " has no journey data"))) {
+            metrics = analyze(reader);
+        }
+        metrics.setRequestId(requestId);
+        metrics.setClaimedCredits(request.getCarbonAmount());
+
+        if (submit && metrics.getPoints() > 1) {
+            metrics.setCo2RecordId(submitEmission(requestId, metrics));
+        }
+        return metrics;
+    }
+
+    /**
+     * Ghi phát thải của hành trình vào Co2Service đúng 1 lần cho mỗi yêu cầu: khoá dòng
+     * credit_request, đã có co2_record_id thì trả lại id cũ thay vì tạo bản ghi mới.
+     */
+    private Long submitEmission(Long requestId, JourneyMetrics metrics) {
+        return transactionTemplate.execute(status -> {
+            CreditRequest request = creditRequestRepository.findAllByIdForUpdate(List.of(requestId)).stream()
+                    .findFirst()
+                    .orElseThrow(() -> new EntityNotFoundException("Request not found"));
+            if (request.getCo2RecordId() != null) {
+                log.info("Journey of request #{} already submitted as CO2 record #{}, skipping",
+                        requestId, request.getCo2RecordId());
+                return request.getCo2RecordId();
+            }
+            Co2RequestDto co2Request = new Co2RequestDto();
+            co2Request.setUserId(String.valueOf(request.getOwnerId()));
+            co2Request.setBaseline(metrics.getBaselineKg());
+            co2Request.setActual(metrics.getActualKg());
+            // Số liệu do CVA phân tích từ hành trình thực tế
+            co2Request.setCertified(true);
+            Co2ResponseDto response = co2Service.processEmission(co2Request);
+            request.setCo2RecordId(response.getRecordId());
+            creditRequestRepository.save(request);
+            return response.getRecordId();
+        });
+    }
+
+    /**
+     * Phân tích song song nhiều yêu cầu; lỗi của 1 yêu cầu chỉ ghi vào kết quả của yêu cầu đó.
+     */
+    public List<JourneyMetrics> analyzeBatch(List<Long> requestIds, boolean submit) {
+        List<Long> ids = List.copyOf(new LinkedHashSet<>(requestIds));
+        if (ids.size() > maxBatchSize) {
+            throw new IllegalArgumentException("At most " + maxBatchSize + " journeys per batch");
+        }
+        try {
+            return pool.submit(() -> ids.parallelStream()
+                    .map(id -> analyzeSafely(id, submit))
+                    .toList()).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while analysing journeys", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Journey analysis failed", e.getCause());
+        }
+    }
+
+    private JourneyMetrics analyzeSafely(Long requestId, boolean submit) {
+        try {
+            return analyzeRequest(requestId, submit);
+        } catch (Exception e) {
+            log.warn("Journey analysis failed for request #{}: {}", requestId, e.getMessage());
+            JourneyMetrics failed = new JourneyMetrics();
+            failed.setRequestId(requestId);
+            failed.setError(e.getMessage());
+            return failed;
+        }
+    }
+
+    private JourneyMetrics toMetrics(JourneyAccumulator acc) {
+        JourneyMetrics m = new JourneyMetrics();
+        m.setPoints(acc.getPoints());
+        m.setRejectedPoints(acc.getRejected());
+        double distanceKm = acc.getDistanceMeters() / 1000.0;
+        m.setDistanceKm(distanceKm);
+        m.setDurationSeconds(acc.getDurationMillis() / 1000);
+        m.setMovingSeconds(acc.getMovingMillis() / 1000);
+        if (acc.getPoints() > 0) {
+            m.setStartedAt(Instant.ofEpochMilli(acc.getStartMillis()));
+            m.setEndedAt(Instant.ofEpochMilli(acc.getEndMillis()));
+        }
+        m.setAverageSpeedKmh(acc.getAverageSpeedMps() * 3.6);
+        m.setMovingSpeedKmh(acc.getMovingSpeedMps() * 3.6);
+        m.setMaxSpeedKmh(acc.getMaxSpeedMps() * 3.6);
+        m.setSegmentSpeedStdDevKmh(acc.getSegmentSpeedStdDevMps() * 3.6);
+
+        // kg CO2, 6 chữ số thập phân như cột co2_reduction
+        BigDecimal km = BigDecimal.valueOf(distanceKm);
+        BigDecimal baseline = km.multiply(baselineKgPerKm).setScale(6, RoundingMode.DOWN);
+        BigDecimal actual = km.multiply(actualKgPerKm).setScale(6, RoundingMode.UP);
+        BigDecimal reduction = baseline.subtract(actual).max(BigDecimal.ZERO);
+        m.setBaselineKg(baseline);
+        m.setActualKg(actual.min(baseline));
+        m.setReductionKg(reduction);
+        m.setEstimatedCredits(reduction.divide(KG_PER_CREDIT, 6, RoundingMode.DOWN));
+        return m;
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.demo.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generation counter for listing data.
+ * Any change to the listings table (create/update/delete/status change) bumps the generation,
+ * so read endpoints can build ETags without touching the database.
+ */
+@Component
+@Slf4j
+public class ListingChangeTracker {
+
+    private final AtomicLong generation = new AtomicLong(System.currentTimeMillis());
+
+    public long currentGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Mark listings as changed. Inside a transaction the bump is deferred until after commit,
+     * otherwise a concurrent poll could pair the new ETag with pre-commit data.
+     */
+    public void markChanged() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    bump();
+                }
+            });
+        } else {
+            bump();
+        }
+    }
+
+    private void bump() {
+        long next = generation.incrementAndGet();
+        log.debug("Listing generation bumped to {}", next);
+    }
+
+    /**
+     * Weak ETag for a single query: current generation plus a hash of the normalized query.
+     */
+    public String weakEtag(String normalizedQuery) {
+        return "W/\"" + Long.toHexString(currentGeneration()) + "-"
+                + Integer.toHexString(normalizedQuery.hashCode()) + "\"";
+    }
+}
@@ -1,7 +1,10 @@
 package com.example.demo.service;
 
+import com.example.demo.dto.CursorPageResponse;
+import com.example.demo.dto.ListingFacets;
 import com.example.demo.dto.ListingRequest;
 import com.example.demo.dto.ListingResponse;
+import com.example.demo.dto.ListingSearchResponse;
 import com.example.demo.entity.Listing;
 import com.example.demo.entity.User;
 import com.example.demo.repository.ListingRepository;
@@ -9,11 +12,20 @@ import com.example.demo.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @Service
@@ -21,8 +33,27 @@ import java.util.stream.Collectors;
 @Slf4j
 public class ListingService {
     
+    // Bucket edges for the facet histograms; the last bucket of each is open-ended.
+    // ListingRepository.PRICE_BUCKET / CARBON_BUCKET encode the same edges.
+    private static final BigDecimal[] PRICE_EDGES = {
+            new BigDecimal("0"), new BigDecimal("100"), new BigDecimal("500"),
+            new BigDecimal("1000"), new BigDecimal("5000"), new BigDecimal("10000")
+    };
+    private static final BigDecimal[] CARBON_EDGES = {
+            new BigDecimal("0"), new BigDecimal("1"), new BigDecimal("10"),
+            new BigDecimal("100"), new BigDecimal("1000")
+    };
+    private static final int TOP_SELLERS = 20;
+    private static final int MAX_CHEAPEST_LIMIT = 100;
+    private static final int MAX_CACHED_FACETS = 1000;
+    
     private final ListingRepository listingRepository;
     private final UserRepository userRepository;
+    private final ListingChangeTracker listingChangeTracker;
+    private final CreditSerialRegistry serialRegistry;
+    
+    // normalized query -> facets computed at a given listing generation
+    private final Map<String, CachedFacets> facetCache = new ConcurrentHashMap<>();
     
     @Transactional
     public ListingResponse createListing(ListingRequest request) {
@@ -40,6 +71,8 @@ public class ListingService {
         listing.setStatus(Listing.ListingStatus.OPEN);
         
         Listing savedListing = listingRepository.save(listing);
+        // Giữ serial cho lượng tín chỉ niêm yết; khi bán đúng các serial này chuyển sang buyer
+        serialRegistry.reserveForListing(seller.getId(), savedListing.getId(), savedListing.getCarbonAmount());
         log.info("Listing created with ID: {}", savedListing.getId());
         
         return ListingResponse.fromListing(savedListing);
@@ -72,10 +105,72 @@ public class ListingService {
         return listings.map(ListingResponse::fromListing);
     }
     
-    public Page<ListingResponse> searchListings(String keyword, Pageable pageable) {
+    public ListingSearchResponse searchListings(String keyword, Pageable pageable) {
         log.info("Searching listings with keyword: {}", keyword);
-        Page<Listing> listings = listingRepository.findByKeyword(keyword, pageable);
-        return listings.map(ListingResponse::fromListing);
+        // Cache key, ETag and queries all use the same normalized keyword
+        String normalized = normalizeKeyword(keyword);
+        ListingFacets facets = cachedFacets("search|" + normalized,
+                () -> listingRepository.countFacetBucketsByKeyword(normalized),
+                () -> listingRepository.countSellersByKeyword(normalized, PageRequest.of(0, TOP_SELLERS)));
+        Page<Listing> listings = listingRepository.findByKeyword(normalized, pageable);
+        return new ListingSearchResponse(listings.map(ListingResponse::fromListing), facets);
+    }
+    
+    /**
+     * Search keywords are trimmed and lower-cased; the keyword queries compare against LOWER(column).
+     */
+    public static String normalizeKeyword(String keyword) {
+        return keyword.trim().toLowerCase(Locale.ROOT);
+    }
+    
+    public ListingSearchResponse filterListings(Listing.ListingStatus status,
+                                                BigDecimal minPrice, BigDecimal maxPrice,
+                                                BigDecimal minCarbon, BigDecimal maxCarbon,
+                                                Pageable pageable) {
+        log.info("Filtering listings: status={}, price=[{}, {}], carbon=[{}, {}]",
+                status, minPrice, maxPrice, minCarbon, maxCarbon);
+        String key = "filter|" + status + "|" + plain(minPrice) + "|" + plain(maxPrice)
+                + "|" + plain(minCarbon) + "|" + plain(maxCarbon);
+        ListingFacets facets = cachedFacets(key,
+                () -> listingRepository.countFacetBucketsByFilters(status, minPrice, maxPrice, minCarbon, maxCarbon),
+                () -> listingRepository.countSellersByFilters(status, minPrice, maxPrice, minCarbon, maxCarbon,
+                        PageRequest.of(0, TOP_SELLERS)));
+        Page<Listing> listings = listingRepository.findByFilters(status, minPrice, maxPrice, minCarbon, maxCarbon, pageable);
+        return new ListingSearchResponse(listings.map(ListingResponse::fromListing), facets);
+    }
+    
+    /**
+     * Cheapest OPEN listings by price per tonne, seek-paged on (pricePerTonne, id).
+     * The cursor is opaque to clients; pass back nextCursor from the previous page.
+     */
+    @Transactional(readOnly = true)
+    public CursorPageResponse<ListingResponse> getCheapestOpenListings(String cursor, int limit) {
+        int size = Math.max(1, Math.min(limit, MAX_CHEAPEST_LIMIT));
+        log.info("Fetching {} cheapest open listings after cursor: {}", size, cursor);
+        
+        // fetch one extra row to know whether another page exists
+        Pageable page = PageRequest.of(0, size + 1);
+        List<Listing> rows;
+        if (cursor == null || cursor.isBlank()) {
+            rows = listingRepository.findCheapestByStatus(Listing.ListingStatus.OPEN, page);
+        } else {
+            String[] parts = decodeCursor(cursor);
+            rows = listingRepository.findCheapestByStatusAfter(Listing.ListingStatus.OPEN,
+                    new BigDecimal(parts[0]), Long.valueOf(parts[1]), page);
+        }
+        
+        boolean hasMore = rows.size() > size;
+        List<Listing> pageRows = hasMore ? rows.subList(0, size) : rows;
+        String nextCursor = null;
+        if (hasMore) {
+            Listing last = pageRows.get(pageRows.size() - 1);
+            nextCursor = encodeCursor(last.getPricePerTonne().toPlainString() + ":" + last.getId());
+        }
+        
+        List<ListingResponse> items = pageRows.stream()
+                .map(ListingResponse::fromListing)
+                .collect(Collectors.toList());
+        return new CursorPageResponse<>(items, nextCursor, hasMore);
     }
     
     @Transactional
@@ -90,6 +185,11 @@ public class ListingService {
             throw new RuntimeException("Cannot update listing that is not OPEN");
         }
         
+        if (listing.getCarbonAmount().compareTo(request.getCarbonAmount()) != 0) {
+            serialRegistry.releaseListing(listing.getId());
+            serialRegistry.reserveForListing(listing.getSeller().getId(), listing.getId(), request.getCarbonAmount());
+        }
+        
         listing.setTitle(request.getTitle());
         listing.setDescription(request.getDescription());
         listing.setCarbonAmount(request.getCarbonAmount());
@@ -113,10 +213,25 @@ public class ListingService {
             throw new RuntimeException("Cannot delete listing that is not OPEN");
         }
         
+        serialRegistry.releaseListing(id);
         listingRepository.delete(listing);
         log.info("Listing deleted with ID: {}", id);
     }
     
+    /**
+     * Admin force delete, whatever the status; reserved serials go back to the seller.
+     */
+    @Transactional
+    public void forceDeleteListing(Long id) {
+        log.info("Force deleting listing with ID: {}", id);
+        
+        Listing listing = listingRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Listing not found with ID: " + id));
+        
+        serialRegistry.releaseListing(id);
+        listingRepository.delete(listing);
+    }
+    
     @Transactional
     public void updateListingStatus(Long id, Listing.ListingStatus status) {
         log.info("Updating listing status to {} for ID: {}", status, id);
@@ -124,8 +239,106 @@ public class ListingService {
         Listing listing = listingRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Listing not found with ID: " + id));
         
+        // Huỷ / từ chối trả serial cho seller; mở lại thì giữ serial lại
+        boolean held = holdsSerials(listing.getStatus());
+        if (held && !holdsSerials(status)) {
+            serialRegistry.releaseListing(id);
+        } else if (!held && holdsSerials(status)) {
+            serialRegistry.reserveForListing(listing.getSeller().getId(), id, listing.getCarbonAmount());
+        }
+        
         listing.setStatus(status);
         listingRepository.save(listing);
         log.info("Listing status updated for ID: {}", id);
     }
+    
+    /**
+     * Listings that can still be sold keep their serials reserved.
+     */
+    private static boolean holdsSerials(Listing.ListingStatus status) {
+        return status == Listing.ListingStatus.OPEN
+                || status == Listing.ListingStatus.RESERVED
+                || status == Listing.ListingStatus.APPROVED;
+    }
+    
+    /**
+     * Facets depend only on the query, not on the page, so they are cached per normalized query
+     * and invalidated by the listing generation. The generation is read before the facet queries
+     * run, so a concurrent change can only make the entry look older, never fresher.
+     */
+    private ListingFacets cachedFacets(String key, Supplier<List<Object[]>> buckets, Supplier<List<Object[]>> sellers) {
+        long generation = listingChangeTracker.currentGeneration();
+        CachedFacets cached = facetCache.get(key);
+        if (cached != null && cached.generation() == generation) {
+            return cached.facets();
+        }
+        
+        ListingFacets facets = computeFacets(buckets.get(), sellers.get());
+        if (facetCache.size() >= MAX_CACHED_FACETS) {
+            facetCache.clear();
+        }
+        facetCache.put(key, new CachedFacets(generation, facets));
+        return facets;
+    }
+    
+    /**
+     * Folds the grouped (price bucket, carbon bucket, count) rows into both histograms; the
+     * database does the per-listing work, so only a bounded number of rows comes back.
+     */
+    private static ListingFacets computeFacets(List<Object[]> bucketRows, List<Object[]> sellerRows) {
+        long[] priceCounts = new long[PRICE_EDGES.length];
+        long[] carbonCounts = new long[CARBON_EDGES.length];
+        long total = 0;
+        
+        for (Object[] row : bucketRows) {
+            long count = ((Number) row[2]).longValue();
+            priceCounts[((Number) row[0]).intValue()] += count;
+            carbonCounts[((Number) row[1]).intValue()] += count;
+            total += count;
+        }
+        
+        List<ListingFacets.SellerCount> sellers = sellerRows.stream()
+                .map(row -> new ListingFacets.SellerCount((Long) row[0], ((Number) row[1]).longValue()))
+                .collect(Collectors.toList());
+        
+        return new ListingFacets(total,
+                toBuckets(PRICE_EDGES, priceCounts),
+                toBuckets(CARBON_EDGES, carbonCounts),
+                sellers);
+    }
+    
+    private static List<ListingFacets.Bucket> toBuckets(BigDecimal[] edges, long[] counts) {
+        List<ListingFacets.Bucket> buckets = new ArrayList<>(edges.length);
+        for (int i = 0; i < edges.length; i++) {
+            BigDecimal to = i + 1 < edges.length ? edges[i + 1] : null;
+            buckets.add(new ListingFacets.Bucket(edges[i], to, counts[i]));
+        }
+        return buckets;
+    }
+    
+    private static String encodeCursor(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    private static String[] decodeCursor(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split(":");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            new BigDecimal(parts[0]);
+            Long.parseLong(parts[1]);
+            return parts;
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+    }
+    
+    private static String plain(BigDecimal value) {
+        return value == null ? "" : value.stripTrailingZeros().toPlainString();
+    }
+    
+    private record CachedFacets(long generation, ListingFacets facets) {
+    }
 }
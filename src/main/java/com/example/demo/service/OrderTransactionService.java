@@ -16,6 +16,7 @@ public class OrderTransactionService {
 
     private final OrderTransactionRepository orderRepo;
     private final WalletService walletService; // sử dụng service hiện có để chuyển tín chỉ
+    private final CreditSerialRegistry serialRegistry;
 
     /**
      * Buyer ấn mua -> tạo order, set status = IN_TRANSACTION
@@ -51,6 +52,8 @@ public class OrderTransactionService {
         try {
             // gọi WalletService thực hiện trừ Owner và cộng Buyer (gồm ghi WalletTransaction và update Wallet)
             walletService.transferCredits(order.getOwnerId(), order.getBuyerId(), order.getCreditsAmount());
+            // Serial tương ứng chuyển sang buyer (cùng transaction)
+            serialRegistry.transfer(order.getOwnerId(), order.getBuyerId(), order.getCreditsAmount());
 
             order.setStatus("SUCCESS");
             order.setUpdatedAt(LocalDateTime.now());
@@ -0,0 +1,312 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.RetirementCertificate;
+import com.example.demo.dto.RetirementRequest;
+import com.example.demo.entity.CreditRetirement;
+import com.example.demo.entity.User;
+import com.example.demo.exception.ServiceBusyException;
+import com.example.demo.repository.CreditRetirementRepository;
+import com.example.demo.repository.UserRepository;
+import com.example.demo.util.MappedJournal;
+import com.example.demo.util.SnowflakeIdGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityNotFoundException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+/**
+ * Retire (đốt) tín chỉ để khai báo bù trừ:
+ * - 1 transaction: trừ CarbonWallet bằng UPDATE có điều kiện, khoá và chuyển sang RETIRED các block
+ *   serial của owner (CreditSerialRegistry), ghi credit_retirements với mã chứng nhận Snowflake
+ * - Sau khi commit, bản ghi được nối vào journal retirement trên đĩa (MappedJournal, group commit:
+ *   nhiều retirement chung 1 lần fsync). API chờ fsync tối đa retirement.journal.timeout-ms; hết giờ,
+ *   hàng đợi đầy hoặc lỗi ghi thì retirement vẫn thành công (đã commit) với journalSequence = null
+ * - Lúc khởi động, certificate của node này đã commit mà chưa có trong journal được ghi bù
+ * DB là nguồn chính; journal là sổ append-only độc lập để kiểm toán / đối chiếu. Bản ghi bù không
+ * theo thứ tự id (hiếm khi có thể trùng), nên đối chiếu theo certificateId.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RetirementService {
+
+    private final CreditRetirementRepository retirementRepository;
+    private final UserRepository userRepository;
+    private final WalletService walletService;
+    private final CreditSerialRegistry serialRegistry;
+    private final SnowflakeIdGenerator idGenerator;
+    private final ObjectMapper objectMapper;
+    private final PlatformTransactionManager transactionManager;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${retirement.journal.dir:./data/retirement-journal}")
+    private String journalDir;
+
+    // 64 MB mỗi segment
+    @Value("${retirement.journal.segment-bytes:67108864}")
+    private int segmentBytes;
+
+    // Hàng đợi đầy thì trả 503 để client thử lại
+    @Value("${retirement.journal.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${retirement.journal.max-batch:1000}")
+    private int maxBatch;
+
+    @Value("${retirement.journal.timeout-ms:5000}")
+    private long journalTimeoutMillis;
+
+    // Số bản ghi cuối journal được quét lúc khởi động để tìm certificate chưa được ghi
+    @Value("${retirement.journal.backfill-window:10000}")
+    private int backfillWindow;
+
+    private MappedJournal journal;
+    private TransactionTemplate transactionTemplate;
+    private Timer retireTimer;
+    private Timer journalTimer;
+    private Counter journalFailures;
+
+    @PostConstruct
+    public void init() throws IOException {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        journal = new MappedJournal(Path.of(journalDir), "retirement", segmentBytes, queueCapacity, maxBatch);
+        retireTimer = Timer.builder("credit.retirement")
+                .description("Thời gian 1 retirement (DB + journal)")
+                .register(meterRegistry);
+        journalTimer = Timer.builder("credit.retirement.journal")
+                .description("Thời gian chờ bản ghi journal được fsync")
+                .register(meterRegistry);
+        journalFailures = Counter.builder("credit.retirement.journal.failures").register(meterRegistry);
+        log.info("Retirement journal opened at {}, durable up to sequence {}", journalDir, journal.getDurableSequence());
+        backfillJournal();
+    }
+
+    /**
+     * Ghi bù certificate do node này cấp đã commit nhưng chưa vào journal (crash hoặc lỗi journal
+     * giữa commit và fsync). Lấy id nhỏ nhất trong backfillWindow bản ghi cuối làm mốc, để bắt cả
+     * certificate id nhỏ commit muộn hơn certificate id lớn đã có trong journal; journal rỗng (vd
+     * volume mới) thì ghi lại toàn bộ.
+     */
+    private void backfillJournal() throws IOException {
+        Set<Long> journaled = new HashSet<>();
+        long[] afterId = {Long.MAX_VALUE};
+        journal.forEach(Math.max(1, journal.getDurableSequence() - backfillWindow + 1), entry -> {
+            try {
+                long id = objectMapper.readTree(entry.payload()).path("certificateId").asLong();
+                journaled.add(id);
+                afterId[0] = Math.min(afterId[0], id);
+            } catch (IOException e) {
+                log.warn("Unreadable retirement journal record {}", entry.sequence());
+            }
+            return true;
+        });
+        long cursor = journaled.isEmpty() ? 0 : afterId[0];
+        List<CompletableFuture<Long>> pending = new ArrayList<>();
+        List<CreditRetirement> page;
+        while (!(page = retirementRepository.findByIdGreaterThanOrderByIdAsc(cursor, PageRequest.of(0, 500))).isEmpty()) {
+            for (CreditRetirement r : page) {
+                if (SnowflakeIdGenerator.nodeId(r.getId()) != idGenerator.getNodeId() || journaled.contains(r.getId())) {
+                    continue;
+                }
+                try {
+                    CompletableFuture<Long> future = journal.append(journalPayload(r), journalTimeoutMillis, TimeUnit.MILLISECONDS);
+                    if (future == null) {
+                        throw new IOException("Retirement journal queue full while backfilling");
+                    }
+                    pending.add(future);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while backfilling the retirement journal", e);
+                }
+            }
+            cursor = page.get(page.size() - 1).getId();
+        }
+        for (CompletableFuture<Long> future : pending) {
+            try {
+                future.get(journalTimeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (ExecutionException | TimeoutException e) {
+                journalFailures.increment();
+                log.error("Retirement journal backfill append failed", e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while backfilling the retirement journal", e);
+            }
+        }
+        if (!pending.isEmpty()) {
+            log.warn("Backfilled {} retirement certificates missing from the journal", pending.size());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        journal.close();
+    }
+
+    // Nội dung 1 bản ghi journal
+    private record JournalRecord(long certificateId, long ownerId, BigDecimal amount, String serialRanges,
+                                 String beneficiary, String purpose, LocalDateTime retiredAt) {
+    }
+
+    /**
+     * Retire amount tín chỉ của user (email từ JWT). Không đủ số dư hoặc serial khả dụng thì
+     * IllegalArgumentException, không thay đổi gì.
+     */
+    public RetirementCertificate retire(String email, RetirementRequest request) {
+        long started = System.nanoTime();
+        // Backpressure trước khi ghi DB: journal không theo kịp thì từ chối sớm để client thử lại
+        if (journal.getQueued() >= journal.getQueueCapacity() * 9 / 10) {
+            throw new ServiceBusyException("Retirement journal is saturated, please retry shortly", 1);
+        }
+        User user = userRepository.findByEmail(email)
+                .orElseThrow(() -> new EntityNotFoundException("User not found: " + email));
+        BigDecimal amount = request.getAmount();
+
+        CreditRetirement retirement = transactionTemplate.execute(status -> {
+            // Kiểm tra và trừ số dư trong 1 UPDATE có điều kiện (không đủ thì IllegalArgumentException),
+            // rồi khoá các block serial của owner: 2 request / 2 node không thể cùng retire 1 phần
+            walletService.debit(user.getId(), amount, "Retire credits");
+            List<CreditSerialRegistry.SerialRange> serials = serialRegistry.retire(user.getId(), amount);
+
+            CreditRetirement r = new CreditRetirement();
+            r.setId(idGenerator.nextId());
+            r.setOwnerId(user.getId());
+            r.setAmount(amount);
+            r.setSerialCount(serials.stream().mapToLong(CreditSerialRegistry.SerialRange::count).sum());
+            r.setSerialRanges(serials.stream()
+                    .map(s -> s.start() + "-" + s.end())
+                    .collect(Collectors.joining(",")));
+            r.setBeneficiary(request.getBeneficiary());
+            r.setPurpose(request.getPurpose());
+            r.setRetiredAt(LocalDateTime.now());
+            return retirementRepository.save(r);
+        });
+
+        Long sequence = appendToJournal(retirement);
+        retireTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        log.info("User {} retired {} credits ({} serials), certificate {}", user.getId(), amount,
+                retirement.getSerialCount(), retirement.getId());
+        RetirementCertificate certificate = toCertificate(retirement);
+        certificate.setJournalSequence(sequence);
+        return certificate;
+    }
+
+    /**
+     * Chờ bản ghi được fsync. Retirement đã commit trong DB nên lỗi journal chỉ được ghi log và
+     * đếm (journalSequence = null), không làm hỏng request (client thử lại sẽ retire 2 lần); bản
+     * ghi thiếu được ghi bù ở lần khởi động sau.
+     */
+    private Long appendToJournal(CreditRetirement retirement) {
+        long started = System.nanoTime();
+        try {
+            CompletableFuture<Long> future = journal.append(journalPayload(retirement), journalTimeoutMillis, TimeUnit.MILLISECONDS);
+            if (future == null) {
+                journalFailures.increment();
+                log.error("Retirement journal queue full, certificate {} has no journal entry", retirement.getId());
+                return null;
+            }
+            return future.get(journalTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (JsonProcessingException | ExecutionException | TimeoutException e) {
+            journalFailures.increment();
+            log.error("Retirement journal append failed for certificate {}", retirement.getId(), e);
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            journalFailures.increment();
+            return null;
+        } finally {
+            journalTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private byte[] journalPayload(CreditRetirement retirement) throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(new JournalRecord(retirement.getId(),
+                retirement.getOwnerId(), retirement.getAmount(), retirement.getSerialRanges(),
+                retirement.getBeneficiary(), retirement.getPurpose(), retirement.getRetiredAt()));
+    }
+
+    public RetirementCertificate getCertificate(long certificateId) {
+        return retirementRepository.findById(certificateId)
+                .map(this::toCertificate)
+                .orElseThrow(() -> new EntityNotFoundException("Retirement certificate not found: " + certificateId));
+    }
+
+    public List<RetirementCertificate> getMyRetirements(String email, int limit) {
+        User user = userRepository.findByEmail(email)
+                .orElseThrow(() -> new EntityNotFoundException("User not found: " + email));
+        return retirementRepository.findByOwnerIdOrderByIdDesc(user.getId(), PageRequest.of(0, Math.max(1, Math.min(limit, 200))))
+                .stream()
+                .map(this::toCertificate)
+                .toList();
+    }
+
+    /**
+     * Đọc lại journal từ fromSequence (tối đa limit bản ghi), để đối chiếu với DB.
+     */
+    public List<Map<String, Object>> readJournal(long fromSequence, int limit) throws IOException {
+        int max = Math.max(1, Math.min(limit, 1000));
+        List<Map<String, Object>> entries = new ArrayList<>(max);
+        journal.forEach(fromSequence, entry -> {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("sequence", entry.sequence());
+            try {
+                row.put("record", objectMapper.readTree(entry.payload()));
+            } catch (IOException e) {
+                row.put("error", e.getMessage());
+            }
+            entries.add(row);
+            return entries.size() < max;
+        });
+        return entries;
+    }
+
+    public Map<String, Object> getJournalStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long batches = journal.getBatches();
+        stats.put("durableSequence", journal.getDurableSequence());
+        stats.put("appended", journal.getAppended());
+        stats.put("batches", batches);
+        stats.put("averageBatchSize", batches == 0 ? 0 : (double) journal.getAppended() / batches);
+        stats.put("averageForceMicros", batches == 0 ? 0 : journal.getForceNanos() / 1000.0 / batches);
+        stats.put("bytesWritten", journal.getBytesWritten());
+        stats.put("segments", journal.getSegmentCount());
+        stats.put("queued", journal.getQueued());
+        stats.put("failures", (long) journalFailures.count());
+        return stats;
+    }
+
+    private RetirementCertificate toCertificate(CreditRetirement r) {
+        List<String> ranges = r.getSerialRanges().isEmpty()
+                ? List.of()
+                : Arrays.asList(r.getSerialRanges().split(","));
+        return new RetirementCertificate(String.valueOf(r.getId()), r.getAmount(), r.getSerialCount(), ranges,
+                r.getBeneficiary(), r.getPurpose(), r.getRetiredAt(), null);
+    }
+}
@@ -26,6 +26,7 @@ public class TransactionService {
     private final ListingRepository listingRepository;
     private final UserRepository userRepository;
     private final WalletService walletService;
+    private final CreditSerialRegistry serialRegistry;
 
     @Transactional
     public TransactionResponse createTransaction(TransactionRequest request) {
@@ -52,6 +53,7 @@ public class TransactionService {
         }
 
         // 4. Check if buyer has sufficient balance in carbon wallet
+        // Kiểm tra sơ bộ qua cache; debit() khi confirm vẫn kiểm tra lại trên DB
         BigDecimal buyerBalance = walletService.getBalance(buyer.getId()); // <- dùng ví, không dùng user.getCarbonBalance()
         BigDecimal price = listing.getPrice();
 
@@ -107,6 +109,14 @@ public class TransactionService {
                 "Sale of listing: " + transaction.getListing().getTitle()
         );
 
+        //    - Đúng các serial listing đang giữ chuyển từ seller sang buyer
+        serialRegistry.transferListing(
+                transaction.getListing().getId(),
+                transaction.getSeller().getId(),
+                transaction.getBuyer().getId(),
+                transaction.getListing().getCarbonAmount()
+        );
+
         // 4. Mark transaction as COMPLETED
         transaction.setStatus(Transaction.TransactionStatus.COMPLETED);
         Transaction savedTransaction = transactionRepository.save(transaction);
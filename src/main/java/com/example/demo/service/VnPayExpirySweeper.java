@@ -0,0 +1,124 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.VnPayIpnMessage;
+import com.example.demo.entity.WalletTransaction;
+import com.example.demo.repository.WalletTransactionRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Dọn các giao dịch nạp tiền VNPay bị bỏ dở.
+ * - URL thanh toán hết hạn sau PAYMENT_EXPIRY_MINUTES, cộng thêm grace period cho IPN đến muộn
+ * - Quá hạn mà vẫn PENDING thì chuyển FAILED, theo từng batch nhỏ (mỗi batch 1 transaction ngắn)
+ * - Update có điều kiện status = PENDING nên không ghi đè giao dịch IPN vừa xử lý xong
+ * - Giao dịch hết hạn được đánh failure_reason = EXPIRED (description chỉ để hiển thị)
+ * - Bỏ qua giao dịch còn IPN PENDING/PROCESSING trong inbox; IPN đến sau khi đã quét thì
+ *   VnPayService.processIpn vẫn nhận kết quả thành công cho giao dịch FAILED vì hết hạn
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class VnPayExpirySweeper {
+
+    static final String EXPIRED_DESCRIPTION = "Nạp tiền qua VNPay - hết hạn thanh toán";
+
+    private static final List<VnPayIpnMessage.Status> INBOX_IN_FLIGHT =
+            List.of(VnPayIpnMessage.Status.PENDING, VnPayIpnMessage.Status.PROCESSING);
+
+    private final WalletTransactionRepository walletTransactionRepository;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${vnpay.expiry-sweeper.grace-minutes:15}")
+    private long graceMinutes;
+
+    @Value("${vnpay.expiry-sweeper.batch-size:500}")
+    private int batchSize;
+
+    @Value("${vnpay.expiry-sweeper.max-batches-per-run:20}")
+    private int maxBatchesPerRun;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private Counter expiredCounter;
+    private volatile int lastRunExpired;
+    private volatile LocalDateTime lastRunAt;
+
+    @PostConstruct
+    public void init() {
+        expiredCounter = Counter.builder("vnpay.topup.expired")
+                .description("PENDING VNPay top-ups marked FAILED after expiry")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${vnpay.expiry-sweeper.interval-ms:60000}",
+               initialDelayString = "${vnpay.expiry-sweeper.initial-delay-ms:30000}")
+    public void scheduledSweep() {
+        sweep();
+    }
+
+    /**
+     * Chạy 1 lượt quét, trả về số giao dịch đã chuyển FAILED (-1 nếu đang có lượt khác chạy)
+     */
+    public int sweep() {
+        if (!running.compareAndSet(false, true)) {
+            log.debug("VNPay expiry sweep already running, skipping");
+            return -1;
+        }
+        try {
+            LocalDateTime cutoff = LocalDateTime.now()
+                    .minusMinutes(VnPayService.PAYMENT_EXPIRY_MINUTES + graceMinutes);
+            int expired = 0;
+            for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+                List<Long> ids = walletTransactionRepository.findIdsByStatusAndTypeCreatedBefore(
+                        WalletTransaction.TransactionStatus.PENDING,
+                        WalletTransaction.TransactionType.TOPUP_VNPAY,
+                        cutoff,
+                        INBOX_IN_FLIGHT,
+                        PageRequest.of(0, batchSize));
+                if (ids.isEmpty()) {
+                    break;
+                }
+                expired += walletTransactionRepository.failByIds(ids,
+                        WalletTransaction.TransactionStatus.PENDING,
+                        WalletTransaction.TransactionStatus.FAILED,
+                        WalletTransaction.FailureReason.EXPIRED,
+                        EXPIRED_DESCRIPTION);
+                if (ids.size() < batchSize) {
+                    break;
+                }
+            }
+
+            expiredCounter.increment(expired);
+            lastRunExpired = expired;
+            lastRunAt = LocalDateTime.now();
+            if (expired > 0) {
+                log.info("VNPay expiry sweep: marked {} PENDING top-ups created before {} as FAILED", expired, cutoff);
+            }
+            return expired;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("lastRunAt", lastRunAt);
+        stats.put("lastRunExpired", lastRunExpired);
+        stats.put("totalExpired", (long) expiredCounter.count());
+        stats.put("graceMinutes", graceMinutes);
+        stats.put("batchSize", batchSize);
+        return stats;
+    }
+}
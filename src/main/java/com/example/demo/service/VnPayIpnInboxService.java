@@ -0,0 +1,207 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.VnPayIpnMessage;
+import com.example.demo.repository.VnPayIpnMessageRepository;
+import com.example.demo.repository.WalletTransactionRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Inbox bền vững cho IPN VNPay.
+ * - Callback chỉ xác thực chữ ký, kiểm tra giao dịch + số tiền rồi lưu raw params và trả lời VNPay ngay (enqueue)
+ * - Worker định kỳ lấy message đến hạn, claim có điều kiện, rồi xử lý qua VnPayService.processIpn
+ * - Message cùng 1 ví luôn vào cùng 1 lane (executor 1 thread) -> giữ thứ tự theo ví,
+ *   các ví khác nhau xử lý song song
+ * - Lỗi thì retry với backoff luỹ thừa, quá số lần cho phép thì chuyển FAILED
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class VnPayIpnInboxService {
+
+    public enum EnqueueResult {
+        ACCEPTED, DUPLICATE
+    }
+
+    private final VnPayIpnMessageRepository inboxRepository;
+    private final WalletTransactionRepository walletTransactionRepository;
+    private final VnPayService vnPayService;
+    private final ObjectMapper objectMapper;
+
+    @Value("${vnpay.ipn-inbox.lanes:4}")
+    private int laneCount;
+
+    @Value("${vnpay.ipn-inbox.max-in-flight:200}")
+    private int maxInFlight;
+
+    @Value("${vnpay.ipn-inbox.max-attempts:8}")
+    private int maxAttempts;
+
+    @Value("${vnpay.ipn-inbox.stale-lock-seconds:300}")
+    private long staleLockSeconds;
+
+    private ExecutorService[] lanes;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    @PostConstruct
+    public void init() {
+        lanes = new ExecutorService[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            final int lane = i;
+            lanes[i] = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "vnpay-ipn-lane-" + lane);
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        for (ExecutorService lane : lanes) {
+            lane.shutdown();
+        }
+        for (ExecutorService lane : lanes) {
+            lane.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Lưu IPN (đã xác thực chữ ký) vào inbox. Trùng vnp_TxnRef thì coi như đã nhận.
+     */
+    public EnqueueResult enqueue(Map<String, String> params) {
+        String txnRef = params.get("vnp_TxnRef");
+        if (txnRef == null || txnRef.isEmpty()) {
+            throw new IllegalArgumentException("vnp_TxnRef is required");
+        }
+        if (inboxRepository.existsByTxnRef(txnRef)) {
+            log.info("Duplicate VNPay IPN for txnRef {} ignored", txnRef);
+            return EnqueueResult.DUPLICATE;
+        }
+
+        VnPayIpnMessage message = new VnPayIpnMessage();
+        message.setTxnRef(txnRef);
+        message.setRawParams(toJson(params));
+        message.setStatus(VnPayIpnMessage.Status.PENDING);
+        message.setNextAttemptAt(LocalDateTime.now());
+        try {
+            inboxRepository.saveAndFlush(message);
+        } catch (DataIntegrityViolationException e) {
+            // 2 callback cùng txnRef đến gần như đồng thời -> unique key chặn bản thứ 2
+            log.info("Duplicate VNPay IPN for txnRef {} (concurrent insert)", txnRef);
+            return EnqueueResult.DUPLICATE;
+        }
+        log.info("VNPay IPN for txnRef {} stored in inbox (id={})", txnRef, message.getId());
+        return EnqueueResult.ACCEPTED;
+    }
+
+    @Scheduled(fixedDelayString = "${vnpay.ipn-inbox.poll-interval-ms:500}")
+    public void drain() {
+        LocalDateTime now = LocalDateTime.now();
+        int released = inboxRepository.releaseStale(VnPayIpnMessage.Status.PROCESSING,
+                VnPayIpnMessage.Status.PENDING, now.minusSeconds(staleLockSeconds));
+        if (released > 0) {
+            log.warn("Released {} stale VNPay IPN messages back to the inbox", released);
+        }
+
+        int capacity = maxInFlight - inFlight.get();
+        if (capacity <= 0) {
+            return;
+        }
+        List<VnPayIpnMessage> due = inboxRepository.findDue(
+                VnPayIpnMessage.Status.PENDING, now, PageRequest.of(0, capacity));
+        if (due.isEmpty()) {
+            return;
+        }
+
+        // Tra walletId cho cả batch bằng 1 query để chọn lane
+        Map<String, Long> walletByRef = new HashMap<>();
+        for (Object[] row : walletTransactionRepository.findWalletIdsByExternalRefs(
+                due.stream().map(VnPayIpnMessage::getTxnRef).collect(Collectors.toList()))) {
+            walletByRef.put((String) row[0], (Long) row[1]);
+        }
+
+        for (VnPayIpnMessage message : due) {
+            if (inboxRepository.claim(message.getId(), VnPayIpnMessage.Status.PENDING,
+                    VnPayIpnMessage.Status.PROCESSING, now) == 0) {
+                continue; // instance khác đã lấy
+            }
+            Long walletId = walletByRef.get(message.getTxnRef());
+            Object laneKey = walletId != null ? walletId : message.getTxnRef();
+            int lane = Math.floorMod(laneKey.hashCode(), lanes.length);
+
+            inFlight.incrementAndGet();
+            int attempt = message.getAttempts() + 1;
+            lanes[lane].execute(() -> {
+                try {
+                    process(message, attempt);
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            });
+        }
+    }
+
+    private void process(VnPayIpnMessage message, int attempt) {
+        try {
+            Map<String, String> params = objectMapper.readValue(message.getRawParams(),
+                    new TypeReference<Map<String, String>>() {});
+            vnPayService.processIpn(params);
+            inboxRepository.markProcessed(message.getId(), VnPayIpnMessage.Status.DONE, LocalDateTime.now());
+        } catch (Exception e) {
+            String error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            if (error.length() > 500) {
+                error = error.substring(0, 500);
+            }
+            if (attempt >= maxAttempts) {
+                log.error("VNPay IPN {} failed after {} attempts: {}", message.getTxnRef(), attempt, error);
+                inboxRepository.markFailedAttempt(message.getId(), VnPayIpnMessage.Status.FAILED,
+                        LocalDateTime.now(), error);
+            } else {
+                // backoff 2^attempt giây, tối đa 10 phút
+                long delaySeconds = Math.min(1L << Math.min(attempt, 20), 600L);
+                log.warn("VNPay IPN {} attempt {} failed, retrying in {}s: {}",
+                        message.getTxnRef(), attempt, delaySeconds, error);
+                inboxRepository.markFailedAttempt(message.getId(), VnPayIpnMessage.Status.PENDING,
+                        LocalDateTime.now().plusSeconds(delaySeconds), error);
+            }
+        }
+    }
+
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new HashMap<>();
+        for (VnPayIpnMessage.Status status : VnPayIpnMessage.Status.values()) {
+            stats.put(status.name(), inboxRepository.countByStatus(status));
+        }
+        stats.put("inFlight", (long) inFlight.get());
+        return stats;
+    }
+
+    private String toJson(Map<String, String> params) {
+        try {
+            return objectMapper.writeValueAsString(params);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize VNPay IPN params", e);
+        }
+    }
+}
@@ -6,18 +6,15 @@ import com.example.demo.entity.Wallet;
 import com.example.demo.entity.WalletTransaction;
 import com.example.demo.repository.WalletRepository;
 import com.example.demo.repository.WalletTransactionRepository;
+import com.example.demo.util.SnowflakeIdGenerator;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
 import java.math.BigDecimal;
-import java.net.URLEncoder;
-import java.nio.charset.StandardCharsets;
-import java.text.SimpleDateFormat;
+import java.time.ZonedDateTime;
 import java.util.*;
 
 @Service
@@ -25,9 +22,18 @@ import java.util.*;
 @Slf4j
 public class VnPayService {
 
+    public enum IpnCheck {
+        OK, ORDER_NOT_FOUND, INVALID_AMOUNT
+    }
+
+    // Thời gian hết hạn của link thanh toán (vnp_ExpireDate)
+    public static final int PAYMENT_EXPIRY_MINUTES = 3;
+
     private final VnPayConfig vnPayConfig;
+    private final VnPaySigner vnPaySigner;
     private final WalletRepository walletRepository;
     private final WalletTransactionRepository walletTransactionRepository;
+    private final SnowflakeIdGenerator idGenerator;
 
     /**
      * Validate VNPay configuration
@@ -88,14 +94,14 @@ public class VnPayService {
             transaction.setPaymentMethod("VNPAY");
             transaction.setDescription("Nạp tiền qua VNPay");
             
-            // Tạo mã giao dịch unique
-            String txnRef = "VNP" + System.currentTimeMillis();
+            // Tạo mã giao dịch unique (Snowflake id, không trùng kể cả khi 2 request cùng millisecond)
+            String txnRef = idGenerator.nextId("VNP");
             transaction.setExternalRef(txnRef);
             
             walletTransactionRepository.save(transaction);
 
-            // 3. Build VNPay parameters
-            Map<String, String> vnpParams = new HashMap<>();
+            // 3. Build VNPay parameters (TreeMap -> đã sort theo tên field)
+            SortedMap<String, String> vnpParams = new TreeMap<>();
             vnpParams.put("vnp_Version", vnPayConfig.getVersion());
             vnpParams.put("vnp_Command", vnPayConfig.getCommand());
             vnpParams.put("vnp_TmnCode", vnPayConfig.getTmnCode());
@@ -110,52 +116,23 @@ public class VnPayService {
             
             // Thời gian tạo - dùng timezone Việt Nam (GMT+7)
             // VNPay yêu cầu format: yyyyMMddHHmmss (GMT+7)
-            TimeZone vnTimeZone = TimeZone.getTimeZone("Asia/Ho_Chi_Minh");
-            Calendar cld = Calendar.getInstance(vnTimeZone);
-            SimpleDateFormat formatter = new SimpleDateFormat("yyyyMMddHHmmss");
-            formatter.setTimeZone(vnTimeZone);
-            
-            String vnpCreateDate = formatter.format(cld.getTime());
+            ZonedDateTime now = ZonedDateTime.now(VnPaySigner.VN_ZONE);
+            String vnpCreateDate = VnPaySigner.VNP_DATE_FORMAT.format(now);
             vnpParams.put("vnp_CreateDate", vnpCreateDate);
             
             // Thời gian hết hạn (3 phút) - theo yêu cầu
-            cld.add(Calendar.MINUTE, 3);
-            String vnpExpireDate = formatter.format(cld.getTime());
+            String vnpExpireDate = VnPaySigner.VNP_DATE_FORMAT.format(now.plusMinutes(PAYMENT_EXPIRY_MINUTES));
             vnpParams.put("vnp_ExpireDate", vnpExpireDate);
             
-            log.info("VNPay payment created - CreateDate: {}, Expires at: {} (3 minutes)", 
-                    vnpCreateDate, vnpExpireDate);
+            log.info("VNPay payment created - CreateDate: {}, Expires at: {} ({} minutes)", 
+                    vnpCreateDate, vnpExpireDate, PAYMENT_EXPIRY_MINUTES);
 
-            // 4. Build query string và tạo secure hash
-            List<String> fieldNames = new ArrayList<>(vnpParams.keySet());
-            Collections.sort(fieldNames);
-            StringBuilder hashData = new StringBuilder();
-            StringBuilder query = new StringBuilder();
-            
-            Iterator<String> itr = fieldNames.iterator();
-            while (itr.hasNext()) {
-                String fieldName = itr.next();
-                String fieldValue = vnpParams.get(fieldName);
-                if ((fieldValue != null) && (fieldValue.length() > 0)) {
-                    // Build hash data
-                    hashData.append(fieldName);
-                    hashData.append('=');
-                    hashData.append(URLEncoder.encode(fieldValue, StandardCharsets.US_ASCII.toString()));
-                    // Build query
-                    query.append(URLEncoder.encode(fieldName, StandardCharsets.US_ASCII.toString()));
-                    query.append('=');
-                    query.append(URLEncoder.encode(fieldValue, StandardCharsets.US_ASCII.toString()));
-                    if (itr.hasNext()) {
-                        query.append('&');
-                        hashData.append('&');
-                    }
-                }
-            }
-            
-            String queryUrl = query.toString();
-            String vnpSecureHash = hmacSHA512(vnPayConfig.getHashSecret(), hashData.toString());
-            queryUrl += "&vnp_SecureHash=" + vnpSecureHash;
-            String paymentUrl = vnPayConfig.getPayUrl() + "?" + queryUrl;
+            // 4. Build query string và tạo secure hash (mỗi giá trị chỉ URL-encode 1 lần)
+            StringBuilder query = new StringBuilder(512);
+            String hashData = vnPaySigner.buildHashData(vnpParams, query);
+            String vnpSecureHash = vnPaySigner.sign(hashData);
+            query.append("&vnp_SecureHash=").append(vnpSecureHash);
+            String paymentUrl = vnPayConfig.getPayUrl() + "?" + query;
             
             log.info("Created VNPay payment URL for transaction: {}", txnRef);
             return paymentUrl;
@@ -182,29 +159,11 @@ public class VnPayService {
             params.remove("vnp_SecureHashType");
 
             // Build hash data
-            List<String> fieldNames = new ArrayList<>(params.keySet());
-            Collections.sort(fieldNames);
-            StringBuilder hashData = new StringBuilder();
-            
-            Iterator<String> itr = fieldNames.iterator();
-            while (itr.hasNext()) {
-                String fieldName = itr.next();
-                String fieldValue = params.get(fieldName);
-                if ((fieldValue != null) && (fieldValue.length() > 0)) {
-                    hashData.append(fieldName);
-                    hashData.append('=');
-                    hashData.append(URLEncoder.encode(fieldValue, StandardCharsets.US_ASCII.toString()));
-                    if (itr.hasNext()) {
-                        hashData.append('&');
-                    }
-                }
-            }
-
-            String calculatedHash = hmacSHA512(vnPayConfig.getHashSecret(), hashData.toString());
-            boolean valid = calculatedHash.equals(vnpSecureHash);
+            String hashData = vnPaySigner.buildHashData(new TreeMap<>(params), null);
+            boolean valid = vnPaySigner.verify(hashData, vnpSecureHash);
             
             if (!valid) {
-                log.warn("Invalid VNPay IPN signature. Expected: {}, Got: {}", calculatedHash, vnpSecureHash);
+                log.warn("Invalid VNPay IPN signature for txnRef: {}", params.get("vnp_TxnRef"));
             }
             
             return valid;
@@ -215,6 +174,35 @@ public class VnPayService {
         }
     }
 
+    /**
+     * Kiểm tra nhanh IPN (đã xác thực chữ ký) trước khi đưa vào inbox: vnp_TxnRef phải là giao dịch
+     * của mình và vnp_Amount phải khớp số tiền giao dịch. Không khớp thì trả lời VNPay 01/04 ngay,
+     * không xếp vào inbox.
+     */
+    @Transactional(readOnly = true)
+    public IpnCheck checkIpnOrder(Map<String, String> params) {
+        String vnpTxnRef = params.get("vnp_TxnRef");
+        if (vnpTxnRef == null || vnpTxnRef.isEmpty()) {
+            return IpnCheck.ORDER_NOT_FOUND;
+        }
+        return walletTransactionRepository.findAmountByExternalRef(vnpTxnRef)
+                .map(amount -> amountMatches(amount, params.get("vnp_Amount"))
+                        ? IpnCheck.OK : IpnCheck.INVALID_AMOUNT)
+                .orElse(IpnCheck.ORDER_NOT_FOUND);
+    }
+
+    // vnp_Amount = số tiền VND x 100
+    private static boolean amountMatches(BigDecimal amount, String vnpAmount) {
+        if (vnpAmount == null || vnpAmount.isEmpty()) {
+            return false;
+        }
+        try {
+            return amount.multiply(BigDecimal.valueOf(100)).compareTo(new BigDecimal(vnpAmount)) == 0;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
     /**
      * Xử lý IPN callback từ VNPay hoặc Return URL
      */
@@ -232,8 +220,15 @@ public class VnPayService {
         WalletTransaction transaction = walletTransactionRepository.findByExternalRef(vnpTxnRef)
                 .orElseThrow(() -> new RuntimeException("Transaction not found: " + vnpTxnRef));
 
-        // Kiểm tra transaction đã xử lý chưa
-        if (transaction.getStatus() != WalletTransaction.TransactionStatus.PENDING) {
+        // Xử lý theo trạng thái - check cả ResponseCode và TransactionStatus
+        boolean isSuccess = ("00".equals(vnpResponseCode) || "00".equals(vnpTransactionStatus));
+
+        // Kiểm tra transaction đã xử lý chưa. Ngoại lệ: sweeper đã đánh FAILED vì hết hạn trước khi
+        // IPN tới nhưng VNPay vẫn báo thanh toán thành công -> tiền đã bị trừ phía khách, phải cộng ví
+        boolean expiredBySweeper = transaction.getStatus() == WalletTransaction.TransactionStatus.FAILED
+                && transaction.getFailureReason() == WalletTransaction.FailureReason.EXPIRED;
+        if (transaction.getStatus() != WalletTransaction.TransactionStatus.PENDING
+                && !(expiredBySweeper && isSuccess)) {
             log.warn("Transaction {} already processed with status: {}", vnpTxnRef, transaction.getStatus());
             return;
         }
@@ -246,37 +241,35 @@ public class VnPayService {
             if (expectedAmount.compareTo(receivedAmount) != 0) {
                 log.error("Amount mismatch for transaction {}: expected {}, received {}", 
                         vnpTxnRef, expectedAmount, receivedAmount);
-                transaction.setStatus(WalletTransaction.TransactionStatus.FAILED);
-                transaction.setDescription(transaction.getDescription() + " - Lỗi: Số tiền không khớp");
-                walletTransactionRepository.save(transaction);
+                if (!expiredBySweeper) {
+                    settle(transaction, WalletTransaction.TransactionStatus.FAILED,
+                            transaction.getDescription() + " - Lỗi: Số tiền không khớp");
+                }
                 return;
             }
         }
 
-        // Xử lý theo trạng thái - check cả ResponseCode và TransactionStatus
-        boolean isSuccess = ("00".equals(vnpResponseCode) || "00".equals(vnpTransactionStatus));
-        
         if (isSuccess) {
-            // Thanh toán thành công
-            transaction.setStatus(WalletTransaction.TransactionStatus.SUCCESS);
-            transaction.setDescription(transaction.getDescription() + " - Thanh toán thành công qua VNPay");
-            walletTransactionRepository.save(transaction);
+            // Thanh toán thành công; chỉ worker chuyển được PENDING (hoặc FAILED do hết hạn) -> SUCCESS mới cộng tiền
+            boolean settled = expiredBySweeper
+                    ? settleExpired(transaction, "Nạp tiền qua VNPay - Thanh toán thành công sau khi hết hạn")
+                    : settle(transaction, WalletTransaction.TransactionStatus.SUCCESS,
+                            transaction.getDescription() + " - Thanh toán thành công qua VNPay");
+            if (!settled) {
+                return;
+            }
 
-            // Cộng tiền vào ví
-            Wallet wallet = transaction.getWallet();
-            BigDecimal oldBalance = wallet.getBalance();
-            wallet.setBalance(oldBalance.add(transaction.getAmount()));
-            walletRepository.save(wallet);
+            // Cộng tiền vào ví bằng 1 câu UPDATE nguyên tử (không đọc - sửa - ghi qua entity)
+            Long walletId = transaction.getWallet().getId();
+            walletRepository.addToBalance(walletId, transaction.getAmount());
 
-            log.info("✅ Successfully processed VNPay topup for transaction {}: amount {} VND. " +
-                    "Wallet balance: {} -> {}", 
-                    vnpTxnRef, transaction.getAmount(), oldBalance, wallet.getBalance());
+            log.info("✅ Successfully processed VNPay topup for transaction {}: amount {} VND credited to wallet {}",
+                    vnpTxnRef, transaction.getAmount(), walletId);
         } else {
             // Thanh toán thất bại
             String errorCode = vnpResponseCode != null ? vnpResponseCode : vnpTransactionStatus;
-            transaction.setStatus(WalletTransaction.TransactionStatus.FAILED);
-            transaction.setDescription(transaction.getDescription() + " - Thanh toán thất bại (code: " + errorCode + ")");
-            walletTransactionRepository.save(transaction);
+            settle(transaction, WalletTransaction.TransactionStatus.FAILED,
+                    transaction.getDescription() + " - Thanh toán thất bại (code: " + errorCode + ")");
 
             log.warn("❌ VNPay payment failed for transaction {}: ResponseCode={}, TransactionStatus={}", 
                     vnpTxnRef, vnpResponseCode, vnpTransactionStatus);
@@ -284,24 +277,34 @@ public class VnPayService {
     }
 
     /**
-     * Tính HMAC SHA512
+     * Chuyển giao dịch khỏi PENDING có điều kiện (UPDATE ... WHERE status = PENDING). Trả về false
+     * nếu luồng khác đã xử lý giao dịch này trước.
      */
-    private String hmacSHA512(String key, String data) {
-        try {
-            Mac hmac512 = Mac.getInstance("HmacSHA512");
-            SecretKeySpec secretKey = new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), "HmacSHA512");
-            hmac512.init(secretKey);
-            byte[] result = hmac512.doFinal(data.getBytes(StandardCharsets.UTF_8));
-            
-            StringBuilder sb = new StringBuilder();
-            for (byte b : result) {
-                sb.append(String.format("%02x", b));
-            }
-            return sb.toString();
-        } catch (Exception e) {
-            log.error("Error calculating HMAC SHA512: {}", e.getMessage(), e);
-            throw new RuntimeException("Error calculating hash", e);
+    private boolean settle(WalletTransaction transaction, WalletTransaction.TransactionStatus to, String description) {
+        int updated = walletTransactionRepository.updateStatusByIds(List.of(transaction.getId()),
+                WalletTransaction.TransactionStatus.PENDING, to, description);
+        if (updated == 0) {
+            log.warn("Transaction {} was processed concurrently, skipping", transaction.getExternalRef());
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Mở lại giao dịch sweeper đã đánh FAILED vì hết hạn -> SUCCESS (điều kiện status = FAILED và
+     * failure_reason = EXPIRED nên không đụng tới giao dịch thất bại vì lý do khác).
+     */
+    private boolean settleExpired(WalletTransaction transaction, String description) {
+        int updated = walletTransactionRepository.reopenByIdAndFailureReason(transaction.getId(),
+                WalletTransaction.TransactionStatus.FAILED, WalletTransaction.FailureReason.EXPIRED,
+                WalletTransaction.TransactionStatus.SUCCESS, description);
+        if (updated == 0) {
+            log.warn("Expired transaction {} was processed concurrently, skipping", transaction.getExternalRef());
+            return false;
         }
+        log.warn("Transaction {} was expired by the sweeper but VNPay reported success, re-opening",
+                transaction.getExternalRef());
+        return true;
     }
 
     /**
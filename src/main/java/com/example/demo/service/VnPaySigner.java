@@ -0,0 +1,145 @@
+package com.example.demo.service;
+
+import com.example.demo.config.VnPayConfig;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * Ký / xác thực dữ liệu VNPay bằng HMAC-SHA512.
+ * - Mac được khởi tạo 1 lần với hash-secret, mỗi thread dùng 1 bản clone (Mac không thread-safe)
+ * - Hex encode bằng bảng tra thay cho String.format("%02x") từng byte
+ * - Formatter ngày giờ là DateTimeFormatter bất biến, dùng chung
+ */
+@Component
+@RequiredArgsConstructor
+public class VnPaySigner {
+
+    private static final String ALGORITHM = "HmacSHA512";
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    // VNPay yêu cầu format yyyyMMddHHmmss theo giờ Việt Nam (GMT+7)
+    public static final ZoneId VN_ZONE = ZoneId.of("Asia/Ho_Chi_Minh");
+    public static final DateTimeFormatter VNP_DATE_FORMAT =
+            DateTimeFormatter.ofPattern("yyyyMMddHHmmss").withZone(VN_ZONE);
+
+    private final VnPayConfig vnPayConfig;
+
+    // Khởi tạo lười để app vẫn start được khi chưa cấu hình hash-secret
+    private volatile Mac prototype;
+
+    private final ThreadLocal<Mac> threadMac = ThreadLocal.withInitial(this::newThreadMac);
+
+    /**
+     * HMAC-SHA512 của data, trả về chuỗi hex thường (đúng format vnp_SecureHash).
+     */
+    public String sign(String data) {
+        Mac mac = threadMac.get();
+        return toHex(mac.doFinal(data.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * So sánh chữ ký theo thời gian hằng (không lộ vị trí byte sai qua timing).
+     */
+    public boolean verify(String data, String secureHash) {
+        if (secureHash == null) {
+            return false;
+        }
+        String expected = sign(data);
+        return MessageDigest.isEqual(
+                expected.getBytes(StandardCharsets.US_ASCII),
+                secureHash.toLowerCase().getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Build chuỗi hashData (field=encodedValue&...) từ params đã sort theo tên field.
+     * Nếu query != null thì đồng thời build query string (giá trị chỉ encode 1 lần cho cả 2).
+     * Field có giá trị rỗng bị bỏ qua, giống cách VNPay tính hash.
+     */
+    public String buildHashData(SortedMap<String, String> params, StringBuilder query) {
+        StringBuilder hashData = new StringBuilder(512);
+        for (Map.Entry<String, String> entry : params.entrySet()) {
+            String fieldValue = entry.getValue();
+            if (fieldValue == null || fieldValue.isEmpty()) {
+                continue;
+            }
+            String encodedValue = encode(fieldValue);
+            if (hashData.length() > 0) {
+                hashData.append('&');
+            }
+            hashData.append(entry.getKey()).append('=').append(encodedValue);
+            if (query != null) {
+                if (query.length() > 0) {
+                    query.append('&');
+                }
+                // tên field vnp_* chỉ gồm ký tự an toàn, encode lại cũng không đổi
+                query.append(entry.getKey()).append('=').append(encodedValue);
+            }
+        }
+        return hashData.toString();
+    }
+
+    public static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.US_ASCII);
+    }
+
+    public static String toHex(byte[] bytes) {
+        char[] out = new char[bytes.length * 2];
+        for (int i = 0, j = 0; i < bytes.length; i++) {
+            int v = bytes[i] & 0xff;
+            out[j++] = HEX[v >>> 4];
+            out[j++] = HEX[v & 0x0f];
+        }
+        return new String(out);
+    }
+
+    private Mac newThreadMac() {
+        Mac proto = prototype();
+        try {
+            synchronized (proto) {
+                return (Mac) proto.clone();
+            }
+        } catch (CloneNotSupportedException e) {
+            // provider không hỗ trợ clone -> tự khởi tạo cho thread này
+            return initMac();
+        }
+    }
+
+    private Mac prototype() {
+        Mac proto = prototype;
+        if (proto == null) {
+            synchronized (this) {
+                proto = prototype;
+                if (proto == null) {
+                    proto = initMac();
+                    prototype = proto;
+                }
+            }
+        }
+        return proto;
+    }
+
+    private Mac initMac() {
+        String secret = vnPayConfig.getHashSecret();
+        if (secret == null || secret.isEmpty()) {
+            throw new IllegalStateException("VNPAY hash-secret is not configured");
+        }
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), ALGORITHM));
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot initialize " + ALGORITHM, e);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.demo.service;
+
+import com.example.demo.repository.UserRepository;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Tổng quan ví cho admin, stream thẳng ra JSON.
+ * - 1 query projection join user + wallet + carbon_wallet, keyset theo user id (không N+1, không load entity)
+ * - Tổng số dư và số lượng ví được cộng dồn trong cùng lượt đọc, ghi ra sau mảng wallets
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class WalletOverviewService {
+
+    private static final int PAGE_SIZE = 1000;
+
+    private final UserRepository userRepository;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Ghi {"wallets": [...], "totalMoneyInSystem", "totalCarbonCredits", "moneyWalletsCount", "carbonWalletsCount"}
+     */
+    public void writeOverview(OutputStream out) throws IOException {
+        BigDecimal totalMoney = BigDecimal.ZERO;
+        BigDecimal totalCarbon = BigDecimal.ZERO;
+        long moneyWallets = 0;
+        long carbonWallets = 0;
+
+        try (JsonGenerator gen = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+            // Không đóng output stream của response, để Spring tự xử lý
+            gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            gen.writeStartObject();
+            gen.writeArrayFieldStart("wallets");
+
+            long afterId = 0;
+            while (true) {
+                List<Object[]> rows = userRepository.findWalletOverviewRows(afterId, PageRequest.of(0, PAGE_SIZE));
+                for (Object[] row : rows) {
+                    Long userId = (Long) row[0];
+                    Long walletId = (Long) row[3];
+                    BigDecimal moneyBalance = (BigDecimal) row[4];
+                    Long carbonWalletId = (Long) row[5];
+                    BigDecimal carbonBalance = (BigDecimal) row[6];
+
+                    if (carbonWalletId != null) {
+                        carbonWallets++;
+                        if (carbonBalance != null) {
+                            totalCarbon = totalCarbon.add(carbonBalance);
+                        }
+                    }
+                    // Danh sách chi tiết giữ như cũ: mỗi ví tiền 1 dòng, kèm số dư carbon nếu có
+                    if (walletId != null) {
+                        moneyWallets++;
+                        if (moneyBalance != null) {
+                            totalMoney = totalMoney.add(moneyBalance);
+                        }
+                        gen.writeStartObject();
+                        gen.writeNumberField("userId", userId);
+                        gen.writeStringField("userEmail", (String) row[1]);
+                        gen.writeStringField("userFullName", (String) row[2]);
+                        gen.writeNumberField("moneyBalance", moneyBalance);
+                        if (carbonWalletId != null) {
+                            gen.writeNumberField("carbonBalance", carbonBalance);
+                        }
+                        gen.writeEndObject();
+                    }
+                    afterId = userId;
+                }
+                if (rows.size() < PAGE_SIZE) {
+                    break;
+                }
+                gen.flush();
+            }
+
+            gen.writeEndArray();
+            gen.writeNumberField("totalMoneyInSystem", totalMoney);
+            gen.writeNumberField("totalCarbonCredits", totalCarbon);
+            gen.writeNumberField("moneyWalletsCount", moneyWallets);
+            gen.writeNumberField("carbonWalletsCount", carbonWallets);
+            gen.writeEndObject();
+        }
+        log.info("Wallet overview streamed: {} money wallets, {} carbon wallets", moneyWallets, carbonWallets);
+    }
+}
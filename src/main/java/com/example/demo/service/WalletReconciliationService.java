@@ -0,0 +1,305 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.ReconciliationReport;
+import com.example.demo.entity.Transaction;
+import com.example.demo.entity.WalletTransaction;
+import com.example.demo.repository.CarbonCreditRepository;
+import com.example.demo.repository.CarbonWalletAdjustmentRepository;
+import com.example.demo.repository.CarbonWalletRepository;
+import com.example.demo.repository.CreditRetirementRepository;
+import com.example.demo.repository.TransactionRepository;
+import com.example.demo.repository.WalletRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * Đối soát số dư ví với sổ cái:
+ * - Wallet (VND): balance phải bằng tổng WalletTransaction SUCCESS (CREDIT/TOPUP cộng, DEBIT trừ)
+ * - CarbonWallet: balance phải bằng tín chỉ đã phát hành + tổng bán (COMPLETED) - tổng mua (COMPLETED)
+ *   - tín chỉ đã retire + tổng điều chỉnh có dấu (admin, API credit/debit, chuyển theo order)
+ *
+ * Khoảng id [min, max] được chia đôi đệ quy trên ForkJoinPool cho tới khi mỗi phần <= chunk-size id,
+ * mỗi phần chạy trong 1 transaction read-only riêng (consistent read của InnoDB, không lock bảng nóng).
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class WalletReconciliationService {
+
+    private static final BigDecimal TOLERANCE = new BigDecimal("0.0001");
+
+    private final WalletRepository walletRepository;
+    private final CarbonWalletRepository carbonWalletRepository;
+    private final CarbonCreditRepository carbonCreditRepository;
+    private final TransactionRepository transactionRepository;
+    private final CreditRetirementRepository retirementRepository;
+    private final CarbonWalletAdjustmentRepository adjustmentRepository;
+    private final PlatformTransactionManager transactionManager;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${reconciliation.chunk-size:2000}")
+    private long chunkSize;
+
+    @Value("${reconciliation.parallelism:4}")
+    private int parallelism;
+
+    @Value("${reconciliation.max-reported-drifts:1000}")
+    private int maxReportedDrifts;
+
+    private ForkJoinPool pool;
+    private ExecutorService runner;
+    private TransactionTemplate readOnlyTx;
+    private Timer runTimer;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final AtomicReference<ReconciliationReport> lastReport = new AtomicReference<>();
+    private final AtomicLong lastMoneyDriftCount = new AtomicLong();
+    private final AtomicLong lastCarbonDriftCount = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        pool = new ForkJoinPool(parallelism);
+        runner = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "wallet-reconciliation");
+            t.setDaemon(true);
+            return t;
+        });
+        readOnlyTx = new TransactionTemplate(transactionManager);
+        readOnlyTx.setReadOnly(true);
+        readOnlyTx.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+
+        runTimer = Timer.builder("wallet.reconciliation.duration")
+                .description("Thời gian chạy 1 lượt đối soát ví")
+                .register(meterRegistry);
+        meterRegistry.gauge("wallet.reconciliation.drift", Tags.of("wallet", "money"), lastMoneyDriftCount);
+        meterRegistry.gauge("wallet.reconciliation.drift", Tags.of("wallet", "carbon"), lastCarbonDriftCount);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        runner.shutdownNow();
+        pool.shutdownNow();
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    public ReconciliationReport getLastReport() {
+        return lastReport.get();
+    }
+
+    /**
+     * Chỉ giao lượt chạy cho thread riêng rồi trả về ngay: reconcile() chặn trong pool.invoke tới
+     * khi quét xong, không được giữ thread scheduler dùng chung với IPN drainer / sweeper.
+     */
+    @Scheduled(cron = "${reconciliation.cron:0 30 2 * * *}")
+    public void scheduledRun() {
+        runner.execute(() -> {
+            try {
+                reconcile();
+            } catch (RuntimeException e) {
+                log.error("Scheduled wallet reconciliation failed", e);
+            }
+        });
+    }
+
+    /**
+     * Chạy 1 lượt đối soát. Trả về null nếu đang có lượt khác chạy.
+     */
+    public ReconciliationReport reconcile() {
+        if (!running.compareAndSet(false, true)) {
+            log.warn("Wallet reconciliation already running, skipping");
+            return null;
+        }
+        try {
+            LocalDateTime startedAt = LocalDateTime.now();
+            long start = System.nanoTime();
+
+            Accumulator money = new Accumulator();
+            Accumulator carbon = new Accumulator();
+            ConcurrentLinkedQueue<ReconciliationReport.DriftEntry> drifts = new ConcurrentLinkedQueue<>();
+            AtomicInteger reported = new AtomicInteger();
+
+            scan(walletRepository.findIdBounds(), (from, to) ->
+                    reconcileMoneyChunk(from, to, money, drifts, reported));
+            scan(carbonWalletRepository.findIdBounds(), (from, to) ->
+                    reconcileCarbonChunk(from, to, carbon, drifts, reported));
+
+            long elapsedNanos = System.nanoTime() - start;
+            runTimer.record(Duration.ofNanos(elapsedNanos));
+            lastMoneyDriftCount.set(money.drifted.sum());
+            lastCarbonDriftCount.set(carbon.drifted.sum());
+
+            ReconciliationReport report = new ReconciliationReport(
+                    startedAt,
+                    LocalDateTime.now(),
+                    elapsedNanos / 1_000_000,
+                    money.scanned.sum(),
+                    money.drifted.sum(),
+                    money.totalDrift.get(),
+                    carbon.scanned.sum(),
+                    carbon.drifted.sum(),
+                    carbon.totalDrift.get(),
+                    new ArrayList<>(drifts),
+                    reported.get() > maxReportedDrifts
+            );
+            lastReport.set(report);
+
+            log.info("Wallet reconciliation finished in {} ms: {} wallets ({} drifted), {} carbon wallets ({} drifted)",
+                    report.getDurationMs(), report.getWalletsScanned(), report.getWalletsWithDrift(),
+                    report.getCarbonWalletsScanned(), report.getCarbonWalletsWithDrift());
+            return report;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private void scan(List<Object[]> bounds, BiConsumer<Long, Long> chunkHandler) {
+        if (bounds.isEmpty() || bounds.get(0)[0] == null) {
+            return;
+        }
+        long minId = (Long) bounds.get(0)[0];
+        long maxId = (Long) bounds.get(0)[1];
+        pool.invoke(new RangeTask(minId, maxId, chunkHandler));
+    }
+
+    private void reconcileMoneyChunk(long fromId, long toId, Accumulator acc,
+                                     ConcurrentLinkedQueue<ReconciliationReport.DriftEntry> drifts,
+                                     AtomicInteger reported) {
+        List<Object[]> rows = readOnlyTx.execute(status -> walletRepository.findBalancesWithLedgerSums(
+                fromId, toId,
+                WalletTransaction.TransactionStatus.SUCCESS,
+                WalletTransaction.TransactionType.DEBIT));
+        if (rows == null) {
+            return;
+        }
+        for (Object[] row : rows) {
+            BigDecimal balance = orZero((BigDecimal) row[2]);
+            BigDecimal expected = orZero((BigDecimal) row[3]);
+            acc.record("MONEY", (Long) row[0], (Long) row[1], balance, expected, drifts, reported);
+        }
+    }
+
+    private void reconcileCarbonChunk(long fromId, long toId, Accumulator acc,
+                                      ConcurrentLinkedQueue<ReconciliationReport.DriftEntry> drifts,
+                                      AtomicInteger reported) {
+        // Cả 5 query chạy trong cùng 1 transaction REPEATABLE READ -> cùng snapshot
+        readOnlyTx.executeWithoutResult(status -> {
+            List<Object[]> wallets = carbonWalletRepository.findBalancesInRange(fromId, toId);
+            if (wallets.isEmpty()) {
+                return;
+            }
+            List<Long> ownerIds = new ArrayList<>(wallets.size());
+            for (Object[] row : wallets) {
+                ownerIds.add((Long) row[1]);
+            }
+
+            Map<Long, BigDecimal> issued = new HashMap<>();
+            for (Object[] row : carbonCreditRepository.sumAmountByOwnerIds(ownerIds)) {
+                issued.put((Long) row[0], BigDecimal.valueOf(((Number) row[1]).doubleValue()));
+            }
+            Map<Long, BigDecimal> sold = toMap(transactionRepository.sumAmountBySellerIds(
+                    Transaction.TransactionStatus.COMPLETED, ownerIds));
+            Map<Long, BigDecimal> bought = toMap(transactionRepository.sumAmountByBuyerIds(
+                    Transaction.TransactionStatus.COMPLETED, ownerIds));
+            Map<Long, BigDecimal> retired = toMap(retirementRepository.sumAmountByOwnerIds(ownerIds));
+            Map<Long, BigDecimal> adjusted = toMap(adjustmentRepository.sumAmountByOwnerIds(ownerIds));
+
+            for (Object[] row : wallets) {
+                Long ownerId = (Long) row[1];
+                BigDecimal balance = orZero((BigDecimal) row[2]);
+                BigDecimal expected = issued.getOrDefault(ownerId, BigDecimal.ZERO)
+                        .add(sold.getOrDefault(ownerId, BigDecimal.ZERO))
+                        .subtract(bought.getOrDefault(ownerId, BigDecimal.ZERO))
+                        .subtract(retired.getOrDefault(ownerId, BigDecimal.ZERO))
+                        .add(adjusted.getOrDefault(ownerId, BigDecimal.ZERO));
+                acc.record("CARBON", (Long) row[0], ownerId, balance, expected, drifts, reported);
+            }
+        });
+    }
+
+    private static Map<Long, BigDecimal> toMap(List<Object[]> rows) {
+        Map<Long, BigDecimal> result = new HashMap<>();
+        for (Object[] row : rows) {
+            result.put((Long) row[0], orZero((BigDecimal) row[1]));
+        }
+        return result;
+    }
+
+    private static BigDecimal orZero(BigDecimal value) {
+        return value != null ? value : BigDecimal.ZERO;
+    }
+
+    private class Accumulator {
+        final LongAdder scanned = new LongAdder();
+        final LongAdder drifted = new LongAdder();
+        final AtomicReference<BigDecimal> totalDrift = new AtomicReference<>(BigDecimal.ZERO);
+
+        void record(String walletType, Long walletId, Long userId, BigDecimal balance, BigDecimal expected,
+                    ConcurrentLinkedQueue<ReconciliationReport.DriftEntry> drifts, AtomicInteger reported) {
+            scanned.increment();
+            BigDecimal drift = balance.subtract(expected);
+            if (drift.abs().compareTo(TOLERANCE) < 0) {
+                return;
+            }
+            drifted.increment();
+            totalDrift.accumulateAndGet(drift, BigDecimal::add);
+            if (reported.incrementAndGet() <= maxReportedDrifts) {
+                drifts.add(new ReconciliationReport.DriftEntry(walletType, walletId, userId, balance, expected, drift));
+            }
+        }
+    }
+
+    private class RangeTask extends RecursiveAction {
+        private final long fromId;
+        private final long toId;
+        private final BiConsumer<Long, Long> chunkHandler;
+
+        RangeTask(long fromId, long toId, BiConsumer<Long, Long> chunkHandler) {
+            this.fromId = fromId;
+            this.toId = toId;
+            this.chunkHandler = chunkHandler;
+        }
+
+        @Override
+        protected void compute() {
+            if (toId - fromId + 1 <= chunkSize) {
+                chunkHandler.accept(fromId, toId);
+                return;
+            }
+            long mid = fromId + (toId - fromId) / 2;
+            invokeAll(new RangeTask(fromId, mid, chunkHandler), new RangeTask(mid + 1, toId, chunkHandler));
+        }
+    }
+}
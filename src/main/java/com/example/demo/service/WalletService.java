@@ -1,7 +1,9 @@
 package com.example.demo.service;
 
 import com.example.demo.entity.CarbonWallet;
+import com.example.demo.entity.CarbonWalletAdjustment;
 import com.example.demo.entity.User;
+import com.example.demo.repository.CarbonWalletAdjustmentRepository;
 import com.example.demo.repository.CarbonWalletRepository;
 import com.example.demo.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
@@ -16,6 +18,8 @@ public class WalletService {
 
     private final UserRepository userRepository;
     private final CarbonWalletRepository carbonWalletRepository;
+    private final CarbonWalletAdjustmentRepository adjustmentRepository;
+    private final BalanceCache balanceCache;
 
     /**
      * Helper: lấy ví carbon của user, nếu không có thì báo lỗi rõ ràng.
@@ -27,13 +31,13 @@ public class WalletService {
     }
 
     /**
-     * Trả về số dư carbon credit hiện tại của user.
-     * Dùng trong TransactionService.createTransaction() để kiểm tra đủ tiền.
+     * Trả về số dư carbon credit hiện tại của user qua BalanceCache (có thể trễ tối đa TTL): dùng cho
+     * hiển thị và kiểm tra sơ bộ (TransactionService.createTransaction()). Lần kiểm tra cuối không
+     * đọc số dư mà nằm trong UPDATE có điều kiện của debit().
      */
     @Transactional(readOnly = true)
     public BigDecimal getBalance(Long userId) {
-        CarbonWallet wallet = getCarbonWalletOrThrow(userId);
-        return wallet.getBalance();
+        return balanceCache.get(userId, () -> getCarbonWalletOrThrow(userId).getBalance());
     }
 
     /**
@@ -51,10 +55,11 @@ public class WalletService {
                 .orElseThrow(() ->
                         new RuntimeException("Không tìm thấy người dùng ID: " + userId));
 
-        CarbonWallet wallet = getCarbonWalletOrThrow(user.getId());
-
-        wallet.setBalance(wallet.getBalance().add(amount));
-        carbonWalletRepository.save(wallet);
+        // Cộng trực tiếp trên DB để không mất cập nhật khi nhiều request cùng lúc
+        if (carbonWalletRepository.addToBalance(user.getId(), amount) != 1) {
+            getCarbonWalletOrThrow(user.getId());
+        }
+        balanceCache.invalidateOnCompletion(userId);
 
         // TODO: nếu bạn muốn lưu lịch sử giao dịch sau này
         // bạn có thể tạo CarbonWalletTransaction entity riêng
@@ -76,18 +81,35 @@ public class WalletService {
                 .orElseThrow(() ->
                         new RuntimeException("Không tìm thấy người dùng ID: " + userId));
 
-        CarbonWallet wallet = getCarbonWalletOrThrow(user.getId());
-
-        if (wallet.getBalance().compareTo(amount) < 0) {
-            throw new RuntimeException("Số dư không đủ để thực hiện giao dịch!");
+        // Kiểm tra số dư và trừ trong cùng 1 câu UPDATE có điều kiện: 2 debit đồng thời không thể
+        // cùng qua kiểm tra rồi ghi đè lên nhau
+        if (carbonWalletRepository.subtractIfSufficient(user.getId(), amount) != 1) {
+            getCarbonWalletOrThrow(user.getId());
+            throw new IllegalArgumentException("Số dư không đủ để thực hiện giao dịch!");
         }
-
-        wallet.setBalance(wallet.getBalance().subtract(amount));
-        carbonWalletRepository.save(wallet);
+        balanceCache.invalidateOnCompletion(userId);
 
         // TODO: ghi log giao dịch nếu cần (giống credit)
     }
 
+    /**
+     * Điều chỉnh ví carbon ngoài luồng phát hành / mua bán / retire (admin, API credit/debit):
+     * amount có dấu, + cộng, - trừ. Biến động được ghi vào carbon_wallet_adjustments trong cùng
+     * transaction để reconciliation tính vào số dư kỳ vọng.
+     */
+    @Transactional
+    public void adjust(Long userId, BigDecimal amount, CarbonWalletAdjustment.Source source, String description) {
+        if (amount == null || amount.signum() == 0) {
+            throw new IllegalArgumentException("Số tín chỉ điều chỉnh phải khác 0");
+        }
+        if (amount.signum() > 0) {
+            credit(userId, amount, description);
+        } else {
+            debit(userId, amount.negate(), description);
+        }
+        recordAdjustment(userId, amount, source, description);
+    }
+
     /**
      * Optional tiện ích: chuyển tín chỉ từ A → B.
      * Có thể dùng cho P2P/gifting nếu sau này cần.
@@ -95,11 +117,25 @@ public class WalletService {
     @Transactional
     public void transferCredits(Long fromUserId, Long toUserId, BigDecimal amount) {
         // Trừ ví người gửi
-        debit(fromUserId, amount,
-                "Chuyển tín chỉ cho user ID " + toUserId);
+        String outgoing = "Chuyển tín chỉ cho user ID " + toUserId;
+        debit(fromUserId, amount, outgoing);
 
         // Cộng ví người nhận
-        credit(toUserId, amount,
-                "Nhận tín chỉ từ user ID " + fromUserId);
+        String incoming = "Nhận tín chỉ từ user ID " + fromUserId;
+        credit(toUserId, amount, incoming);
+
+        // Không phải Transaction của marketplace -> ghi sổ điều chỉnh cho cả 2 ví
+        recordAdjustment(fromUserId, amount.negate(), CarbonWalletAdjustment.Source.TRANSFER, outgoing);
+        recordAdjustment(toUserId, amount, CarbonWalletAdjustment.Source.TRANSFER, incoming);
+    }
+
+    private void recordAdjustment(Long userId, BigDecimal amount, CarbonWalletAdjustment.Source source,
+                                  String description) {
+        CarbonWalletAdjustment adjustment = new CarbonWalletAdjustment();
+        adjustment.setOwnerId(userId);
+        adjustment.setAmount(amount);
+        adjustment.setSource(source);
+        adjustment.setDescription(description);
+        adjustmentRepository.save(adjustment);
     }
 }
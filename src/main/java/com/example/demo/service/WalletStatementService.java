@@ -0,0 +1,173 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.CursorPageResponse;
+import com.example.demo.dto.WalletStatementEntry;
+import com.example.demo.entity.WalletTransaction;
+import com.example.demo.repository.WalletRepository;
+import com.example.demo.repository.WalletTransactionRepository;
+import jakarta.persistence.EntityNotFoundException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Sao kê ví tiền theo trang keyset (createdAt, id) giảm dần.
+ * - Mỗi trang là 1 range scan trên index (wallet_id, created_at, id), không OFFSET, không load cả collection
+ * - Export CSV đọc lần lượt từng trang và ghi thẳng ra response -> bộ nhớ chỉ giữ 1 trang
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class WalletStatementService {
+
+    public static final int MAX_PAGE_SIZE = 500;
+    private static final int EXPORT_PAGE_SIZE = 1000;
+
+    // Giá trị biên khi không truyền from/to (nằm trong khoảng DATETIME của MySQL)
+    private static final LocalDateTime MIN_TIME = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final LocalDateTime MAX_TIME = LocalDateTime.of(9999, 12, 31, 23, 59, 59);
+
+    private final WalletRepository walletRepository;
+    private final WalletTransactionRepository walletTransactionRepository;
+
+    /**
+     * Lấy 1 trang sao kê. from là mốc bắt đầu (bao gồm), to là mốc kết thúc (không bao gồm).
+     */
+    public CursorPageResponse<WalletStatementEntry> getStatement(Long userId,
+                                                                 WalletTransaction.TransactionType type,
+                                                                 LocalDateTime from,
+                                                                 LocalDateTime to,
+                                                                 String cursor,
+                                                                 int limit) {
+        Long walletId = resolveWalletId(userId);
+        int size = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+
+        LocalDateTime beforeCreatedAt = to != null ? to : MAX_TIME;
+        long beforeId = Long.MIN_VALUE;
+        if (cursor != null && !cursor.isBlank()) {
+            Cursor c = decodeCursor(cursor);
+            beforeCreatedAt = c.createdAt();
+            beforeId = c.id();
+        }
+
+        // Lấy dư 1 dòng để biết còn trang sau hay không
+        List<WalletStatementEntry> rows = walletTransactionRepository.findStatementPage(walletId, type,
+                from != null ? from : MIN_TIME, beforeCreatedAt, beforeId, PageRequest.of(0, size + 1));
+
+        boolean hasMore = rows.size() > size;
+        List<WalletStatementEntry> items = hasMore ? rows.subList(0, size) : rows;
+        String nextCursor = null;
+        if (hasMore) {
+            WalletStatementEntry last = items.get(items.size() - 1);
+            nextCursor = encodeCursor(last.getCreatedAt(), last.getId());
+        }
+        return new CursorPageResponse<>(items, nextCursor, hasMore);
+    }
+
+    /**
+     * Export toàn bộ sao kê (theo filter) dạng CSV. Ví được kiểm tra ngay (lỗi -> 404 như bình thường),
+     * còn việc đọc/ghi từng trang chạy khi response được stream.
+     */
+    public StreamingResponseBody exportCsv(Long userId,
+                                           WalletTransaction.TransactionType type,
+                                           LocalDateTime from,
+                                           LocalDateTime to) {
+        Long walletId = resolveWalletId(userId);
+        return out -> writeCsv(walletId, type, from, to, out);
+    }
+
+    private void writeCsv(Long walletId,
+                          WalletTransaction.TransactionType type,
+                          LocalDateTime from,
+                          LocalDateTime to,
+                          OutputStream out) throws IOException {
+        LocalDateTime lowerBound = from != null ? from : MIN_TIME;
+        LocalDateTime beforeCreatedAt = to != null ? to : MAX_TIME;
+        long beforeId = Long.MIN_VALUE;
+        long written = 0;
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writer.write("id,createdAt,type,status,amount,paymentMethod,externalRef,description\n");
+        while (true) {
+            List<WalletStatementEntry> rows = walletTransactionRepository.findStatementPage(walletId, type,
+                    lowerBound, beforeCreatedAt, beforeId, PageRequest.of(0, EXPORT_PAGE_SIZE));
+            for (WalletStatementEntry e : rows) {
+                writer.write(String.valueOf(e.getId()));
+                writer.write(',');
+                writer.write(String.valueOf(e.getCreatedAt()));
+                writer.write(',');
+                writer.write(e.getType() != null ? e.getType().name() : "");
+                writer.write(',');
+                writer.write(e.getStatus() != null ? e.getStatus().name() : "");
+                writer.write(',');
+                writer.write(e.getAmount() != null ? e.getAmount().toPlainString() : "");
+                writer.write(',');
+                writer.write(csv(e.getPaymentMethod()));
+                writer.write(',');
+                writer.write(csv(e.getExternalRef()));
+                writer.write(',');
+                writer.write(csv(e.getDescription()));
+                writer.write('\n');
+            }
+            written += rows.size();
+            if (rows.size() < EXPORT_PAGE_SIZE) {
+                break;
+            }
+            WalletStatementEntry last = rows.get(rows.size() - 1);
+            beforeCreatedAt = last.getCreatedAt();
+            beforeId = last.getId();
+            writer.flush();
+        }
+        writer.flush();
+        log.info("Exported {} statement lines for wallet ID {}", written, walletId);
+    }
+
+    private Long resolveWalletId(Long userId) {
+        return walletRepository.findIdByUserId(userId)
+                .orElseThrow(() -> new EntityNotFoundException("Wallet not found for user ID: " + userId));
+    }
+
+    private static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private record Cursor(LocalDateTime createdAt, long id) {
+    }
+
+    private static String encodeCursor(LocalDateTime createdAt, Long id) {
+        String raw = createdAt + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Cursor decodeCursor(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int sep = raw.indexOf('|');
+            if (sep < 0) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            return new Cursor(LocalDateTime.parse(raw.substring(0, sep)), Long.parseLong(raw.substring(sep + 1)));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+    }
+}
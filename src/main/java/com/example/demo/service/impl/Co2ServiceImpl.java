@@ -1,5 +1,7 @@
 package com.example.demo.service.impl;
 
+import com.example.demo.dto.Co2BulkResponse;
+import com.example.demo.dto.Co2BulkResult;
 import com.example.demo.dto.Co2RequestDto;
 import com.example.demo.dto.Co2ResponseDto;
 import com.example.demo.entity.Co2Reduction;
@@ -7,13 +9,30 @@ import com.example.demo.entity.Co2Status;
 import com.example.demo.exception.InvalidEmissionDataException;
 import com.example.demo.repository.Co2Repository;
 import com.example.demo.service.Co2Service;
+import com.example.demo.service.Co2TotalsService;
+import com.example.demo.util.FixedPointAmount;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
 
 
 @Service
@@ -24,10 +43,32 @@ public class Co2ServiceImpl implements Co2Service {
     // minimal reduction threshold, zero means any positive reduction qualifies
     private static final BigDecimal MIN_REDUCTION = BigDecimal.ZERO;
 
+    // 1 credit = 1 tonne CO2
+    private static final long KG_PER_CREDIT = 1000;
+
     private final Co2Repository co2Repository;
+    private final Co2TotalsService totalsService;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final TransactionTemplate transactionTemplate;
+
+    // records persisted per transaction in bulk mode
+    @Value("${co2.bulk.chunk-size:500}")
+    private int bulkChunkSize;
 
-    public Co2ServiceImpl(Co2Repository co2Repository) {
+    @Value("${co2.bulk.max-records:50000}")
+    private int bulkMaxRecords;
+
+    public Co2ServiceImpl(Co2Repository co2Repository,
+                          Co2TotalsService totalsService,
+                          ObjectMapper objectMapper,
+                          Validator validator,
+                          PlatformTransactionManager transactionManager) {
         this.co2Repository = co2Repository;
+        this.totalsService = totalsService;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
     /**
@@ -42,6 +83,145 @@ public class Co2ServiceImpl implements Co2Service {
     public Co2ResponseDto processEmission(Co2RequestDto request) {
         if (request == null) throw new InvalidEmissionDataException("Request is null");
 
+        Co2Reduction record = buildRecord(request);
+        // createdAt/updatedAt handled by annotations
+        co2Repository.save(record);
+        // running per-user totals, same transaction
+        totalsService.apply(List.of(record));
+
+        // Build response
+        Co2ResponseDto response = new Co2ResponseDto();
+        response.setRecordId(record.getId());
+        response.setBaseline(record.getBaseline());
+        response.setActual(record.getActual());
+        response.setReduction(record.getReduction());
+        response.setCredits(record.getCredits());
+        response.setStatus(record.getStatus().name());
+        response.setMessage("Kết quả: " + record.getStatus() + " (Giảm " + record.getReduction()
+                + " kg CO2, tương đương " + record.getCredits() + " credits)");
+        response.setCreatedAt(record.getCreatedAt());
+        response.setUpdatedAt(record.getUpdatedAt());
+
+        logger.info("Hoàn tất xử lý CO2 cho user {}: status={}, reduction={} kg, credits={}",
+                record.getUserId(), record.getStatus(), record.getReduction(), record.getCredits());
+
+        return response;
+    }
+
+    /**
+     * Bulk ingestion: the body is either a JSON array of records or NDJSON (one record per line).
+     * Records are parsed one at a time from the stream, validated and computed individually, and
+     * persisted in chunks (one transaction per chunk, JDBC-batched inserts). An invalid record only
+     * rejects itself; malformed JSON stops parsing but keeps everything accepted before it.
+     */
+    @Override
+    public Co2BulkResponse processBulk(InputStream input) throws IOException {
+        List<Co2BulkResult> results = new ArrayList<>();
+        List<Co2Reduction> chunk = new ArrayList<>(bulkChunkSize);
+        List<Co2BulkResult> chunkResults = new ArrayList<>(bulkChunkSize);
+        String parseError = null;
+        int index = 0;
+
+        try (JsonParser parser = objectMapper.getFactory().createParser(input)) {
+            JsonToken token = parser.nextToken();
+            boolean array = token == JsonToken.START_ARRAY;
+            if (array) {
+                token = parser.nextToken();
+            }
+            while (token != null && !(array && token == JsonToken.END_ARRAY)) {
+                if (index >= bulkMaxRecords) {
+                    parseError = "Too many records, at most " + bulkMaxRecords + " per request";
+                    break;
+                }
+                JsonNode node = parser.readValueAsTree();
+                BulkItem item = processBulkRecord(index++, node);
+                results.add(item.result());
+                if (item.record() != null) {
+                    chunk.add(item.record());
+                    chunkResults.add(item.result());
+                    if (chunk.size() >= bulkChunkSize) {
+                        persistChunk(chunk, chunkResults);
+                    }
+                }
+                token = parser.nextToken();
+            }
+        } catch (JsonProcessingException e) {
+            parseError = "Malformed JSON after record " + index + ": " + e.getOriginalMessage();
+            logger.warn("Bulk CO2 parse stopped: {}", parseError);
+        }
+        persistChunk(chunk, chunkResults);
+
+        int accepted = (int) results.stream().filter(Co2BulkResult::isAccepted).count();
+        logger.info("Bulk CO2 ingestion: {} records, {} accepted, {} rejected", results.size(), accepted,
+                results.size() - accepted);
+        return new Co2BulkResponse(results.size(), accepted, results.size() - accepted, parseError, results);
+    }
+
+    // computed record (null when rejected) paired with its result row
+    private record BulkItem(Co2BulkResult result, Co2Reduction record) {
+    }
+
+    private BulkItem processBulkRecord(int index, JsonNode node) {
+        Co2BulkResult result = new Co2BulkResult();
+        result.setIndex(index);
+        try {
+            Co2RequestDto dto = objectMapper.treeToValue(node, Co2RequestDto.class);
+            result.setUserId(dto.getUserId());
+            List<String> errors = validate(dto);
+            if (!errors.isEmpty()) {
+                result.setErrors(errors);
+                return new BulkItem(result, null);
+            }
+            Co2Reduction record = buildRecord(dto);
+            result.setAccepted(true);
+            result.setReduction(record.getReduction());
+            result.setCredits(record.getCredits());
+            result.setStatus(record.getStatus().name());
+            return new BulkItem(result, record);
+        } catch (JsonProcessingException e) {
+            result.setErrors(List.of("Invalid record: " + e.getOriginalMessage()));
+        } catch (InvalidEmissionDataException e) {
+            result.setErrors(List.of(e.getMessage()));
+        }
+        return new BulkItem(result, null);
+    }
+
+    private void persistChunk(List<Co2Reduction> chunk, List<Co2BulkResult> chunkResults) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                co2Repository.saveAll(chunk);
+                totalsService.apply(chunk);
+            });
+            for (int i = 0; i < chunk.size(); i++) {
+                chunkResults.get(i).setRecordId(chunk.get(i).getId());
+            }
+        } catch (DataAccessException e) {
+            logger.error("Bulk CO2 chunk of {} records failed: {}", chunk.size(), e.getMessage());
+            for (Co2BulkResult result : chunkResults) {
+                result.setAccepted(false);
+                result.setRecordId(null);
+                result.setErrors(List.of("Persistence failed, please resubmit this record"));
+            }
+        }
+        chunk.clear();
+        chunkResults.clear();
+    }
+
+    private List<String> validate(Co2RequestDto dto) {
+        List<String> errors = new ArrayList<>();
+        for (ConstraintViolation<Co2RequestDto> violation : validator.validate(dto)) {
+            errors.add(violation.getPropertyPath() + ": " + violation.getMessage());
+        }
+        return errors;
+    }
+
+    /**
+     * Validate and compute one emission record (not persisted yet).
+     */
+    private Co2Reduction buildRecord(Co2RequestDto request) {
         String userId = request.getUserId();
         BigDecimal baseline = request.getBaseline();
         BigDecimal actual = request.getActual();
@@ -51,27 +231,40 @@ public class Co2ServiceImpl implements Co2Service {
             throw new InvalidEmissionDataException("Baseline and actual must be provided");
         }
 
-        // Basic validation: actual should not be greater than baseline in this model
-        if (actual.compareTo(baseline) > 0) {
-            logger.warn("Phát thải thực tế ({}) lớn hơn cơ sở ({}).", actual, baseline);
-            throw new InvalidEmissionDataException("Phát thải thực tế lớn hơn cơ sở.");
-        }
+        BigDecimal reduction;
+        BigDecimal credits;
+        FixedPointAmount baselineFp = FixedPointAmount.tryOf(baseline);
+        FixedPointAmount actualFp = FixedPointAmount.tryOf(actual);
+        if (baselineFp != null && actualFp != null) {
+            // long micro-units (exact DOWN truncation), BigDecimal only for the entity fields
+            if (actualFp.compareTo(baselineFp) > 0) {
+                throw actualAboveBaseline(actual, baseline);
+            }
+            FixedPointAmount reductionFp = baselineFp.subtract(actualFp).max(FixedPointAmount.ZERO);
+            reduction = reductionFp.toBigDecimal();
+            credits = reductionFp.divideDown(KG_PER_CREDIT).toBigDecimal();
+        } else {
+            // More than 6 decimals or 18 digits: keep exact BigDecimal arithmetic
+            // Basic validation: actual should not be greater than baseline in this model
+            if (actual.compareTo(baseline) > 0) {
+                throw actualAboveBaseline(actual, baseline);
+            }
 
-        // reduction in kg
-        BigDecimal reduction = baseline.subtract(actual);
-        if (reduction.compareTo(BigDecimal.ZERO) < 0) {
-            reduction = BigDecimal.ZERO;
-        }
+            // reduction in kg
+            reduction = baseline.subtract(actual);
+            if (reduction.compareTo(BigDecimal.ZERO) < 0) {
+                reduction = BigDecimal.ZERO;
+            }
 
-        // Convert kg to tonnes (1 tonne = 1000 kg), then to credits (1 tCO2 = 1 credit)
-        // Use 6 decimal places, rounding down to avoid over-crediting.
-        BigDecimal credits = reduction.divide(BigDecimal.valueOf(1000), 6, RoundingMode.DOWN);
+            // Convert kg to tonnes (1 tonne = 1000 kg), then to credits (1 tCO2 = 1 credit)
+            // Use 6 decimal places, rounding down to avoid over-crediting.
+            credits = reduction.divide(BigDecimal.valueOf(KG_PER_CREDIT), FixedPointAmount.SCALE, RoundingMode.DOWN);
+        }
 
         Co2Status status = (reduction.compareTo(MIN_REDUCTION) >= 0 && certified)
                 ? Co2Status.APPROVED
                 : Co2Status.REJECTED;
 
-        // Persist record
         Co2Reduction record = new Co2Reduction();
         record.setUserId(userId);
         record.setBaseline(baseline);
@@ -80,23 +273,11 @@ public class Co2ServiceImpl implements Co2Service {
         record.setCredits(credits);
         record.setCertified(certified);
         record.setStatus(status);
-        // createdAt/updatedAt handled by annotations
-        co2Repository.save(record);
-
-        // Build response
-        Co2ResponseDto response = new Co2ResponseDto();
-        response.setRecordId(record.getId());
-        response.setBaseline(baseline);
-        response.setActual(actual);
-        response.setReduction(reduction);
-        response.setCredits(credits);
-        response.setStatus(status.name());
-        response.setMessage("Kết quả: " + status + " (Giảm " + reduction + " kg CO2, tương đương " + credits + " credits)");
-        response.setCreatedAt(record.getCreatedAt());
-        response.setUpdatedAt(record.getUpdatedAt());
-
-        logger.info("Hoàn tất xử lý CO2 cho user {}: status={}, reduction={} kg, credits={}", userId, status, reduction, credits);
+        return record;
+    }
 
-        return response;
+    private InvalidEmissionDataException actualAboveBaseline(BigDecimal actual, BigDecimal baseline) {
+        logger.warn("Phát thải thực tế ({}) lớn hơn cơ sở ({}).", actual, baseline);
+        return new InvalidEmissionDataException("Phát thải thực tế lớn hơn cơ sở.");
     }
 }
@@ -1,51 +1,181 @@
 package com.example.demo.service.impl;
 
+import com.example.demo.dto.CursorPageResponse;
+import com.example.demo.dto.CvaQueueItem;
 import com.example.demo.entity.CreditRequest;
 import com.example.demo.repository.CreditRequestRepository;
+import com.example.demo.repository.UserRepository;
+import com.example.demo.service.CreditRequestPayloadService;
 import com.example.demo.service.CvaService;
+import jakarta.persistence.EntityNotFoundException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
 
+/**
+ * Hàng đợi duyệt của CVA: chỉ các yêu cầu PENDING, không tải cột LOB, sắp theo priority giảm dần
+ * rồi id. CVA nhận (claim) yêu cầu bằng UPDATE có điều kiện nên hai CVA không thể giữ cùng một
+ * yêu cầu; lease hết hạn thì yêu cầu tự quay lại hàng đợi.
+ */
 @Service
 public class CvaServiceImpl implements CvaService {
 
     private final CreditRequestRepository creditRequestRepository;
+    private final UserRepository userRepository;
+    private final CreditRequestPayloadService payloadService;
+
+    @Value("${cva.queue.lease-minutes:15}")
+    private long leaseMinutes;
 
     @Autowired
-    public CvaServiceImpl(CreditRequestRepository creditRequestRepository) {
+    public CvaServiceImpl(CreditRequestRepository creditRequestRepository,
+                          UserRepository userRepository,
+                          CreditRequestPayloadService payloadService) {
         this.creditRequestRepository = creditRequestRepository;
+        this.userRepository = userRepository;
+        this.payloadService = payloadService;
+    }
+
+    @Override
+    public CursorPageResponse<CvaQueueItem> getPendingRequests(String cursor) {
+        return getQueue(cursor, MAX_PAGE_SIZE, true);
     }
 
     @Override
-    public List<CreditRequest> getPendingRequests() {
-        return creditRequestRepository.findAll();
+    public CursorPageResponse<CvaQueueItem> getQueue(String cursor, int limit, boolean includeClaimed) {
+        int size = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        int afterPriority = Integer.MAX_VALUE;
+        long afterId = Long.MIN_VALUE;
+        if (cursor != null && !cursor.isBlank()) {
+            long[] c = decodeCursor(cursor);
+            afterPriority = (int) c[0];
+            afterId = c[1];
+        }
+
+        // Lấy dư 1 dòng để biết còn trang sau hay không
+        List<CvaQueueItem> rows = creditRequestRepository.findQueuePage(afterPriority, afterId, includeClaimed,
+                LocalDateTime.now(), PageRequest.of(0, size + 1));
+        boolean hasMore = rows.size() > size;
+        List<CvaQueueItem> items = hasMore ? rows.subList(0, size) : rows;
+        String nextCursor = null;
+        if (hasMore) {
+            CvaQueueItem last = items.get(items.size() - 1);
+            nextCursor = encodeCursor(last.getPriority(), last.getId());
+        }
+        return new CursorPageResponse<>(items, nextCursor, hasMore);
     }
 
+    // Chi tiết yêu cầu, kèm journeyData / evidence đã giải nén
     @Override
     public CreditRequest getRequestById(Long id) {
+        return payloadService.attach(findRequest(id));
+    }
+
+    private CreditRequest findRequest(Long id) {
         return creditRequestRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Request not found"));
+                .orElseThrow(() -> new EntityNotFoundException("Request not found"));
+    }
+
+    /**
+     * Nhận 1 yêu cầu; trả về null nếu yêu cầu đã được CVA khác giữ hoặc không còn PENDING.
+     */
+    @Override
+    public CreditRequest claimRequest(Long id, String verifierEmail) {
+        Long verifierId = resolveVerifierId(verifierEmail);
+        LocalDateTime now = LocalDateTime.now();
+        if (creditRequestRepository.claim(id, verifierId, now, now.plusMinutes(leaseMinutes)) == 0) {
+            return null;
+        }
+        return getRequestById(id);
     }
 
+    /**
+     * Nhận tối đa count yêu cầu đầu hàng đợi. Ứng viên bị CVA khác nhận trước thì bỏ qua.
+     */
     @Override
-    public CreditRequest approveRequest(Long id, String notes) {
-        CreditRequest request = getRequestById(id);
-        request.setStatus("APPROVED");
-        if (notes != null) {
-            request.setNotes(notes);
+    public List<CreditRequest> claimNext(String verifierEmail, int count) {
+        Long verifierId = resolveVerifierId(verifierEmail);
+        int wanted = Math.max(1, Math.min(count, MAX_PAGE_SIZE));
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime leaseUntil = now.plusMinutes(leaseMinutes);
+
+        List<CvaQueueItem> candidates = creditRequestRepository.findQueuePage(Integer.MAX_VALUE, Long.MIN_VALUE,
+                false, now, PageRequest.of(0, Math.min(wanted * 4, MAX_PAGE_SIZE * 4)));
+        List<CreditRequest> claimed = new ArrayList<>(wanted);
+        for (CvaQueueItem candidate : candidates) {
+            if (claimed.size() >= wanted) {
+                break;
+            }
+            if (creditRequestRepository.claim(candidate.getId(), verifierId, now, leaseUntil) == 1) {
+                creditRequestRepository.findById(candidate.getId()).map(payloadService::attach).ifPresent(claimed::add);
+            }
         }
-        return creditRequestRepository.save(request);
+        return claimed;
+    }
+
+    @Override
+    public boolean renewLease(Long id, String verifierEmail) {
+        LocalDateTime now = LocalDateTime.now();
+        return creditRequestRepository.renewLease(id, resolveVerifierId(verifierEmail), now,
+                now.plusMinutes(leaseMinutes)) == 1;
+    }
+
+    @Override
+    public boolean releaseRequest(Long id, String verifierEmail) {
+        return creditRequestRepository.releaseLease(id, resolveVerifierId(verifierEmail)) == 1;
     }
 
     @Override
-    public CreditRequest rejectRequest(Long id, String notes) {
-        CreditRequest request = getRequestById(id);
-        request.setStatus("REJECTED");
-        if (notes != null) {
-            request.setNotes(notes);
+    public CreditRequest approveRequest(Long id, String notes, String verifierEmail) {
+        return decide(id, "APPROVED", notes, verifierEmail);
+    }
+
+    @Override
+    public CreditRequest rejectRequest(Long id, String notes, String verifierEmail) {
+        return decide(id, "REJECTED", notes, verifierEmail);
+    }
+
+    private CreditRequest decide(Long id, String status, String notes, String verifierEmail) {
+        Long verifierId = resolveVerifierId(verifierEmail);
+        // UPDATE có điều kiện: hai CVA duyệt cùng lúc thì chỉ một người thành công
+        if (creditRequestRepository.decide(id, status, verifierId, notes, LocalDateTime.now()) == 0) {
+            CreditRequest current = findRequest(id);
+            if (!"PENDING".equals(current.getStatus())) {
+                throw new IllegalArgumentException("Request already processed: " + current.getStatus());
+            }
+            throw new IllegalArgumentException("Request is claimed by another verifier until " + current.getLeaseExpiresAt());
+        }
+        return findRequest(id);
+    }
+
+    private Long resolveVerifierId(String email) {
+        return userRepository.findByEmail(email)
+                .orElseThrow(() -> new EntityNotFoundException("User not found: " + email))
+                .getId();
+    }
+
+    private static String encodeCursor(int priority, Long id) {
+        String raw = priority + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static long[] decodeCursor(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int sep = raw.indexOf('|');
+            if (sep < 0) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            return new long[]{Integer.parseInt(raw.substring(0, sep)), Long.parseLong(raw.substring(sep + 1))};
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
         }
-        return creditRequestRepository.save(request);
     }
-}
\ No newline at end of file
+}
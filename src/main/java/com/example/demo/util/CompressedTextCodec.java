@@ -0,0 +1,104 @@
+package com.example.demo.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Text compression in the MySQL COMPRESS() layout: 4-byte little-endian length of the UTF-8 bytes
+ * followed by a zlib (Deflater) stream. An empty string encodes to an empty array and null stays
+ * null, like COMPRESS(), so rows compressed by a migration and by the application read the same.
+ */
+public final class CompressedTextCodec {
+
+    // Refuse to inflate absurd lengths from a corrupt header
+    private static final int MAX_RAW_BYTES = 256 * 1024 * 1024;
+
+    private CompressedTextCodec() {
+    }
+
+    public static byte[] compress(String text) {
+        if (text == null) {
+            return null;
+        }
+        byte[] raw = text.getBytes(StandardCharsets.UTF_8);
+        if (raw.length == 0) {
+            return new byte[0];
+        }
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, raw.length / 4));
+            out.write(raw.length & 0xFF);
+            out.write((raw.length >>> 8) & 0xFF);
+            out.write((raw.length >>> 16) & 0xFF);
+            out.write((raw.length >>> 24) & 0x3F);
+            byte[] buf = new byte[8192];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(buf);
+                out.write(buf, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    public static String decompress(byte[] stored) {
+        if (stored == null) {
+            return null;
+        }
+        if (stored.length == 0) {
+            return "";
+        }
+        if (stored.length < 5) {
+            throw new IllegalStateException("Corrupt compressed payload: " + stored.length + " bytes");
+        }
+        int rawLength = (stored[0] & 0xFF)
+                | (stored[1] & 0xFF) << 8
+                | (stored[2] & 0xFF) << 16
+                | (stored[3] & 0x3F) << 24;
+        if (rawLength > MAX_RAW_BYTES) {
+            throw new IllegalStateException("Compressed payload too large: " + rawLength + " bytes");
+        }
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(stored, 4, stored.length - 4);
+            byte[] raw = new byte[rawLength];
+            int offset = 0;
+            while (offset < rawLength && !inflater.finished()) {
+                int n = inflater.inflate(raw, offset, rawLength - offset);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                offset += n;
+            }
+            if (offset != rawLength) {
+                throw new IllegalStateException("Corrupt compressed payload: expected " + rawLength + " bytes, got " + offset);
+            }
+            return new String(raw, StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt compressed payload", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Streaming reader over the decompressed text, for consumers that should not materialize it.
+     */
+    public static Reader openReader(byte[] stored) {
+        if (stored == null || stored.length <= 4) {
+            return Reader.nullReader();
+        }
+        return new InputStreamReader(new InflaterInputStream(new ByteArrayInputStream(stored, 4, stored.length - 4)),
+                StandardCharsets.UTF_8);
+    }
+}
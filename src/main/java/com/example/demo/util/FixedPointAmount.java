@@ -0,0 +1,127 @@
+package com.example.demo.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Immutable decimal amount with 6 fractional digits, stored as a long count of micro-units
+ * (1.000001 kg == 1 000 001). Matches the DECIMAL(18,6) columns used for kg and credits, so every
+ * persisted value fits in a long and add/subtract are exact.
+ * <p>
+ * {@link #divideDown} truncates toward zero, which is exactly {@link RoundingMode#DOWN} at scale 6.
+ * Convert with {@link #tryOf} / {@link #toBigDecimal()} only at the API and persistence boundary.
+ */
+public final class FixedPointAmount implements Comparable<FixedPointAmount> {
+
+    public static final int SCALE = 6;
+    public static final long MICROS_PER_UNIT = 1_000_000L;
+    public static final FixedPointAmount ZERO = new FixedPointAmount(0);
+
+    // DECIMAL(18,6) and any 18-digit unscaled value fit in a long
+    private static final int MAX_PRECISION = 18;
+    private static final long[] POW10 = {1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L};
+
+    private final long micros;
+
+    private FixedPointAmount(long micros) {
+        this.micros = micros;
+    }
+
+    public static FixedPointAmount ofMicros(long micros) {
+        return micros == 0 ? ZERO : new FixedPointAmount(micros);
+    }
+
+    /**
+     * Exact conversion, or null when the value has non-zero digits past 6 decimals or does not
+     * fit in 18 digits (callers fall back to BigDecimal arithmetic).
+     */
+    public static FixedPointAmount tryOf(BigDecimal value) {
+        if (value == null) {
+            return null;
+        }
+        int scale = value.scale();
+        if (scale >= 0 && scale <= SCALE) {
+            // Unscaled value has at most 18 - (6 - scale) digits -> fits in a long, then shift to micros
+            int shift = SCALE - scale;
+            if (value.precision() > MAX_PRECISION - shift) {
+                return null;
+            }
+            return ofMicros(value.unscaledValue().longValue() * POW10[shift]);
+        }
+        BigDecimal scaled;
+        try {
+            scaled = value.setScale(SCALE, RoundingMode.UNNECESSARY);
+        } catch (ArithmeticException e) {
+            return null;
+        }
+        if (scaled.precision() > MAX_PRECISION) {
+            return null;
+        }
+        return ofMicros(scaled.unscaledValue().longValue());
+    }
+
+    /**
+     * Exact conversion; throws IllegalArgumentException when the value is not representable.
+     */
+    public static FixedPointAmount of(BigDecimal value) {
+        FixedPointAmount amount = tryOf(value);
+        if (amount == null) {
+            throw new IllegalArgumentException("Amount not representable with " + SCALE + " decimals: " + value);
+        }
+        return amount;
+    }
+
+    public long micros() {
+        return micros;
+    }
+
+    public FixedPointAmount add(FixedPointAmount other) {
+        return ofMicros(Math.addExact(micros, other.micros));
+    }
+
+    public FixedPointAmount subtract(FixedPointAmount other) {
+        return ofMicros(Math.subtractExact(micros, other.micros));
+    }
+
+    /**
+     * this / divisor at scale 6, truncated toward zero (RoundingMode.DOWN).
+     */
+    public FixedPointAmount divideDown(long divisor) {
+        if (divisor == 0) {
+            throw new ArithmeticException("Division by zero");
+        }
+        return ofMicros(micros / divisor);
+    }
+
+    public FixedPointAmount max(FixedPointAmount other) {
+        return micros >= other.micros ? this : other;
+    }
+
+    public int signum() {
+        return Long.signum(micros);
+    }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(micros, SCALE);
+    }
+
+    @Override
+    public int compareTo(FixedPointAmount other) {
+        return Long.compare(micros, other.micros);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof FixedPointAmount other && other.micros == micros;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(micros);
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString();
+    }
+}
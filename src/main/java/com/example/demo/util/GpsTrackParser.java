@@ -0,0 +1,220 @@
+package com.example.demo.util;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PushbackReader;
+import java.io.Reader;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+
+/**
+ * Incremental GPS track parser. Points are pushed into a {@link PointSink} (e.g.
+ * {@link JourneyAccumulator}) as they are read, so a trace is never held in memory.
+ * Format is detected from the first non-blank character:
+ * <ul>
+ *   <li>JSON ('[' or '{'): an array of points, or an object whose "points" / "track" field is that
+ *   array. A point is {"lat", "lon"|"lng", "ts"|"time"|"timestamp"} or [lat, lon, ts].</li>
+ *   <li>CSV: lat,lon,time per line; an optional header names the columns (lat/latitude,
+ *   lon/lng/longitude, ts/time/timestamp).</li>
+ * </ul>
+ * Timestamps may be epoch seconds, epoch millis (values above 1e11) or ISO-8601 (UTC if no offset).
+ */
+public final class GpsTrackParser {
+
+    private static final double EPOCH_MILLIS_THRESHOLD = 1e11;
+
+    /**
+     * Receives points in input order. Unparseable points arrive as NaN coordinates.
+     */
+    @FunctionalInterface
+    public interface PointSink {
+        void accept(double lat, double lon, long epochMillis);
+    }
+
+    private GpsTrackParser() {
+    }
+
+    public static void parse(Reader source, JsonFactory jsonFactory, PointSink sink) throws IOException {
+        PushbackReader reader = new PushbackReader(source instanceof BufferedReader ? source : new BufferedReader(source));
+        int c;
+        do {
+            c = reader.read();
+        } while (c != -1 && Character.isWhitespace(c));
+        if (c == -1) {
+            return;
+        }
+        reader.unread(c);
+        if (c == '[' || c == '{') {
+            parseJson(reader, jsonFactory, sink);
+        } else {
+            parseCsv(new BufferedReader(reader), sink);
+        }
+    }
+
+    private static void parseJson(Reader reader, JsonFactory jsonFactory, PointSink sink) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(reader)) {
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.START_OBJECT) {
+                // Seek to the points array
+                while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+                    String name = parser.currentName();
+                    token = parser.nextToken();
+                    if (token == JsonToken.START_ARRAY && ("points".equals(name) || "track".equals(name))) {
+                        break;
+                    }
+                    parser.skipChildren();
+                }
+                if (token != JsonToken.START_ARRAY) {
+                    throw new IllegalArgumentException("No points array in journey JSON");
+                }
+            } else if (token != JsonToken.START_ARRAY) {
+                throw new IllegalArgumentException("Journey JSON must be an array or an object with points");
+            }
+
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY && token != null) {
+                if (token == JsonToken.START_OBJECT) {
+                    readObjectPoint(parser, sink);
+                } else if (token == JsonToken.START_ARRAY) {
+                    readArrayPoint(parser, sink);
+                } else {
+                    throw new IllegalArgumentException("Invalid point at " + parser.currentLocation());
+                }
+            }
+        }
+    }
+
+    private static void readObjectPoint(JsonParser parser, PointSink sink) throws IOException {
+        double lat = Double.NaN;
+        double lon = Double.NaN;
+        Long time = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName().toLowerCase(Locale.ROOT);
+            JsonToken value = parser.nextToken();
+            switch (name) {
+                case "lat", "latitude" -> lat = parser.getValueAsDouble(Double.NaN);
+                case "lon", "lng", "longitude" -> lon = parser.getValueAsDouble(Double.NaN);
+                case "ts", "time", "timestamp" -> time = value.isNumeric()
+                        ? toEpochMillis(parser.getDoubleValue())
+                        : parseTime(parser.getValueAsString());
+                default -> parser.skipChildren();
+            }
+        }
+        accept(sink, lat, lon, time);
+    }
+
+    private static void readArrayPoint(JsonParser parser, PointSink sink) throws IOException {
+        double lat = Double.NaN;
+        double lon = Double.NaN;
+        Long time = null;
+        int i = 0;
+        JsonToken value;
+        while ((value = parser.nextToken()) != JsonToken.END_ARRAY && value != null) {
+            switch (i++) {
+                case 0 -> lat = parser.getValueAsDouble(Double.NaN);
+                case 1 -> lon = parser.getValueAsDouble(Double.NaN);
+                case 2 -> time = value.isNumeric()
+                        ? toEpochMillis(parser.getDoubleValue())
+                        : parseTime(parser.getValueAsString());
+                default -> parser.skipChildren();
+            }
+        }
+        accept(sink, lat, lon, time);
+    }
+
+    private static void parseCsv(BufferedReader reader, PointSink sink) throws IOException {
+        int latCol = 0;
+        int lonCol = 1;
+        int timeCol = 2;
+        boolean first = true;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            String[] fields = line.split("[,;]", -1);
+            if (first) {
+                first = false;
+                if (!isNumeric(fields[0].trim())) {
+                    // Header row: map columns by name
+                    for (int i = 0; i < fields.length; i++) {
+                        switch (fields[i].trim().toLowerCase(Locale.ROOT)) {
+                            case "lat", "latitude" -> latCol = i;
+                            case "lon", "lng", "longitude" -> lonCol = i;
+                            case "ts", "time", "timestamp" -> timeCol = i;
+                            default -> {
+                            }
+                        }
+                    }
+                    continue;
+                }
+            }
+            int needed = Math.max(latCol, Math.max(lonCol, timeCol));
+            if (fields.length <= needed) {
+                sink.accept(Double.NaN, Double.NaN, 0);
+                continue;
+            }
+            try {
+                accept(sink, Double.parseDouble(fields[latCol].trim()), Double.parseDouble(fields[lonCol].trim()),
+                        parseTime(fields[timeCol].trim()));
+            } catch (NumberFormatException e) {
+                sink.accept(Double.NaN, Double.NaN, 0);
+            }
+        }
+    }
+
+    private static void accept(PointSink sink, double lat, double lon, Long time) {
+        if (time == null) {
+            sink.accept(Double.NaN, Double.NaN, 0); // counted as rejected
+        } else {
+            sink.accept(lat, lon, time);
+        }
+    }
+
+    private static boolean isNumeric(String value) {
+        if (value.isEmpty()) {
+            return false;
+        }
+        char c = value.charAt(0);
+        return (c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.';
+    }
+
+    private static long toEpochMillis(double value) {
+        return value > EPOCH_MILLIS_THRESHOLD ? (long) value : (long) (value * 1000);
+    }
+
+    private static Long parseTime(String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        if (isNumeric(value) && value.indexOf('T') < 0 && value.indexOf(':') < 0) {
+            try {
+                return toEpochMillis(Double.parseDouble(value));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        try {
+            return OffsetDateTime.parse(value).toInstant().toEpochMilli();
+        } catch (DateTimeParseException ignored) {
+            // no offset
+        }
+        try {
+            return Instant.parse(value).toEpochMilli();
+        } catch (DateTimeParseException ignored) {
+            // no zone
+        }
+        try {
+            return LocalDateTime.parse(value).toInstant(ZoneOffset.UTC).toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.demo.util;
+
+/**
+ * One-pass statistics over a GPS point sequence: haversine distance, duration, moving time and
+ * segment speed statistics (Welford mean/variance). Points are consumed one at a time and never
+ * stored. Invalid coordinates, out-of-order timestamps and jumps faster than maxSpeedMps are
+ * counted as rejected and skipped.
+ */
+public class JourneyAccumulator implements GpsTrackParser.PointSink {
+
+    private static final double EARTH_RADIUS_M = 6_371_008.8;
+    // A jump this far with no elapsed time is a GPS glitch
+    private static final double MAX_ZERO_TIME_JUMP_M = 50;
+
+    private final double maxSpeedMps;
+    private final double movingSpeedMps;
+
+    private long points;
+    private long rejected;
+    private double distanceM;
+    private long movingMillis;
+    private long startMillis;
+    private long endMillis;
+    private double lastLat;
+    private double lastLon;
+
+    private long segments;
+    private double speedMean;
+    private double speedM2;
+    private double maxSegmentSpeed;
+
+    public JourneyAccumulator(double maxSpeedMps, double movingSpeedMps) {
+        this.maxSpeedMps = maxSpeedMps;
+        this.movingSpeedMps = movingSpeedMps;
+    }
+
+    @Override
+    public void accept(double lat, double lon, long epochMillis) {
+        if (Double.isNaN(lat) || Double.isNaN(lon) || Math.abs(lat) > 90 || Math.abs(lon) > 180) {
+            rejected++;
+            return;
+        }
+        if (points == 0) {
+            startMillis = epochMillis;
+        } else {
+            if (epochMillis < endMillis) {
+                rejected++;
+                return;
+            }
+            double d = haversineMeters(lastLat, lastLon, lat, lon);
+            long dt = epochMillis - endMillis;
+            if (dt > 0) {
+                double speed = d / (dt / 1000.0);
+                if (speed > maxSpeedMps) {
+                    rejected++;
+                    return;
+                }
+                segments++;
+                double delta = speed - speedMean;
+                speedMean += delta / segments;
+                speedM2 += delta * (speed - speedMean);
+                maxSegmentSpeed = Math.max(maxSegmentSpeed, speed);
+                if (speed >= movingSpeedMps) {
+                    movingMillis += dt;
+                }
+            } else if (d > MAX_ZERO_TIME_JUMP_M) {
+                rejected++;
+                return;
+            }
+            distanceM += d;
+        }
+        lastLat = lat;
+        lastLon = lon;
+        endMillis = epochMillis;
+        points++;
+    }
+
+    public static double haversineMeters(double lat1, double lon1, double lat2, double lon2) {
+        double phi1 = Math.toRadians(lat1);
+        double phi2 = Math.toRadians(lat2);
+        double dPhi = phi2 - phi1;
+        double dLambda = Math.toRadians(lon2 - lon1);
+        double sinPhi = Math.sin(dPhi / 2);
+        double sinLambda = Math.sin(dLambda / 2);
+        double a = sinPhi * sinPhi + Math.cos(phi1) * Math.cos(phi2) * sinLambda * sinLambda;
+        return 2 * EARTH_RADIUS_M * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    public long getPoints() {
+        return points;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    public double getDistanceMeters() {
+        return distanceM;
+    }
+
+    public long getDurationMillis() {
+        return points == 0 ? 0 : endMillis - startMillis;
+    }
+
+    public long getMovingMillis() {
+        return movingMillis;
+    }
+
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    public long getEndMillis() {
+        return endMillis;
+    }
+
+    public double getAverageSpeedMps() {
+        long duration = getDurationMillis();
+        return duration == 0 ? 0 : distanceM / (duration / 1000.0);
+    }
+
+    public double getMovingSpeedMps() {
+        return movingMillis == 0 ? 0 : distanceM / (movingMillis / 1000.0);
+    }
+
+    public double getMaxSpeedMps() {
+        return maxSegmentSpeed;
+    }
+
+    public double getSegmentSpeedMeanMps() {
+        return speedMean;
+    }
+
+    public double getSegmentSpeedStdDevMps() {
+        return segments < 2 ? 0 : Math.sqrt(speedM2 / (segments - 1));
+    }
+}
@@ -0,0 +1,358 @@
+package com.example.demo.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of opaque records in memory-mapped segment files, with group commit.
+ * <p>
+ * Callers enqueue records and get a future that completes once the record is durable. One writer
+ * thread drains everything queued, copies it into the mapped segment and forces the written region
+ * once for the whole batch, so the fsync cost is shared by every record that arrived meanwhile
+ * (batches grow by themselves under load). A segment is preallocated at a fixed size; when a
+ * record does not fit, the segment is forced and a new one named after its first sequence starts.
+ * <p>
+ * Record layout: int length, int CRC32 (of sequence + payload), long sequence, payload. A zero
+ * length marks the end of a segment. On open, the newest segment is scanned and the first record
+ * with a bad length or checksum ends the log (a torn write from a crash); the tail after it is
+ * zeroed and appends continue from there.
+ */
+public class MappedJournal implements Closeable {
+
+    public static final int HEADER_BYTES = 16;
+    private static final String SUFFIX = ".journal";
+
+    /**
+     * Record read back from the journal.
+     */
+    public record Entry(long sequence, byte[] payload) {
+    }
+
+    /**
+     * Visitor for {@link #forEach}; return false to stop.
+     */
+    @FunctionalInterface
+    public interface EntryVisitor {
+        boolean visit(Entry entry);
+    }
+
+    private record Pending(byte[] payload, CompletableFuture<Long> future) {
+    }
+
+    private final Path directory;
+    private final String name;
+    private final int segmentBytes;
+    private final int maxBatch;
+    private final BlockingQueue<Pending> queue;
+    private final Thread writer;
+    private final CRC32 crc = new CRC32();
+
+    // Writer thread only
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    private long nextSequence;
+
+    private volatile boolean running = true;
+    private final AtomicLong appended = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private final AtomicLong forceNanos = new AtomicLong();
+    private volatile long durableSequence;
+    private volatile int segmentCount;
+
+    public MappedJournal(Path directory, String name, int segmentBytes, int queueCapacity, int maxBatch) throws IOException {
+        this.directory = directory;
+        this.name = name;
+        this.segmentBytes = segmentBytes;
+        this.maxBatch = maxBatch;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        Files.createDirectories(directory);
+        recover();
+        this.writer = new Thread(this::writeLoop, name + "-journal-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Queues a record. The future completes with its sequence once the record is forced to disk,
+     * or exceptionally if the write fails. Returns null when the queue is full (caller backs off).
+     */
+    public CompletableFuture<Long> append(byte[] payload) {
+        try {
+            return append(payload, 0, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * Like {@link #append(byte[])}, waiting up to timeout for queue space.
+     */
+    public CompletableFuture<Long> append(byte[] payload, long timeout, TimeUnit unit) throws InterruptedException {
+        if (payload.length > segmentBytes - HEADER_BYTES - 4) {
+            throw new IllegalArgumentException("Journal record of " + payload.length + " bytes exceeds segment size");
+        }
+        if (!running) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Journal " + name + " is closed"));
+        }
+        CompletableFuture<Long> future = new CompletableFuture<>();
+        return queue.offer(new Pending(payload, future), timeout, unit) ? future : null;
+    }
+
+    public int getQueueCapacity() {
+        return queue.size() + queue.remainingCapacity();
+    }
+
+    public long getDurableSequence() {
+        return durableSequence;
+    }
+
+    public long getAppended() {
+        return appended.get();
+    }
+
+    public long getBatches() {
+        return batches.get();
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten.get();
+    }
+
+    public long getForceNanos() {
+        return forceNanos.get();
+    }
+
+    public int getSegmentCount() {
+        return segmentCount;
+    }
+
+    public int getQueued() {
+        return queue.size();
+    }
+
+    /**
+     * Visits records with sequence >= fromSequence in order, reading the segment files directly.
+     */
+    public void forEach(long fromSequence, EntryVisitor visitor) throws IOException {
+        List<Path> segments = segments();
+        for (int i = 0; i < segments.size(); i++) {
+            // Skip segments that end before fromSequence
+            if (i + 1 < segments.size() && firstSequence(segments.get(i + 1)) <= fromSequence) {
+                continue;
+            }
+            try (FileChannel ch = FileChannel.open(segments.get(i), StandardOpenOption.READ)) {
+                ByteBuffer buffer = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+                Entry entry;
+                while ((entry = readRecord(buffer)) != null) {
+                    if (entry.sequence() >= fromSequence && !visitor.visit(entry)) {
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        writer.interrupt();
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        Pending left;
+        while ((left = queue.poll()) != null) {
+            left.future().completeExceptionally(new IllegalStateException("Journal " + name + " is closed"));
+        }
+        try {
+            if (channel != null) {
+                channel.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeLoop() {
+        List<Pending> batch = new ArrayList<>(maxBatch);
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatch - 1);
+                writeBatch(batch);
+            } catch (InterruptedException e) {
+                // close(): drain what is left, then stop
+                running = false;
+            } catch (IOException | RuntimeException e) {
+                for (Pending p : batch) {
+                    p.future().completeExceptionally(e);
+                }
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void writeBatch(List<Pending> batch) throws IOException {
+        MappedByteBuffer batchSegment = segment;
+        int batchStart = segment.position();
+        long batchSequence = nextSequence;
+        try {
+            appendBatch(batch);
+        } catch (IOException | RuntimeException e) {
+            // Undo a partial batch so the log does not end in records nobody was told about
+            if (segment == batchSegment) {
+                for (int i = batchStart; i < segment.position(); i++) {
+                    segment.put(i, (byte) 0);
+                }
+                segment.position(batchStart);
+                nextSequence = batchSequence;
+            }
+            throw e;
+        }
+    }
+
+    private void appendBatch(List<Pending> batch) throws IOException {
+        long[] sequences = new long[batch.size()];
+        int dirtyFrom = segment.position();
+        for (int i = 0; i < batch.size(); i++) {
+            byte[] payload = batch.get(i).payload();
+            // Keep room for the zero end marker
+            if (segment.remaining() < HEADER_BYTES + payload.length + 4) {
+                force(dirtyFrom);
+                openSegment(nextSequence);
+                dirtyFrom = 0;
+            }
+            long sequence = nextSequence++;
+            crc.reset();
+            ByteBuffer seq = ByteBuffer.allocate(8).putLong(0, sequence);
+            crc.update(seq);
+            crc.update(payload);
+            segment.putInt(payload.length);
+            segment.putInt((int) crc.getValue());
+            segment.putLong(sequence);
+            segment.put(payload);
+            sequences[i] = sequence;
+            bytesWritten.addAndGet(HEADER_BYTES + payload.length);
+        }
+        force(dirtyFrom);
+        durableSequence = nextSequence - 1;
+        appended.addAndGet(batch.size());
+        batches.incrementAndGet();
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).future().complete(sequences[i]);
+        }
+    }
+
+    private void force(int from) {
+        int length = segment.position() - from;
+        if (length > 0) {
+            long started = System.nanoTime();
+            segment.force(from, length);
+            forceNanos.addAndGet(System.nanoTime() - started);
+        }
+    }
+
+    private void recover() throws IOException {
+        List<Path> segments = segments();
+        segmentCount = segments.size();
+        if (segments.isEmpty()) {
+            nextSequence = 1;
+            openSegment(1);
+            return;
+        }
+        Path last = segments.get(segments.size() - 1);
+        channel = FileChannel.open(last, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(channel.size(), segmentBytes));
+        long sequence = firstSequence(last);
+        Entry entry;
+        int end = 0;
+        while ((entry = readRecord(segment)) != null) {
+            sequence = entry.sequence() + 1;
+            end = segment.position();
+        }
+        // Drop a torn tail
+        for (int i = end; i < segment.capacity(); i++) {
+            if (segment.get(i) != 0) {
+                segment.put(i, (byte) 0);
+            }
+        }
+        segment.position(end);
+        segment.force();
+        nextSequence = sequence;
+        durableSequence = sequence - 1;
+    }
+
+    private void openSegment(long firstSequence) throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+        Path path = directory.resolve(String.format("%s-%020d%s", name, firstSequence, SUFFIX));
+        channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        segmentCount++;
+    }
+
+    // Next valid record at the buffer position (advancing it), or null at the end / a bad record
+    private static Entry readRecord(ByteBuffer buffer) {
+        if (buffer.remaining() < HEADER_BYTES) {
+            return null;
+        }
+        int start = buffer.position();
+        int length = buffer.getInt(start);
+        if (length <= 0 || length > buffer.remaining() - HEADER_BYTES) {
+            return null;
+        }
+        int checksum = buffer.getInt(start + 4);
+        long sequence = buffer.getLong(start + 8);
+        byte[] payload = new byte[length];
+        buffer.get(start + HEADER_BYTES, payload);
+        CRC32 crc = new CRC32();
+        crc.update(ByteBuffer.allocate(8).putLong(0, sequence));
+        crc.update(payload);
+        if ((int) crc.getValue() != checksum) {
+            return null;
+        }
+        buffer.position(start + HEADER_BYTES + length);
+        return new Entry(sequence, payload);
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(p -> {
+                        String file = p.getFileName().toString();
+                        return file.startsWith(name + "-") && file.endsWith(SUFFIX);
+                    })
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private long firstSequence(Path segmentPath) {
+        String file = segmentPath.getFileName().toString();
+        return Long.parseLong(file.substring(name.length() + 1, file.length() - SUFFIX.length()));
+    }
+}
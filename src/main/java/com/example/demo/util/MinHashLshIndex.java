@@ -0,0 +1,248 @@
+package com.example.demo.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory LSH index over MinHash signatures (bands x rows = signature length).
+ * <p>
+ * Storage is primitive arrays only: every indexed signature gets a slot (id + packed signature);
+ * each band is an open-addressing table from band key to the newest slot with that key, and
+ * slots with the same band key are chained through a per-band next array. A query hashes its
+ * bands, walks the chains and estimates Jaccard similarity on the full signatures of the
+ * candidates, so cost depends on the number of colliding journeys, not the index size.
+ * Each slot may also carry a time window (epoch millis); a windowed query only reports entries
+ * whose window overlaps it, entries added without a window overlap everything.
+ * Reads share a read lock; adds take the write lock.
+ */
+public class MinHashLshIndex {
+
+    public record Match(long id, double similarity) {
+    }
+
+    /** Window of entries (and queries) without known times: overlaps every window. */
+    public static final long UNKNOWN_START = Long.MIN_VALUE;
+    public static final long UNKNOWN_END = Long.MAX_VALUE;
+
+    private final int bands;
+    private final int rows;
+    private final int sigLength;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private int size;
+    private long[] ids;
+    private long[] starts;
+    private long[] ends;
+    private int[] signatures;
+    private int[][] next;          // [band][slot] -> previous slot with the same band key, -1 = end
+
+    private long[][] tableKeys;    // [band][bucket]
+    private int[][] tableHeads;    // [band][bucket] -> newest slot, -1 = empty
+    private int tableMask;
+
+    public MinHashLshIndex(int bands, int rows, int initialCapacity) {
+        this.bands = bands;
+        this.rows = rows;
+        this.sigLength = bands * rows;
+        int capacity = Math.max(16, initialCapacity);
+        this.ids = new long[capacity];
+        this.starts = new long[capacity];
+        this.ends = new long[capacity];
+        this.signatures = new int[capacity * sigLength];
+        this.next = new int[bands][capacity];
+        allocateTables(tableSizeFor(capacity));
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int signatureLength() {
+        return sigLength;
+    }
+
+    public void add(long id, int[] signature) {
+        add(id, signature, UNKNOWN_START, UNKNOWN_END);
+    }
+
+    public void add(long id, int[] signature, long startMillis, long endMillis) {
+        checkLength(signature);
+        lock.writeLock().lock();
+        try {
+            if (size == ids.length) {
+                grow();
+            }
+            int slot = size++;
+            ids[slot] = id;
+            starts[slot] = startMillis;
+            ends[slot] = endMillis;
+            System.arraycopy(signature, 0, signatures, slot * sigLength, sigLength);
+            for (int b = 0; b < bands; b++) {
+                link(b, bandKey(signature, b), slot);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Indexed signatures sharing at least one band with the query and with estimated Jaccard
+     * similarity >= threshold, best first. excludeId is skipped (the query's own entry).
+     */
+    public List<Match> query(int[] signature, double threshold, long excludeId, int limit) {
+        return query(signature, threshold, excludeId, limit, UNKNOWN_START, UNKNOWN_END);
+    }
+
+    /**
+     * Like {@link #query(int[], double, long, int)}, restricted to entries whose time window
+     * overlaps [fromMillis, toMillis].
+     */
+    public List<Match> query(int[] signature, double threshold, long excludeId, int limit,
+                             long fromMillis, long toMillis) {
+        checkLength(signature);
+        List<Match> matches = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            // Slots are visited once per colliding band; remember them to score each only once
+            Set<Integer> seen = new HashSet<>();
+            for (int b = 0; b < bands; b++) {
+                long key = bandKey(signature, b);
+                int bucket = find(b, key);
+                if (bucket < 0) {
+                    continue;
+                }
+                for (int slot = tableHeads[b][bucket]; slot >= 0; slot = next[b][slot]) {
+                    if (ids[slot] == excludeId || starts[slot] > toMillis || ends[slot] < fromMillis
+                            || !seen.add(slot)) {
+                        continue;
+                    }
+                    double similarity = similarity(signature, slot);
+                    if (similarity >= threshold) {
+                        matches.add(new Match(ids[slot], similarity));
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        matches.sort(Comparator.comparingDouble(Match::similarity).reversed());
+        // An id indexed twice (e.g. added live while a rebuild loads it) is reported once
+        List<Match> unique = new ArrayList<>(Math.min(limit, matches.size()));
+        Set<Long> reported = new HashSet<>();
+        for (Match match : matches) {
+            if (unique.size() == limit) {
+                break;
+            }
+            if (reported.add(match.id())) {
+                unique.add(match);
+            }
+        }
+        return unique;
+    }
+
+    /**
+     * Estimated Jaccard similarity of two signatures (fraction of equal components).
+     */
+    public static double similarity(int[] a, int[] b) {
+        int equal = 0;
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] == b[i]) {
+                equal++;
+            }
+        }
+        return (double) equal / a.length;
+    }
+
+    private double similarity(int[] query, int slot) {
+        int base = slot * sigLength;
+        int equal = 0;
+        for (int i = 0; i < sigLength; i++) {
+            if (query[i] == signatures[base + i]) {
+                equal++;
+            }
+        }
+        return (double) equal / sigLength;
+    }
+
+    private long bandKey(int[] signature, int band) {
+        long h = band * 0x9E3779B97F4A7C15L;
+        int from = band * rows;
+        for (int i = from; i < from + rows; i++) {
+            h = RouteMinHasher.mix64(h ^ signature[i]);
+        }
+        return h;
+    }
+
+    private void link(int band, long key, int slot) {
+        long[] keys = tableKeys[band];
+        int[] heads = tableHeads[band];
+        int bucket = (int) (key ^ (key >>> 32)) & tableMask;
+        while (heads[bucket] >= 0 && keys[bucket] != key) {
+            bucket = (bucket + 1) & tableMask;
+        }
+        next[band][slot] = heads[bucket];
+        keys[bucket] = key;
+        heads[bucket] = slot;
+    }
+
+    private int find(int band, long key) {
+        long[] keys = tableKeys[band];
+        int[] heads = tableHeads[band];
+        int bucket = (int) (key ^ (key >>> 32)) & tableMask;
+        while (heads[bucket] >= 0) {
+            if (keys[bucket] == key) {
+                return bucket;
+            }
+            bucket = (bucket + 1) & tableMask;
+        }
+        return -1;
+    }
+
+    private void grow() {
+        int capacity = ids.length * 2;
+        ids = Arrays.copyOf(ids, capacity);
+        starts = Arrays.copyOf(starts, capacity);
+        ends = Arrays.copyOf(ends, capacity);
+        signatures = Arrays.copyOf(signatures, capacity * sigLength);
+        for (int b = 0; b < bands; b++) {
+            next[b] = Arrays.copyOf(next[b], capacity);
+        }
+        // Rehash: tables stay at most half full
+        allocateTables(tableSizeFor(capacity));
+        for (int slot = 0; slot < size; slot++) {
+            int[] sig = Arrays.copyOfRange(signatures, slot * sigLength, (slot + 1) * sigLength);
+            for (int b = 0; b < bands; b++) {
+                link(b, bandKey(sig, b), slot);
+            }
+        }
+    }
+
+    private void allocateTables(int tableSize) {
+        tableMask = tableSize - 1;
+        tableKeys = new long[bands][tableSize];
+        tableHeads = new int[bands][tableSize];
+        for (int b = 0; b < bands; b++) {
+            Arrays.fill(tableHeads[b], -1);
+        }
+    }
+
+    private static int tableSizeFor(int capacity) {
+        return Integer.highestOneBit(Math.max(16, capacity) * 2 - 1) << 1;
+    }
+
+    private void checkLength(int[] signature) {
+        if (signature.length != sigLength) {
+            throw new IllegalArgumentException("Signature length " + signature.length + " != " + sigLength);
+        }
+    }
+}
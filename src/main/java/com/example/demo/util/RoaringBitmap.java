@@ -0,0 +1,1016 @@
+package com.example.demo.util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Roaring-style compressed bitmap over non-negative long values, tuned for range operations.
+ * <p>
+ * Values are split into a 48-bit key and a 16-bit low part; keys are a sorted array with one
+ * container per key. A container is a run container (sorted [start, end] pairs, a few bytes for
+ * any contiguous range), an array container (sorted 16-bit values, for sparse chunks of scattered
+ * values) or a 1024-word bitmap once neither would be smaller. Each mutation re-picks the
+ * representation, with hysteresis between the thresholds so a chunk does not flip back and forth.
+ * Operations cost O(log containers + touched containers), independent of the cardinality.
+ * Not thread-safe.
+ */
+public class RoaringBitmap {
+
+    private static final int CHUNK = 1 << 16;
+
+    private long[] keys = new long[4];
+    private Container[] containers = new Container[4];
+    private int size;
+
+    public RoaringBitmap copy() {
+        RoaringBitmap copy = new RoaringBitmap();
+        copy.keys = Arrays.copyOf(keys, Math.max(4, size));
+        copy.containers = new Container[copy.keys.length];
+        for (int i = 0; i < size; i++) {
+            copy.containers[i] = containers[i].copy();
+        }
+        copy.size = size;
+        return copy;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void add(long value) {
+        addRange(value, value);
+    }
+
+    /**
+     * Adds [start, end] (inclusive).
+     */
+    public void addRange(long start, long end) {
+        checkRange(start, end);
+        long firstKey = start >>> 16;
+        long lastKey = end >>> 16;
+        for (long key = firstKey; key <= lastKey; key++) {
+            int lo = key == firstKey ? (int) (start & 0xFFFF) : 0;
+            int hi = key == lastKey ? (int) (end & 0xFFFF) : CHUNK - 1;
+            int i = indexOf(key);
+            if (i >= 0) {
+                containers[i] = containers[i].add(lo, hi);
+            } else {
+                insert(-i - 1, key, new RunContainer().add(lo, hi));
+            }
+        }
+    }
+
+    /**
+     * Removes [start, end] (inclusive).
+     */
+    public void removeRange(long start, long end) {
+        checkRange(start, end);
+        long firstKey = start >>> 16;
+        long lastKey = end >>> 16;
+        int i = lowerBound(firstKey);
+        while (i < size && keys[i] <= lastKey) {
+            long key = keys[i];
+            int lo = key == firstKey ? (int) (start & 0xFFFF) : 0;
+            int hi = key == lastKey ? (int) (end & 0xFFFF) : CHUNK - 1;
+            Container c = containers[i].remove(lo, hi);
+            if (c == null) {
+                delete(i);
+            } else {
+                containers[i++] = c;
+            }
+        }
+    }
+
+    public boolean contains(long value) {
+        if (value < 0) {
+            return false;
+        }
+        int i = indexOf(value >>> 16);
+        return i >= 0 && containers[i].contains((int) (value & 0xFFFF));
+    }
+
+    /**
+     * True if any value of [start, end] is present.
+     */
+    public boolean intersects(long start, long end) {
+        checkRange(start, end);
+        long firstKey = start >>> 16;
+        long lastKey = end >>> 16;
+        for (int i = lowerBound(firstKey); i < size && keys[i] <= lastKey; i++) {
+            int lo = keys[i] == firstKey ? (int) (start & 0xFFFF) : 0;
+            int hi = keys[i] == lastKey ? (int) (end & 0xFFFF) : CHUNK - 1;
+            if (containers[i].intersects(lo, hi)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * True if every value of [start, end] is present.
+     */
+    public boolean containsRange(long start, long end) {
+        checkRange(start, end);
+        long firstKey = start >>> 16;
+        long lastKey = end >>> 16;
+        int i = indexOf(firstKey);
+        if (i < 0) {
+            return false;
+        }
+        for (long key = firstKey; key <= lastKey; key++, i++) {
+            if (i >= size || keys[i] != key) {
+                return false;
+            }
+            int lo = key == firstKey ? (int) (start & 0xFFFF) : 0;
+            int hi = key == lastKey ? (int) (end & 0xFFFF) : CHUNK - 1;
+            if (!containers[i].containsAll(lo, hi)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public long cardinality() {
+        long total = 0;
+        for (int i = 0; i < size; i++) {
+            total += containers[i].cardinality();
+        }
+        return total;
+    }
+
+    /**
+     * Number of present values in [start, end].
+     */
+    public long cardinality(long start, long end) {
+        checkRange(start, end);
+        long firstKey = start >>> 16;
+        long lastKey = end >>> 16;
+        long total = 0;
+        for (int i = lowerBound(firstKey); i < size && keys[i] <= lastKey; i++) {
+            int lo = keys[i] == firstKey ? (int) (start & 0xFFFF) : 0;
+            int hi = keys[i] == lastKey ? (int) (end & 0xFFFF) : CHUNK - 1;
+            total += containers[i].cardinality(lo, hi);
+        }
+        return total;
+    }
+
+    /**
+     * Smallest present value >= from, or -1.
+     */
+    public long nextValue(long from) {
+        if (from < 0) {
+            from = 0;
+        }
+        long fromKey = from >>> 16;
+        for (int i = lowerBound(fromKey); i < size; i++) {
+            int low = containers[i].nextSet(keys[i] == fromKey ? (int) (from & 0xFFFF) : 0);
+            if (low >= 0) {
+                return keys[i] << 16 | low;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Smallest absent value >= from.
+     */
+    public long nextAbsentValue(long from) {
+        if (from < 0) {
+            from = 0;
+        }
+        long key = from >>> 16;
+        int low = (int) (from & 0xFFFF);
+        int i = indexOf(key);
+        if (i < 0) {
+            return from;
+        }
+        while (true) {
+            int next = containers[i].nextClear(low);
+            if (next < CHUNK) {
+                return key << 16 | next;
+            }
+            // Chunk full from low onwards: continue in the next key if it is contiguous
+            key++;
+            low = 0;
+            i++;
+            if (i >= size || keys[i] != key) {
+                return key << 16;
+            }
+        }
+    }
+
+    /**
+     * Maximal ranges [start, end] intersecting [from, to], clipped to it, at most limit of them.
+     */
+    public List<long[]> ranges(long from, long to, int limit) {
+        List<long[]> ranges = new ArrayList<>();
+        long cursor = nextValue(from);
+        while (cursor >= 0 && cursor <= to && ranges.size() < limit) {
+            long end = Math.min(nextAbsentValue(cursor) - 1, to);
+            ranges.add(new long[]{cursor, end});
+            if (end == Long.MAX_VALUE) {
+                break;
+            }
+            cursor = nextValue(end + 1);
+        }
+        return ranges;
+    }
+
+    /**
+     * Number of present values <= value.
+     */
+    public long rank(long value) {
+        if (value < 0) {
+            return 0;
+        }
+        long key = value >>> 16;
+        long total = 0;
+        for (int i = 0; i < size && keys[i] <= key; i++) {
+            total += keys[i] < key
+                    ? containers[i].cardinality()
+                    : containers[i].cardinality(0, (int) (value & 0xFFFF));
+        }
+        return total;
+    }
+
+    /**
+     * The index-th smallest present value (0-based), or -1 if index >= cardinality.
+     */
+    public long select(long index) {
+        if (index < 0) {
+            throw new IllegalArgumentException("Invalid index " + index);
+        }
+        long remaining = index;
+        for (int i = 0; i < size; i++) {
+            int cardinality = containers[i].cardinality();
+            if (remaining < cardinality) {
+                return keys[i] << 16 | containers[i].select((int) remaining);
+            }
+            remaining -= cardinality;
+        }
+        return -1;
+    }
+
+    public int containerCount() {
+        return size;
+    }
+
+    // Representation of the chunk holding value ("run", "array", "bitmap"), null if absent; for tests
+    String containerKind(long value) {
+        int i = indexOf(value >>> 16);
+        if (i < 0) {
+            return null;
+        }
+        return switch (containers[i]) {
+            case RunContainer c -> "run";
+            case ArrayContainer c -> "array";
+            case BitmapContainer c -> "bitmap";
+            default -> throw new IllegalStateException();
+        };
+    }
+
+    /**
+     * Approximate heap footprint of the containers.
+     */
+    public long sizeInBytes() {
+        long bytes = 16L * keys.length;
+        for (int i = 0; i < size; i++) {
+            bytes += containers[i].sizeInBytes();
+        }
+        return bytes;
+    }
+
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            out.writeLong(keys[i]);
+            containers[i].write(out);
+        }
+    }
+
+    public static RoaringBitmap read(DataInput in) throws IOException {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        int count = in.readInt();
+        bitmap.keys = new long[Math.max(4, count)];
+        bitmap.containers = new Container[bitmap.keys.length];
+        for (int i = 0; i < count; i++) {
+            bitmap.keys[i] = in.readLong();
+            byte type = in.readByte();
+            bitmap.containers[i] = switch (type) {
+                case RunContainer.TYPE -> RunContainer.read(in);
+                case BitmapContainer.TYPE -> BitmapContainer.read(in);
+                case ArrayContainer.TYPE -> ArrayContainer.read(in);
+                default -> throw new IOException("Unknown container type " + type);
+            };
+        }
+        bitmap.size = count;
+        return bitmap;
+    }
+
+    private static void checkRange(long start, long end) {
+        if (start < 0 || end < start) {
+            throw new IllegalArgumentException("Invalid range [" + start + ", " + end + "]");
+        }
+    }
+
+    private int indexOf(long key) {
+        return Arrays.binarySearch(keys, 0, size, key);
+    }
+
+    private int lowerBound(long key) {
+        int i = indexOf(key);
+        return i >= 0 ? i : -i - 1;
+    }
+
+    private void insert(int i, long key, Container container) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            containers = Arrays.copyOf(containers, size * 2);
+        }
+        System.arraycopy(keys, i, keys, i + 1, size - i);
+        System.arraycopy(containers, i, containers, i + 1, size - i);
+        keys[i] = key;
+        containers[i] = container;
+        size++;
+    }
+
+    private void delete(int i) {
+        System.arraycopy(keys, i + 1, keys, i, size - i - 1);
+        System.arraycopy(containers, i + 1, containers, i, size - i - 1);
+        containers[--size] = null;
+    }
+
+    /**
+     * 16-bit chunk of the bitmap. Mutators return the container to keep (it may switch
+     * representation), or null when it became empty.
+     */
+    private interface Container {
+
+        Container add(int lo, int hi);
+
+        Container remove(int lo, int hi);
+
+        boolean contains(int value);
+
+        boolean intersects(int lo, int hi);
+
+        boolean containsAll(int lo, int hi);
+
+        int cardinality();
+
+        int cardinality(int lo, int hi);
+
+        // -1 if none
+        int nextSet(int from);
+
+        // CHUNK if none
+        int nextClear(int from);
+
+        // index-th smallest value, index < cardinality()
+        int select(int index);
+
+        Container copy();
+
+        long sizeInBytes();
+
+        void write(DataOutput out) throws IOException;
+    }
+
+    /**
+     * Sorted, disjoint, non-adjacent runs: runs[2i] = start, runs[2i + 1] = end (inclusive).
+     */
+    private static final class RunContainer implements Container {
+
+        static final byte TYPE = 0;
+        // 8 bytes per run here vs 8 KB for a bitmap
+        static final int MAX_RUNS = 1024;
+
+        private int[] runs;
+        private int count;
+
+        RunContainer() {
+            this(new int[8], 0);
+        }
+
+        RunContainer(int[] runs, int count) {
+            this.runs = runs;
+            this.count = count;
+        }
+
+        private int start(int i) {
+            return runs[2 * i];
+        }
+
+        private int end(int i) {
+            return runs[2 * i + 1];
+        }
+
+        // First run with end >= value
+        private int firstEndingAtOrAfter(int value) {
+            int lo = 0;
+            int hi = count;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (end(mid) < value) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        // Last run with start <= value, -1 if none
+        private int lastStartingAtOrBefore(int value) {
+            int lo = 0;
+            int hi = count;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (start(mid) <= value) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo - 1;
+        }
+
+        // Replaces runs [from, to) with the given pairs
+        private void splice(int from, int to, int... pairs) {
+            int added = pairs.length / 2;
+            int newCount = count - (to - from) + added;
+            if (2 * newCount > runs.length) {
+                runs = Arrays.copyOf(runs, Math.max(2 * newCount, runs.length * 2));
+            }
+            System.arraycopy(runs, 2 * to, runs, 2 * (from + added), 2 * (count - to));
+            System.arraycopy(pairs, 0, runs, 2 * from, pairs.length);
+            count = newCount;
+        }
+
+        @Override
+        public Container add(int lo, int hi) {
+            // Runs overlapping or adjacent to [lo, hi] are merged into one
+            int i = firstEndingAtOrAfter(lo - 1);
+            int j = lastStartingAtOrBefore(hi + 1);
+            if (i > j) {
+                splice(i, i, lo, hi);
+            } else {
+                splice(i, j + 1, Math.min(lo, start(i)), Math.max(hi, end(j)));
+            }
+            return optimize();
+        }
+
+        @Override
+        public Container remove(int lo, int hi) {
+            int i = firstEndingAtOrAfter(lo);
+            int j = lastStartingAtOrBefore(hi);
+            if (i > j) {
+                return this;
+            }
+            int left = start(i);
+            int right = end(j);
+            if (left < lo && right > hi) {
+                splice(i, j + 1, left, lo - 1, hi + 1, right);
+            } else if (left < lo) {
+                splice(i, j + 1, left, lo - 1);
+            } else if (right > hi) {
+                splice(i, j + 1, hi + 1, right);
+            } else {
+                splice(i, j + 1);
+            }
+            return optimize();
+        }
+
+        // Runs take 4 bytes each serialized, array values 2: scattered values go to an array
+        private Container optimize() {
+            if (count == 0) {
+                return null;
+            }
+            if (cardinality() < 2 * count) {
+                return ArrayContainer.of(this);
+            }
+            return count > MAX_RUNS ? BitmapContainer.of(this) : this;
+        }
+
+        static RunContainer of(ArrayContainer array) {
+            RunContainer runs = new RunContainer();
+            int i = 0;
+            while (i < array.count) {
+                int start = array.values[i];
+                while (i + 1 < array.count && array.values[i + 1] == array.values[i] + 1) {
+                    i++;
+                }
+                runs.splice(runs.count, runs.count, start, array.values[i]);
+                i++;
+            }
+            return runs;
+        }
+
+        static RunContainer of(BitmapContainer bitmap) {
+            RunContainer runs = new RunContainer();
+            int value = bitmap.nextSet(0);
+            while (value >= 0) {
+                int end = bitmap.nextClear(value) - 1;
+                runs.splice(runs.count, runs.count, value, end);
+                value = end + 1 < CHUNK ? bitmap.nextSet(end + 1) : -1;
+            }
+            return runs;
+        }
+
+        @Override
+        public boolean contains(int value) {
+            int i = lastStartingAtOrBefore(value);
+            return i >= 0 && end(i) >= value;
+        }
+
+        @Override
+        public boolean intersects(int lo, int hi) {
+            int i = firstEndingAtOrAfter(lo);
+            return i < count && start(i) <= hi;
+        }
+
+        @Override
+        public boolean containsAll(int lo, int hi) {
+            int i = lastStartingAtOrBefore(lo);
+            return i >= 0 && end(i) >= hi;
+        }
+
+        @Override
+        public int cardinality() {
+            int total = 0;
+            for (int i = 0; i < count; i++) {
+                total += end(i) - start(i) + 1;
+            }
+            return total;
+        }
+
+        @Override
+        public int cardinality(int lo, int hi) {
+            int total = 0;
+            for (int i = firstEndingAtOrAfter(lo); i < count && start(i) <= hi; i++) {
+                total += Math.min(end(i), hi) - Math.max(start(i), lo) + 1;
+            }
+            return total;
+        }
+
+        @Override
+        public int nextSet(int from) {
+            int i = firstEndingAtOrAfter(from);
+            return i < count ? Math.max(start(i), from) : -1;
+        }
+
+        @Override
+        public int nextClear(int from) {
+            int i = lastStartingAtOrBefore(from);
+            return i >= 0 && end(i) >= from ? end(i) + 1 : from;
+        }
+
+        @Override
+        public int select(int index) {
+            int remaining = index;
+            for (int i = 0; i < count; i++) {
+                int length = end(i) - start(i) + 1;
+                if (remaining < length) {
+                    return start(i) + remaining;
+                }
+                remaining -= length;
+            }
+            throw new IndexOutOfBoundsException("Index " + index + " >= cardinality " + cardinality());
+        }
+
+        @Override
+        public Container copy() {
+            return new RunContainer(Arrays.copyOf(runs, Math.max(2, 2 * count)), count);
+        }
+
+        @Override
+        public long sizeInBytes() {
+            return 24L + 4L * runs.length;
+        }
+
+        @Override
+        public void write(DataOutput out) throws IOException {
+            out.writeByte(TYPE);
+            out.writeShort(count - 1);
+            for (int i = 0; i < 2 * count; i++) {
+                out.writeShort(runs[i]);
+            }
+        }
+
+        static RunContainer read(DataInput in) throws IOException {
+            int count = in.readUnsignedShort() + 1;
+            int[] runs = new int[2 * count];
+            for (int i = 0; i < runs.length; i++) {
+                runs[i] = in.readUnsignedShort();
+            }
+            return new RunContainer(runs, count);
+        }
+    }
+
+    private static final class BitmapContainer implements Container {
+
+        static final byte TYPE = 1;
+        // Back to runs once they fit in half the run budget (hysteresis)
+        static final int TO_RUNS = RunContainer.MAX_RUNS / 2;
+
+        private final long[] words;
+        private int cardinality;
+
+        private BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        static BitmapContainer of(RunContainer runs) {
+            BitmapContainer bitmap = new BitmapContainer(new long[CHUNK / 64], 0);
+            for (int i = 0; i < runs.count; i++) {
+                bitmap.setRange(runs.start(i), runs.end(i), true);
+            }
+            return bitmap;
+        }
+
+        static BitmapContainer of(ArrayContainer array) {
+            long[] words = new long[CHUNK / 64];
+            for (int i = 0; i < array.count; i++) {
+                int value = array.values[i];
+                words[value >>> 6] |= 1L << value;
+            }
+            return new BitmapContainer(words, array.count);
+        }
+
+        // Sets or clears [lo, hi], keeping cardinality
+        private void setRange(int lo, int hi, boolean set) {
+            int first = lo >>> 6;
+            int last = hi >>> 6;
+            for (int w = first; w <= last; w++) {
+                long mask = -1L;
+                if (w == first) {
+                    mask &= -1L << (lo & 63);
+                }
+                if (w == last) {
+                    mask &= -1L >>> (63 - (hi & 63));
+                }
+                long before = words[w];
+                words[w] = set ? before | mask : before & ~mask;
+                cardinality += Long.bitCount(words[w]) - Long.bitCount(before);
+            }
+        }
+
+        private long maskedCount(int lo, int hi, boolean all) {
+            int first = lo >>> 6;
+            int last = hi >>> 6;
+            long total = 0;
+            for (int w = first; w <= last; w++) {
+                long mask = -1L;
+                if (w == first) {
+                    mask &= -1L << (lo & 63);
+                }
+                if (w == last) {
+                    mask &= -1L >>> (63 - (hi & 63));
+                }
+                long bits = words[w] & mask;
+                if (all && bits != mask) {
+                    return -1;
+                }
+                total += Long.bitCount(bits);
+            }
+            return total;
+        }
+
+        private int runCount() {
+            int runs = 0;
+            long carry = 0;
+            for (long w : words) {
+                // A run starts at every set bit whose lower neighbour is clear
+                runs += Long.bitCount(w & ~((w << 1) | carry));
+                carry = w >>> 63;
+            }
+            return runs;
+        }
+
+        private Container optimize() {
+            if (cardinality == 0) {
+                return null;
+            }
+            int runs = runCount();
+            if (runs <= TO_RUNS && cardinality >= 2 * runs) {
+                return RunContainer.of(this);
+            }
+            if (cardinality <= ArrayContainer.FROM_BITMAP && cardinality < 2 * runs) {
+                return ArrayContainer.of(this);
+            }
+            return this;
+        }
+
+        @Override
+        public Container add(int lo, int hi) {
+            setRange(lo, hi, true);
+            return optimize();
+        }
+
+        @Override
+        public Container remove(int lo, int hi) {
+            setRange(lo, hi, false);
+            return optimize();
+        }
+
+        @Override
+        public boolean contains(int value) {
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        public boolean intersects(int lo, int hi) {
+            return maskedCount(lo, hi, false) > 0;
+        }
+
+        @Override
+        public boolean containsAll(int lo, int hi) {
+            return maskedCount(lo, hi, true) >= 0;
+        }
+
+        @Override
+        public int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        public int cardinality(int lo, int hi) {
+            return (int) maskedCount(lo, hi, false);
+        }
+
+        @Override
+        public int nextSet(int from) {
+            int w = from >>> 6;
+            long bits = words[w] & (-1L << (from & 63));
+            while (bits == 0) {
+                if (++w == words.length) {
+                    return -1;
+                }
+                bits = words[w];
+            }
+            return (w << 6) + Long.numberOfTrailingZeros(bits);
+        }
+
+        @Override
+        public int nextClear(int from) {
+            int w = from >>> 6;
+            long bits = ~words[w] & (-1L << (from & 63));
+            while (bits == 0) {
+                if (++w == words.length) {
+                    return CHUNK;
+                }
+                bits = ~words[w];
+            }
+            return (w << 6) + Long.numberOfTrailingZeros(bits);
+        }
+
+        @Override
+        public int select(int index) {
+            int remaining = index;
+            for (int w = 0; w < words.length; w++) {
+                int bits = Long.bitCount(words[w]);
+                if (remaining < bits) {
+                    long word = words[w];
+                    for (int k = 0; k < remaining; k++) {
+                        word &= word - 1;
+                    }
+                    return (w << 6) + Long.numberOfTrailingZeros(word);
+                }
+                remaining -= bits;
+            }
+            throw new IndexOutOfBoundsException("Index " + index + " >= cardinality " + cardinality);
+        }
+
+        @Override
+        public Container copy() {
+            return new BitmapContainer(words.clone(), cardinality);
+        }
+
+        @Override
+        public long sizeInBytes() {
+            return 24L + 8L * words.length;
+        }
+
+        @Override
+        public void write(DataOutput out) throws IOException {
+            out.writeByte(TYPE);
+            for (long w : words) {
+                out.writeLong(w);
+            }
+        }
+
+        static BitmapContainer read(DataInput in) throws IOException {
+            long[] words = new long[CHUNK / 64];
+            int cardinality = 0;
+            for (int i = 0; i < words.length; i++) {
+                words[i] = in.readLong();
+                cardinality += Long.bitCount(words[i]);
+            }
+            return new BitmapContainer(words, cardinality);
+        }
+    }
+
+    /**
+     * Sorted, distinct 16-bit values, for chunks of scattered values. values.length never exceeds
+     * MAX_VALUES: an add that would go over it converts to a bitmap first.
+     */
+    private static final class ArrayContainer implements Container {
+
+        static final byte TYPE = 2;
+        // 2 bytes per value: past 4096 values the 8 KB bitmap is smaller
+        static final int MAX_VALUES = 4096;
+        // Bitmaps only come back to an array well below the limit (hysteresis)
+        static final int FROM_BITMAP = MAX_VALUES / 2;
+
+        private char[] values;
+        private int count;
+
+        ArrayContainer(char[] values, int count) {
+            this.values = values;
+            this.count = count;
+        }
+
+        static ArrayContainer of(RunContainer runs) {
+            int cardinality = runs.cardinality();
+            char[] values = new char[cardinality];
+            int n = 0;
+            for (int i = 0; i < runs.count; i++) {
+                for (int v = runs.start(i); v <= runs.end(i); v++) {
+                    values[n++] = (char) v;
+                }
+            }
+            return new ArrayContainer(values, n);
+        }
+
+        static ArrayContainer of(BitmapContainer bitmap) {
+            char[] values = new char[bitmap.cardinality()];
+            int n = 0;
+            for (int w = 0; w < bitmap.words.length; w++) {
+                long word = bitmap.words[w];
+                while (word != 0) {
+                    values[n++] = (char) ((w << 6) + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            return new ArrayContainer(values, n);
+        }
+
+        // First index with values[i] >= value
+        private int lowerBound(int value) {
+            int lo = 0;
+            int hi = count;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (values[mid] < value) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        private int runCount() {
+            int runs = count > 0 ? 1 : 0;
+            for (int i = 1; i < count; i++) {
+                if (values[i] != values[i - 1] + 1) {
+                    runs++;
+                }
+            }
+            return runs;
+        }
+
+        private Container optimize() {
+            if (count == 0) {
+                return null;
+            }
+            int runs = runCount();
+            if (count > 2 * runs) {
+                return runs <= RunContainer.MAX_RUNS ? RunContainer.of(this) : BitmapContainer.of(this);
+            }
+            return this;
+        }
+
+        @Override
+        public Container add(int lo, int hi) {
+            // values[i, j) already lie in [lo, hi] and are replaced by the full range
+            int i = lowerBound(lo);
+            int j = lowerBound(hi + 1);
+            int length = hi - lo + 1;
+            int newCount = count - (j - i) + length;
+            if (newCount > MAX_VALUES) {
+                return BitmapContainer.of(this).add(lo, hi);
+            }
+            char[] target = values;
+            if (newCount > values.length) {
+                target = new char[Math.min(MAX_VALUES, Math.max(newCount, 2 * values.length))];
+                System.arraycopy(values, 0, target, 0, i);
+            }
+            System.arraycopy(values, j, target, i + length, count - j);
+            for (int k = 0; k < length; k++) {
+                target[i + k] = (char) (lo + k);
+            }
+            values = target;
+            count = newCount;
+            return optimize();
+        }
+
+        @Override
+        public Container remove(int lo, int hi) {
+            int i = lowerBound(lo);
+            int j = lowerBound(hi + 1);
+            if (i == j) {
+                return this;
+            }
+            System.arraycopy(values, j, values, i, count - j);
+            count -= j - i;
+            return optimize();
+        }
+
+        @Override
+        public boolean contains(int value) {
+            int i = lowerBound(value);
+            return i < count && values[i] == value;
+        }
+
+        @Override
+        public boolean intersects(int lo, int hi) {
+            int i = lowerBound(lo);
+            return i < count && values[i] <= hi;
+        }
+
+        @Override
+        public boolean containsAll(int lo, int hi) {
+            // Distinct sorted values: [lo, hi] is covered iff lo is present and hi sits hi - lo further
+            int i = lowerBound(lo);
+            int j = i + (hi - lo);
+            return j < count && values[i] == lo && values[j] == hi;
+        }
+
+        @Override
+        public int cardinality() {
+            return count;
+        }
+
+        @Override
+        public int cardinality(int lo, int hi) {
+            return lowerBound(hi + 1) - lowerBound(lo);
+        }
+
+        @Override
+        public int nextSet(int from) {
+            int i = lowerBound(from);
+            return i < count ? values[i] : -1;
+        }
+
+        @Override
+        public int nextClear(int from) {
+            int value = from;
+            for (int i = lowerBound(from); i < count && values[i] == value; i++) {
+                value++;
+            }
+            return value;
+        }
+
+        @Override
+        public int select(int index) {
+            if (index >= count) {
+                throw new IndexOutOfBoundsException("Index " + index + " >= cardinality " + count);
+            }
+            return values[index];
+        }
+
+        @Override
+        public Container copy() {
+            return new ArrayContainer(Arrays.copyOf(values, Math.max(1, count)), count);
+        }
+
+        @Override
+        public long sizeInBytes() {
+            return 24L + 2L * values.length;
+        }
+
+        @Override
+        public void write(DataOutput out) throws IOException {
+            out.writeByte(TYPE);
+            out.writeShort(count - 1);
+            for (int i = 0; i < count; i++) {
+                out.writeShort(values[i]);
+            }
+        }
+
+        static ArrayContainer read(DataInput in) throws IOException {
+            int count = in.readUnsignedShort() + 1;
+            char[] values = new char[count];
+            for (int i = 0; i < count; i++) {
+                values[i] = (char) in.readUnsignedShort();
+            }
+            return new ArrayContainer(values, count);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.demo.util;
+
+import java.util.Arrays;
+
+/**
+ * Streaming MinHash of a GPS route. Points are snapped to a lat/lon grid and every transition
+ * between consecutive distinct cells (a cell bigram, so direction matters) is one shingle. Each
+ * shingle is folded into the running minimums as it arrives; the shingle set is never built.
+ * Timestamps do not enter the signature; the first/last point times are kept separately so the
+ * caller can restrict matches to journeys that overlap in time (the same commute on another day
+ * is not a duplicate).
+ */
+public class RouteMinHasher implements GpsTrackParser.PointSink {
+
+    private static final long[] SEEDS = seeds(256);
+
+    private final double cellDegrees;
+    private final int[] mins;
+    private long lastCell = Long.MIN_VALUE;
+    private int shingles;
+    private long startMillis = Long.MAX_VALUE;
+    private long endMillis = Long.MIN_VALUE;
+
+    public RouteMinHasher(int numHashes, double cellDegrees) {
+        if (numHashes > SEEDS.length) {
+            throw new IllegalArgumentException("At most " + SEEDS.length + " hash functions");
+        }
+        this.cellDegrees = cellDegrees;
+        this.mins = new int[numHashes];
+        Arrays.fill(mins, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public void accept(double lat, double lon, long epochMillis) {
+        if (Double.isNaN(lat) || Double.isNaN(lon) || Math.abs(lat) > 90 || Math.abs(lon) > 180) {
+            return;
+        }
+        startMillis = Math.min(startMillis, epochMillis);
+        endMillis = Math.max(endMillis, epochMillis);
+        long cell = ((long) Math.floor(lat / cellDegrees) << 32) ^ ((long) Math.floor(lon / cellDegrees) & 0xFFFFFFFFL);
+        if (cell == lastCell) {
+            return;
+        }
+        if (lastCell != Long.MIN_VALUE) {
+            long shingle = mix64(lastCell * 0x9E3779B97F4A7C15L + cell);
+            for (int i = 0; i < mins.length; i++) {
+                // Non-negative 31-bit hash so Integer.MAX_VALUE stays an "empty" marker
+                int h = (int) (mix64(shingle ^ SEEDS[i]) >>> 33);
+                if (h < mins[i]) {
+                    mins[i] = h;
+                }
+            }
+            shingles++;
+        }
+        lastCell = cell;
+    }
+
+    public int getShingles() {
+        return shingles;
+    }
+
+    /**
+     * Earliest point time, or {@link MinHashLshIndex#UNKNOWN_START} when no point was accepted.
+     */
+    public long getStartMillis() {
+        return startMillis <= endMillis ? startMillis : MinHashLshIndex.UNKNOWN_START;
+    }
+
+    /**
+     * Latest point time, or {@link MinHashLshIndex#UNKNOWN_END} when no point was accepted.
+     */
+    public long getEndMillis() {
+        return startMillis <= endMillis ? endMillis : MinHashLshIndex.UNKNOWN_END;
+    }
+
+    public int[] signature() {
+        return mins.clone();
+    }
+
+    // SplitMix64 finalizer
+    static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private static long[] seeds(int n) {
+        long[] seeds = new long[n];
+        long x = 0x2545F4914F6CDD1DL;
+        for (int i = 0; i < n; i++) {
+            x += 0x9E3779B97F4A7C15L;
+            seeds[i] = mix64(x);
+        }
+        return seeds;
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.demo.util;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Snowflake-style 64-bit id generator: 41 bits of milliseconds since {@link #EPOCH_MILLIS},
+ * 10 bits of node id ({@code app.node-id}) and a 12-bit per-millisecond sequence.
+ * <p>
+ * The last (timestamp, sequence) pair lives in a single {@link AtomicLong} and is advanced
+ * with a CAS loop, so concurrent callers never block. If the wall clock moves backwards the
+ * generator keeps issuing ids on its own logical clock (the last timestamp it used) instead
+ * of repeating one; when a millisecond's 4096 sequences run out it borrows the next millisecond.
+ * Ids are unique per node and roughly time-ordered across nodes.
+ * <p>
+ * {@code app.node-id} has no default: two instances sharing a node id would issue the same ids,
+ * so startup fails until every deployment sets its own value.
+ */
+@Component
+public class SnowflakeIdGenerator {
+
+    /** 2024-01-01T00:00:00Z */
+    public static final long EPOCH_MILLIS = 1704067200000L;
+
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    private static final long MAX_NODE_ID = (1L << NODE_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    private final long nodeId;
+    private final LongSupplier clock;
+
+    // (timestamp << SEQUENCE_BITS) | sequence of the last issued id
+    private final AtomicLong state;
+
+    @Autowired
+    public SnowflakeIdGenerator(@Value("${app.node-id:#{null}}") Long nodeId) {
+        this(requireNodeId(nodeId), System::currentTimeMillis);
+    }
+
+    SnowflakeIdGenerator(long nodeId, LongSupplier clock) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("app.node-id must be between 0 and " + MAX_NODE_ID + ", got " + nodeId);
+        }
+        this.nodeId = nodeId;
+        this.clock = clock;
+        this.state = new AtomicLong(currentTimestamp() << SEQUENCE_BITS);
+    }
+
+    public long nextId() {
+        long now = currentTimestamp();
+        while (true) {
+            long prev = state.get();
+            long prevTimestamp = prev >>> SEQUENCE_BITS;
+            long timestamp;
+            long sequence;
+            if (now > prevTimestamp) {
+                timestamp = now;
+                sequence = 0;
+            } else {
+                // Same millisecond, or the clock went backwards: continue on the logical clock
+                timestamp = prevTimestamp;
+                sequence = (prev & SEQUENCE_MASK) + 1;
+                if (sequence > SEQUENCE_MASK) {
+                    timestamp++;
+                    sequence = 0;
+                }
+            }
+            long next = (timestamp << SEQUENCE_BITS) | sequence;
+            if (state.compareAndSet(prev, next)) {
+                return (timestamp << (NODE_BITS + SEQUENCE_BITS)) | (nodeId << SEQUENCE_BITS) | sequence;
+            }
+        }
+    }
+
+    /**
+     * Id rendered as {@code prefix + decimal}, e.g. {@code VNP5823402939128832}.
+     */
+    public String nextId(String prefix) {
+        return prefix + nextId();
+    }
+
+    public long getNodeId() {
+        return nodeId;
+    }
+
+    public static long timestampMillis(long id) {
+        return (id >>> (NODE_BITS + SEQUENCE_BITS)) + EPOCH_MILLIS;
+    }
+
+    public static long nodeId(long id) {
+        return (id >>> SEQUENCE_BITS) & MAX_NODE_ID;
+    }
+
+    private long currentTimestamp() {
+        return clock.getAsLong() - EPOCH_MILLIS;
+    }
+
+    private static long requireNodeId(Long nodeId) {
+        if (nodeId == null) {
+            throw new IllegalStateException("app.node-id is not set; give every instance a unique value between 0 and "
+                    + MAX_NODE_ID);
+        }
+        return nodeId;
+    }
+}
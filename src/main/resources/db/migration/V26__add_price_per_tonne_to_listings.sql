@@ -0,0 +1,10 @@
+-- V26__add_price_per_tonne_to_listings.sql
+-- Persisted price per tonne so "cheapest credits" queries can be served from an index
+-- instead of computing price / carbon_amount for every row.
+
+ALTER TABLE listings
+    ADD COLUMN price_per_tonne DECIMAL(19,4)
+        GENERATED ALWAYS AS (price / NULLIF(carbon_amount, 0)) STORED;
+
+-- Seek-paging index: WHERE status = ? AND (price_per_tonne, id) > (?, ?) ORDER BY price_per_tonne, id
+CREATE INDEX idx_listings_status_ppt_id ON listings (status, price_per_tonne, id);
@@ -0,0 +1,18 @@
+-- V27__create_vnpay_ipn_inbox.sql
+-- Durable inbox for VNPay IPN callbacks: the callback only verifies the signature and
+-- stores the raw params here, a background worker settles the wallet later.
+
+CREATE TABLE vnpay_ipn_inbox (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    txn_ref VARCHAR(100) NOT NULL,
+    raw_params TEXT NOT NULL,
+    status VARCHAR(20) NOT NULL DEFAULT 'PENDING',
+    attempts INT NOT NULL DEFAULT 0,
+    next_attempt_at DATETIME NOT NULL,
+    locked_at DATETIME NULL,
+    last_error VARCHAR(500) NULL,
+    received_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    processed_at DATETIME NULL,
+    CONSTRAINT uk_vnpay_ipn_inbox_txn_ref UNIQUE (txn_ref),
+    INDEX idx_vnpay_ipn_inbox_status_next (status, next_attempt_at, id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
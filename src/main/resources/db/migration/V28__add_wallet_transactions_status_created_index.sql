@@ -0,0 +1,4 @@
+-- V28__add_wallet_transactions_status_created_index.sql
+-- Lets the VNPay expiry sweeper find old PENDING top-ups without scanning wallet_transactions.
+
+CREATE INDEX idx_wallet_tx_status_created ON wallet_transactions (status, created_at, id);
@@ -0,0 +1,4 @@
+-- V29__add_wallet_transactions_statement_index.sql
+-- Seek index for wallet statements: newest-first pages on (created_at, id) within one wallet.
+
+CREATE INDEX idx_wallet_tx_wallet_created_id ON wallet_transactions (wallet_id, created_at, id);
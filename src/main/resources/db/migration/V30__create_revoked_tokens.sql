@@ -0,0 +1,15 @@
+-- V30__create_revoked_tokens.sql
+-- Revoked JWTs. A row revokes either one token (token_id = jti) or every token of a user
+-- issued at or before revoked_at (token_id NULL). Rows are purged once expires_at has passed,
+-- because no token they cover can still be valid by then.
+
+CREATE TABLE revoked_tokens (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    token_id VARCHAR(64) NULL,
+    user_id BIGINT NULL,
+    reason VARCHAR(50) NULL,
+    revoked_at DATETIME NOT NULL,
+    expires_at DATETIME NOT NULL,
+    INDEX idx_revoked_tokens_expires (expires_at),
+    INDEX idx_revoked_tokens_token (token_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
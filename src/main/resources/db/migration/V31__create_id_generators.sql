@@ -0,0 +1,12 @@
+-- V31__create_id_generators.sql
+-- Table-backed id allocation (Hibernate @TableGenerator, pooled by 50) so co2_reduction inserts
+-- can be JDBC-batched; IDENTITY ids force one round trip per row.
+-- Seeded past the current max id with a full allocation block of headroom.
+
+CREATE TABLE id_generators (
+    gen_name VARCHAR(64) NOT NULL PRIMARY KEY,
+    next_val BIGINT NOT NULL
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+INSERT INTO id_generators (gen_name, next_val)
+SELECT 'co2_reduction', COALESCE(MAX(id), 0) + 51 FROM co2_reduction;
@@ -0,0 +1,33 @@
+-- V32__create_co2_user_totals.sql
+-- Running CO2 totals per user, maintained in the same transaction as each co2_reduction insert
+-- (INSERT ... ON DUPLICATE KEY UPDATE), so per-user summaries are a primary-key lookup.
+-- idx_co2_user_created_at (user_id, created_at) already exists since V19 and serves rebuilds.
+
+CREATE TABLE co2_user_totals (
+    user_id VARCHAR(255) NOT NULL PRIMARY KEY,
+    record_count BIGINT NOT NULL DEFAULT 0,
+    approved_count BIGINT NOT NULL DEFAULT 0,
+    rejected_count BIGINT NOT NULL DEFAULT 0,
+    pending_count BIGINT NOT NULL DEFAULT 0,
+    total_reduction DECIMAL(24,6) NOT NULL DEFAULT 0,
+    total_credits DECIMAL(24,6) NOT NULL DEFAULT 0,
+    approved_credits DECIMAL(24,6) NOT NULL DEFAULT 0,
+    last_record_at DATETIME NULL,
+    updated_at DATETIME NOT NULL
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+-- Backfill from existing records
+INSERT INTO co2_user_totals (user_id, record_count, approved_count, rejected_count, pending_count,
+                             total_reduction, total_credits, approved_credits, last_record_at, updated_at)
+SELECT user_id,
+       COUNT(*),
+       SUM(status = 'APPROVED'),
+       SUM(status = 'REJECTED'),
+       SUM(status = 'PENDING'),
+       COALESCE(SUM(reduction), 0),
+       COALESCE(SUM(credits), 0),
+       COALESCE(SUM(CASE WHEN status = 'APPROVED' THEN credits ELSE 0 END), 0),
+       MAX(created_at),
+       NOW()
+FROM co2_reduction
+GROUP BY user_id;
@@ -0,0 +1,11 @@
+-- V33__add_cva_queue_leases.sql
+-- CVA review queue: priority ordering and claim leases. A verifier claims a PENDING request with a
+-- conditional UPDATE (unclaimed or lease expired); an expired lease puts the item back in the queue.
+
+ALTER TABLE credit_request
+    ADD COLUMN priority INT NOT NULL DEFAULT 0,
+    ADD COLUMN claimed_by BIGINT NULL,
+    ADD COLUMN lease_expires_at DATETIME NULL;
+
+-- Queue scan: WHERE status = 'PENDING' ORDER BY priority DESC, id
+CREATE INDEX idx_credit_request_queue ON credit_request (status, priority DESC, id);
@@ -0,0 +1,32 @@
+-- V34__create_credit_request_payload.sql
+-- Move the journey_data / evidence LOBs out of credit_request into a side table, stored compressed.
+-- Format is MySQL COMPRESS(): 4-byte little-endian uncompressed length + zlib stream (empty string
+-- stays empty), which the application reads and writes with java.util.zip Deflater/Inflater.
+-- credit_request rows are then small, so listing and approving never touch the payload.
+
+CREATE TABLE credit_request_payload (
+    request_id BIGINT NOT NULL PRIMARY KEY,
+    journey_data LONGBLOB NULL,
+    evidence LONGBLOB NULL,
+    journey_raw_bytes INT NOT NULL DEFAULT 0,
+    journey_stored_bytes INT NOT NULL DEFAULT 0,
+    evidence_raw_bytes INT NOT NULL DEFAULT 0,
+    evidence_stored_bytes INT NOT NULL DEFAULT 0,
+    CONSTRAINT fk_credit_request_payload_request FOREIGN KEY (request_id) REFERENCES credit_request(id) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+INSERT INTO credit_request_payload (request_id, journey_data, evidence,
+                                    journey_raw_bytes, journey_stored_bytes, evidence_raw_bytes, evidence_stored_bytes)
+SELECT id,
+       COMPRESS(journey_data),
+       COMPRESS(evidence),
+       COALESCE(LENGTH(journey_data), 0),
+       COALESCE(LENGTH(COMPRESS(journey_data)), 0),
+       COALESCE(LENGTH(evidence), 0),
+       COALESCE(LENGTH(COMPRESS(evidence)), 0)
+FROM credit_request
+WHERE journey_data IS NOT NULL OR evidence IS NOT NULL;
+
+ALTER TABLE credit_request
+    DROP COLUMN journey_data,
+    DROP COLUMN evidence;
@@ -0,0 +1,16 @@
+-- V35__create_journey_signatures.sql
+-- MinHash signatures of submitted journeys (64 x 32-bit, 256 bytes), reloaded into the in-memory
+-- LSH index at startup. Suspected duplicates are flagged on the credit request for the CVA queue.
+
+CREATE TABLE journey_signatures (
+    request_id BIGINT NOT NULL PRIMARY KEY,
+    owner_id BIGINT NOT NULL,
+    signature VARBINARY(1024) NOT NULL,
+    shingles INT NOT NULL,
+    created_at DATETIME NOT NULL,
+    CONSTRAINT fk_journey_signatures_request FOREIGN KEY (request_id) REFERENCES credit_request(id) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+ALTER TABLE credit_request
+    ADD COLUMN duplicate_of BIGINT NULL,
+    ADD COLUMN duplicate_score DOUBLE NULL;
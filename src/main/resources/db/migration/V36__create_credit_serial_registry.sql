@@ -0,0 +1,50 @@
+-- V36__create_credit_serial_registry.sql
+-- Serial numbers for issued credits: 1 serial = 1 kg CO2 (0.001 credit), so fractional credits
+-- still get whole serials. Each carbon_credits row owns the inclusive range [serial_start, serial_end].
+-- Registry state (issued / listed / transferred / retired + per-owner holdings) lives in memory as
+-- compressed bitmaps, rebuilt from the latest snapshot plus the change log written after it.
+
+ALTER TABLE carbon_credits
+    ADD COLUMN serial_start BIGINT NULL,
+    ADD COLUMN serial_end BIGINT NULL,
+    ADD UNIQUE KEY uk_carbon_credits_serial_start (serial_start);
+
+-- Backfill: consecutive ranges in id order
+UPDATE carbon_credits c
+    JOIN (SELECT id,
+                 FLOOR(ROUND(amount * 1000, 6)) AS serials,
+                 SUM(FLOOR(ROUND(amount * 1000, 6))) OVER (ORDER BY id) AS last_serial
+          FROM carbon_credits) s ON s.id = c.id
+SET c.serial_start = s.last_serial - s.serials + 1,
+    c.serial_end = s.last_serial
+WHERE s.serials > 0;
+
+CREATE TABLE credit_serial_changes (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    op VARCHAR(16) NOT NULL,                -- ISSUE, LIST, UNLIST, TRANSFER, RETIRE
+    serial_start BIGINT NOT NULL,
+    serial_end BIGINT NOT NULL,
+    from_owner BIGINT NULL,
+    to_owner BIGINT NULL,
+    created_at DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+    KEY idx_credit_serial_changes_created_at (created_at)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+INSERT INTO credit_serial_changes (op, serial_start, serial_end, to_owner)
+SELECT 'ISSUE', serial_start, serial_end, owner_id FROM carbon_credits WHERE serial_start IS NOT NULL ORDER BY id;
+
+INSERT INTO credit_serial_changes (op, serial_start, serial_end)
+SELECT 'LIST', serial_start, serial_end FROM carbon_credits WHERE serial_start IS NOT NULL AND listed = TRUE ORDER BY id;
+
+-- Serialized registry state covering every change with id <= last_change_id
+CREATE TABLE credit_serial_snapshots (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    last_change_id BIGINT NOT NULL,
+    payload LONGBLOB NOT NULL,
+    payload_bytes INT NOT NULL,
+    created_at DATETIME NOT NULL
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+-- Next free serial
+INSERT INTO id_generators (gen_name, next_val)
+SELECT 'credit_serial', COALESCE(MAX(serial_end), 0) + 1 FROM carbon_credits;
@@ -0,0 +1,17 @@
+-- V37__create_credit_retirements.sql
+-- Retired (burned) credits. id is the Snowflake certificate id shown on the public certificate;
+-- serial_ranges lists the retired serials as "start-end,start-end,...". Each row is also appended
+-- to the on-disk retirement journal.
+
+CREATE TABLE credit_retirements (
+    id BIGINT NOT NULL PRIMARY KEY,
+    owner_id BIGINT NOT NULL,
+    amount DECIMAL(19, 6) NOT NULL,
+    serial_count BIGINT NOT NULL,
+    serial_ranges TEXT NOT NULL,
+    beneficiary VARCHAR(255) NULL,
+    purpose VARCHAR(500) NULL,
+    retired_at DATETIME(3) NOT NULL,
+    KEY idx_credit_retirements_owner (owner_id, id),
+    CONSTRAINT fk_credit_retirements_owner FOREIGN KEY (owner_id) REFERENCES users(id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
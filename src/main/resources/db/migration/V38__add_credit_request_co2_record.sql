@@ -0,0 +1,6 @@
+-- V38__add_credit_request_co2_record.sql
+-- co2_reduction record created from the CVA journey analysis of this request. Set once, under a
+-- row lock, so re-running the analysis with submit=true cannot record the emissions twice.
+
+ALTER TABLE credit_request
+    ADD COLUMN co2_record_id BIGINT NULL;
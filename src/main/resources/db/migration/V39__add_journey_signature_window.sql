@@ -0,0 +1,8 @@
+-- V39__add_journey_signature_window.sql
+-- Time span of each signed journey (first and last GPS point, UTC). A match only counts as a
+-- duplicate when the two journeys overlap in time; rows signed before this column existed have
+-- NULLs and match any window.
+
+ALTER TABLE journey_signatures
+    ADD COLUMN journey_started_at DATETIME(3) NULL,
+    ADD COLUMN journey_ended_at DATETIME(3) NULL;
@@ -0,0 +1,29 @@
+-- V40__create_credit_serial_blocks.sql
+-- Serial ownership enforced in the database. Every issued serial belongs to exactly one block
+-- [serial_start, serial_end] with an owner and a state (HELD, LISTED, RETIRED); LISTED blocks of a
+-- marketplace listing carry its listing_id. Transfers and retirements lock the owner's blocks with
+-- SELECT ... FOR UPDATE and split them, so two instances can never move the same serials.
+-- The in-memory bitmaps stay as the read model. The table is seeded by the application on first
+-- start from the replayed change log (transfers cannot be replayed in SQL).
+
+CREATE TABLE credit_serial_blocks (
+    serial_start BIGINT NOT NULL PRIMARY KEY,
+    serial_end BIGINT NOT NULL,
+    owner_id BIGINT NULL,                   -- NULL only for RETIRED blocks seeded from the log
+    state VARCHAR(16) NOT NULL,             -- HELD, LISTED, RETIRED
+    listing_id BIGINT NULL,
+    KEY idx_credit_serial_blocks_owner (owner_id, state, serial_start),
+    KEY idx_credit_serial_blocks_listing (listing_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+-- Snapshot each change was folded into. Replaces the MAX(id) watermark, which skipped changes
+-- that committed after a higher id had already been folded.
+ALTER TABLE credit_serial_changes
+    ADD COLUMN folded_into BIGINT NULL,
+    ADD KEY idx_credit_serial_changes_folded_into (folded_into);
+
+-- Existing snapshots may be missing such changes: drop them, the next start replays the full log
+DELETE FROM credit_serial_snapshots;
+
+-- Row lock serializing snapshot writers across instances
+INSERT INTO id_generators (gen_name, next_val) VALUES ('credit_serial_snapshot', 0);
@@ -0,0 +1,15 @@
+-- V41__create_carbon_wallet_adjustments.sql
+-- Carbon wallet movements that are neither issuance, trades nor retirements: admin adjustments,
+-- the wallet credit/debit API and order transfers. amount is signed (+ credit, - debit) so that
+-- reconciliation can add SUM(amount) to the expected balance.
+
+CREATE TABLE carbon_wallet_adjustments (
+    id BIGINT NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    owner_id BIGINT NOT NULL,
+    amount DECIMAL(19, 4) NOT NULL,
+    source VARCHAR(20) NOT NULL,
+    description VARCHAR(255) NULL,
+    created_at DATETIME(6) NOT NULL,
+    KEY idx_carbon_wallet_adjustments_owner (owner_id),
+    CONSTRAINT fk_carbon_wallet_adjustments_owner FOREIGN KEY (owner_id) REFERENCES users(id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
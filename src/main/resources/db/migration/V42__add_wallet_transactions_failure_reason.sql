@@ -0,0 +1,13 @@
+-- V42__add_wallet_transactions_failure_reason.sql
+-- Why a transaction is FAILED, as a code rather than free text. EXPIRED marks VNPay top-ups failed by
+-- the expiry sweeper (V28 index), which a later successful IPN may still re-open to SUCCESS.
+-- V28 is already applied, so the column is added here and existing sweeper rows are backfilled
+-- from the description the sweeper used to write.
+
+ALTER TABLE wallet_transactions
+    ADD COLUMN failure_reason VARCHAR(20) NULL;
+
+UPDATE wallet_transactions
+SET failure_reason = 'EXPIRED'
+WHERE status = 'FAILED'
+  AND description = 'Nạp tiền qua VNPay - hết hạn thanh toán';
@@ -0,0 +1,92 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.util.FixedPointAmount;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Co2ServiceImpl reduction/credit calculation over a batch of records: the legacy BigDecimal
+ * subtract + divide(1000, 6, DOWN), the fixed-point path as the service runs it (BigDecimal in,
+ * BigDecimal out at the entity boundary) and the pure long arithmetic without the conversions.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FixedPointAmountBenchmark {
+
+    private static final int RECORDS = 1024;
+    private static final BigDecimal KG_PER_CREDIT = BigDecimal.valueOf(1000);
+
+    private BigDecimal[] baselines;
+    private BigDecimal[] actuals;
+    private long[] baselineMicros;
+    private long[] actualMicros;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        baselines = new BigDecimal[RECORDS];
+        actuals = new BigDecimal[RECORDS];
+        baselineMicros = new long[RECORDS];
+        actualMicros = new long[RECORDS];
+        for (int i = 0; i < RECORDS; i++) {
+            long baseline = 1_000_000L + (long) (random.nextDouble() * 10_000_000_000L);
+            long actual = (long) (baseline * random.nextDouble());
+            baselines[i] = BigDecimal.valueOf(baseline, 3);
+            actuals[i] = BigDecimal.valueOf(actual, 3);
+            baselineMicros[i] = FixedPointAmount.of(baselines[i]).micros();
+            actualMicros[i] = FixedPointAmount.of(actuals[i]).micros();
+        }
+    }
+
+    @Benchmark
+    public void legacyBigDecimal(Blackhole bh) {
+        for (int i = 0; i < RECORDS; i++) {
+            BigDecimal reduction = baselines[i].subtract(actuals[i]);
+            if (reduction.compareTo(BigDecimal.ZERO) < 0) {
+                reduction = BigDecimal.ZERO;
+            }
+            bh.consume(reduction);
+            bh.consume(reduction.divide(KG_PER_CREDIT, FixedPointAmount.SCALE, RoundingMode.DOWN));
+        }
+    }
+
+    @Benchmark
+    public void fixedPointWithConversion(Blackhole bh) {
+        for (int i = 0; i < RECORDS; i++) {
+            FixedPointAmount reduction = FixedPointAmount.tryOf(baselines[i])
+                    .subtract(FixedPointAmount.tryOf(actuals[i]))
+                    .max(FixedPointAmount.ZERO);
+            bh.consume(reduction.toBigDecimal());
+            bh.consume(reduction.divideDown(1000).toBigDecimal());
+        }
+    }
+
+    @Benchmark
+    public void fixedPointOnly(Blackhole bh) {
+        for (int i = 0; i < RECORDS; i++) {
+            FixedPointAmount reduction = FixedPointAmount.ofMicros(baselineMicros[i])
+                    .subtract(FixedPointAmount.ofMicros(actualMicros[i]))
+                    .max(FixedPointAmount.ZERO);
+            bh.consume(reduction.micros());
+            bh.consume(reduction.divideDown(1000).micros());
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.util.SnowflakeIdGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SnowflakeIdGenerator under 16 contending threads. The generator is shared (Scope.Benchmark).
+ * The synchronized variant is the same algorithm behind a monitor, which is the obvious
+ * alternative to the CAS loop; UUID.randomUUID is the usual collision-free fallback.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(16)
+@Fork(1)
+public class SnowflakeIdGeneratorBenchmark {
+
+    private SnowflakeIdGenerator generator;
+    private final SynchronizedSnowflake synchronizedGenerator = new SynchronizedSnowflake();
+
+    @Setup
+    public void setUp() {
+        generator = new SnowflakeIdGenerator(1L);
+    }
+
+    @Benchmark
+    public long nextId() {
+        return generator.nextId();
+    }
+
+    @Benchmark
+    public String nextIdWithPrefix() {
+        return generator.nextId("VNP");
+    }
+
+    @Benchmark
+    public long synchronizedNextId() {
+        return synchronizedGenerator.nextId();
+    }
+
+    @Benchmark
+    public String randomUuid() {
+        return UUID.randomUUID().toString();
+    }
+
+    private static final class SynchronizedSnowflake {
+        private long lastTimestamp = -1;
+        private long sequence;
+
+        synchronized long nextId() {
+            long now = System.currentTimeMillis() - SnowflakeIdGenerator.EPOCH_MILLIS;
+            if (now > lastTimestamp) {
+                lastTimestamp = now;
+                sequence = 0;
+            } else if (++sequence > 4095) {
+                lastTimestamp++;
+                sequence = 0;
+            }
+            return (lastTimestamp << 22) | (1L << 12) | sequence;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.config.VnPayConfig;
+import com.example.demo.service.VnPaySigner;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.time.ZonedDateTime;
+import java.util.Calendar;
+import java.util.TimeZone;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * VNPay signing path before and after VnPaySigner: the legacy methods are copies of the code
+ * VnPayService used (Mac.getInstance + new SecretKeySpec per call, String.format hex, a new
+ * SimpleDateFormat / Calendar per request).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VnPaySignerBenchmark {
+
+    private static final String SECRET = "216M8O2A3QL1FESRY97R2MY2MIY32G0O";
+
+    private VnPaySigner signer;
+    private String hashData;
+
+    @Setup
+    public void setUp() {
+        VnPayConfig config = new VnPayConfig();
+        config.setHashSecret(SECRET);
+        signer = new VnPaySigner(config);
+
+        TreeMap<String, String> params = new TreeMap<>();
+        params.put("vnp_Version", "2.1.0");
+        params.put("vnp_Command", "pay");
+        params.put("vnp_TmnCode", "XUFPX320");
+        params.put("vnp_Amount", "10000000");
+        params.put("vnp_CurrCode", "VND");
+        params.put("vnp_TxnRef", "VNP7290316624961536");
+        params.put("vnp_OrderInfo", "Nap tien vi - User ID: 42");
+        params.put("vnp_OrderType", "other");
+        params.put("vnp_Locale", "vn");
+        params.put("vnp_ReturnUrl", "http://localhost:5173/vnpay-return");
+        params.put("vnp_IpAddr", "127.0.0.1");
+        params.put("vnp_CreateDate", "20261019120000");
+        params.put("vnp_ExpireDate", "20261019120300");
+        hashData = signer.buildHashData(params, null);
+    }
+
+    @Benchmark
+    public String signLegacy() throws Exception {
+        Mac hmac512 = Mac.getInstance("HmacSHA512");
+        SecretKeySpec secretKey = new SecretKeySpec(SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA512");
+        hmac512.init(secretKey);
+        byte[] result = hmac512.doFinal(hashData.getBytes(StandardCharsets.UTF_8));
+        StringBuilder sb = new StringBuilder(2 * result.length);
+        for (byte b : result) {
+            sb.append(String.format("%02x", b & 0xff));
+        }
+        return sb.toString();
+    }
+
+    @Benchmark
+    public String sign() {
+        return signer.sign(hashData);
+    }
+
+    @Benchmark
+    public String createDateLegacy() {
+        TimeZone vnTimeZone = TimeZone.getTimeZone("Asia/Ho_Chi_Minh");
+        Calendar cld = Calendar.getInstance(vnTimeZone);
+        SimpleDateFormat formatter = new SimpleDateFormat("yyyyMMddHHmmss");
+        formatter.setTimeZone(vnTimeZone);
+        String created = formatter.format(cld.getTime());
+        cld.add(Calendar.MINUTE, 3);
+        return created + formatter.format(cld.getTime());
+    }
+
+    @Benchmark
+    public String createDate() {
+        ZonedDateTime now = ZonedDateTime.now(VnPaySigner.VN_ZONE);
+        return VnPaySigner.VNP_DATE_FORMAT.format(now) + VnPaySigner.VNP_DATE_FORMAT.format(now.plusMinutes(3));
+    }
+}
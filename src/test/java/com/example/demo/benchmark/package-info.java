@@ -0,0 +1,7 @@
+/**
+ * JMH micro-benchmarks. They live in the test source set so they compile with the rest of the
+ * build but never run as part of {@code mvn test}; run them with {@code make bench} (all) or
+ * {@code make bench BENCH=<class regex>}. {@code -prof gc} is on, so each result also reports
+ * {@code gc.alloc.rate.norm}, the bytes allocated per operation.
+ */
+package com.example.demo.benchmark;
@@ -0,0 +1,83 @@
+package com.example.demo.controller;
+
+import com.example.demo.entity.User;
+import com.example.demo.repository.UserRepository;
+import com.example.demo.service.AuthService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class UserBanLoginTest {
+
+    private static final String EMAIL = "banned@example.com";
+    private static final String PASSWORD = "s3cret-pass";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private AdminUserController adminUserController;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private AuthService authService;
+
+    private String body(Map<String, String> fields) throws Exception {
+        return objectMapper.writeValueAsString(fields);
+    }
+
+    private int balanceStatus(Long userId, String token) throws Exception {
+        return mockMvc.perform(get("/api/wallet/" + userId + "/balance")
+                        .header("Authorization", "Bearer " + token))
+                .andReturn().getResponse().getStatus();
+    }
+
+    @Test
+    void bannedUserCannotLogInOrUseAFreshToken() throws Exception {
+        mockMvc.perform(post("/api/users/register")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body(Map.of("email", EMAIL, "password", PASSWORD, "fullName", "Banned User"))))
+                .andExpect(status().isCreated());
+        User user = userRepository.findByEmail(EMAIL).orElseThrow();
+        String login = body(Map.of("email", EMAIL, "password", PASSWORD));
+        mockMvc.perform(post("/api/users/login").contentType(MediaType.APPLICATION_JSON).content(login))
+                .andExpect(status().isOk());
+        assertThat(balanceStatus(user.getId(), authService.generateToken(user))).isNotIn(401, 403);
+
+        adminUserController.banUser(user.getId());
+
+        mockMvc.perform(post("/api/users/login").contentType(MediaType.APPLICATION_JSON).content(login))
+                .andExpect(status().isForbidden())
+                .andExpect(jsonPath("$.token").doesNotExist());
+        // A token issued after the revocation (iat later than revokedAt) is still refused
+        String lateToken = authService.generateToken(user);
+        assertThat(balanceStatus(user.getId(), lateToken)).isIn(401, 403);
+
+        adminUserController.unbanUser(user.getId());
+
+        mockMvc.perform(post("/api/users/login").contentType(MediaType.APPLICATION_JSON).content(login))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.token").exists());
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.demo.controller;
+
+import com.example.demo.entity.User;
+import com.example.demo.entity.Wallet;
+import com.example.demo.entity.WalletTransaction;
+import com.example.demo.repository.VnPayIpnMessageRepository;
+import com.example.demo.repository.WalletRepository;
+import com.example.demo.repository.WalletTransactionRepository;
+import com.example.demo.service.AuthService;
+import com.example.demo.service.VnPaySigner;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "vnpay.hash-secret=ipn-test-secret")
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class VnPayIpnResponseTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private VnPaySigner vnPaySigner;
+
+    @Autowired
+    private AuthService authService;
+
+    @Autowired
+    private WalletRepository walletRepository;
+
+    @Autowired
+    private WalletTransactionRepository walletTransactionRepository;
+
+    @Autowired
+    private VnPayIpnMessageRepository inboxRepository;
+
+    private MockHttpServletRequestBuilder signedIpn(String txnRef, String vnpAmount) {
+        TreeMap<String, String> params = new TreeMap<>(Map.of(
+                "vnp_TxnRef", txnRef,
+                "vnp_Amount", vnpAmount,
+                "vnp_ResponseCode", "00",
+                "vnp_TransactionStatus", "00"));
+        MockHttpServletRequestBuilder request = get("/api/payment/vnpay/ipn");
+        params.forEach(request::param);
+        return request.param("vnp_SecureHash", vnPaySigner.sign(vnPaySigner.buildHashData(params, null)));
+    }
+
+    @Test
+    void ipnIsCheckedAgainstTheOrderBeforeItIsQueued() throws Exception {
+        User user = authService.register("ipn-payer@example.com", "s3cret-pass", "Ipn Payer");
+        Wallet wallet = walletRepository.findByUser_Id(user.getId()).orElseThrow();
+        WalletTransaction topup = new WalletTransaction();
+        topup.setType(WalletTransaction.TransactionType.TOPUP_VNPAY);
+        topup.setStatus(WalletTransaction.TransactionStatus.PENDING);
+        topup.setAmount(new BigDecimal("50000"));
+        topup.setExternalRef("IPN-REF-1");
+        topup.setPaymentMethod("VNPAY");
+        topup.setDescription("Nạp tiền qua VNPay");
+        topup.setWallet(wallet);
+        walletTransactionRepository.save(topup);
+
+        mockMvc.perform(signedIpn("IPN-UNKNOWN", "5000000"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.RspCode").value("01"));
+        mockMvc.perform(signedIpn("IPN-REF-1", "100"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.RspCode").value("04"));
+        assertThat(inboxRepository.existsByTxnRef("IPN-UNKNOWN")).isFalse();
+        assertThat(inboxRepository.existsByTxnRef("IPN-REF-1")).isFalse();
+
+        mockMvc.perform(signedIpn("IPN-REF-1", "5000000"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.RspCode").value("00"));
+        assertThat(inboxRepository.existsByTxnRef("IPN-REF-1")).isTrue();
+    }
+}
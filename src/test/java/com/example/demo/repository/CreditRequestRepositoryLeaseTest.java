@@ -0,0 +1,78 @@
+package com.example.demo.repository;
+
+import com.example.demo.entity.CreditRequest;
+import com.example.demo.service.ListingChangeTracker;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@Import(ListingChangeTracker.class)
+class CreditRequestRepositoryLeaseTest {
+
+    private static final long ALICE = 1L;
+    private static final long BOB = 2L;
+
+    @Autowired
+    private CreditRequestRepository creditRequestRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private Long requestId;
+    private LocalDateTime now;
+
+    @BeforeEach
+    void setUp() {
+        CreditRequest request = new CreditRequest();
+        request.setOwnerId(10L);
+        request.setCarbonAmount(1.5);
+        requestId = entityManager.persistAndFlush(request).getId();
+        entityManager.clear();
+        now = LocalDateTime.now();
+    }
+
+    @Test
+    void onlyOneVerifierCanDecide() {
+        assertThat(creditRequestRepository.decide(requestId, "APPROVED", ALICE, "ok", now)).isEqualTo(1);
+        assertThat(creditRequestRepository.decide(requestId, "REJECTED", BOB, "no", now)).isZero();
+
+        CreditRequest decided = creditRequestRepository.findById(requestId).orElseThrow();
+        assertThat(decided.getStatus()).isEqualTo("APPROVED");
+        assertThat(decided.getVerifierId()).isEqualTo(ALICE);
+        assertThat(decided.getNotes()).isEqualTo("ok");
+    }
+
+    @Test
+    void liveLeaseBlocksOtherVerifiers() {
+        assertThat(creditRequestRepository.claim(requestId, ALICE, now, now.plusMinutes(15))).isEqualTo(1);
+        assertThat(creditRequestRepository.claim(requestId, BOB, now, now.plusMinutes(15))).isZero();
+
+        assertThat(creditRequestRepository.decide(requestId, "REJECTED", BOB, null, now)).isZero();
+        assertThat(creditRequestRepository.decide(requestId, "APPROVED", ALICE, null, now)).isEqualTo(1);
+
+        CreditRequest decided = creditRequestRepository.findById(requestId).orElseThrow();
+        assertThat(decided.getClaimedBy()).isNull();
+        assertThat(decided.getLeaseExpiresAt()).isNull();
+    }
+
+    @Test
+    void expiredLeaseReturnsRequestToTheQueue() {
+        creditRequestRepository.claim(requestId, ALICE, now.minusMinutes(30), now.minusMinutes(15));
+
+        assertThat(creditRequestRepository.findQueuePage(Integer.MAX_VALUE, Long.MIN_VALUE, false, now,
+                PageRequest.of(0, 10))).hasSize(1);
+        assertThat(creditRequestRepository.renewLease(requestId, ALICE, now, now.plusMinutes(15))).isZero();
+        assertThat(creditRequestRepository.decide(requestId, "APPROVED", BOB, null, now)).isEqualTo(1);
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.demo.repository;
+
+import com.example.demo.entity.Listing;
+import com.example.demo.entity.User;
+import com.example.demo.service.ListingChangeTracker;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@Import(ListingChangeTracker.class)
+class ListingRepositoryFacetTest {
+
+    @Autowired
+    private ListingRepository listingRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private User alice;
+    private User bob;
+
+    @BeforeEach
+    void setUp() {
+        alice = user("alice@example.com");
+        bob = user("bob@example.com");
+        listing(alice, "Solar farm", "50", "0.5", Listing.ListingStatus.OPEN);
+        listing(alice, "Solar roof", "150", "5", Listing.ListingStatus.OPEN);
+        listing(alice, "Wind farm", "12000", "2000", Listing.ListingStatus.OPEN);
+        listing(bob, "Wind offshore", "600", "50", Listing.ListingStatus.OPEN);
+        listing(bob, "Solar sold", "700", "50", Listing.ListingStatus.SOLD);
+        entityManager.flush();
+    }
+
+    @Test
+    void bucketCountsAreGroupedInTheDatabase() {
+        List<Object[]> rows = listingRepository.countFacetBucketsByFilters(
+                Listing.ListingStatus.OPEN, null, null, null, null);
+
+        Map<String, Long> counts = new HashMap<>();
+        for (Object[] row : rows) {
+            counts.put(row[0] + "/" + row[1], ((Number) row[2]).longValue());
+        }
+        // price bucket / carbon bucket
+        assertThat(counts).containsOnly(
+                Map.entry("0/0", 1L),
+                Map.entry("1/1", 1L),
+                Map.entry("5/4", 1L),
+                Map.entry("2/2", 1L));
+    }
+
+    @Test
+    void keywordFacetsMatchTheKeywordQuery() {
+        List<Object[]> rows = listingRepository.countFacetBucketsByKeyword("solar");
+
+        long total = rows.stream().mapToLong(r -> ((Number) r[2]).longValue()).sum();
+        assertThat(total).isEqualTo(listingRepository.findByKeyword("solar", PageRequest.of(0, 10)).getTotalElements());
+        assertThat(total).isEqualTo(3);
+    }
+
+    @Test
+    void sellerFacetIsOrderedByCountAndBounded() {
+        List<Object[]> rows = listingRepository.countSellersByFilters(
+                Listing.ListingStatus.OPEN, null, null, null, null, PageRequest.of(0, 1));
+
+        assertThat(rows).hasSize(1);
+        assertThat(rows.get(0)[0]).isEqualTo(alice.getId());
+        assertThat(((Number) rows.get(0)[1]).longValue()).isEqualTo(3);
+    }
+
+    private User user(String email) {
+        User user = new User();
+        user.setEmail(email);
+        user.setPassword("x");
+        user.setFullName(email);
+        return entityManager.persist(user);
+    }
+
+    private void listing(User seller, String title, String price, String carbon, Listing.ListingStatus status) {
+        Listing listing = new Listing();
+        listing.setTitle(title);
+        listing.setPrice(new BigDecimal(price));
+        listing.setCarbonAmount(new BigDecimal(carbon));
+        listing.setSeller(seller);
+        listing.setStatus(status);
+        entityManager.persist(listing);
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.demo.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs through the real Tomcat connector, where forwarded headers are applied (MockMvc bypasses it).
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+class RateLimitForwardedForTest {
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Test
+    void rotatingXForwardedForDoesNotEscapeTheAuthBucket() {
+        List<Integer> statuses = new ArrayList<>();
+        for (int i = 0; i < 11; i++) {
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.APPLICATION_JSON);
+            headers.set("X-Forwarded-For", "203.0.113." + i);
+            statuses.add(restTemplate.postForEntity("/api/users/login",
+                    new HttpEntity<>(Map.of("email", "nobody@example.com", "password", "wrong"), headers),
+                    String.class).getStatusCode().value());
+        }
+
+        // The auth group allows 10 requests per client IP; the direct client is not a trusted proxy
+        assertThat(statuses.subList(0, 10)).containsOnly(401);
+        assertThat(statuses.get(10)).isEqualTo(429);
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.demo.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BalanceCacheTest {
+
+    private BalanceCache cache;
+    private final AtomicReference<BigDecimal> db = new AtomicReference<>(new BigDecimal("100"));
+
+    @BeforeEach
+    void setUp() {
+        cache = new BalanceCache(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(cache, "ttlSeconds", 60L);
+        ReflectionTestUtils.setField(cache, "maxEntries", 1000);
+        ReflectionTestUtils.setField(cache, "verifySampleRate", 0.0);
+        cache.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private BigDecimal read() {
+        return cache.get(1L, db::get);
+    }
+
+    // Registers the cache callback of one "transaction" and returns it, to be completed later
+    private TransactionSynchronization debit(BigDecimal newBalance) {
+        TransactionSynchronizationManager.initSynchronization();
+        db.set(newBalance);
+        cache.invalidateOnCompletion(1L);
+        List<TransactionSynchronization> registered = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        return registered.get(0);
+    }
+
+    @Test
+    void callbacksRunningOutOfCommitOrderCannotLeaveAnOldBalance() {
+        assertThat(read()).isEqualByComparingTo("100");
+
+        // A commits 90, then B commits 80; their callbacks run B first, then A
+        TransactionSynchronization a = debit(new BigDecimal("90"));
+        TransactionSynchronization b = debit(new BigDecimal("80"));
+        b.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+        assertThat(read()).isEqualByComparingTo("80");
+        a.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+
+        assertThat(read()).isEqualByComparingTo("80");
+    }
+
+    @Test
+    void readStartedBeforeTheInvalidationIsNotCached() {
+        assertThat(read()).isEqualByComparingTo("100");
+        TransactionSynchronization commit = debit(new BigDecimal("70"));
+        commit.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+
+        // A load that saw the old row finishes after another invalidation: it must not be cached
+        BigDecimal loaded = cache.get(1L, () -> {
+            cache.invalidate(1L);
+            return new BigDecimal("100");
+        });
+        assertThat(loaded).isEqualByComparingTo("100");
+        assertThat(read()).isEqualByComparingTo("70");
+    }
+
+    @Test
+    void rollbackAlsoInvalidates() {
+        assertThat(read()).isEqualByComparingTo("100");
+        TransactionSynchronization rolledBack = debit(new BigDecimal("100"));
+        rolledBack.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+        db.set(new BigDecimal("55"));
+
+        assertThat(read()).isEqualByComparingTo("55");
+    }
+}
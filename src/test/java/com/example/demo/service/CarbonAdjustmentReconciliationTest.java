@@ -0,0 +1,52 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.ReconciliationReport;
+import com.example.demo.entity.CarbonWalletAdjustment;
+import com.example.demo.entity.User;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class CarbonAdjustmentReconciliationTest {
+
+    @Autowired
+    private AuthService authService;
+
+    @Autowired
+    private WalletService walletService;
+
+    @Autowired
+    private WalletReconciliationService reconciliationService;
+
+    @Test
+    void adjustedWalletsDoNotShowDrift() {
+        User admin = authService.register("adjusted-admin@example.com", "s3cret-pass", "Adjusted Admin");
+        User api = authService.register("adjusted-api@example.com", "s3cret-pass", "Adjusted Api");
+
+        walletService.adjust(admin.getId(), new BigDecimal("12.5"), CarbonWalletAdjustment.Source.ADMIN, "Bù lỗi nhập");
+        walletService.adjust(admin.getId(), new BigDecimal("-2.5"), CarbonWalletAdjustment.Source.ADMIN, "Thu hồi");
+        walletService.adjust(api.getId(), new BigDecimal("4"), CarbonWalletAdjustment.Source.WALLET_API, "Nạp");
+        walletService.transferCredits(api.getId(), admin.getId(), new BigDecimal("1"));
+        // Trừ quá số dư: không đổi ví, không ghi sổ
+        assertThatThrownBy(() -> walletService.adjust(api.getId(), new BigDecimal("-100"),
+                CarbonWalletAdjustment.Source.WALLET_API, "Rút"))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        assertThat(walletService.getBalance(admin.getId())).isEqualByComparingTo("11");
+        assertThat(walletService.getBalance(api.getId())).isEqualByComparingTo("3");
+
+        ReconciliationReport report = reconciliationService.reconcile();
+        assertThat(report.getDrifts())
+                .filteredOn(d -> "CARBON".equals(d.getWalletType()))
+                .extracting(ReconciliationReport.DriftEntry::getUserId)
+                .doesNotContain(admin.getId(), api.getId());
+    }
+}
@@ -0,0 +1,277 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.CreditSerialStatus;
+import com.example.demo.entity.CarbonCredit;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CreditSerialRegistryTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private DataSourceTransactionManager transactionManager;
+    private TransactionTemplate tx;
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        SimpleDriverDataSource dataSource = new SimpleDriverDataSource(new org.h2.Driver(),
+                "jdbc:h2:mem:serials-" + UUID.randomUUID() + ";MODE=MySQL;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000");
+        new ResourceDatabasePopulator(new ClassPathResource("db/credit-serial-schema.sql")).execute(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionManager = new DataSourceTransactionManager(dataSource);
+        tx = new TransactionTemplate(transactionManager);
+        executor = Executors.newFixedThreadPool(2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private CreditSerialRegistry newRegistry() {
+        CreditSerialRegistry registry = new CreditSerialRegistry(jdbcTemplate, transactionManager, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(registry, "settleLagMillis", 60_000L);
+        ReflectionTestUtils.setField(registry, "replayPageSize", 100);
+        ReflectionTestUtils.setField(registry, "snapshotsKept", 2);
+        registry.load();
+        return registry;
+    }
+
+    // Mutators rely on @Transactional for LAST_INSERT_ID and FOR UPDATE; run them as the proxy would
+    private <T> T inTx(Supplier<T> work) {
+        return tx.execute(status -> work.get());
+    }
+
+    private CreditSerialRegistry.SerialRange issue(CreditSerialRegistry registry, long owner, double credits) {
+        return inTx(() -> registry.issueAll(List.of(new CreditSerialRegistry.Issuance(owner, credits))).get(0));
+    }
+
+    private static CreditSerialRegistry.SerialRange range(long start, long end) {
+        return new CreditSerialRegistry.SerialRange(start, end);
+    }
+
+    // "start-end owner STATE [#listing]" per block, in serial order
+    private List<String> blocks() {
+        return jdbcTemplate.query(
+                "SELECT serial_start, serial_end, owner_id, state, listing_id FROM credit_serial_blocks ORDER BY serial_start",
+                (rs, i) -> rs.getLong(1) + "-" + rs.getLong(2) + " " + rs.getObject(3) + " " + rs.getString(4)
+                        + (rs.getObject(5) != null ? " #" + rs.getLong(5) : ""));
+    }
+
+    @Test
+    void transferMovesTheSmallestHeldSerials() {
+        CreditSerialRegistry registry = newRegistry();
+        assertThat(issue(registry, 1, 1.5)).isEqualTo(range(1, 1500));
+        assertThat(issue(registry, 2, 2.0)).isEqualTo(range(1501, 3500));
+
+        assertThat(inTx(() -> registry.transfer(1L, 2L, new BigDecimal("0.7")))).containsExactly(range(1, 700));
+
+        assertThat(blocks()).containsExactly("1-700 2 HELD", "701-1500 1 HELD", "1501-3500 2 HELD");
+        assertThat(registry.getHoldings(2L, 10).get("serials")).isEqualTo(2700L);
+        assertThat(registry.getStatus(1, 700).getState()).isEqualTo("TRANSFERRED");
+        assertThat(registry.getStatus(701, 1500).getState()).isEqualTo("ISSUED");
+
+        // Balances older than the serials: moves what exists
+        assertThat(inTx(() -> registry.transfer(1L, 2L, new BigDecimal("5")))).containsExactly(range(701, 1500));
+        assertThat(registry.getHoldings(1L, 10).get("serials")).isEqualTo(0L);
+    }
+
+    @Test
+    void retireSkipsListedSerialsAndNeedsEnoughOfThem() {
+        CreditSerialRegistry registry = newRegistry();
+        issue(registry, 1, 1.0);
+        assertThat(inTx(() -> registry.reserveForListing(1L, 10L, new BigDecimal("0.4")))).containsExactly(range(1, 400));
+
+        assertThatThrownBy(() -> inTx(() -> registry.retire(1L, new BigDecimal("0.7"))))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("holds only 600");
+        assertThat(blocks()).containsExactly("1-400 1 LISTED #10", "401-1000 1 HELD");
+
+        assertThat(inTx(() -> registry.retire(1L, new BigDecimal("0.6")))).containsExactly(range(401, 1000));
+        assertThat(registry.getStatus(401, 1000).getState()).isEqualTo("RETIRED");
+        assertThat(registry.getStatus(1, 400).getState()).isEqualTo("LISTED");
+        assertThatThrownBy(() -> inTx(() -> registry.retire(1L, new BigDecimal("0.0001"))))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void listingSaleMovesExactlyTheListingsSerials() {
+        CreditSerialRegistry registry = newRegistry();
+        issue(registry, 1, 1.0);
+        inTx(() -> registry.reserveForListing(1L, 10L, new BigDecimal("0.3")));
+        inTx(() -> registry.reserveForListing(1L, 11L, new BigDecimal("0.2")));
+
+        assertThat(inTx(() -> registry.transferListing(11L, 1L, 2L, new BigDecimal("0.2")))).containsExactly(range(301, 500));
+        assertThat(blocks()).containsExactly("1-300 1 LISTED #10", "301-500 2 HELD", "501-1000 1 HELD");
+        CreditSerialStatus sold = registry.getStatus(301, 500);
+        assertThat(sold.getState()).isEqualTo("TRANSFERRED");
+        assertThat(registry.getStatus(1, 300).getState()).isEqualTo("LISTED");
+
+        assertThat(inTx(() -> registry.releaseListing(10L))).containsExactly(range(1, 300));
+        assertThat(blocks()).containsExactly("1-300 1 HELD", "301-500 2 HELD", "501-1000 1 HELD");
+        assertThat(registry.getStatus(1, 300).getListed()).isZero();
+    }
+
+    @Test
+    void sellerCanListABalanceNotBackedBySerials() {
+        CreditSerialRegistry registry = newRegistry();
+        // Seller 1 bought / was credited 1.0 in the wallet before serials existed; holds only 0.2
+        issue(registry, 1, 0.2);
+
+        assertThat(inTx(() -> registry.reserveForListing(1L, 10L, new BigDecimal("0.5")))).containsExactly(range(1, 200));
+        assertThat(inTx(() -> registry.reserveForListing(1L, 11L, new BigDecimal("0.5")))).isEmpty();
+        assertThat(blocks()).containsExactly("1-200 1 LISTED #10");
+
+        // The sale moves what the listing holds; nothing else is left to top it up
+        assertThat(inTx(() -> registry.transferListing(10L, 1L, 2L, new BigDecimal("0.5")))).containsExactly(range(1, 200));
+        assertThat(inTx(() -> registry.transferListing(11L, 1L, 2L, new BigDecimal("0.5")))).isEmpty();
+        assertThat(blocks()).containsExactly("1-200 2 HELD");
+    }
+
+    @Test
+    void listingSaleTopsUpFromTheSellersHeldSerials() {
+        CreditSerialRegistry registry = newRegistry();
+        // Listed while the seller had no serials, who got some afterwards
+        inTx(() -> registry.reserveForListing(1L, 10L, new BigDecimal("0.3")));
+        issue(registry, 1, 1.0);
+
+        assertThat(inTx(() -> registry.transferListing(10L, 1L, 2L, new BigDecimal("0.3")))).containsExactly(range(1, 300));
+        assertThat(blocks()).containsExactly("1-300 2 HELD", "301-1000 1 HELD");
+    }
+
+    @Test
+    void creditListingNeedsTheWholeRangeHeld() {
+        CreditSerialRegistry registry = newRegistry();
+        CarbonCredit credit = new CarbonCredit();
+        credit.setId(5L);
+        credit.setOwnerId(1L);
+        credit.setAmount(1.0);
+        tx.executeWithoutResult(status -> registry.issue(credit));
+        inTx(() -> registry.transfer(1L, 2L, new BigDecimal("0.1")));
+
+        assertThatThrownBy(() -> tx.executeWithoutResult(status -> registry.list(credit)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("no longer held");
+
+        credit.setSerialStart(101L);
+        tx.executeWithoutResult(status -> registry.list(credit));
+        assertThat(blocks()).containsExactly("1-100 2 HELD", "101-1000 1 LISTED");
+        // Listed serials are not picked for transfers
+        assertThat(inTx(() -> registry.transfer(1L, 2L, new BigDecimal("0.5")))).isEmpty();
+
+        tx.executeWithoutResult(status -> registry.unlist(credit));
+        assertThat(blocks()).containsExactly("1-100 2 HELD", "101-1000 1 HELD");
+    }
+
+    @Test
+    void twoInstancesCannotRetireTheSameSerials() throws Exception {
+        CreditSerialRegistry nodeA = newRegistry();
+        CreditSerialRegistry nodeB = newRegistry();
+        issue(nodeA, 1, 1.0);
+
+        CountDownLatch retiredOnA = new CountDownLatch(1);
+        CountDownLatch commitA = new CountDownLatch(1);
+        Future<List<CreditSerialRegistry.SerialRange>> a = executor.submit(() -> tx.execute(status -> {
+            List<CreditSerialRegistry.SerialRange> ranges = nodeA.retire(1L, new BigDecimal("0.6"));
+            retiredOnA.countDown();
+            await(commitA);
+            return ranges;
+        }));
+        assertThat(retiredOnA.await(10, TimeUnit.SECONDS)).isTrue();
+        // B has not seen A's retirement and blocks on the owner's rows until A commits
+        Future<List<CreditSerialRegistry.SerialRange>> b = executor.submit(() ->
+                tx.execute(status -> nodeB.retire(1L, new BigDecimal("0.6"))));
+        Thread.sleep(300);
+        commitA.countDown();
+
+        assertThat(a.get(10, TimeUnit.SECONDS)).containsExactly(range(1, 600));
+        assertThatThrownBy(() -> b.get(10, TimeUnit.SECONDS)).isInstanceOf(ExecutionException.class);
+        assertThat(blocks()).containsExactly("1-600 1 RETIRED", "601-1000 1 HELD");
+
+        // B's read model catches up from the change log
+        nodeB.sync();
+        assertThat(nodeB.getStats().get("retired")).isEqualTo(600L);
+        assertThat(nodeB.getHoldings(1L, 10).get("serials")).isEqualTo(400L);
+    }
+
+    @Test
+    void snapshotFoldsAChangeThatCommitsAfterAHigherId() throws Exception {
+        CreditSerialRegistry registry = newRegistry();
+        issue(registry, 1, 1.0);
+        issue(registry, 2, 1.0);
+        registry.snapshot();
+
+        // Transfer gets the lower change id but commits after the retirement
+        CountDownLatch inserted = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+        Future<?> late = executor.submit(() -> tx.execute(status -> {
+            registry.transfer(1L, 3L, new BigDecimal("0.5"));
+            inserted.countDown();
+            await(commit);
+            return null;
+        }));
+        assertThat(inserted.await(10, TimeUnit.SECONDS)).isTrue();
+        inTx(() -> registry.retire(2L, new BigDecimal("0.5")));
+        registry.snapshot();
+        commit.countDown();
+        late.get(10, TimeUnit.SECONDS);
+        registry.snapshot();
+
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM credit_serial_changes WHERE folded_into IS NULL", Integer.class)).isZero();
+        CreditSerialRegistry restarted = newRegistry();
+        assertThat(restarted.getHoldings(3L, 10).get("serials")).isEqualTo(500L);
+        assertThat(restarted.getHoldings(1L, 10).get("serials")).isEqualTo(500L);
+        assertThat(restarted.getStats().get("retired")).isEqualTo(500L);
+        assertThat(restarted.getStats().get("transferred")).isEqualTo(500L);
+    }
+
+    @Test
+    void firstLoadSeedsBlocksFromTheChangeLog() {
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO credit_serial_changes (op, serial_start, serial_end, from_owner, to_owner) VALUES (?, ?, ?, ?, ?)",
+                List.of(
+                        new Object[]{"ISSUE", 1, 1000, null, 1},
+                        new Object[]{"ISSUE", 1001, 1500, null, 2},
+                        new Object[]{"LIST", 1, 200, null, null},
+                        new Object[]{"TRANSFER", 501, 700, 1, 2},
+                        new Object[]{"RETIRE", 1001, 1100, 2, null}));
+
+        CreditSerialRegistry registry = newRegistry();
+
+        assertThat(blocks()).containsExactly("1-200 1 LISTED", "201-500 1 HELD", "501-700 2 HELD",
+                "701-1000 1 HELD", "1001-1100 null RETIRED", "1101-1500 2 HELD");
+        assertThat(inTx(() -> registry.retire(1L, new BigDecimal("0.3")))).containsExactly(range(201, 500));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.Co2RequestDto;
+import com.example.demo.dto.Co2ResponseDto;
+import com.example.demo.dto.JourneyMetrics;
+import com.example.demo.entity.CreditRequest;
+import com.example.demo.repository.CreditRequestRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class JourneyAnalysisServiceTest {
+
+    private static final String TRACE = "lat,lon,ts\n10.0,106.0,0\n10.0,106.1,600\n10.0,106.2,1200\n";
+
+    private final CreditRequestRepository creditRequestRepository = mock(CreditRequestRepository.class);
+    private final CreditRequestPayloadService payloadService = mock(CreditRequestPayloadService.class);
+    private final Co2Service co2Service = mock(Co2Service.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+
+    private JourneyAnalysisService service;
+    private CreditRequest request;
+
+    @BeforeEach
+    void setUp() {
+        service = new JourneyAnalysisService(creditRequestRepository, payloadService, co2Service,
+                new ObjectMapper(), new SimpleMeterRegistry(), transactionManager);
+        ReflectionTestUtils.setField(service, "baselineKgPerKm", new BigDecimal("0.192"));
+        ReflectionTestUtils.setField(service, "actualKgPerKm", new BigDecimal("0.053"));
+        ReflectionTestUtils.setField(service, "maxSpeedKmh", 200.0);
+        ReflectionTestUtils.setField(service, "movingSpeedKmh", 2.0);
+        ReflectionTestUtils.setField(service, "parallelism", 1);
+        service.init();
+
+        request = new CreditRequest();
+        request.setId(5L);
+        request.setOwnerId(9L);
+        request.setCarbonAmount(0.01);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        when(creditRequestRepository.findById(5L)).thenReturn(Optional.of(request));
+        when(creditRequestRepository.findAllByIdForUpdate(List.of(5L))).thenReturn(List.of(request));
+        when(payloadService.openJourneyReader(5L)).thenAnswer(inv -> Optional.of(new StringReader(TRACE)));
+        Co2ResponseDto response = new Co2ResponseDto();
+        response.setRecordId(77L);
+        when(co2Service.processEmission(any(Co2RequestDto.class))).thenReturn(response);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void submitRecordsEmissionsOnlyOnce() throws Exception {
+        JourneyMetrics first = service.analyzeRequest(5L, true);
+        JourneyMetrics second = service.analyzeRequest(5L, true);
+
+        verify(co2Service, times(1)).processEmission(any(Co2RequestDto.class));
+        assertThat(first.getCo2RecordId()).isEqualTo(77L);
+        assertThat(second.getCo2RecordId()).isEqualTo(77L);
+        assertThat(request.getCo2RecordId()).isEqualTo(77L);
+    }
+
+    @Test
+    void analysisWithoutSubmitRecordsNothing() throws Exception {
+        JourneyMetrics metrics = service.analyzeRequest(5L, false);
+
+        verify(co2Service, never()).processEmission(any(Co2RequestDto.class));
+        assertThat(metrics.getCo2RecordId()).isNull();
+        assertThat(metrics.getPoints()).isEqualTo(3);
+        assertThat(metrics.getReductionKg()).isPositive();
+    }
+}
@@ -0,0 +1,173 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.User;
+import com.example.demo.entity.VnPayIpnMessage;
+import com.example.demo.entity.Wallet;
+import com.example.demo.entity.WalletTransaction;
+import com.example.demo.repository.WalletRepository;
+import com.example.demo.repository.WalletTransactionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@Import(ListingChangeTracker.class)
+class VnPayExpirySweeperTest {
+
+    @Autowired
+    private WalletRepository walletRepository;
+
+    @Autowired
+    private WalletTransactionRepository walletTransactionRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private VnPayExpirySweeper sweeper;
+    private VnPayService vnPayService;
+    private Wallet wallet;
+
+    @BeforeEach
+    void setUp() {
+        sweeper = new VnPayExpirySweeper(walletTransactionRepository, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(sweeper, "graceMinutes", 15L);
+        ReflectionTestUtils.setField(sweeper, "batchSize", 10);
+        ReflectionTestUtils.setField(sweeper, "maxBatchesPerRun", 5);
+        sweeper.init();
+        vnPayService = new VnPayService(null, null, walletRepository, walletTransactionRepository, null);
+
+        User user = new User();
+        user.setEmail("payer@example.com");
+        user.setPassword("x");
+        user.setFullName("Payer");
+        entityManager.persist(user);
+        wallet = new Wallet();
+        wallet.setUser(user);
+        wallet.setBalance(BigDecimal.ZERO);
+        entityManager.persist(wallet);
+    }
+
+    @Test
+    void sweepExpiresAbandonedTopups() {
+        Long id = staleTopup("REF-ABANDONED");
+
+        assertThat(sweeper.sweep()).isEqualTo(1);
+
+        WalletTransaction transaction = reload(id);
+        assertThat(transaction.getStatus()).isEqualTo(WalletTransaction.TransactionStatus.FAILED);
+        assertThat(transaction.getFailureReason()).isEqualTo(WalletTransaction.FailureReason.EXPIRED);
+    }
+
+    @Test
+    void sweepSkipsTopupsWithQueuedIpn() {
+        Long id = staleTopup("REF-QUEUED");
+        queueIpn("REF-QUEUED");
+
+        assertThat(sweeper.sweep()).isZero();
+
+        // worker xử lý IPN trong inbox sau lượt quét -> vẫn cộng tiền bình thường
+        vnPayService.processIpn(successIpn("REF-QUEUED"));
+        assertThat(reload(id).getStatus()).isEqualTo(WalletTransaction.TransactionStatus.SUCCESS);
+        assertThat(balance()).isEqualByComparingTo("50000");
+    }
+
+    @Test
+    void successIpnArrivingAfterSweepStillCreditsWallet() {
+        Long id = staleTopup("REF-LATE");
+        assertThat(sweeper.sweep()).isEqualTo(1);
+
+        vnPayService.processIpn(successIpn("REF-LATE"));
+        // IPN lặp lại không được cộng tiền lần 2
+        vnPayService.processIpn(successIpn("REF-LATE"));
+
+        WalletTransaction transaction = reload(id);
+        assertThat(transaction.getStatus()).isEqualTo(WalletTransaction.TransactionStatus.SUCCESS);
+        assertThat(transaction.getFailureReason()).isNull();
+        assertThat(balance()).isEqualByComparingTo("50000");
+    }
+
+    @Test
+    void failedTopupIsNotReopenedByItsDescription() {
+        Long id = staleTopup("REF-FAILED-ELSEWHERE");
+        // FAILED vì lý do khác nhưng trùng câu chữ với sweeper: không có failure_reason thì không mở lại
+        walletTransactionRepository.updateStatusByIds(List.of(id),
+                WalletTransaction.TransactionStatus.PENDING, WalletTransaction.TransactionStatus.FAILED,
+                VnPayExpirySweeper.EXPIRED_DESCRIPTION);
+
+        vnPayService.processIpn(successIpn("REF-FAILED-ELSEWHERE"));
+
+        assertThat(reload(id).getStatus()).isEqualTo(WalletTransaction.TransactionStatus.FAILED);
+        assertThat(balance()).isEqualByComparingTo("0");
+    }
+
+    @Test
+    void failedIpnAfterSweepKeepsTopupFailed() {
+        Long id = staleTopup("REF-LATE-FAIL");
+        sweeper.sweep();
+
+        vnPayService.processIpn(Map.of("vnp_TxnRef", "REF-LATE-FAIL", "vnp_ResponseCode", "24",
+                "vnp_Amount", "5000000"));
+
+        WalletTransaction transaction = reload(id);
+        assertThat(transaction.getStatus()).isEqualTo(WalletTransaction.TransactionStatus.FAILED);
+        assertThat(transaction.getFailureReason()).isEqualTo(WalletTransaction.FailureReason.EXPIRED);
+        assertThat(balance()).isEqualByComparingTo("0");
+    }
+
+    private Long staleTopup(String txnRef) {
+        WalletTransaction transaction = new WalletTransaction();
+        transaction.setType(WalletTransaction.TransactionType.TOPUP_VNPAY);
+        transaction.setStatus(WalletTransaction.TransactionStatus.PENDING);
+        transaction.setAmount(new BigDecimal("50000"));
+        transaction.setExternalRef(txnRef);
+        transaction.setPaymentMethod("VNPAY");
+        transaction.setDescription("Nạp tiền qua VNPay");
+        transaction.setWallet(wallet);
+        entityManager.persistAndFlush(transaction);
+        // created_at là @CreationTimestamp, lùi lại bằng SQL để giao dịch quá hạn
+        entityManager.getEntityManager()
+                .createNativeQuery("UPDATE wallet_transactions SET created_at = ? WHERE id = ?")
+                .setParameter(1, LocalDateTime.now().minusHours(2))
+                .setParameter(2, transaction.getId())
+                .executeUpdate();
+        entityManager.clear();
+        return transaction.getId();
+    }
+
+    private void queueIpn(String txnRef) {
+        VnPayIpnMessage message = new VnPayIpnMessage();
+        message.setTxnRef(txnRef);
+        message.setRawParams("{}");
+        message.setNextAttemptAt(LocalDateTime.now());
+        entityManager.persistAndFlush(message);
+    }
+
+    private Map<String, String> successIpn(String txnRef) {
+        return Map.of("vnp_TxnRef", txnRef, "vnp_ResponseCode", "00",
+                "vnp_TransactionStatus", "00", "vnp_Amount", "5000000");
+    }
+
+    private WalletTransaction reload(Long id) {
+        entityManager.clear();
+        return walletTransactionRepository.findById(id).orElseThrow();
+    }
+
+    private BigDecimal balance() {
+        entityManager.clear();
+        return walletRepository.findById(wallet.getId()).orElseThrow().getBalance();
+    }
+}
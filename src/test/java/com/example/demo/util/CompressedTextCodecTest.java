@@ -0,0 +1,93 @@
+package com.example.demo.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.DeflaterOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CompressedTextCodecTest {
+
+    private static final String JOURNEY = "lat,lon,timestamp\n" + "10.762622,106.660172,2024-05-01T08:00:00Z\n".repeat(500);
+
+    @Test
+    void roundTripsText() {
+        for (String text : new String[]{"a", JOURNEY, "Hành trình xe điện – Hà Nội → Đà Nẵng 🚗"}) {
+            assertThat(CompressedTextCodec.decompress(CompressedTextCodec.compress(text))).isEqualTo(text);
+        }
+    }
+
+    @Test
+    void nullAndEmptyMatchMysqlCompress() {
+        assertThat(CompressedTextCodec.compress(null)).isNull();
+        assertThat(CompressedTextCodec.decompress(null)).isNull();
+        assertThat(CompressedTextCodec.compress("")).isEmpty();
+        assertThat(CompressedTextCodec.decompress(new byte[0])).isEmpty();
+    }
+
+    @Test
+    void writesLittleEndianLengthHeaderThenZlib() {
+        byte[] stored = CompressedTextCodec.compress(JOURNEY);
+        int length = JOURNEY.getBytes(StandardCharsets.UTF_8).length;
+
+        assertThat(stored[0] & 0xFF).isEqualTo(length & 0xFF);
+        assertThat(stored[1] & 0xFF).isEqualTo((length >>> 8) & 0xFF);
+        assertThat(stored[2] & 0xFF).isEqualTo((length >>> 16) & 0xFF);
+        assertThat(stored[3]).isZero();
+        // zlib header (CMF 0x78)
+        assertThat(stored[4] & 0xFF).isEqualTo(0x78);
+        assertThat(stored.length).isLessThan(length / 10);
+    }
+
+    @Test
+    void readsPayloadsWrittenByAnotherZlibEncoder() throws IOException {
+        // Same layout MySQL COMPRESS() produces: length header + any valid zlib stream
+        byte[] raw = JOURNEY.getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(new byte[]{(byte) raw.length, (byte) (raw.length >>> 8), (byte) (raw.length >>> 16), 0});
+        try (DeflaterOutputStream zlib = new DeflaterOutputStream(out)) {
+            zlib.write(raw);
+        }
+
+        assertThat(CompressedTextCodec.decompress(out.toByteArray())).isEqualTo(JOURNEY);
+    }
+
+    @Test
+    void openReaderStreamsTheSameText() throws IOException {
+        StringWriter copy = new StringWriter();
+        try (Reader reader = CompressedTextCodec.openReader(CompressedTextCodec.compress(JOURNEY))) {
+            reader.transferTo(copy);
+        }
+
+        assertThat(copy.toString()).isEqualTo(JOURNEY);
+        assertThat(CompressedTextCodec.openReader(null)).isNotNull();
+    }
+
+    @Test
+    void rejectsCorruptPayloads() {
+        byte[] stored = CompressedTextCodec.compress(JOURNEY);
+
+        assertThatThrownBy(() -> CompressedTextCodec.decompress(new byte[]{1, 0, 0}))
+                .isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> CompressedTextCodec.decompress(Arrays.copyOf(stored, stored.length / 2)))
+                .isInstanceOf(IllegalStateException.class);
+
+        byte[] garbage = stored.clone();
+        Arrays.fill(garbage, 4, garbage.length, (byte) 0x55);
+        assertThatThrownBy(() -> CompressedTextCodec.decompress(garbage))
+                .isInstanceOf(IllegalStateException.class);
+
+        byte[] huge = stored.clone();
+        huge[3] = 0x3F;
+        assertThatThrownBy(() -> CompressedTextCodec.decompress(huge))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("too large");
+    }
+}
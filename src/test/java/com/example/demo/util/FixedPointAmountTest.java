@@ -0,0 +1,86 @@
+package com.example.demo.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FixedPointAmountTest {
+
+    @Test
+    void convertsExactlyAcrossScales() {
+        assertThat(FixedPointAmount.of(new BigDecimal("12")).micros()).isEqualTo(12_000_000L);
+        assertThat(FixedPointAmount.of(new BigDecimal("1.000001")).micros()).isEqualTo(1_000_001L);
+        assertThat(FixedPointAmount.of(new BigDecimal("-0.5")).micros()).isEqualTo(-500_000L);
+        // Trailing zeros past 6 decimals are still exact
+        assertThat(FixedPointAmount.of(new BigDecimal("2.50000000")).micros()).isEqualTo(2_500_000L);
+        assertThat(FixedPointAmount.of(new BigDecimal("1E+3")).micros()).isEqualTo(1_000_000_000L);
+        assertThat(FixedPointAmount.of(new BigDecimal("3.25")).toBigDecimal()).isEqualTo(new BigDecimal("3.250000"));
+    }
+
+    @Test
+    void rejectsValuesThatWouldLosePrecision() {
+        assertThat(FixedPointAmount.tryOf(null)).isNull();
+        assertThat(FixedPointAmount.tryOf(new BigDecimal("0.0000001"))).isNull();
+        assertThat(FixedPointAmount.tryOf(new BigDecimal("1234567890123.000000"))).isNull();
+        assertThat(FixedPointAmount.tryOf(new BigDecimal("999999999999.999999")).micros())
+                .isEqualTo(999_999_999_999_999_999L);
+        assertThatThrownBy(() -> FixedPointAmount.of(new BigDecimal("1.1234567")))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void divideDownMatchesBigDecimalRoundingDown() {
+        Random random = new Random(42);
+        for (int i = 0; i < 10_000; i++) {
+            long micros = random.nextLong() % 1_000_000_000_000_000L;
+            long divisor = 1 + random.nextInt(10_000);
+            BigDecimal value = BigDecimal.valueOf(micros, FixedPointAmount.SCALE);
+
+            BigDecimal expected = value.divide(BigDecimal.valueOf(divisor), FixedPointAmount.SCALE, RoundingMode.DOWN);
+
+            assertThat(FixedPointAmount.ofMicros(micros).divideDown(divisor).toBigDecimal()).isEqualTo(expected);
+        }
+        assertThatThrownBy(() -> FixedPointAmount.ZERO.divideDown(0)).isInstanceOf(ArithmeticException.class);
+    }
+
+    @Test
+    void creditCalculationMatchesTheBigDecimalPath() {
+        BigDecimal baseline = new BigDecimal("1234.567891");
+        BigDecimal actual = new BigDecimal("234.5");
+
+        FixedPointAmount reduction = FixedPointAmount.of(baseline).subtract(FixedPointAmount.of(actual))
+                .max(FixedPointAmount.ZERO);
+
+        assertThat(reduction.toBigDecimal()).isEqualByComparingTo(baseline.subtract(actual));
+        assertThat(reduction.divideDown(1000).toBigDecimal())
+                .isEqualTo(baseline.subtract(actual).divide(BigDecimal.valueOf(1000), 6, RoundingMode.DOWN));
+        assertThat(FixedPointAmount.of(actual).subtract(FixedPointAmount.of(baseline)).max(FixedPointAmount.ZERO))
+                .isSameAs(FixedPointAmount.ZERO);
+    }
+
+    @Test
+    void arithmeticOverflowThrows() {
+        FixedPointAmount max = FixedPointAmount.ofMicros(Long.MAX_VALUE);
+        FixedPointAmount min = FixedPointAmount.ofMicros(Long.MIN_VALUE);
+
+        assertThatThrownBy(() -> max.add(FixedPointAmount.ofMicros(1))).isInstanceOf(ArithmeticException.class);
+        assertThatThrownBy(() -> min.subtract(FixedPointAmount.ofMicros(1))).isInstanceOf(ArithmeticException.class);
+    }
+
+    @Test
+    void valueSemantics() {
+        FixedPointAmount a = FixedPointAmount.of(new BigDecimal("1.5"));
+        FixedPointAmount b = FixedPointAmount.of(new BigDecimal("1.500"));
+
+        assertThat(a).isEqualTo(b).hasSameHashCodeAs(b);
+        assertThat(a.compareTo(FixedPointAmount.ofMicros(1_499_999))).isPositive();
+        assertThat(a.signum()).isEqualTo(1);
+        assertThat(FixedPointAmount.ofMicros(0)).isSameAs(FixedPointAmount.ZERO);
+        assertThat(a.toString()).isEqualTo("1.500000");
+    }
+}
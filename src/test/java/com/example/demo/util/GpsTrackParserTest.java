@@ -0,0 +1,103 @@
+package com.example.demo.util;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class GpsTrackParserTest {
+
+    // 2024-05-01T08:00:00Z
+    private static final long T0 = 1714550400000L;
+
+    private record Point(double lat, double lon, long time) {
+        boolean rejected() {
+            return Double.isNaN(lat);
+        }
+    }
+
+    @Test
+    void parsesHeaderlessCsv() throws IOException {
+        List<Point> points = parse("10.5,106.1,1714550400\n\n10.6,106.2,1714550460000\n");
+
+        assertThat(points).containsExactly(new Point(10.5, 106.1, T0), new Point(10.6, 106.2, T0 + 60_000));
+    }
+
+    @Test
+    void csvHeaderMapsColumnsByName() throws IOException {
+        List<Point> points = parse("timestamp;lng;latitude\n2024-05-01T08:00:00Z;106.1;10.5\n2024-05-01T15:01:00+07:00;106.2;10.6\n");
+
+        assertThat(points).containsExactly(new Point(10.5, 106.1, T0), new Point(10.6, 106.2, T0 + 60_000));
+    }
+
+    @Test
+    void badCsvRowsArriveAsRejectedPoints() throws IOException {
+        List<Point> points = parse("10.5,106.1,1714550400\n10.6,oops,1714550460\n10.7,106.3\n10.8,106.4,not-a-time\n");
+
+        assertThat(points).hasSize(4);
+        assertThat(points.get(0).rejected()).isFalse();
+        assertThat(points.subList(1, 4)).allMatch(Point::rejected);
+    }
+
+    @Test
+    void parsesJsonArrayOfObjects() throws IOException {
+        List<Point> points = parse("""
+                  [{"lat": 10.5, "lng": 106.1, "time": "2024-05-01T08:00:00", "speed": {"kmh": 30}},
+                   {"Latitude": "10.6", "longitude": 106.2, "ts": 1714550460}]
+                """);
+
+        assertThat(points).containsExactly(new Point(10.5, 106.1, T0), new Point(10.6, 106.2, T0 + 60_000));
+    }
+
+    @Test
+    void parsesPointsArrayInsideAnObject() throws IOException {
+        List<Point> points = parse("""
+                {"vehicle": {"id": 7}, "track": [[10.5, 106.1, 1714550400000], [10.6, 106.2, "2024-05-01T08:01:00Z", 12]]}
+                """);
+
+        assertThat(points).containsExactly(new Point(10.5, 106.1, T0), new Point(10.6, 106.2, T0 + 60_000));
+    }
+
+    @Test
+    void jsonPointWithoutTimeIsRejected() throws IOException {
+        List<Point> points = parse("[{\"lat\": 10.5, \"lon\": 106.1}]");
+
+        assertThat(points).hasSize(1);
+        assertThat(points.get(0).rejected()).isTrue();
+    }
+
+    @Test
+    void emptyInputHasNoPoints() throws IOException {
+        assertThat(parse("")).isEmpty();
+        assertThat(parse("  \n\t ")).isEmpty();
+    }
+
+    @Test
+    void rejectsJsonWithoutAPointsArray() {
+        assertThatThrownBy(() -> parse("{\"vehicle\": 1}")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> parse("[1, 2]")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void feedsTheJourneyAccumulator() throws IOException {
+        JourneyAccumulator acc = new JourneyAccumulator(200 / 3.6, 2 / 3.6);
+        GpsTrackParser.parse(new StringReader("lat,lon,ts\n10.0,106.0,0\n10.0,106.01,60\n"), new JsonFactory(), acc);
+
+        assertThat(acc.getPoints()).isEqualTo(2);
+        assertThat(acc.getDurationMillis()).isEqualTo(60_000);
+        assertThat(acc.getDistanceMeters()).isBetween(1090.0, 1100.0);
+    }
+
+    private static List<Point> parse(String input) throws IOException {
+        List<Point> points = new ArrayList<>();
+        GpsTrackParser.parse(new StringReader(input), new JsonFactory(),
+                (lat, lon, time) -> points.add(new Point(lat, lon, time)));
+        return points;
+    }
+}
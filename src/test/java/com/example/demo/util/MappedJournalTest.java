@@ -0,0 +1,162 @@
+package com.example.demo.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MappedJournalTest {
+
+    private static final int SEGMENT_BYTES = 4096;
+
+    @TempDir
+    Path dir;
+
+    private MappedJournal open(int segmentBytes) throws IOException {
+        return new MappedJournal(dir, "test", segmentBytes, 10_000, 1_000);
+    }
+
+    private static byte[] payload(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static long append(MappedJournal journal, byte[] payload) throws Exception {
+        return journal.append(payload).get(5, TimeUnit.SECONDS);
+    }
+
+    private List<String> read(long fromSequence) throws IOException {
+        try (MappedJournal journal = open(SEGMENT_BYTES)) {
+            return readFrom(journal, fromSequence);
+        }
+    }
+
+    private static List<String> readFrom(MappedJournal journal, long fromSequence) throws IOException {
+        List<String> entries = new ArrayList<>();
+        journal.forEach(fromSequence, entry -> {
+            entries.add(entry.sequence() + ":" + new String(entry.payload(), StandardCharsets.UTF_8));
+            return true;
+        });
+        return entries;
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.sorted().toList();
+        }
+    }
+
+    @Test
+    void recordsSurviveReopenAndSequencesContinue() throws Exception {
+        try (MappedJournal journal = open(SEGMENT_BYTES)) {
+            assertThat(append(journal, payload("a"))).isEqualTo(1);
+            assertThat(append(journal, payload("bb"))).isEqualTo(2);
+            assertThat(journal.getDurableSequence()).isEqualTo(2);
+        }
+        try (MappedJournal journal = open(SEGMENT_BYTES)) {
+            assertThat(journal.getDurableSequence()).isEqualTo(2);
+            assertThat(append(journal, payload("ccc"))).isEqualTo(3);
+            assertThat(readFrom(journal, 2)).containsExactly("2:bb", "3:ccc");
+        }
+    }
+
+    @Test
+    void tornTailIsDroppedOnRecovery() throws Exception {
+        byte[] record = payload("0123456789");
+        try (MappedJournal journal = open(SEGMENT_BYTES)) {
+            for (int i = 0; i < 3; i++) {
+                append(journal, record);
+            }
+        }
+        // Third record half written: payload byte flipped, so its checksum fails; plus a stray
+        // header after it as if a fourth write had started
+        int recordBytes = MappedJournal.HEADER_BYTES + record.length;
+        try (FileChannel ch = FileChannel.open(segments().get(0), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ch.map(FileChannel.MapMode.READ_WRITE, 0, ch.size());
+            int third = 2 * recordBytes + MappedJournal.HEADER_BYTES;
+            buffer.put(third, (byte) (buffer.get(third) ^ 1));
+            buffer.putInt(3 * recordBytes, record.length);
+            buffer.putLong(3 * recordBytes + 8, 4);
+        }
+
+        try (MappedJournal journal = open(SEGMENT_BYTES)) {
+            assertThat(journal.getDurableSequence()).isEqualTo(2);
+            assertThat(readFrom(journal, 1)).containsExactly("1:0123456789", "2:0123456789");
+            // The tail was zeroed: the next record takes the torn one's place and sequence
+            assertThat(append(journal, payload("fresh"))).isEqualTo(3);
+        }
+        assertThat(read(1)).containsExactly("1:0123456789", "2:0123456789", "3:fresh");
+    }
+
+    @Test
+    void segmentRollsWhenARecordDoesNotFit() throws Exception {
+        byte[] record = new byte[100];
+        Arrays.fill(record, (byte) 'x');
+        // 116 bytes per record plus the 4 byte end marker: two records per 256 byte segment
+        try (MappedJournal journal = new MappedJournal(dir, "test", 256, 100, 100)) {
+            for (int i = 0; i < 5; i++) {
+                assertThat(append(journal, record)).isEqualTo(i + 1);
+            }
+            assertThat(journal.getSegmentCount()).isEqualTo(3);
+            assertThatThrownBy(() -> journal.append(new byte[256]))
+                    .isInstanceOf(IllegalArgumentException.class);
+        }
+        assertThat(segments()).extracting(p -> p.getFileName().toString()).containsExactly(
+                "test-00000000000000000001.journal",
+                "test-00000000000000000003.journal",
+                "test-00000000000000000005.journal");
+
+        try (MappedJournal journal = new MappedJournal(dir, "test", 256, 100, 100)) {
+            assertThat(journal.getDurableSequence()).isEqualTo(5);
+            assertThat(append(journal, record)).isEqualTo(6);
+            List<Long> sequences = new ArrayList<>();
+            journal.forEach(4, entry -> sequences.add(entry.sequence()));
+            assertThat(sequences).containsExactly(4L, 5L, 6L);
+        }
+    }
+
+    @Test
+    void queuedRecordsShareOneForce() throws Exception {
+        int records = 2_000;
+        try (MappedJournal journal = open(1 << 20)) {
+            List<CompletableFuture<Long>> futures = new ArrayList<>(records);
+            for (int i = 0; i < records; i++) {
+                futures.add(journal.append(payload("record-" + i)));
+            }
+            for (int i = 0; i < records; i++) {
+                assertThat(futures.get(i).get(5, TimeUnit.SECONDS)).isEqualTo(i + 1);
+            }
+
+            assertThat(journal.getAppended()).isEqualTo(records);
+            assertThat(journal.getDurableSequence()).isEqualTo(records);
+            // Records queued while the writer was forcing went out together
+            assertThat(journal.getBatches()).isBetween(2L, (long) records - 1);
+            assertThat(readFrom(journal, records)).containsExactly(records + ":record-" + (records - 1));
+        }
+    }
+
+    @Test
+    void appendAfterCloseFails() throws Exception {
+        MappedJournal journal = open(SEGMENT_BYTES);
+        journal.close();
+
+        assertThatThrownBy(() -> journal.append(payload("late")).get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(IllegalStateException.class);
+    }
+}
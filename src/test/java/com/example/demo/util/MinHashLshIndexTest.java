@@ -0,0 +1,138 @@
+package com.example.demo.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MinHashLshIndexTest {
+
+    private static final int BANDS = 16;
+    private static final int ROWS = 4;
+    private static final double CELL = 0.001;
+    private static final long HOUR = 3_600_000L;
+
+    @Test
+    void findsTheSameRouteAndSkipsTheQueryItself() {
+        MinHashLshIndex index = new MinHashLshIndex(BANDS, ROWS, 16);
+        int[] route = route(10.0, 106.0, 0, 0);
+        index.add(1, route);
+        index.add(2, route(20.0, 100.0, 0, 0));
+
+        List<MinHashLshIndex.Match> matches = index.query(route, 0.6, 99, 10);
+
+        assertThat(matches).containsExactly(new MinHashLshIndex.Match(1, 1.0));
+        assertThat(index.query(route, 0.6, 1, 10)).isEmpty();
+    }
+
+    @Test
+    void findsANoisyCopyButNotADifferentRoute() {
+        MinHashLshIndex index = new MinHashLshIndex(BANDS, ROWS, 16);
+        index.add(1, route(10.0, 106.0, 0, 0));
+
+        // Same trip with GPS jitter well inside a cell, and a trip two cells north
+        int[] noisy = route(10.0, 106.0, 0.00005, 7);
+        int[] elsewhere = route(10.5, 106.0, 0, 0);
+
+        assertThat(index.query(noisy, 0.6, 99, 10)).extracting(MinHashLshIndex.Match::id).containsExactly(1L);
+        assertThat(index.query(elsewhere, 0.6, 99, 10)).isEmpty();
+    }
+
+    @Test
+    void onlyReportsEntriesOverlappingTheTimeWindow() {
+        MinHashLshIndex index = new MinHashLshIndex(BANDS, ROWS, 16);
+        int[] route = route(10.0, 106.0, 0, 0);
+        index.add(1, route, 0, HOUR);
+        index.add(2, route, 24 * HOUR, 25 * HOUR);
+        index.add(3, route);
+
+        List<MinHashLshIndex.Match> sameDay = index.query(route, 0.6, 99, 10, HOUR / 2, 2 * HOUR);
+        List<MinHashLshIndex.Match> anyTime = index.query(route, 0.6, 99, 10);
+
+        // 3 has no window and overlaps everything
+        assertThat(sameDay).extracting(MinHashLshIndex.Match::id).containsExactlyInAnyOrder(1L, 3L);
+        assertThat(anyTime).extracting(MinHashLshIndex.Match::id).containsExactlyInAnyOrder(1L, 2L, 3L);
+    }
+
+    @Test
+    void reportsAnIdIndexedTwiceOnce() {
+        MinHashLshIndex index = new MinHashLshIndex(BANDS, ROWS, 16);
+        int[] route = route(10.0, 106.0, 0, 0);
+        index.add(1, route);
+        index.add(1, route);
+
+        assertThat(index.size()).isEqualTo(2);
+        assertThat(index.query(route, 0.6, 99, 10)).hasSize(1);
+    }
+
+    @Test
+    void ordersBySimilarityAndHonoursLimit() {
+        MinHashLshIndex index = new MinHashLshIndex(BANDS, ROWS, 16);
+        int[] route = route(10.0, 106.0, 0, 0);
+        int[] half = route.clone();
+        // First 4 bands differ entirely, the other 12 still collide
+        for (int i = 0; i < 4 * ROWS; i++) {
+            half[i] = -1;
+        }
+        index.add(1, half);
+        index.add(2, route);
+
+        List<MinHashLshIndex.Match> matches = index.query(route, 0.5, 99, 10);
+
+        assertThat(matches).extracting(MinHashLshIndex.Match::id).containsExactly(2L, 1L);
+        assertThat(matches.get(1).similarity()).isEqualTo(0.75);
+        assertThat(index.query(route, 0.5, 99, 1)).extracting(MinHashLshIndex.Match::id).containsExactly(2L);
+    }
+
+    @Test
+    void keepsEntriesFindableAcrossGrowth() {
+        MinHashLshIndex index = new MinHashLshIndex(BANDS, ROWS, 16);
+        Random random = new Random(1);
+        int[][] routes = new int[200][];
+        for (int i = 0; i < routes.length; i++) {
+            routes[i] = route(-60 + random.nextDouble() * 120, -170 + random.nextDouble() * 340, 0, 0);
+            index.add(i, routes[i]);
+        }
+
+        assertThat(index.size()).isEqualTo(200);
+        for (int i = 0; i < routes.length; i++) {
+            assertThat(index.query(routes[i], 0.99, -1, 1)).extracting(MinHashLshIndex.Match::id)
+                    .containsExactly((long) i);
+        }
+    }
+
+    @Test
+    void rejectsSignaturesOfTheWrongLength() {
+        MinHashLshIndex index = new MinHashLshIndex(BANDS, ROWS, 16);
+
+        assertThatThrownBy(() -> index.add(1, new int[8])).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> index.query(new int[8], 0.5, 0, 1)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void hasherTracksTheJourneyWindow() {
+        RouteMinHasher hasher = new RouteMinHasher(BANDS * ROWS, CELL);
+        assertThat(hasher.getStartMillis()).isEqualTo(MinHashLshIndex.UNKNOWN_START);
+
+        hasher.accept(10.0, 106.0, 5_000);
+        hasher.accept(Double.NaN, Double.NaN, 0);
+        hasher.accept(10.0, 106.01, 1_000);
+
+        assertThat(hasher.getStartMillis()).isEqualTo(1_000);
+        assertThat(hasher.getEndMillis()).isEqualTo(5_000);
+    }
+
+    // A 60-point eastward trip from (lat, lon), points kept off cell edges, optionally with jitter
+    private static int[] route(double lat, double lon, double jitter, long seed) {
+        RouteMinHasher hasher = new RouteMinHasher(BANDS * ROWS, CELL);
+        Random random = new Random(seed);
+        for (int i = 0; i < 60; i++) {
+            double noise = jitter == 0 ? 0 : (random.nextDouble() * 2 - 1) * jitter;
+            hasher.accept(lat + 0.0005 + noise, lon + 0.00025 + i * 0.0015 + noise, i * 10_000L);
+        }
+        return hasher.signature();
+    }
+}
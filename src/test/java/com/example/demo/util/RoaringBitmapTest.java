@@ -0,0 +1,191 @@
+package com.example.demo.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RoaringBitmapTest {
+
+    private static final long CHUNK = 1 << 16;
+
+    @Test
+    void contiguousRangeIsARunContainer() {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        bitmap.addRange(100, 60_000);
+
+        assertThat(bitmap.containerKind(100)).isEqualTo("run");
+        assertThat(bitmap.cardinality()).isEqualTo(59_901);
+        assertThat(bitmap.containsRange(100, 60_000)).isTrue();
+        assertThat(bitmap.contains(99)).isFalse();
+        assertThat(bitmap.contains(60_001)).isFalse();
+    }
+
+    @Test
+    void scatteredValuesMoveBetweenArrayBitmapAndRun() {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        bitmap.add(10);
+        assertThat(bitmap.containerKind(10)).isEqualTo("array");
+
+        // Every other value: 2 bytes per value beats 4 bytes per run, until 4096 values
+        for (int v = 12; v < 2 * 4096; v += 2) {
+            bitmap.add(v);
+        }
+        assertThat(bitmap.cardinality()).isEqualTo(4091);
+        assertThat(bitmap.containerKind(10)).isEqualTo("array");
+        for (int v = 2 * 4096; v < 2 * 4200; v += 2) {
+            bitmap.add(v);
+        }
+        assertThat(bitmap.containerKind(10)).isEqualTo("bitmap");
+
+        // Filling the gaps leaves one run
+        bitmap.addRange(10, 2 * 4200);
+        assertThat(bitmap.containerKind(10)).isEqualTo("run");
+        assertThat(bitmap.cardinality()).isEqualTo(2 * 4200 - 10 + 1);
+
+        // Punching single holes: runs until more than 1024 of them, then a bitmap
+        for (int v = 11; v < 11 + 2 * 1100; v += 2) {
+            bitmap.removeRange(v, v);
+        }
+        assertThat(bitmap.containerKind(10)).isEqualTo("bitmap");
+
+        // Clearing down to a few scattered values goes back to an array
+        bitmap.removeRange(11 + 2 * 1100, 2 * 4200);
+        bitmap.removeRange(1_000, 11 + 2 * 1100);
+        assertThat(bitmap.cardinality()).isEqualTo(495);
+        assertThat(bitmap.containerKind(10)).isEqualTo("array");
+        assertThat(bitmap.contains(998)).isTrue();
+        assertThat(bitmap.contains(999)).isFalse();
+
+        bitmap.removeRange(0, CHUNK - 1);
+        assertThat(bitmap.isEmpty()).isTrue();
+        assertThat(bitmap.containerKind(10)).isNull();
+    }
+
+    @Test
+    void rangesSpanChunkBoundaries() {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        long start = 3 * CHUNK - 5;
+        long end = 5 * CHUNK + 4;
+        bitmap.addRange(start, end);
+
+        assertThat(bitmap.containerCount()).isEqualTo(4);
+        assertThat(bitmap.cardinality()).isEqualTo(end - start + 1);
+        assertThat(bitmap.containsRange(start, end)).isTrue();
+        assertThat(bitmap.nextValue(0)).isEqualTo(start);
+        assertThat(bitmap.nextAbsentValue(start)).isEqualTo(end + 1);
+        assertThat(bitmap.cardinality(4 * CHUNK - 1, 4 * CHUNK)).isEqualTo(2);
+
+        // Remove across the 4th chunk boundary: the chunk in the middle becomes partial
+        bitmap.removeRange(4 * CHUNK - 10, 4 * CHUNK + 9);
+        assertThat(bitmap.cardinality()).isEqualTo(end - start + 1 - 20);
+        assertThat(bitmap.contains(4 * CHUNK - 11)).isTrue();
+        assertThat(bitmap.contains(4 * CHUNK - 10)).isFalse();
+        assertThat(bitmap.contains(4 * CHUNK + 9)).isFalse();
+        assertThat(bitmap.contains(4 * CHUNK + 10)).isTrue();
+        assertThat(bitmap.intersects(4 * CHUNK - 10, 4 * CHUNK + 9)).isFalse();
+        assertThat(bitmap.containsRange(start, end)).isFalse();
+        assertThat(bitmap.ranges(0, Long.MAX_VALUE, 10))
+                .containsExactly(new long[]{start, 4 * CHUNK - 11}, new long[]{4 * CHUNK + 10, end});
+
+        // Removing whole chunks drops their containers
+        bitmap.removeRange(3 * CHUNK, 5 * CHUNK - 1);
+        assertThat(bitmap.containerCount()).isEqualTo(2);
+        assertThat(bitmap.cardinality()).isEqualTo(5 + 5);
+    }
+
+    @Test
+    void rankAndSelectAreInverse() {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        bitmap.addRange(5, 9);                       // run
+        bitmap.add(CHUNK + 3);                        // array
+        bitmap.add(CHUNK + 7);
+        for (long v = 2 * CHUNK; v < 2 * CHUNK + 20_000; v += 3) {
+            bitmap.add(v);                            // bitmap
+        }
+        assertThat(bitmap.containerKind(5)).isEqualTo("run");
+        assertThat(bitmap.containerKind(CHUNK)).isEqualTo("array");
+        assertThat(bitmap.containerKind(2 * CHUNK)).isEqualTo("bitmap");
+
+        assertThat(bitmap.rank(-1)).isZero();
+        assertThat(bitmap.rank(4)).isZero();
+        assertThat(bitmap.rank(7)).isEqualTo(3);
+        assertThat(bitmap.rank(CHUNK + 5)).isEqualTo(6);
+        assertThat(bitmap.rank(Long.MAX_VALUE)).isEqualTo(bitmap.cardinality());
+
+        long cardinality = bitmap.cardinality();
+        long previous = -1;
+        for (long i = 0; i < cardinality; i++) {
+            long value = bitmap.select(i);
+            assertThat(value).isGreaterThan(previous);
+            assertThat(bitmap.contains(value)).isTrue();
+            assertThat(bitmap.rank(value)).isEqualTo(i + 1);
+            previous = value;
+        }
+        assertThat(bitmap.select(cardinality)).isEqualTo(-1);
+    }
+
+    @Test
+    void matchesBitSetUnderRandomRangeUpdates() {
+        Random random = new Random(42);
+        RoaringBitmap bitmap = new RoaringBitmap();
+        BitSet reference = new BitSet();
+        int universe = 4 * (int) CHUNK;
+
+        for (int op = 0; op < 5_000; op++) {
+            int start = random.nextInt(universe);
+            // Mostly short ranges and single values, so all three container kinds show up
+            int length = random.nextInt(10) == 0 ? random.nextInt(20_000) : random.nextInt(4);
+            int end = Math.min(universe - 1, start + length);
+            if (random.nextInt(3) == 0) {
+                bitmap.removeRange(start, end);
+                reference.clear(start, end + 1);
+            } else {
+                bitmap.addRange(start, end);
+                reference.set(start, end + 1);
+            }
+        }
+
+        assertThat(bitmap.cardinality()).isEqualTo(reference.cardinality());
+        for (int v = 0; v < universe; v++) {
+            assertThat(bitmap.contains(v)).as("value %d", v).isEqualTo(reference.get(v));
+        }
+        for (int probe = 0; probe < 1_000; probe++) {
+            int from = random.nextInt(universe);
+            int to = Math.min(universe - 1, from + random.nextInt(100_000));
+            assertThat(bitmap.cardinality(from, to)).isEqualTo(reference.get(from, to + 1).cardinality());
+            int next = reference.nextSetBit(from);
+            assertThat(bitmap.nextValue(from)).isEqualTo(next);
+            assertThat(bitmap.nextAbsentValue(from)).isEqualTo(reference.nextClearBit(from));
+        }
+    }
+
+    @Test
+    void writeAndReadRoundTripEveryContainerKind() throws IOException {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        bitmap.addRange(0, 1_000);
+        bitmap.add(CHUNK + 1);
+        bitmap.add(CHUNK + 9);
+        for (long v = 2 * CHUNK; v < 3 * CHUNK; v += 2) {
+            bitmap.add(v);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bitmap.write(new DataOutputStream(bytes));
+        RoaringBitmap read = RoaringBitmap.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertThat(read.cardinality()).isEqualTo(bitmap.cardinality());
+        assertThat(read.ranges(0, Long.MAX_VALUE, 100))
+                .containsExactlyElementsOf(bitmap.ranges(0, Long.MAX_VALUE, 100));
+        assertThat(List.of(read.containerKind(0), read.containerKind(CHUNK), read.containerKind(2 * CHUNK)))
+                .containsExactly("run", "array", "bitmap");
+    }
+}
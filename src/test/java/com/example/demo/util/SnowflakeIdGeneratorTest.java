@@ -0,0 +1,113 @@
+package com.example.demo.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SnowflakeIdGeneratorTest {
+
+    private static final long START = SnowflakeIdGenerator.EPOCH_MILLIS + 1_000_000L;
+
+    private final AtomicLong clock = new AtomicLong(START);
+
+    @Test
+    void packsTimestampNodeAndSequence() {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(42, clock::get);
+        clock.incrementAndGet();
+
+        long first = generator.nextId();
+        long second = generator.nextId();
+
+        assertThat(SnowflakeIdGenerator.timestampMillis(first)).isEqualTo(START + 1);
+        assertThat(SnowflakeIdGenerator.nodeId(first)).isEqualTo(42);
+        assertThat(second).isEqualTo(first + 1);
+        assertThat(generator.nextId("VNP")).startsWith("VNP").hasSize(3 + Long.toString(second + 1).length());
+    }
+
+    @Test
+    void clockRollbackContinuesOnLogicalClock() {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1, clock::get);
+        clock.addAndGet(10);
+        long beforeRollback = generator.nextId();
+
+        clock.addAndGet(-5_000);
+        long afterRollback = generator.nextId();
+
+        assertThat(afterRollback).isGreaterThan(beforeRollback);
+        assertThat(SnowflakeIdGenerator.timestampMillis(afterRollback)).isEqualTo(START + 10);
+
+        // Khi đồng hồ chạy lại vượt mốc cũ thì dùng lại thời gian thật
+        clock.set(START + 20);
+        assertThat(SnowflakeIdGenerator.timestampMillis(generator.nextId())).isEqualTo(START + 20);
+    }
+
+    @Test
+    void sequenceOverflowBorrowsNextMillisecond() {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(3, clock::get);
+        clock.incrementAndGet();
+
+        Set<Long> ids = new HashSet<>();
+        long last = 0;
+        for (int i = 0; i < 4096 * 2 + 1; i++) {
+            long id = generator.nextId();
+            assertThat(id).isGreaterThan(last);
+            ids.add(id);
+            last = id;
+        }
+
+        assertThat(ids).hasSize(4096 * 2 + 1);
+        assertThat(SnowflakeIdGenerator.timestampMillis(last)).isEqualTo(START + 3);
+        assertThat(SnowflakeIdGenerator.nodeId(last)).isEqualTo(3);
+    }
+
+    @Test
+    void concurrentCallersNeverShareAnId() throws Exception {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(7, System::currentTimeMillis);
+        int threads = 16;
+        int perThread = 20_000;
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < perThread; i++) {
+                        ids.add(generator.nextId());
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertThat(ids).hasSize(threads * perThread);
+    }
+
+    @Test
+    void nodeIdMustBeConfigured() {
+        assertThatThrownBy(() -> new SnowflakeIdGenerator((Long) null))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("app.node-id");
+        assertThatThrownBy(() -> new SnowflakeIdGenerator(1024L))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
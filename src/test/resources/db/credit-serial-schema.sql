@@ -0,0 +1,37 @@
+-- JDBC-only tables used by CreditSerialRegistry (V31, V36, V40), for H2 in MySQL mode.
+-- Loaded by the test profile after Hibernate builds the entity schema (id_generators may already
+-- exist through Co2Reduction's table generator), and by CreditSerialRegistryTest.
+CREATE TABLE IF NOT EXISTS id_generators (
+    gen_name VARCHAR(64) NOT NULL PRIMARY KEY,
+    next_val BIGINT NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS credit_serial_changes (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    op VARCHAR(16) NOT NULL,
+    serial_start BIGINT NOT NULL,
+    serial_end BIGINT NOT NULL,
+    from_owner BIGINT NULL,
+    to_owner BIGINT NULL,
+    created_at TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+    folded_into BIGINT NULL
+);
+
+CREATE TABLE IF NOT EXISTS credit_serial_snapshots (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    last_change_id BIGINT NOT NULL,
+    payload BLOB NOT NULL,
+    payload_bytes INT NOT NULL,
+    created_at TIMESTAMP NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS credit_serial_blocks (
+    serial_start BIGINT NOT NULL PRIMARY KEY,
+    serial_end BIGINT NOT NULL,
+    owner_id BIGINT NULL,
+    state VARCHAR(16) NOT NULL,
+    listing_id BIGINT NULL
+);
+
+INSERT INTO id_generators (gen_name, next_val) VALUES ('credit_serial', 1);
+INSERT INTO id_generators (gen_name, next_val) VALUES ('credit_serial_snapshot', 0);